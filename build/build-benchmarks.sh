@@ -0,0 +1,66 @@
+#!/bin/bash
+
+# Building DenoptimBenchmarks
+# The JMH jars (jmh-core, jmh-generator-annprocess, and jopt-simple) are not 
+# distributed with DENOPTIM: place them in ../lib before running this script.
+if [ -d ../lib ]; then
+    if [ -d lib ]; then
+        cp -r ../lib/*.jar lib/
+    else
+        cp -r ../lib .        
+    fi 
+fi
+
+for jmhJar in jmh-core jmh-generator-annprocess jopt-simple
+do
+    if ! ls lib/$jmhJar-*.jar >/dev/null 2>&1 ; then
+        echo "Failed to locate $jmhJar-*.jar in lib. Please, download it "
+        echo "from https://repo.maven.apache.org/maven2 and place it in ../lib"
+        exit -1
+    fi
+done
+
+if [ ! -f DENOPTIM-GUI.jar ]; then
+    echo "Failed to locate DENOPTIM-GUI.jar"
+    exit -1
+fi
+
+# NB: DENOPTIM-GUI.jar is used from this folder, not from the shared lib, and
+# any copy left in lib by other build scripts is ignored.
+libJars=$(ls -1 lib/*.jar | grep -v "lib/DENOPTIM-GUI.jar")
+jarsColumnSeparated=$(echo "$libJars" | while read l ; do echo $l"@@" ; done | tr -d "\n" | sed 's/@@/:/g')DENOPTIM-GUI.jar
+
+# NB: compiling runs also the JMH annotation processor that generates the 
+# benchmark harness and the META-INF/BenchmarkList file.
+rm -rf benchmarks_classes
+mkdir benchmarks_classes
+find ../src/misc/Benchmarks/src/ -name *.java > javafiles.txt
+javac -cp "$jarsColumnSeparated" @javafiles.txt -encoding utf-8 -d benchmarks_classes
+
+if [ "$?" != "0" ]; then
+    rm -rf javafiles.txt benchmarks_classes
+	echo "Failed to create DenoptimBenchmarks.jar."
+    exit -1
+fi
+
+rm javafiles.txt
+
+jars=$(echo "$libJars" | while read l ; do echo $l"@@" ; done | tr -d "\n" | sed 's/@@/ /g')DENOPTIM-GUI.jar
+echo "Manifest-Version: 1.0" > manifest.mf
+echo "Main-Class: benchmarks.DenoptimBenchmarks" >> manifest.mf
+echo "Class-Path: $(echo $jars | fold -w58 | awk '{print " "$0}')" >> manifest.mf
+echo >> manifest.mf
+
+jar cvfm DenoptimBenchmarks.jar manifest.mf -C benchmarks_classes .
+
+if [ "$?" = "0" ]; then
+     rm -rf manifest.mf benchmarks_classes
+else
+    rm -rf manifest.mf benchmarks_classes
+    echo "Failed to create DenoptimBenchmarks.jar."
+    exit -1
+fi
+
+echo "Run the benchmarks with:"
+echo "  java -jar DenoptimBenchmarks.jar [resultsFile.json [regex [pathToPtCOLX2]]]"
+echo "------------------- Done building DenoptimBenchmarks.jar -------------------"
@@ -22,6 +22,10 @@ public final class Constants
 {
     public static final String XOVER_TAG = "Xover:";
     public static final String MUTATION_TAG = "Mutation:";
+    public static final String GRAPH_TAG = "GraphENC";
+    // fragment type of the vertices containing a fragment (i.e., not
+    // scaffolds or capping groups)
+    public static final int FRAGMENT_TYPE = 1;
     
     //HTML tags used for creating the output results page.
     
@@ -17,6 +17,10 @@ import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.cli.CommandLine;
@@ -54,6 +58,10 @@ public class GenDENOPTIMFTree
     private String fragsFile = "";
     private boolean genDot = false;
     private boolean bygen = false;
+    private boolean fragsAreLibrary = false;
+    
+    // all the molecules by molecule ID
+    private final HashMap<String, MolData> molIndex = new HashMap<>();
 
 
     private static final DecimalFormat DFORMAT = new DecimalFormat();
@@ -87,7 +95,7 @@ public class GenDENOPTIMFTree
                     String fragname = String.format("%1$-10s", "F" + 
                         Utils.getPaddedString(ndigits, k+1));
                     
-                    gendtr.evaluateFragment(cmol, fragname, lstMoldata);
+                    gendtr.evaluateFragment(cmol, fragname, k+1, lstMoldata);
                     k++;
                 }
             }
@@ -96,7 +104,8 @@ public class GenDENOPTIMFTree
             {
                 ArrayList<String> lstvisited = new ArrayList<>();
                 
-                gendtr.traceAncestry(gendtr.amolid, lstMoldata, lstvisited);
+                gendtr.traceAncestry(gendtr.amolid, new HashSet<>(), 
+                    lstvisited);
                 
                 StringBuilder sb = new StringBuilder(1024);
                 sb.append("digraph G {").append(System.getProperty("line.separator"));
@@ -131,23 +140,23 @@ public class GenDENOPTIMFTree
 //------------------------------------------------------------------------------
 
     /**
-     * Recursive iterate through the hierarchical family tree for the given molecule
+     * Recursive iterate through the hierarchical family tree for the given molecule.
+     * Ancestors shared by several lines of descent are traced only once.
      * @param query
-     * @param lstMoldata
+     * @param traced IDs of the molecules traced so far
      * @param lstvisited 
      */
     
-    private void traceAncestry(String query, ArrayList<MolData> lstMoldata, 
+    private void traceAncestry(String query, HashSet<String> traced, 
         ArrayList<String> lstvisited)
     {
-        int idx = getIndex(lstMoldata, query);
+        MolData cmol = molIndex.get(query);
         
-        if (idx == -1)
+        if (cmol == null || !traced.add(query))
         {
             return;
         }
         
-        MolData cmol = lstMoldata.get(idx);
         // add molecule
         StringBuilder sb = new StringBuilder(256);
         sb.append("\t");
@@ -179,7 +188,7 @@ public class GenDENOPTIMFTree
                     System.getProperty("line.separator");
             }
             lstvisited.add(conn);
-            traceAncestry(cmol.getParent_X_molID(), lstMoldata, lstvisited);
+            traceAncestry(cmol.getParent_X_molID(), traced, lstvisited);
         }
         if (cmol.getParent_Y_molID().length() > 0)
         {
@@ -187,36 +196,38 @@ public class GenDENOPTIMFTree
                 cmol.getMolID() + " [style=bold, color=blue]; " + 
                     System.getProperty("line.separator");
             lstvisited.add(conn);
-            traceAncestry(cmol.getParent_Y_molID(), lstMoldata, lstvisited);
+            traceAncestry(cmol.getParent_Y_molID(), traced, lstvisited);
         }
     }
     
 //------------------------------------------------------------------------------
 
     /**
-     * 
-     * @param frag
+     * Finds the molecules containing a fragment and reports the statistics of
+     * their fitness. Molecules are processed in parallel. If the fragments 
+     * are the library used in the run, the fragments of each molecule are
+     * taken from its graph, where available, and substructure matching is 
+     * used only for the other molecules.
+     * @param query the fragment
+     * @param fragname
+     * @param fragId 1-based index of the fragment in the fragment file
      * @param lstMoldata 
      */
     
     private void evaluateFragment(IAtomContainer query, String fragname, 
-        ArrayList<MolData> lstMoldata)
+        int fragId, ArrayList<MolData> lstMoldata)
     {
-        int hits = 0;
-        Pattern pattern = VentoFoggia.findSubstructure(query);
+        // patterns are not shared among threads
+        ThreadLocal<Pattern> pattern = ThreadLocal.withInitial(
+            () -> VentoFoggia.findSubstructure(query));
         
-        ArrayList<Double> lstFitness = new ArrayList<>();
+        List<Double> hitFitness = lstMoldata.parallelStream()
+            .filter(cmol -> containsFragment(cmol, fragId, pattern))
+            .map(MolData::getFitness)
+            .collect(Collectors.toList());
         
-        for (MolData cmol:lstMoldata)
-        {
-            IAtomContainer mol = cmol.getMolecule();
-            int[] match = pattern.match(mol);
-            if (match.length > 0)
-            {
-                hits++;
-                lstFitness.add(cmol.getFitness());
-            }
-        }
+        int hits = hitFitness.size();
+        ArrayList<Double> lstFitness = new ArrayList<>(hitFitness);
         
         double stdev = Utils.findDeviation(lstFitness);
         double mean = Utils.findMean(lstFitness);
@@ -234,10 +245,23 @@ public class GenDENOPTIMFTree
         System.err.println(sb.toString().trim());
     }
 
+//------------------------------------------------------------------------------
+
+    private boolean containsFragment(MolData cmol, int fragId, 
+        ThreadLocal<Pattern> pattern)
+    {
+        if (fragsAreLibrary && cmol.getFragmentIds() != null)
+        {
+            return cmol.getFragmentIds().contains(fragId);
+        }
+        return pattern.get().match(cmol.getMolecule()).length > 0;
+    }
+
 //------------------------------------------------------------------------------
 
     /**
-     * 
+     * Reads all the molecules of the run in a single pass and indexes them
+     * by molecule ID.
      * @return
      * @throws Exception 
      */
@@ -386,7 +410,14 @@ public class GenDENOPTIMFTree
                                         }
                                     }
                                 }
+                                Object genc = mol.getProperty(Constants.GRAPH_TAG);
+                                if (genc != null)
+                                {
+                                    mdata.setFragmentIds(
+                                        Utils.getFragmentIds(genc.toString()));
+                                }
                                 lstMols.add(mdata);
+                                molIndex.put(molname, mdata);
                             }
                         }
                     }                    
@@ -512,11 +543,11 @@ public class GenDENOPTIMFTree
         sb.append("graph G {").append(System.getProperty("line.separator"));
         
         String molID, molIDA, molIDB;
-        int idx, idxA, idxB;
+        int idx;
         StringBuilder sbRel = new StringBuilder(1024);
         
         // use this container to prevent repetition of nodes
-        ArrayList<String> lstID = new ArrayList<>();
+        HashSet<String> lstID = new HashSet<>();
         
         
         for (int i=0; i<clst.size(); i++)
@@ -525,10 +556,8 @@ public class GenDENOPTIMFTree
             MolData mol = lstMols.get(idx);            
             molID = mol.getMolID();
             
-            if (lstID.contains(molID))
+            if (!lstID.add(molID))
                 continue;
-            else
-                lstID.add(molID);
             
             sb.append("\t");
             sb.append(molID).append(" [shape=egg, color=black, style=bold, label=\"");
@@ -541,10 +570,9 @@ public class GenDENOPTIMFTree
             
             if (mol.getParent_X_molID().length() > 0)
             {
-                idxA = getIndex(lstMols, mol.getParent_X_molID());
-                MolData molA = lstMols.get(idxA);
-                molIDA = molA.getMolID();
-                if (! lstID.contains(molIDA))
+                MolData molA = molIndex.get(mol.getParent_X_molID());
+                molIDA = mol.getParent_X_molID();
+                if (molA != null && ! lstID.contains(molIDA))
                 {    
                     sb.append("\t");
                     sb.append(molIDA).append(" [shape=box, color=black, style=bold, label=\"");
@@ -560,11 +588,10 @@ public class GenDENOPTIMFTree
                 
                 if (mol.getParent_Y_molID().length() > 0)
                 {
-                    idxB = getIndex(lstMols, mol.getParent_Y_molID());                    
-                    MolData molB = lstMols.get(idxB);
-                    molIDB = molB.getMolID();
+                    MolData molB = molIndex.get(mol.getParent_Y_molID());
+                    molIDB = mol.getParent_Y_molID();
                     
-                    if (! lstID.contains(molIDB))
+                    if (molB != null && ! lstID.contains(molIDB))
                     {
                         sb.append("\t");
                         sb.append(molIDB).append(" [shape=ellipse, color=black, style=bold, label=\"");
@@ -621,47 +648,6 @@ public class GenDENOPTIMFTree
 
 //------------------------------------------------------------------------------
 
-    /**
-     * 
-     * @param lstMols
-     * @param molid
-     * @return index of the molecule ID
-     */
-    
-    private int getIndex(ArrayList<MolData> lstMols, String molid)
-    {
-        int idx = 0;
-        for (MolData mol:lstMols)
-        {
-            if (mol.getMolID().equals(molid))
-            {
-                break;
-            }
-            idx++;
-        }
-        return idx;
-    }
-    
-//------------------------------------------------------------------------------
-
-    private boolean existsParentLink(ArrayList<String> lstParents, String pA, 
-        String pB, String splstr)
-    {
-        
-        for (String pStr:lstParents)
-        {
-            String[] arr = pStr.split(splstr);
-            if (arr[0].equals(pA) && arr[1].equals(pB))
-                return true;
-            if (arr[0].equals(pB) && arr[1].equals(pA))
-                return true;
-        }
-
-        return false;
-    }
-    
-//------------------------------------------------------------------------------    
-
     private void getDirectedFamilyTree(ArrayList<MolData> lstMols, 
         String dotFile) throws Exception
     {
@@ -823,7 +809,8 @@ public class GenDENOPTIMFTree
 
         StringBuilder sbRel = new StringBuilder(1024);
         
-        ArrayList<String> lstParents = new ArrayList<>();
+        // pairs of parents already linked
+        HashSet<String> lstParents = new HashSet<>();
         
         String molID, parents;
 
@@ -843,12 +830,12 @@ public class GenDENOPTIMFTree
                 if (mol.getParent_Y_molID().length() > 0)
                 {
                     // indicates crossover
-                    parents = mol.getParent_X_molID() + " -- " + mol.getParent_Y_molID();
-                    if (!existsParentLink(lstParents, mol.getParent_X_molID(), 
-                            mol.getParent_Y_molID(), "--"))
+                    if (mol.getParent_X_molID().compareTo(mol.getParent_Y_molID()) < 0)
+                        parents = mol.getParent_X_molID() + " -- " + mol.getParent_Y_molID();
+                    else
+                        parents = mol.getParent_Y_molID() + " -- " + mol.getParent_X_molID();
+                    if (lstParents.add(parents))
                     {
-                        lstParents.add(parents);
-                        
                         sbRel.append("\t");
                         sbRel.append(mol.getParent_X_molID()).append(" -- ")
                             .append(mol.getParent_Y_molID())
@@ -997,6 +984,11 @@ public class GenDENOPTIMFTree
                 fragsFile = cmdLine.getOptionValue("frags").trim();
             }
 
+            if (cmdLine.hasOption("fraglib"))
+            {
+                fragsAreLibrary = true;
+            }
+
             if (precisionLevel > 0)
                 DFORMAT.setMaximumFractionDigits(precisionLevel);
         }
@@ -1121,6 +1113,12 @@ public class GenDENOPTIMFTree
                 
         opts.addOption("", "frags", true, "Evaluate fragments (in smiles/SDF format) based details."
             + "Provide a multi-SDF file or one containing fragment smiles on individual lines.");            
+        
+        Option fraglibopt;
+        fraglibopt = Option.builder().required(false).longOpt("fraglib").
+            hasArg(false).desc("The fragments given with --frags are the fragment library "
+            + "used in the run: find fragments in the graph of the molecules where available.").build();
+        opts.addOption(fraglibopt);
     }
 
 //------------------------------------------------------------------------------
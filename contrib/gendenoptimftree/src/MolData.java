@@ -12,6 +12,7 @@
 
 package gendenoptimftree;
 
+import java.util.Set;
 import org.openscience.cdk.interfaces.IAtomContainer;
 
 /**
@@ -28,6 +29,8 @@ public class MolData implements Comparable<MolData>
     private String parent_Y_molID;
     private int generation;
     private IAtomContainer cmol;
+    // 1-based indices of the library fragments used to build the molecule
+    private Set<Integer> fragIds;
 
 
     public MolData(String p_molID, String p_imgFile, String p_htmlFile,
@@ -168,6 +171,20 @@ public class MolData implements Comparable<MolData>
 
 //------------------------------------------------------------------------------    
 
+    public Set<Integer> getFragmentIds()
+    {
+        return fragIds;
+    }
+
+//------------------------------------------------------------------------------
+
+    public void setFragmentIds(Set<Integer> p_fragIds)
+    {
+        this.fragIds = p_fragIds;
+    }
+
+//------------------------------------------------------------------------------
+
     /**
      *
      * @param B
@@ -14,6 +14,7 @@ package gendenoptimftree;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 
 /**
  *
@@ -93,6 +94,45 @@ public class Utils
         }
     }
     
+//------------------------------------------------------------------------------
+
+    /**
+     * Collects the fragments used in a graph from its string representation.
+     * The vertices of the graph are listed in the second field as
+     * <code>vertexID_molID_fragmentType_level</code>, where the molID is
+     * 1-based.
+     * @param graphStr the graph representation (i.e., GraphENC)
+     * @return the 1-based indices of the fragments in the library, or
+     * <code>null</code> if the graph cannot be parsed
+     */
+
+    public static HashSet<Integer> getFragmentIds(String graphStr)
+    {
+        String[] fields = graphStr.trim().split("\\s+");
+        if (fields.length < 2)
+            return null;
+
+        HashSet<Integer> ids = new HashSet<>();
+        for (String vtx:fields[1].split(","))
+        {
+            if (vtx.length() == 0)
+                continue;
+            String[] tokns = vtx.split("_");
+            if (tokns.length < 3)
+                return null;
+            try
+            {
+                if (Integer.parseInt(tokns[2]) == Constants.FRAGMENT_TYPE)
+                    ids.add(Integer.parseInt(tokns[1]));
+            }
+            catch (NumberFormatException nfe)
+            {
+                return null;
+            }
+        }
+        return ids;
+    }
+
 //------------------------------------------------------------------------------        
 
 }
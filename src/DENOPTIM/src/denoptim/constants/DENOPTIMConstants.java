@@ -144,10 +144,25 @@ public final class DENOPTIMConstants
      */
     public static final String GAGENDIRNAMEROOT = "Gen";
     
+    /**
+     * Name of the file indexing all candidates of an evolutionary experiment
+     */
+    public static final String GAINDEXFILENAME = "CandidatesIndex.txt";
+    
     /**
      * Prefix for graph indexing files
      */
     public static final String FSEIDXNAMEROOT = "FSE-Level_";
+
+    /**
+     * Name of the journal of completed tasks of FragSpaceExplorer
+     */
+    public static final String FSEJOURNALNAME = "FSE-Journal.txt";
+
+    /**
+     * Extension of the index file that may accompany a library of fragments
+     */
+    public static final String FRAGLIBINDEXEXT = ".idx";
     
     /**
      * Prefix filenames  of serialized graphs
@@ -164,6 +179,12 @@ public final class DENOPTIMConstants
      */
     public static final String FITFILENAMEPREFIX = "M";
     
+    /**
+     * Prefix of filenames for input/output files related to batches of 
+     * candidates sent to the external fitness provider
+     */
+    public static final String FITBATCHFILENAMEPREFIX = "FitBatch";
+    
     /**
      * Ending and extension of input file of external fitness provider
      */
@@ -75,6 +75,32 @@ public class FitnessParameters
      * Interpreter for the external fitness provider
      */
     private static String interpreterExternalExe = "bash";
+    
+    /**
+     * Maximum number of candidates sent to the external fitness provider in
+     * a single call. Values larger than 1 activate the batch mode.
+     */
+    private static int batchSize = 1;
+    
+    /**
+     * Maximum time (milliseconds) that the first candidate of a batch waits 
+     * for the batch to be filled-up before the batch is sent to the external
+     * fitness provider regardless of its size.
+     */
+    private static long batchTimeout = 1000;
+    
+    /**
+     * Number of persistent external fitness provider processes. Values 
+     * larger than 0 activate the co-process mode, where candidates are
+     * streamed to long-lived processes via standard input/output.
+     */
+    private static int numCoProcesses = 0;
+    
+    /**
+     * Maximum time (milliseconds) we wait for a co-process to reply to a 
+     * single request.
+     */
+    private static long coProcessTimeout = 600000;
 
     /**
      * Formulation of the internally provided fitness
@@ -138,6 +164,10 @@ public class FitnessParameters
     	useExternalFitness = true;
     	externalExe = "";
     	interpreterExternalExe = "bash";
+    	batchSize = 1;
+    	batchTimeout = 1000;
+    	numCoProcesses = 0;
+    	coProcessTimeout = 600000;
     	fitnessExpression = "";
     	atmBndSpecDescExpressions = new ArrayList<String>();
     	atmBndSpecDescToVars = new HashMap<String,ArrayList<String>>();
@@ -212,6 +242,72 @@ public class FitnessParameters
         return interpreterExternalExe;
     }
     
+//------------------------------------------------------------------------------
+
+    /**
+     * @return <code>true</code> if the external fitness provider is meant to
+     * be called on batches of candidates rather than on single candidates.
+     */
+    public static boolean useBatchedExternalFitness()
+    {
+        return useExternalFitness && batchSize > 1;
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the maximum number of candidates sent to the external fitness
+     * provider in a single call.
+     */
+    public static int getBatchSize()
+    {
+        return batchSize;
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the maximum time (milliseconds) a candidate waits for its batch
+     * to be filled-up before the batch is submitted anyway.
+     */
+    public static long getBatchTimeout()
+    {
+        return batchTimeout;
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * @return <code>true</code> if the external fitness provider is meant to
+     * run as persistent co-processes that receive candidates from the standard
+     * input and return results via the standard output.
+     */
+    public static boolean useCoProcessFitness()
+    {
+        return useExternalFitness && numCoProcesses > 0;
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of persistent fitness provider processes.
+     */
+    public static int getNumberOfCoProcesses()
+    {
+        return numCoProcesses;
+    }
+    
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the maximum time (milliseconds) we wait for the reply of a
+     * co-process to a single request.
+     */
+    public static long getCoProcessTimeout()
+    {
+        return coProcessTimeout;
+    }
+    
 //------------------------------------------------------------------------------
     
     /**
@@ -272,6 +368,62 @@ public class FitnessParameters
         	fitParamsInUse = true;
             break;
             
+        case "FP-BATCHSIZE=":
+            try
+            {
+                if (value.length() > 0)
+                    batchSize = Integer.parseInt(value);
+            }
+            catch (Throwable t)
+            {
+                msg = "Unable to understand value '" + value + "'";
+                throw new DENOPTIMException(msg);
+            }
+            fitParamsInUse = true;
+            break;
+            
+        case "FP-BATCHTIMEOUT=":
+            try
+            {
+                if (value.length() > 0)
+                    batchTimeout = Long.parseLong(value);
+            }
+            catch (Throwable t)
+            {
+                msg = "Unable to understand value '" + value + "'";
+                throw new DENOPTIMException(msg);
+            }
+            fitParamsInUse = true;
+            break;
+            
+        case "FP-COPROCESSES=":
+            try
+            {
+                if (value.length() > 0)
+                    numCoProcesses = Integer.parseInt(value);
+            }
+            catch (Throwable t)
+            {
+                msg = "Unable to understand value '" + value + "'";
+                throw new DENOPTIMException(msg);
+            }
+            fitParamsInUse = true;
+            break;
+            
+        case "FP-COPROCESSTIMEOUT=":
+            try
+            {
+                if (value.length() > 0)
+                    coProcessTimeout = Long.parseLong(value);
+            }
+            catch (Throwable t)
+            {
+                msg = "Unable to understand value '" + value + "'";
+                throw new DENOPTIMException(msg);
+            }
+            fitParamsInUse = true;
+            break;
+            
         case "FP-EQUATION=":
         	fitnessExpression = value;
         	fitParamsInUse = true;
@@ -439,6 +591,41 @@ public class FitnessParameters
             throw new DENOPTIMException(msg);
         }
 
+        if (batchSize < 1)
+        {
+            msg = "Size of batches for the external fitness provider must be "
+                    + "a positive integer. Found " + batchSize + ".";
+            throw new DENOPTIMException(msg);
+        }
+        
+        if (batchTimeout < 0)
+        {
+            msg = "Timeout for batches of candidates must be a non-negative "
+                    + "number of milliseconds. Found " + batchTimeout + ".";
+            throw new DENOPTIMException(msg);
+        }
+
+        if (numCoProcesses < 0)
+        {
+            msg = "Number of fitness provider co-processes must be "
+                    + "a non-negative integer. Found " + numCoProcesses + ".";
+            throw new DENOPTIMException(msg);
+        }
+        
+        if (coProcessTimeout <= 0)
+        {
+            msg = "Timeout for co-process requests must be a positive number "
+                    + "of milliseconds. Found " + coProcessTimeout + ".";
+            throw new DENOPTIMException(msg);
+        }
+        
+        if (numCoProcesses > 0 && batchSize > 1)
+        {
+            msg = "Batch mode and co-process mode of the external fitness "
+                    + "provider cannot be used together.";
+            throw new DENOPTIMException(msg);
+        }
+
         if (interpreterExternalExe.length() != 0)
         {
         	switch (interpreterExternalExe.toUpperCase())
@@ -0,0 +1,274 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.fragspace;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import denoptim.constants.DENOPTIMConstants;
+import denoptim.exception.DENOPTIMException;
+import denoptim.logging.DENOPTIMLogger;
+import denoptim.molecule.DENOPTIMAttachmentPoint;
+import denoptim.molecule.DENOPTIMFragment;
+import denoptim.utils.DENOPTIMMoleculeUtils;
+
+/**
+ * Index of a library of fragments. The index is a text file that accompanies
+ * the library (see {@link #getIndexFileName(String)}) and has one line per
+ * fragment, in the same order as in the library:
+ * <pre>
+ * heavyAtoms molWeight apClass1 apClass2 ...
+ * </pre>
+ * where the AP classes are those of the attachment points of the fragment,
+ * one per attachment point, as listed by
+ * {@link DENOPTIMFragment#getAllAPs()}. Classes that are not defined are
+ * written as {@value #NOCLASS}, and unknown molecular weights as
+ * <code>NaN</code>. Lines starting with <code>#</code> are comments.
+ * The index allows to classify the fragments and get their additive
+ * descriptors without perceiving the molecular representations.
+ *
+ * @author Marco Foscato
+ */
+
+public class FragmentLibraryIndex
+{
+    /**
+     * Placeholder for attachment points without class
+     */
+    public static final String NOCLASS = "-";
+
+    /**
+     * Comment line that opens any index file
+     */
+    public static final String HEADER = "# DENOPTIM fragment library index: "
+                                   + "heavyAtoms molWeight apClass1 apClass2";
+
+    /**
+     * Number of heavy atoms per fragment
+     */
+    private ArrayList<Integer> heavyAtoms = new ArrayList<Integer>();
+
+    /**
+     * Molecular weight per fragment
+     */
+    private ArrayList<Double> molWeights = new ArrayList<Double>();
+
+    /**
+     * AP classes of the attachment points of each fragment
+     */
+    private ArrayList<ArrayList<String>> apClasses =
+                                             new ArrayList<ArrayList<String>>();
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param libFile the pathname of a library of fragments
+     * @return the pathname of the index of that library
+     */
+
+    public static String getIndexFileName(String libFile)
+    {
+        return libFile + DENOPTIMConstants.FRAGLIBINDEXEXT;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reads the index that accompanies a library of fragments, if any.
+     * An index older than the library is ignored.
+     * @param libFile the pathname of the library of fragments
+     * @return the index or <code>null</code> if there is no usable index
+     * @throws DENOPTIMException if the index exists but cannot be read
+     */
+
+    public static FragmentLibraryIndex readIndexOfLibrary(String libFile)
+                                                       throws DENOPTIMException
+    {
+        File lib = new File(libFile);
+        File idx = new File(getIndexFileName(libFile));
+        if (!idx.exists())
+        {
+            return null;
+        }
+        if (idx.lastModified() < lib.lastModified())
+        {
+            DENOPTIMLogger.appLogger.log(Level.WARNING, "Index '" + idx
+                   + "' is older than library '" + libFile + "'. Ignoring it.");
+            return null;
+        }
+        return read(idx.getPath());
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reads an index file.
+     * @param fileName the pathname of the index
+     * @return the index
+     * @throws DENOPTIMException if the file cannot be read or is malformed
+     */
+
+    public static FragmentLibraryIndex read(String fileName)
+                                                       throws DENOPTIMException
+    {
+        FragmentLibraryIndex index = new FragmentLibraryIndex();
+        String line = null;
+        int lineNum = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(fileName)))
+        {
+            while ((line = br.readLine()) != null)
+            {
+                lineNum++;
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#"))
+                {
+                    continue;
+                }
+                String[] words = line.split("\\s+");
+                if (words.length < 2)
+                {
+                    throw new DENOPTIMException("Malformed entry at line "
+                                           + lineNum + " of index " + fileName);
+                }
+                ArrayList<String> classes = new ArrayList<String>();
+                for (int i=2; i<words.length; i++)
+                {
+                    classes.add(words[i].equals(NOCLASS) ? null : words[i]);
+                }
+                index.add(Integer.parseInt(words[0]),
+                          Double.parseDouble(words[1]), classes);
+            }
+        }
+        catch (DENOPTIMException de)
+        {
+            throw de;
+        }
+        catch (NumberFormatException nfe)
+        {
+            throw new DENOPTIMException("Malformed entry at line " + lineNum
+                                            + " of index " + fileName, nfe);
+        }
+        catch (Throwable t)
+        {
+            throw new DENOPTIMException("Cannot read index " + fileName, t);
+        }
+        return index;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Prepares the line of the index pertaining to a fragment.
+     * @param frag the fragment, with attachment points defined by the
+     * molecular properties {@link DENOPTIMConstants#APTAG} and
+     * {@link DENOPTIMConstants#APCVTAG}.
+     * @return the entry of the index, without line separator
+     * @throws DENOPTIMException if the attachment points cannot be perceived
+     */
+
+    public static String makeEntry(IAtomContainer frag)
+                                                       throws DENOPTIMException
+    {
+        double mw = Double.NaN;
+        try
+        {
+            mw = DENOPTIMMoleculeUtils.getMolecularWeight(frag);
+        }
+        catch (Throwable t)
+        {
+            // unknown
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(DENOPTIMMoleculeUtils.getHeavyAtomCount(frag));
+        sb.append(" ").append(mw);
+        DENOPTIMFragment dnFrag = new DENOPTIMFragment(frag);
+        for (DENOPTIMAttachmentPoint ap : dnFrag.getAllAPs())
+        {
+            String cls = ap.getAPClass();
+            sb.append(" ").append(cls == null ? NOCLASS : cls);
+        }
+        return sb.toString();
+    }
+
+//------------------------------------------------------------------------------
+
+    void add(int nHeavyAtoms, double molWeight, ArrayList<String> cls)
+    {
+        heavyAtoms.add(nHeavyAtoms);
+        molWeights.add(molWeight);
+        apClasses.add(cls);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of fragments in the index
+     */
+
+    public int size()
+    {
+        return heavyAtoms.size();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param fragId the index of the fragment in its library
+     * @return the number of heavy atoms of the fragment
+     */
+
+    public int getHeavyAtomCount(int fragId)
+    {
+        return heavyAtoms.get(fragId);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param fragId the index of the fragment in its library
+     * @return the molecular weight of the fragment, or <code>NaN</code>
+     */
+
+    public double getMolecularWeight(int fragId)
+    {
+        return molWeights.get(fragId);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param fragId the index of the fragment in its library
+     * @return the AP class of each attachment point of the fragment. Do not
+     * modify the returned list.
+     */
+
+    public List<String> getAPClassOfEachAP(int fragId)
+    {
+        return apClasses.get(fragId);
+    }
+
+//------------------------------------------------------------------------------
+
+}
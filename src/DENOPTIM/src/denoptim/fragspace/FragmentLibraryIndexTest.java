@@ -0,0 +1,94 @@
+package denoptim.fragspace;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import denoptim.exception.DENOPTIMException;
+
+/**
+ * Unit test for the index of a library of fragments
+ *
+ * @author Marco Foscato
+ */
+
+public class FragmentLibraryIndexTest
+{
+    private final String SEP = System.getProperty("file.separator");
+
+    @TempDir
+    File tempDir;
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testRead() throws Exception
+    {
+        String lib = tempDir + SEP + "lib.sdf";
+        FileWriter fw = new FileWriter(lib);
+        fw.write("$$$$\n");
+        fw.close();
+        fw = new FileWriter(FragmentLibraryIndex.getIndexFileName(lib));
+        fw.write(FragmentLibraryIndex.HEADER + "\n");
+        fw.write("3 44.01 A:0 B:1 A:0\n");
+        fw.write("\n");
+        fw.write("1 NaN -\n");
+        fw.write("5 70.1\n");
+        fw.close();
+
+        FragmentLibraryIndex idx = FragmentLibraryIndex.readIndexOfLibrary(lib);
+        assertEquals(3, idx.size());
+        assertEquals(3, idx.getHeavyAtomCount(0));
+        assertEquals(44.01, idx.getMolecularWeight(0), 0.000001);
+        assertEquals(3, idx.getAPClassOfEachAP(0).size());
+        assertEquals("B:1", idx.getAPClassOfEachAP(0).get(1));
+        assertTrue(Double.isNaN(idx.getMolecularWeight(1)));
+        assertEquals(1, idx.getAPClassOfEachAP(1).size());
+        assertNull(idx.getAPClassOfEachAP(1).get(0));
+        assertEquals(0, idx.getAPClassOfEachAP(2).size());
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testMissingOrMalformed() throws Exception
+    {
+        String lib = tempDir + SEP + "other.sdf";
+        assertNull(FragmentLibraryIndex.readIndexOfLibrary(lib));
+
+        String idxFile = FragmentLibraryIndex.getIndexFileName(lib);
+        FileWriter fw = new FileWriter(idxFile);
+        fw.write("3 x A:0\n");
+        fw.close();
+        assertThrows(DENOPTIMException.class,
+                () -> FragmentLibraryIndex.read(idxFile));
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -121,6 +121,25 @@ public class FragmentSpace
      */
     private static HashMap<String, Double> symmConstraints;
     
+    /**
+     * Number of heavy atoms of each fragment. The first index is the type of
+     * fragment, the second the index of the fragment in its library.
+     */
+    private static int[][] heavyAtomsPerFrag = null;
+
+    /**
+     * Molecular weight of each fragment, or <code>NaN</code> if unknown.
+     * Indexes as in {@link #heavyAtomsPerFrag}.
+     */
+    private static double[][] molWeightPerFrag = null;
+
+    /**
+     * Indexes of the libraries of fragments, or <code>null</code>. Indexes
+     * as the first index of {@link #heavyAtomsPerFrag}.
+     */
+    private static FragmentLibraryIndex[] libIndexes =
+                                                  new FragmentLibraryIndex[3];
+
     /**
      * FLag defining use of AP class-based approach
      */
@@ -161,6 +180,7 @@ public class FragmentSpace
     	setCappingLibrary(cappLib);
     	apClassBasedApproch = false;
     	FragmentSpaceUtils.groupAndClassifyFragments(apClassBasedApproch);
+    	FragmentSpaceUtils.computeAdditiveDescriptors();
     	isValid = true;
     }
     
@@ -206,6 +226,7 @@ public class FragmentSpace
     	setRCCompatibilityMatrix(rcCpMap);
    
     	FragmentSpaceUtils.groupAndClassifyFragments(apClassBasedApproch);
+    	FragmentSpaceUtils.computeAdditiveDescriptors();
     	
     	isValid = true;
     }
@@ -410,6 +431,79 @@ public class FragmentSpace
         return molClone;
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the number of heavy atoms of a fragment. The number of heavy
+     * atoms of a molecule is the sum of those of its fragments.
+     * @param frgTyp the type of fragment.
+     * @param molIdx the index of the fragment in its library.
+     * @return the number of heavy atoms, or -1 if unknown.
+     */
+    public static int getHeavyAtomCount(int frgTyp, int molIdx)
+    {
+        int[][] table = heavyAtomsPerFrag;
+        if (table == null || frgTyp < 0 || frgTyp >= table.length
+                || molIdx < 0 || molIdx >= table[frgTyp].length)
+        {
+            return -1;
+        }
+        return table[frgTyp][molIdx];
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the molecular weight of a fragment. The molecular weight of a
+     * molecule is the sum of those of its fragments.
+     * @param frgTyp the type of fragment.
+     * @param molIdx the index of the fragment in its library.
+     * @return the molecular weight, or <code>NaN</code> if unknown.
+     */
+    public static double getMolecularWeight(int frgTyp, int molIdx)
+    {
+        double[][] table = molWeightPerFrag;
+        if (table == null || frgTyp < 0 || frgTyp >= table.length
+                || molIdx < 0 || molIdx >= table[frgTyp].length)
+        {
+            return Double.NaN;
+        }
+        return table[frgTyp][molIdx];
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the index of a library of fragments, if such index is available
+     * and has one entry per fragment in the library.
+     * @param frgTyp the type of fragment.
+     * @return the index or <code>null</code>.
+     */
+    public static FragmentLibraryIndex getLibraryIndex(int frgTyp)
+    {
+        ArrayList<IAtomContainer> lib = null;
+        switch (frgTyp)
+        {
+            case 0:
+                lib = scaffoldLib;
+                break;
+            case 1:
+                lib = fragmentLib;
+                break;
+            case 2:
+                lib = cappingLib;
+                break;
+            default:
+                return null;
+        }
+        FragmentLibraryIndex idx = libIndexes[frgTyp];
+        if (idx == null || lib == null || idx.size() != lib.size())
+        {
+            return null;
+        }
+        return idx;
+    }
+
 //------------------------------------------------------------------------------
 
     public static ArrayList<IAtomContainer> getScaffoldLibrary()
@@ -912,6 +1006,7 @@ public class FragmentSpace
     public static void setScaffoldLibrary(ArrayList<IAtomContainer> lib)
     {
 	scaffoldLib = lib;
+	setAdditiveDescriptors(null, null);
     }
 
 //------------------------------------------------------------------------------
@@ -919,6 +1014,7 @@ public class FragmentSpace
     public static void setFragmentLibrary(ArrayList<IAtomContainer> lib)
     {
 	fragmentLib = lib;
+	setAdditiveDescriptors(null, null);
     }
 
 //------------------------------------------------------------------------------
@@ -926,6 +1022,7 @@ public class FragmentSpace
     public static void setCappingLibrary(ArrayList<IAtomContainer> lib)
     {
 	cappingLib = lib;
+	setAdditiveDescriptors(null, null);
     }
 
 //------------------------------------------------------------------------------
@@ -965,6 +1062,30 @@ public class FragmentSpace
         forbiddenEndList = lst;
     }
 
+//------------------------------------------------------------------------------
+
+    public static void setAdditiveDescriptors(int[][] heavyAtoms,
+                                              double[][] molWeights)
+    {
+        heavyAtomsPerFrag = heavyAtoms;
+        molWeightPerFrag = molWeights;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Sets the index of a library of fragments. The index is used to classify
+     * the fragments and get their additive descriptors when the fragment
+     * space is defined.
+     * @param frgTyp the type of fragment.
+     * @param idx the index, or <code>null</code> to perceive the fragments
+     * from their molecular representation.
+     */
+    public static void setLibraryIndex(int frgTyp, FragmentLibraryIndex idx)
+    {
+        libIndexes[frgTyp] = idx;
+    }
+
 //------------------------------------------------------------------------------
 
     public static void setFragPoolPerNumAP(HashMap<Integer,ArrayList<Integer>>
@@ -1016,6 +1137,9 @@ public class FragmentSpace
         apClassesPerFrag = null;
         fragsApsPerApClass = null;
         symmConstraints = null;
+        heavyAtomsPerFrag = null;
+        molWeightPerFrag = null;
+        libIndexes = new FragmentLibraryIndex[3];
 		isValid = false;
     }
     
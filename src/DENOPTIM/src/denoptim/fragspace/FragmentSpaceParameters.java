@@ -20,9 +20,11 @@ package denoptim.fragspace;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.logging.Level;
 
 import org.openscience.cdk.interfaces.IAtomContainer;
@@ -84,6 +86,12 @@ public class FragmentSpaceParameters
      */
     protected static String rotBndsFile = "";
 
+    /**
+     * Pathname of the binary snapshot of the fragment space
+     * (see {@link FragmentSpaceSnapshot})
+     */
+    protected static String snapshotFile = "";
+
     /**
      * FLag defining use of AP class-based approach
      */
@@ -114,6 +122,12 @@ public class FragmentSpaceParameters
      */
     protected static boolean symmetryConstraints = false;
 
+    /**
+     * Flag requesting to generate only one of the combinations of fragments
+     * that differ only by permutation of the fragments among symmetric APs
+     */
+    protected static boolean pruneSymmetricCombs = false;
+
     /**
      * List of constitutional symmetry constraints
      */
@@ -136,12 +150,14 @@ public class FragmentSpaceParameters
     	compMatrixFile = "";
     	rcCompMatrixFile = "";
     	rotBndsFile = "";
+    	snapshotFile = "";
     	apClassBasedApproch = false;
     	maxHeavyAtom = 100;
     	maxRotatableBond = 20;
     	maxMW = 500;
     	enforceSymmetry = false;
     	symmetryConstraints = false;
+    	pruneSymmetricCombs = false;
     	symmConstraintsMap = new HashMap<String, Double>();
     	verbosity = 0;
 	}
@@ -188,6 +204,18 @@ public class FragmentSpaceParameters
         return symmetryConstraints;
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * @return <code>true</code> if combinations of fragments that differ only
+     * by permutation of the fragments among the APs of a symmetric set are
+     * to be generated only once
+     */
+    public static boolean pruneSymmetricCombinations()
+    {
+        return pruneSymmetricCombs;
+    }
+
 //------------------------------------------------------------------------------
 
     public static int getVerbosity()
@@ -250,6 +278,9 @@ public class FragmentSpaceParameters
         case "FS-ROTBONDSDEFFILE=":
             rotBndsFile = value;
             break;
+        case "FS-SNAPSHOTFILE=":
+            snapshotFile = value;
+            break;
         case "FS-MAXHEAVYATOM=":
             try
             {
@@ -289,6 +320,9 @@ public class FragmentSpaceParameters
         case "FS-ENFORCESYMMETRY":
 	    enforceSymmetry = true;
 	    break;
+        case "FS-PRUNESYMMETRICCOMBINATIONS":
+            pruneSymmetricCombs = true;
+            break;
 	case "FS-CONSTRAINSYMMETRY=":
 	    symmetryConstraints = true;
 	    try
@@ -423,11 +457,21 @@ public class FragmentSpaceParameters
 
     /**
      * Read the information collected in the parameters stored in this class
-     * and create the fragment space accordingly.
+     * and create the fragment space accordingly. Libraries of fragments that
+     * are accompanied by an index (see {@link FragmentLibraryIndex}) are
+     * classified by means of such index.
+     * If a snapshot file is given and is up to date, the fragment space is
+     * defined from the snapshot, otherwise the snapshot is (re)written after
+     * defining the fragment space from the source files.
      * @throws DENOPTIMException
      */
     public static void processParameters() throws DENOPTIMException
     {
+        if (snapshotFile.length() > 0 && processSnapshot())
+        {
+            return;
+        }
+
         ArrayList<IAtomContainer> scaffLib = 
         		DenoptimIO.readInLibraryOfFragments(scaffoldLibFile,"scaffold");
         ArrayList<IAtomContainer> fragLib = 
@@ -462,6 +506,13 @@ public class FragmentSpaceParameters
         	DenoptimIO.readRCCompatibilityMatrix(rcCompMatrixFile,rcCpMap);
         }
 
+        FragmentSpace.setLibraryIndex(0,
+                FragmentLibraryIndex.readIndexOfLibrary(scaffoldLibFile));
+        FragmentSpace.setLibraryIndex(1,
+                FragmentLibraryIndex.readIndexOfLibrary(fragmentLibFile));
+        FragmentSpace.setLibraryIndex(2, cappingLibFile.length() == 0 ? null
+                : FragmentLibraryIndex.readIndexOfLibrary(cappingLibFile));
+
         if (compMatrixFile.length() > 0)
         {
 		    FragmentSpace.defineFragmentSpace(scaffLib,fragLib,cappLib,cpMap,
@@ -472,6 +523,89 @@ public class FragmentSpaceParameters
         {
         	FragmentSpace.defineFragmentSpace(scaffLib,fragLib,cappLib);
         }
+
+        if (snapshotFile.length() > 0)
+        {
+            try
+            {
+                FragmentSpaceSnapshot.write(snapshotFile, getSnapshotSources());
+            }
+            catch (DENOPTIMException de)
+            {
+                DENOPTIMLogger.appLogger.log(Level.WARNING, "Could not write "
+                        + "snapshot of the fragment space: " + de.getMessage());
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the pathnames of the files defining the fragment space, in the
+     * order expected by {@link FragmentSpaceSnapshot}, followed by the
+     * indexes of the libraries (see {@link FragmentLibraryIndex}), since
+     * the snapshot stores the content of the indexes too.
+     */
+    private static List<String> getSnapshotSources()
+    {
+        List<String> sources = new ArrayList<String>(Arrays.asList(
+                scaffoldLibFile, fragmentLibFile, cappingLibFile,
+                compMatrixFile,
+                rcCompMatrixFile == null ? "" : rcCompMatrixFile));
+        for (String lib : Arrays.asList(scaffoldLibFile, fragmentLibFile,
+                cappingLibFile))
+        {
+            sources.add(lib.isEmpty() ? ""
+                    : FragmentLibraryIndex.getIndexFileName(lib));
+        }
+        return sources;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Defines the fragment space from the snapshot file, if the snapshot is
+     * up to date.
+     * @return <code>true</code> if the fragment space has been defined
+     * @throws DENOPTIMException
+     */
+    private static boolean processSnapshot() throws DENOPTIMException
+    {
+        FragmentSpaceSnapshot snap = null;
+        try
+        {
+            snap = FragmentSpaceSnapshot.readIfUpToDate(snapshotFile,
+                    getSnapshotSources());
+        }
+        catch (DENOPTIMException de)
+        {
+            DENOPTIMLogger.appLogger.log(Level.WARNING, "Ignoring snapshot of "
+                    + "the fragment space: " + de.getMessage());
+        }
+        if (snap == null)
+        {
+            return false;
+        }
+
+        for (int t=0; t<3; t++)
+        {
+            FragmentSpace.setLibraryIndex(t, snap.getLibraryIndex(t));
+        }
+        if (compMatrixFile.length() > 0)
+        {
+		    FragmentSpace.defineFragmentSpace(snap.getLibrary(0),
+		            snap.getLibrary(1), snap.getLibrary(2),
+		            snap.getCompatibilityMatrix(), snap.getBondOrderMap(),
+		            snap.getCappingMap(), snap.getForbiddenEndList(),
+		            snap.getRCCompatibilityMatrix());
+		    FragmentSpace.setSymmConstraints(symmConstraintsMap);
+        }
+        else
+        {
+        	FragmentSpace.defineFragmentSpace(snap.getLibrary(0),
+        	        snap.getLibrary(1), snap.getLibrary(2));
+        }
+        return true;
     }
 
 //------------------------------------------------------------------------------
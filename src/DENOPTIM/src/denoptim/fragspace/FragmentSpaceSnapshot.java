@@ -0,0 +1,694 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.fragspace;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.vecmath.Point2d;
+import javax.vecmath.Point3d;
+
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.Bond;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.PseudoAtom;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.interfaces.IPseudoAtom;
+
+import denoptim.exception.DENOPTIMException;
+import denoptim.molecule.DENOPTIMAttachmentPoint;
+import denoptim.molecule.DENOPTIMFragment;
+
+/**
+ * Binary snapshot of a fragment space. The snapshot contains the libraries of
+ * scaffolds, fragments, and capping groups, the index of each library (see
+ * {@link FragmentLibraryIndex}), and the compatibility tables, so that the
+ * fragment space can be defined without parsing any of the files it was
+ * made from. The snapshot is read by memory mapping.
+ * <p>
+ * The snapshot records the pathname, size, and modification time of each
+ * source file, and is ignored as soon as any of them changes. Of the
+ * molecular representations, the snapshot retains atoms (symbol or label of
+ * pseudo atoms, coordinates, formal charge, implicit hydrogens, isotope,
+ * aromaticity), bonds (order, stereo, aromaticity), and the molecular
+ * properties as strings.</p>
+ * <p>
+ * All strings are stored once in a table at the beginning of the file, and
+ * are referred to by their position in the table. Thus, equal strings, such
+ * as AP classes, are represented by the same object once loaded.</p>
+ *
+ * @author Marco Foscato
+ */
+
+public class FragmentSpaceSnapshot
+{
+    /**
+     * Identifier of the file format
+     */
+    private static final int MAGIC = 0x44465353;
+
+    /**
+     * Version of the file format
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Placeholder for undefined integer values
+     */
+    private static final int NOINT = Integer.MIN_VALUE;
+
+    /**
+     * Libraries of scaffolds, fragments, and capping groups
+     */
+    private ArrayList<ArrayList<IAtomContainer>> libs =
+                                   new ArrayList<ArrayList<IAtomContainer>>();
+
+    /**
+     * Indexes of the libraries
+     */
+    private FragmentLibraryIndex[] indexes = new FragmentLibraryIndex[3];
+
+    private HashMap<String,ArrayList<String>> cpMap =
+                                        new HashMap<String,ArrayList<String>>();
+    private HashMap<String,Integer> boMap = new HashMap<String,Integer>();
+    private HashMap<String,String> capMap = new HashMap<String,String>();
+    private HashSet<String> forbEnds = new HashSet<String>();
+    private HashMap<String,ArrayList<String>> rcCpMap =
+                                        new HashMap<String,ArrayList<String>>();
+
+//------------------------------------------------------------------------------
+
+    private FragmentSpaceSnapshot()
+    {}
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reads a snapshot, if it exists and was made from the current version of
+     * the given source files.
+     * @param fileName the pathname of the snapshot
+     * @param sources the pathnames of the files the fragment space is made
+     * from. Empty strings stand for unused files.
+     * @return the snapshot, or <code>null</code> if the snapshot does not
+     * exist or is out of date
+     * @throws DENOPTIMException if the snapshot cannot be read
+     */
+
+    public static FragmentSpaceSnapshot readIfUpToDate(String fileName,
+                              List<String> sources) throws DENOPTIMException
+    {
+        File file = new File(fileName);
+        if (!file.exists())
+        {
+            return null;
+        }
+        try (FileChannel fc = FileChannel.open(file.toPath(),
+                                               StandardOpenOption.READ))
+        {
+            if (fc.size() > Integer.MAX_VALUE)
+            {
+                throw new DENOPTIMException("Snapshot " + fileName
+                                            + " is too large to be mapped.");
+            }
+            ByteBuffer buf = fc.map(FileChannel.MapMode.READ_ONLY, 0,
+                                    fc.size());
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION)
+            {
+                return null;
+            }
+            ArrayList<String> strings = readStrings(buf);
+            if (!isUpToDate(buf, strings, sources))
+            {
+                return null;
+            }
+            FragmentSpaceSnapshot snapshot = new FragmentSpaceSnapshot();
+            snapshot.readContent(buf, strings);
+            return snapshot;
+        }
+        catch (DENOPTIMException de)
+        {
+            throw de;
+        }
+        catch (Throwable t)
+        {
+            throw new DENOPTIMException("Cannot read snapshot " + fileName, t);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    private static ArrayList<String> readStrings(ByteBuffer buf)
+    {
+        int n = buf.getInt();
+        ArrayList<String> strings = new ArrayList<String>(n);
+        for (int i=0; i<n; i++)
+        {
+            byte[] bytes = new byte[buf.getInt()];
+            buf.get(bytes);
+            strings.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+
+//------------------------------------------------------------------------------
+
+    private static boolean isUpToDate(ByteBuffer buf, List<String> strings,
+                                      List<String> sources)
+    {
+        int n = buf.getInt();
+        boolean upToDate = n == sources.size();
+        for (int i=0; i<n; i++)
+        {
+            String path = strings.get(buf.getInt());
+            long length = buf.getLong();
+            long lastModified = buf.getLong();
+            if (!upToDate)
+            {
+                continue;
+            }
+            File src = new File(sources.get(i));
+            upToDate = path.equals(sources.get(i))
+                    && length == (path.isEmpty() ? 0 : src.length())
+                    && lastModified == (path.isEmpty() ? 0 :src.lastModified());
+        }
+        return upToDate;
+    }
+
+//------------------------------------------------------------------------------
+
+    private void readContent(ByteBuffer buf, List<String> strings)
+    {
+        for (int t=0; t<3; t++)
+        {
+            int nFrags = buf.getInt();
+            ArrayList<IAtomContainer> lib = new ArrayList<IAtomContainer>(
+                                                                       nFrags);
+            FragmentLibraryIndex idx = new FragmentLibraryIndex();
+            for (int i=0; i<nFrags; i++)
+            {
+                lib.add(readMolecule(buf, strings));
+                int heavyAtoms = buf.getInt();
+                double molWeight = buf.getDouble();
+                ArrayList<String> classes = new ArrayList<String>();
+                int nAPs = buf.getInt();
+                for (int j=0; j<nAPs; j++)
+                {
+                    classes.add(getString(buf, strings));
+                }
+                idx.add(heavyAtoms, molWeight, classes);
+            }
+            libs.add(lib);
+            indexes[t] = idx;
+        }
+
+        readMapOfLists(buf, strings, cpMap);
+        int n = buf.getInt();
+        for (int i=0; i<n; i++)
+        {
+            boMap.put(getString(buf, strings), buf.getInt());
+        }
+        n = buf.getInt();
+        for (int i=0; i<n; i++)
+        {
+            capMap.put(getString(buf, strings), getString(buf, strings));
+        }
+        n = buf.getInt();
+        for (int i=0; i<n; i++)
+        {
+            forbEnds.add(getString(buf, strings));
+        }
+        readMapOfLists(buf, strings, rcCpMap);
+    }
+
+//------------------------------------------------------------------------------
+
+    private static void readMapOfLists(ByteBuffer buf, List<String> strings,
+                                       Map<String,ArrayList<String>> map)
+    {
+        int n = buf.getInt();
+        for (int i=0; i<n; i++)
+        {
+            String key = getString(buf, strings);
+            int m = buf.getInt();
+            ArrayList<String> values = new ArrayList<String>(m);
+            for (int j=0; j<m; j++)
+            {
+                values.add(getString(buf, strings));
+            }
+            map.put(key, values);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    private static String getString(ByteBuffer buf, List<String> strings)
+    {
+        int id = buf.getInt();
+        return id < 0 ? null : strings.get(id);
+    }
+
+//------------------------------------------------------------------------------
+
+    private static Integer getInteger(ByteBuffer buf)
+    {
+        int i = buf.getInt();
+        return i == NOINT ? null : i;
+    }
+
+//------------------------------------------------------------------------------
+
+    private static Double getDouble(ByteBuffer buf)
+    {
+        double d = buf.getDouble();
+        return Double.isNaN(d) ? null : d;
+    }
+
+//------------------------------------------------------------------------------
+
+    private static IAtomContainer readMolecule(ByteBuffer buf,
+                                               List<String> strings)
+    {
+        IAtomContainer mol = new AtomContainer();
+        int nAtoms = buf.getInt();
+        for (int i=0; i<nAtoms; i++)
+        {
+            boolean isPseudo = buf.get() == 1;
+            String symbol = getString(buf, strings);
+            IAtom atm = isPseudo ? new PseudoAtom(symbol) : new Atom(symbol);
+            byte dim = buf.get();
+            if (dim == 3)
+            {
+                atm.setPoint3d(new Point3d(buf.getDouble(), buf.getDouble(),
+                                           buf.getDouble()));
+            }
+            else if (dim == 2)
+            {
+                atm.setPoint2d(new Point2d(buf.getDouble(), buf.getDouble()));
+            }
+            atm.setFormalCharge(getInteger(buf));
+            atm.setImplicitHydrogenCount(getInteger(buf));
+            atm.setAtomicNumber(getInteger(buf));
+            atm.setMassNumber(getInteger(buf));
+            atm.setExactMass(getDouble(buf));
+            atm.setNaturalAbundance(getDouble(buf));
+            atm.setFlag(CDKConstants.ISAROMATIC, buf.get() == 1);
+            mol.addAtom(atm);
+        }
+        int nBonds = buf.getInt();
+        for (int i=0; i<nBonds; i++)
+        {
+            IAtom a0 = mol.getAtom(buf.getInt());
+            IAtom a1 = mol.getAtom(buf.getInt());
+            String order = getString(buf, strings);
+            String stereo = getString(buf, strings);
+            IBond bnd = new Bond(a0, a1);
+            bnd.setOrder(order == null ? null : IBond.Order.valueOf(order));
+            if (stereo != null)
+            {
+                bnd.setStereo(IBond.Stereo.valueOf(stereo));
+            }
+            bnd.setFlag(CDKConstants.ISAROMATIC, buf.get() == 1);
+            mol.addBond(bnd);
+        }
+        int nProps = buf.getInt();
+        for (int i=0; i<nProps; i++)
+        {
+            mol.setProperty(getString(buf, strings), getString(buf, strings));
+        }
+        return mol;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Writes a snapshot of the fragment space currently defined in
+     * {@link FragmentSpace}. The file is replaced atomically, so that
+     * concurrent readers never see an incomplete snapshot.
+     * @param fileName the pathname of the snapshot
+     * @param sources the pathnames of the files the fragment space is made
+     * from. Empty strings stand for unused files.
+     * @throws DENOPTIMException if the snapshot cannot be written
+     */
+
+    public static void write(String fileName, List<String> sources)
+                                                       throws DENOPTIMException
+    {
+        Map<String,Integer> strings = new LinkedHashMap<String,Integer>();
+        File tmpFile = null;
+        try
+        {
+            // Content goes after the table of strings, which is complete only
+            // once the content is made.
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(content);
+            out.writeInt(sources.size());
+            for (String src : sources)
+            {
+                File f = new File(src);
+                out.writeInt(intern(strings, src));
+                out.writeLong(src.isEmpty() ? 0 : f.length());
+                out.writeLong(src.isEmpty() ? 0 : f.lastModified());
+            }
+
+            List<ArrayList<IAtomContainer>> libs =
+                                   new ArrayList<ArrayList<IAtomContainer>>();
+            libs.add(FragmentSpace.getScaffoldLibrary());
+            libs.add(FragmentSpace.getFragmentLibrary());
+            libs.add(FragmentSpace.getCappingLibrary());
+            for (int t=0; t<libs.size(); t++)
+            {
+                ArrayList<IAtomContainer> lib = libs.get(t);
+                int n = lib == null ? 0 : lib.size();
+                FragmentLibraryIndex idx = FragmentSpace.getLibraryIndex(t);
+                out.writeInt(n);
+                for (int i=0; i<n; i++)
+                {
+                    IAtomContainer mol = lib.get(i);
+                    writeMolecule(out, strings, mol);
+                    out.writeInt(FragmentSpace.getHeavyAtomCount(t, i));
+                    out.writeDouble(FragmentSpace.getMolecularWeight(t, i));
+                    List<String> classes = null;
+                    if (idx != null)
+                    {
+                        classes = idx.getAPClassOfEachAP(i);
+                    }
+                    else
+                    {
+                        classes = new ArrayList<String>();
+                        for (DENOPTIMAttachmentPoint ap :
+                                        new DENOPTIMFragment(mol).getAllAPs())
+                        {
+                            classes.add(ap.getAPClass());
+                        }
+                    }
+                    out.writeInt(classes.size());
+                    for (String cls : classes)
+                    {
+                        out.writeInt(intern(strings, cls));
+                    }
+                }
+            }
+
+            writeMapOfLists(out, strings,
+                            FragmentSpace.getCompatibilityMatrix());
+            Map<String,Integer> boMap = FragmentSpace.getBondOrderMap();
+            out.writeInt(boMap == null ? 0 : boMap.size());
+            if (boMap != null)
+            {
+                for (Map.Entry<String,Integer> e : boMap.entrySet())
+                {
+                    out.writeInt(intern(strings, e.getKey()));
+                    out.writeInt(e.getValue());
+                }
+            }
+            Map<String,String> capMap = FragmentSpace.getCappingMap();
+            out.writeInt(capMap == null ? 0 : capMap.size());
+            if (capMap != null)
+            {
+                for (Map.Entry<String,String> e : capMap.entrySet())
+                {
+                    out.writeInt(intern(strings, e.getKey()));
+                    out.writeInt(intern(strings, e.getValue()));
+                }
+            }
+            Set<String> forbEnds = FragmentSpace.getForbiddenEndList();
+            out.writeInt(forbEnds == null ? 0 : forbEnds.size());
+            if (forbEnds != null)
+            {
+                for (String cls : forbEnds)
+                {
+                    out.writeInt(intern(strings, cls));
+                }
+            }
+            writeMapOfLists(out, strings,
+                            FragmentSpace.getRCCompatibilityMatrix());
+            out.flush();
+
+            File file = new File(fileName).getAbsoluteFile();
+            tmpFile = File.createTempFile(file.getName(), ".tmp",
+                                          file.getParentFile());
+            try (DataOutputStream fout = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile))))
+            {
+                fout.writeInt(MAGIC);
+                fout.writeInt(VERSION);
+                fout.writeInt(strings.size());
+                for (String s : strings.keySet())
+                {
+                    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                    fout.writeInt(bytes.length);
+                    fout.write(bytes);
+                }
+                content.writeTo(fout);
+            }
+            Files.move(tmpFile.toPath(), file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (DENOPTIMException de)
+        {
+            throw de;
+        }
+        catch (Throwable t)
+        {
+            throw new DENOPTIMException("Cannot write snapshot " + fileName, t);
+        }
+        finally
+        {
+            if (tmpFile != null && tmpFile.exists())
+            {
+                tmpFile.delete();
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    private static int intern(Map<String,Integer> strings, Object o)
+    {
+        if (o == null)
+        {
+            return -1;
+        }
+        String s = o.toString();
+        Integer id = strings.get(s);
+        if (id == null)
+        {
+            id = strings.size();
+            strings.put(s, id);
+        }
+        return id;
+    }
+
+//------------------------------------------------------------------------------
+
+    private static void writeMapOfLists(DataOutputStream out,
+                                        Map<String,Integer> strings,
+                                        Map<String,ArrayList<String>> map)
+                                                            throws Exception
+    {
+        out.writeInt(map == null ? 0 : map.size());
+        if (map == null)
+        {
+            return;
+        }
+        for (Map.Entry<String,ArrayList<String>> e : map.entrySet())
+        {
+            out.writeInt(intern(strings, e.getKey()));
+            out.writeInt(e.getValue().size());
+            for (String s : e.getValue())
+            {
+                out.writeInt(intern(strings, s));
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    private static void writeInteger(DataOutputStream out, Integer i)
+                                                            throws Exception
+    {
+        out.writeInt(i == null ? NOINT : i);
+    }
+
+//------------------------------------------------------------------------------
+
+    private static void writeDouble(DataOutputStream out, Double d)
+                                                            throws Exception
+    {
+        out.writeDouble(d == null ? Double.NaN : d);
+    }
+
+//------------------------------------------------------------------------------
+
+    private static void writeMolecule(DataOutputStream out,
+                                      Map<String,Integer> strings,
+                                      IAtomContainer mol) throws Exception
+    {
+        out.writeInt(mol.getAtomCount());
+        for (IAtom atm : mol.atoms())
+        {
+            if (atm instanceof IPseudoAtom)
+            {
+                out.writeByte(1);
+                out.writeInt(intern(strings, ((IPseudoAtom) atm).getLabel()));
+            }
+            else
+            {
+                out.writeByte(0);
+                out.writeInt(intern(strings, atm.getSymbol()));
+            }
+            Point3d p3d = atm.getPoint3d();
+            Point2d p2d = atm.getPoint2d();
+            if (p3d != null)
+            {
+                out.writeByte(3);
+                out.writeDouble(p3d.x);
+                out.writeDouble(p3d.y);
+                out.writeDouble(p3d.z);
+            }
+            else if (p2d != null)
+            {
+                out.writeByte(2);
+                out.writeDouble(p2d.x);
+                out.writeDouble(p2d.y);
+            }
+            else
+            {
+                out.writeByte(0);
+            }
+            writeInteger(out, atm.getFormalCharge());
+            writeInteger(out, atm.getImplicitHydrogenCount());
+            writeInteger(out, atm.getAtomicNumber());
+            writeInteger(out, atm.getMassNumber());
+            writeDouble(out, atm.getExactMass());
+            writeDouble(out, atm.getNaturalAbundance());
+            out.writeByte(atm.getFlag(CDKConstants.ISAROMATIC) ? 1 : 0);
+        }
+        out.writeInt(mol.getBondCount());
+        for (IBond bnd : mol.bonds())
+        {
+            out.writeInt(mol.getAtomNumber(bnd.getAtom(0)));
+            out.writeInt(mol.getAtomNumber(bnd.getAtom(1)));
+            IBond.Order order = bnd.getOrder();
+            IBond.Stereo stereo = bnd.getStereo();
+            out.writeInt(intern(strings, order == null ? null : order.name()));
+            out.writeInt(intern(strings, stereo == null ? null :stereo.name()));
+            out.writeByte(bnd.getFlag(CDKConstants.ISAROMATIC) ? 1 : 0);
+        }
+        int nProps = 0;
+        for (Map.Entry<Object,Object> e : mol.getProperties().entrySet())
+        {
+            if (e.getKey() != null && e.getValue() != null)
+            {
+                nProps++;
+            }
+        }
+        out.writeInt(nProps);
+        for (Map.Entry<Object,Object> e : mol.getProperties().entrySet())
+        {
+            if (e.getKey() != null && e.getValue() != null)
+            {
+                out.writeInt(intern(strings, e.getKey()));
+                out.writeInt(intern(strings, e.getValue()));
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param frgTyp the type of fragment
+     * @return the library of the given type of fragments
+     */
+
+    public ArrayList<IAtomContainer> getLibrary(int frgTyp)
+    {
+        return libs.get(frgTyp);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param frgTyp the type of fragment
+     * @return the index of the library of the given type of fragments
+     */
+
+    public FragmentLibraryIndex getLibraryIndex(int frgTyp)
+    {
+        return indexes[frgTyp];
+    }
+
+//------------------------------------------------------------------------------
+
+    public HashMap<String,ArrayList<String>> getCompatibilityMatrix()
+    {
+        return cpMap;
+    }
+
+//------------------------------------------------------------------------------
+
+    public HashMap<String,Integer> getBondOrderMap()
+    {
+        return boMap;
+    }
+
+//------------------------------------------------------------------------------
+
+    public HashMap<String,String> getCappingMap()
+    {
+        return capMap;
+    }
+
+//------------------------------------------------------------------------------
+
+    public HashSet<String> getForbiddenEndList()
+    {
+        return forbEnds;
+    }
+
+//------------------------------------------------------------------------------
+
+    public HashMap<String,ArrayList<String>> getRCCompatibilityMatrix()
+    {
+        return rcCpMap;
+    }
+
+//------------------------------------------------------------------------------
+
+}
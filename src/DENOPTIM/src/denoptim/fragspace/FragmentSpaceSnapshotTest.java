@@ -0,0 +1,148 @@
+package denoptim.fragspace;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.vecmath.Point3d;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.Bond;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+import denoptim.constants.DENOPTIMConstants;
+
+/**
+ * Unit test for the snapshot of a fragment space
+ *
+ * @author Marco Foscato
+ */
+
+public class FragmentSpaceSnapshotTest
+{
+    private final String SEP = System.getProperty("file.separator");
+
+    @TempDir
+    File tempDir;
+
+//------------------------------------------------------------------------------
+
+    private IAtomContainer makeFragment(String el, String apProp)
+    {
+        IAtomContainer mol = new AtomContainer();
+        Atom a1 = new Atom(el, new Point3d(0.0, 1.1, 2.2));
+        Atom a2 = new Atom("C", new Point3d(1.5, 1.1, 2.2));
+        mol.addAtom(a1);
+        mol.addAtom(a2);
+        mol.addBond(new Bond(a1, a2, IBond.Order.DOUBLE));
+        mol.setProperty(DENOPTIMConstants.APCVTAG, apProp);
+        mol.setProperty(DENOPTIMConstants.APTAG, "1:1");
+        return mol;
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testWriteAndRead() throws Exception
+    {
+        String src = tempDir + SEP + "lib.sdf";
+        FileWriter fw = new FileWriter(src);
+        fw.write("$$$$\n");
+        fw.close();
+        List<String> sources = Arrays.asList(src, src, "", "", "");
+
+        ArrayList<IAtomContainer> scaffLib = new ArrayList<IAtomContainer>();
+        scaffLib.add(makeFragment("O", "1#A:0 2#B:1"));
+        ArrayList<IAtomContainer> fragLib = new ArrayList<IAtomContainer>();
+        fragLib.add(makeFragment("N", "1#B:1"));
+        fragLib.add(makeFragment("S", "1#A:0"));
+        ArrayList<IAtomContainer> cappLib = new ArrayList<IAtomContainer>();
+
+        HashMap<String,ArrayList<String>> cpMap =
+                new HashMap<String,ArrayList<String>>();
+        cpMap.put("A:0", new ArrayList<String>(Arrays.asList("B:1")));
+        HashMap<String,Integer> boMap = new HashMap<String,Integer>();
+        boMap.put("A:0", 1);
+        boMap.put("B:1", 2);
+        HashMap<String,String> capMap = new HashMap<String,String>();
+        capMap.put("A:0", "B:1");
+        HashSet<String> ends = new HashSet<String>();
+        ends.add("B:1");
+
+        FragmentSpace.clearAll();
+        FragmentSpace.defineFragmentSpace(scaffLib, fragLib, cappLib, cpMap,
+                boMap, capMap, ends, new HashMap<String,ArrayList<String>>());
+
+        String snapFile = tempDir + SEP + "fs.snapshot";
+        FragmentSpaceSnapshot.write(snapFile, sources);
+        FragmentSpace.clearAll();
+
+        FragmentSpaceSnapshot snap =
+                FragmentSpaceSnapshot.readIfUpToDate(snapFile, sources);
+        assertNotNull(snap);
+        assertEquals(1, snap.getLibrary(0).size());
+        assertEquals(2, snap.getLibrary(1).size());
+        assertEquals(0, snap.getLibrary(2).size());
+
+        IAtomContainer mol = snap.getLibrary(1).get(1);
+        assertEquals(2, mol.getAtomCount());
+        assertEquals("S", mol.getAtom(0).getSymbol());
+        assertEquals(1.5, mol.getAtom(1).getPoint3d().x, 0.000001);
+        assertEquals(IBond.Order.DOUBLE, mol.getBond(0).getOrder());
+        assertEquals("1#A:0", mol.getProperty(DENOPTIMConstants.APCVTAG));
+
+        FragmentLibraryIndex idx = snap.getLibraryIndex(0);
+        assertEquals(1, idx.size());
+        assertEquals(2, idx.getHeavyAtomCount(0));
+        assertEquals(Arrays.asList("A:0", "B:1"), idx.getAPClassOfEachAP(0));
+        assertSame(idx.getAPClassOfEachAP(0).get(0),
+                snap.getLibraryIndex(1).getAPClassOfEachAP(1).get(0));
+
+        assertEquals(cpMap, snap.getCompatibilityMatrix());
+        assertEquals(boMap, snap.getBondOrderMap());
+        assertEquals(capMap, snap.getCappingMap());
+        assertEquals(ends, snap.getForbiddenEndList());
+
+        // Any change of the sources invalidates the snapshot
+        fw = new FileWriter(src, true);
+        fw.write("$$$$\n");
+        fw.close();
+        assertNull(FragmentSpaceSnapshot.readIfUpToDate(snapFile, sources));
+        assertNull(FragmentSpaceSnapshot.readIfUpToDate(snapFile,
+                Arrays.asList(src, src, src, "", "")));
+    }
+
+//------------------------------------------------------------------------------
+
+}
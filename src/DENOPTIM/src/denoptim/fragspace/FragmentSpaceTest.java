@@ -339,4 +339,29 @@ public class FragmentSpaceTest
     
 //------------------------------------------------------------------------------
     
+    @Test
+    public void testAdditiveDescriptors() throws Exception
+    {
+    	buildFragmentSpace();
+
+    	assertEquals(3,FragmentSpace.getHeavyAtomCount(0,0),
+    			"Heavy atoms in scaffold.");
+    	assertEquals(1,FragmentSpace.getHeavyAtomCount(1,2),
+    			"Heavy atoms in fragment.");
+    	assertEquals(0,FragmentSpace.getHeavyAtomCount(2,0),
+    			"Heavy atoms in capping group.");
+    	assertEquals(-1,FragmentSpace.getHeavyAtomCount(1,99),
+    			"Heavy atoms in non-existing fragment.");
+    	assertTrue(Double.isNaN(FragmentSpace.getMolecularWeight(3,0)),
+    			"Molecular weight of unknown type of fragment.");
+
+    	FragmentSpace.setFragmentLibrary(new ArrayList<IAtomContainer>());
+    	assertEquals(-1,FragmentSpace.getHeavyAtomCount(0,0),
+    			"Descriptors of replaced library.");
+
+    	FragmentSpace.clearAll();
+    }
+
+//------------------------------------------------------------------------------
+
 }
@@ -19,6 +19,7 @@
 package denoptim.fragspace;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 
@@ -26,6 +27,7 @@ import denoptim.constants.DENOPTIMConstants;
 import denoptim.exception.DENOPTIMException;
 import denoptim.molecule.DENOPTIMAttachmentPoint;
 import denoptim.molecule.DENOPTIMFragment;
+import denoptim.utils.DENOPTIMMoleculeUtils;
 import denoptim.utils.FragmentUtils;
 
 import org.openscience.cdk.interfaces.IAtomContainer;
@@ -43,7 +45,9 @@ public class FragmentSpaceUtils
 //------------------------------------------------------------------------------
 	
 	/**
-	 * Performs grouping and classification operations on the fragment library
+	 * Performs grouping and classification operations on the fragment library.
+	 * The index of the library is used, if available (see
+	 * {@link FragmentSpace#getLibraryIndex(int)}).
 	 * @param apClassBasedApproch <code>true</code> if you are using class based
 	 * approach
 	 */
@@ -59,11 +63,25 @@ public class FragmentSpaceUtils
 		    FragmentSpace.setAPClassesPerFrag(
 					      new HashMap<Integer,ArrayList<String>>());
 		}
+		FragmentLibraryIndex idx = FragmentSpace.getLibraryIndex(1);
 		for (int j=0; j<FragmentSpace.getFragmentLibrary().size(); j++)
 		{
-		    IAtomContainer frag = FragmentSpace.getFragmentLibrary().get(j);
-		    DENOPTIMFragment dnFrag = new DENOPTIMFragment(frag);
-		    classifyFragment(dnFrag,1,j);
+		    List<String> apClasses = null;
+		    if (idx != null)
+		    {
+		        apClasses = idx.getAPClassOfEachAP(j);
+		    }
+		    else
+		    {
+		        IAtomContainer frag = FragmentSpace.getFragmentLibrary().get(j);
+		        apClasses = new ArrayList<String>();
+		        for (DENOPTIMAttachmentPoint ap :
+		                            new DENOPTIMFragment(frag).getAllAPs())
+		        {
+		            apClasses.add(ap.getAPClass());
+		        }
+		    }
+		    classifyFragment(apClasses,1,j);
 		}
 	}
 
@@ -72,17 +90,17 @@ public class FragmentSpaceUtils
     /**
      * Classify a fragment in terms of the number of APs and possibly their 
      * type (AP-Class).
-     * @param mol the molecular representation of the fragment
+     * @param apClasses the AP class of each attachment point of the fragment
      * @param type the type of fragment
      * @param id the index of the fragment in the library
      * @throws DENOPTIMException
      */
 
-    private static void classifyFragment(DENOPTIMFragment frg, int type, 
+    private static void classifyFragment(List<String> apClasses, int type,
 					    int fragId) throws DENOPTIMException
     {
 		// Classify according to number of APs
-        int nAps = frg.getAPCount();
+        int nAps = apClasses.size();
 		if (nAps != 0)
 		{
             if (FragmentSpace.getMapOfFragsPerNumAps().containsKey(nAps))
@@ -100,18 +118,23 @@ public class FragmentSpaceUtils
 		if (FragmentSpace.useAPclassBasedApproach())
 		{
 		    // Collect classes per fragment
-		    ArrayList<String> lstAPC = frg.getAllAPClassess();
+		    ArrayList<String> lstAPC = new ArrayList<String>();
+		    for (String cls : apClasses)
+		    {
+		        if (!lstAPC.contains(cls))
+		        {
+		            lstAPC.add(cls);
+		        }
+		    }
 	        FragmentSpace.getMapAPClassesPerFragment().put(fragId,lstAPC);
 	
 		    // Classify according to AP-Classes
-	        ArrayList<DENOPTIMAttachmentPoint> lstAPs = frg.getAllAPs();
-	
-		    for (int j=0; j<lstAPs.size(); j++)
+		    for (int j=0; j<apClasses.size(); j++)
 		    {
 				ArrayList<Integer> apId = new ArrayList<Integer>();
 				apId.add(fragId);
 				apId.add(j);
-				String cls = lstAPs.get(j).getAPClass();
+				String cls = apClasses.get(j);
 			    if (FragmentSpace.getMapFragsAPsPerAPClass().containsKey(cls))
 				{
 				    FragmentSpace.getMapFragsAPsPerAPClass().get(cls)
@@ -128,6 +151,61 @@ public class FragmentSpaceUtils
 		}
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Computes the descriptors of each fragment that are additive, i.e., that
+     * can be summed up to get the descriptors of any molecule built from the
+     * fragments: the number of heavy atoms and the molecular weight.
+     * The descriptors are taken from the index of a library, if available
+     * (see {@link FragmentSpace#getLibraryIndex(int)}).
+     * Descriptors that cannot be calculated for a fragment are recorded as
+     * unknown (see {@link FragmentSpace#getHeavyAtomCount(int, int)} and
+     * {@link FragmentSpace#getMolecularWeight(int, int)}).
+     */
+
+    public static void computeAdditiveDescriptors()
+    {
+        ArrayList<ArrayList<IAtomContainer>> libs =
+                new ArrayList<ArrayList<IAtomContainer>>();
+        libs.add(FragmentSpace.getScaffoldLibrary());
+        libs.add(FragmentSpace.getFragmentLibrary());
+        libs.add(FragmentSpace.getCappingLibrary());
+
+        int[][] heavyAtoms = new int[libs.size()][];
+        double[][] molWeights = new double[libs.size()][];
+        for (int t=0; t<libs.size(); t++)
+        {
+            ArrayList<IAtomContainer> lib = libs.get(t);
+            int n = lib == null ? 0 : lib.size();
+            heavyAtoms[t] = new int[n];
+            molWeights[t] = new double[n];
+            FragmentLibraryIndex idx = FragmentSpace.getLibraryIndex(t);
+            for (int i=0; i<n; i++)
+            {
+                if (idx != null)
+                {
+                    heavyAtoms[t][i] = idx.getHeavyAtomCount(i);
+                    molWeights[t][i] = idx.getMolecularWeight(i);
+                    continue;
+                }
+                IAtomContainer frag = lib.get(i);
+                heavyAtoms[t][i] = DENOPTIMMoleculeUtils.getHeavyAtomCount(
+                        frag);
+                try
+                {
+                    molWeights[t][i] = DENOPTIMMoleculeUtils
+                            .getMolecularWeight(frag);
+                }
+                catch (Throwable e)
+                {
+                    molWeights[t][i] = Double.NaN;
+                }
+            }
+        }
+        FragmentSpace.setAdditiveDescriptors(heavyAtoms, molWeights);
+    }
+
 //------------------------------------------------------------------------------
 
 }
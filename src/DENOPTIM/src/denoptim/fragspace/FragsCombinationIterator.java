@@ -19,6 +19,7 @@
 package denoptim.fragspace;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -99,6 +100,26 @@ public class FragsCombinationIterator
      */
     private int numbGenCombs = 0;
 
+    /**
+     * Index (0-based) of the combination that will be produced next.
+     */
+    private int nextCombIdx = 0;
+
+    /**
+     * Index (0-based, exclusive) of the combination where the iterator stops,
+     * or -1 when the iterator is not restricted to a range of combinations.
+     */
+    private int rangeEnd = -1;
+
+    /**
+     * For each active source AP, the position of the preceding active source
+     * AP that belongs to the same symmetric set of APs, or -1. Used only when
+     * combinations related by symmetry are pruned: then the index of the
+     * candidate on a source AP is never lower than that on the preceding
+     * source AP of the same symmetric set.
+     */
+    private int[] prevSymSrcAp;
+
     /**
      * Verbosity lvel
      */
@@ -304,6 +325,18 @@ public class FragsCombinationIterator
             }
         }
 
+        // Identify the source APs among which fragments can be permuted
+        // without producing a new combination
+        prevSymSrcAp = new int[actvSrcAps.size()];
+        for (int curSrcApIdx=0; curSrcApIdx<actvSrcAps.size(); curSrcApIdx++)
+        {
+            prevSymSrcAp[curSrcApIdx] = -1;
+            if (FragmentSpaceParameters.pruneSymmetricCombinations())
+            {
+                prevSymSrcAp[curSrcApIdx] = findPrevSymSrcAp(curSrcApIdx);
+            }
+        }
+
         // Calculate to total number of combinations
         boolean emptySets = true;
         for (int curSrcApIdx=0; curSrcApIdx<actvSrcAps.size(); curSrcApIdx++)
@@ -316,25 +349,166 @@ public class FragsCombinationIterator
         }
         if (!emptySets)
         {
-            totCombs = 1;
-            for (int srcApIdx=0; srcApIdx<actvSrcAps.size(); srcApIdx++)
+            try
+            {
+                totCombs = Math.toIntExact(countCombinations(new int[0]));
+            }
+            catch (ArithmeticException e)
+            {
+                throw new DENOPTIMException("Too many combinations of "
+                        + "fragments on " + actvSrcAps.size() + " APs: "
+                        + "the count exceeds " + Integer.MAX_VALUE + ".", e);
+            }
+        }
+        else
+        {
+            finished = true;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Looks for the closest preceding active source AP that is on the same
+     * vertex, in the same symmetric set of APs, and has the same number of
+     * candidates as the given one.
+     * @param srcApIdx the position of the source AP among the active ones.
+     * @return the position of the preceding source AP, or -1.
+     */
+
+    private int findPrevSymSrcAp(int srcApIdx)
+    {
+        IdFragmentAndAP src = actvSrcAps.get(srcApIdx);
+        DENOPTIMVertex v = rootGraph.getVertexWithId(src.getVertexId());
+        if (!v.hasSymmetricAP())
+        {
+            return -1;
+        }
+        for (SymmetricSet ss : v.getSymmetricAP())
+        {
+            if (!ss.contains(src.getApId()))
+            {
+                continue;
+            }
+            for (int i=srcApIdx-1; i>-1; i--)
             {
-                int factor;
-                if (totCandsPerAP.get(srcApIdx) <= 1)
+                IdFragmentAndAP other = actvSrcAps.get(i);
+                if (other.getVertexId() == src.getVertexId()
+                    && ss.contains(other.getApId())
+                    && totCandsPerAP.get(i).equals(totCandsPerAP.get(srcApIdx)))
                 {
-                    factor = 1;
+                    return i;
+                }
+            }
+            break;
+        }
+        return -1;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Counts the combinations that start with the given indexes of candidates
+     * on the first source APs.
+     * @param ids the indexes of the candidates on the first
+     * <code>ids.length</code> source APs.
+     * @return the number of combinations.
+     * @throws ArithmeticException if the number overflows a <code>long</code>
+     */
+
+    private long countCombinations(int[] ids)
+    {
+        long count = 1;
+        for (int head=0; head<actvSrcAps.size(); head++)
+        {
+            if (prevSymSrcAp[head] > -1)
+            {
+                continue;
+            }
+            // Follow the chain of symmetric source APs starting from 'head':
+            // the remaining ones take a non-decreasing sequence of indexes
+            // from the lowest allowed one.
+            int lowest = 0;
+            int remaining = 0;
+            int last = head;
+            for (int i=head; i<actvSrcAps.size(); i++)
+            {
+                if (i != head && prevSymSrcAp[i] != last)
+                {
+                    continue;
+                }
+                last = i;
+                if (i < ids.length)
+                {
+                    lowest = ids[i];
                 }
                 else
                 {
-                    factor = totCandsPerAP.get(srcApIdx);
+                    remaining++;
                 }
-                totCombs = totCombs * factor;
             }
+            int n = Math.max(1,totCandsPerAP.get(head)) - lowest;
+            count = Math.multiplyExact(count, countMultisets(n, remaining));
         }
-        else
+        return count;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of multisets of size <code>k</code> with elements
+     * taken from a set of size <code>n</code>.
+     * @throws ArithmeticException if the number overflows a <code>long</code>
+     */
+
+    private static long countMultisets(int n, int k)
+    {
+        long res = 1;
+        for (int i=1; i<=k; i++)
         {
-            finished = true;
+            res = Math.multiplyExact(res, n - 1 + i) / i;
+        }
+        return res;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Makes the given indexes point to the first combination that can be
+     * generated and is not preceding the given one. This deals with the
+     * overflow of indexes, and with the combinations that are skipped
+     * because they are related by symmetry to previous ones.
+     * @param ids the indexes to adjust.
+     * @return <code>false</code> if there is no such combination.
+     */
+
+    private boolean adjustIds(ArrayList<Integer> ids)
+    {
+        for (int i=ids.size()-1; i>0; i--)
+        {
+            if (ids.get(i) >= totCandsPerAP.get(i))
+            {
+                ids.set(i,0);
+                ids.set(i-1,ids.get(i-1)+1);
+            }
+        }
+        if (ids.size() == 0 || ids.get(0) >= totCandsPerAP.get(0))
+        {
+            return false;
         }
+        for (int i=0; i<ids.size(); i++)
+        {
+            int prev = prevSymSrcAp[i];
+            if (prev > -1 && ids.get(i) < ids.get(prev))
+            {
+                ids.set(i,ids.get(prev));
+                for (int j=i+1; j<ids.size(); j++)
+                {
+                    ids.set(j,0);
+                }
+            }
+        }
+        return true;
     }
 
 //------------------------------------------------------------------------------
@@ -348,18 +522,89 @@ public class FragsCombinationIterator
 
     public void setStartingPoint(ArrayList<Integer> nextIds)
     {
-        this.nextIds = nextIds;
+        this.nextIds = new ArrayList<Integer>(nextIds);
+        finished = !adjustIds(this.nextIds);
+        nextCombIdx = finished ? totCombs : rankOf(this.nextIds);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Computes the index of a combination as defined in
+     * {@link #setRange(int, int)}. This is the inverse of the conversion of
+     * the index into indexes of candidates performed by
+     * {@link #setRange(int, int)}.
+     * @param ids the indexes of the candidates on each source AP.
+     * @return the index (0-based) of the combination.
+     */
+
+    private int rankOf(ArrayList<Integer> ids)
+    {
+        long rank = 0;
+        int[] prefix = new int[ids.size()];
+        for (int i=0; i<ids.size(); i++)
+        {
+            int id = prevSymSrcAp[i] > -1 ? prefix[prevSymSrcAp[i]] : 0;
+            for (; id<ids.get(i); id++)
+            {
+                prefix[i] = id;
+                rank = rank + countCombinations(Arrays.copyOf(prefix, i+1));
+            }
+            prefix[i] = ids.get(i);
+        }
+        return Math.toIntExact(rank);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Restricts the iterator to a range of combinations. Combinations are 
+     * numbered in the order the iterator would produce them if started from 
+     * the beginning, so iterators restricted to non-overlapping ranges 
+     * produce independent sets of combinations and can be consumed by
+     * different threads.
+     * @param first the index (0-based) of the first combination to produce.
+     * @param end the index (0-based, exclusive) of the combination where to
+     * stop.
+     * @throws DENOPTIMException if the range is not within the total number 
+     * of combinations.
+     */
+
+    public void setRange(int first, int end) throws DENOPTIMException
+    {
+        if (first < 0 || end > totCombs || first > end)
+        {
+            throw new DENOPTIMException("Range of combinations [" + first 
+                                        + "," + end + ") is outside [0," 
+                                        + totCombs + ").");
+        }
 
-        // Check for completion
-        finished = true;
-        for (int i=0; i<nextIds.size(); i++)
+        // The indeces of the combination number 'first': last srcAP runs
+        // fastest, as in next()
+        ArrayList<Integer> ids = new ArrayList<Integer>();
+        int[] prefix = new int[0];
+        long rest = first;
+        for (int i=0; i<totCandsPerAP.size(); i++)
         {
-            if (nextIds.get(i)+1 < totCandsPerAP.get(i))
+            prefix = Arrays.copyOf(prefix, i+1);
+            int id = prevSymSrcAp[i] > -1 ? prefix[prevSymSrcAp[i]] : 0;
+            while (true)
             {
-                 finished = false;
-                 break;
+                prefix[i] = id;
+                long n = countCombinations(prefix);
+                if (rest < n || id+1 >= Math.max(1,totCandsPerAP.get(i)))
+                {
+                    break;
+                }
+                rest = rest - n;
+                id++;
             }
+            ids.add(id);
         }
+        nextIds = ids;
+        nextCombIdx = first;
+        rangeEnd = end;
+        finished = (first == end);
     }
 
 //------------------------------------------------------------------------------
@@ -399,8 +644,7 @@ public class FragsCombinationIterator
 		// set the symmetric set ID for each incoming vertex) to allow
 		// an easy update of the graph's SymmetricSet list
         FragsCombination currentComb = new FragsCombination();
-        ArrayList<Integer> currentIds = new ArrayList<Integer>();
-        String msg = "";
+        ArrayList<Integer> currentIds = nextIds;
         for (int curSrcApIdx=0; curSrcApIdx<actvSrcAps.size(); curSrcApIdx++)
         {
             IdFragmentAndAP src = actvSrcAps.get(curSrcApIdx);
@@ -410,123 +654,34 @@ public class FragsCombinationIterator
 		    {
 		    	fap.setVrtSymSetId(curSrcApIdx);
 		    }
-            int locTotCands = candFragsPerAP.get(src).size();
-            int locCurCandId = nextIds.get(curSrcApIdx);
+            int locCurCandId = currentIds.get(curSrcApIdx);
 
             if (verbosity > 2)
             {
-                msg = "Setting frag for AP " + curSrcApIdx + " (" + src + ")";
+                String msg = "Setting frag " + locCurCandId + " on AP "
+                             + curSrcApIdx + " (" + src + ")";
                 System.out.println(msg);
             }
+            currentComb.put(src,locCandsList.get(locCurCandId));
+        }
 
-            // Decide whether the candidate for the current position 
-            // has to be changed
-            boolean changeCurIdx = true;
-            for (int fIdx=curSrcApIdx+1; fIdx<actvSrcAps.size(); fIdx++)
-            {
-                if (nextIds.get(fIdx) < totCandsPerAP.get(fIdx))
-                {
-                    changeCurIdx = false;
-                    break;
-                }
-            }  
-
-            // Non-last srcAP 
-            if ((curSrcApIdx+1) < actvSrcAps.size())
-            {
-                if (!changeCurIdx)
-                {
-                    if (verbosity > 2)
-                    {
-                        msg = "Non-last src AP; fixed on " + locCurCandId;
-                        System.out.println(msg);
-                    }
-                    currentIds.add(locCurCandId);
-                    currentComb.put(src,locCandsList.get(locCurCandId));
-                }
-                else
-                {
-                    if (locCurCandId+1 < locTotCands)
-                    {
-                        // increment the ids for this src AP
-                        locCurCandId++;
-                        nextIds.set(curSrcApIdx,locCurCandId);
-                        // and restart all the idx on all srcAP that follow
-                        for (int futureSrcAp=curSrcApIdx+1; 
-                                   futureSrcAp<actvSrcAps.size(); futureSrcAp++)
-                        {
-                            if (verbosity > 2)
-                            {
-                                msg = "Restart idx on src AP " + futureSrcAp; 
-                                System.out.println(msg);
-                            }
-                            nextIds.set(futureSrcAp,0);
-                        }
-
-                        if (verbosity > 2)
-                        {
-                            msg = "Non-last src AP; new idx = " + locCurCandId; 
-                            System.out.println(msg);
-                        }
-                        currentIds.add(locCurCandId);
-                        currentComb.put(src,locCandsList.get(locCurCandId));
-                    }
-                    else
-                    {
-                        // Restart idx for this src AP and increment the
-                        // closest activable index
-                        // To do this, we increase the local id so it goes 
-                        // beyind the maximum (it's going to be zeroed later)...
-                        locCurCandId++;
-                        nextIds.set(curSrcApIdx,locCurCandId);
-                        // ...and rerun the previous iteration on srcAPs 
-                        if (verbosity > 2)
-                        {
-                            msg = "Step BACK from src AP " + curSrcApIdx; 
-                            System.out.println(msg);
-                        }
-                        currentIds.remove(currentIds.size()-1);
-                        curSrcApIdx = curSrcApIdx - 2; //it get +1 from loop
-                    }
-                }
-            }
-            // last srcAP; always try to change the candidate for this AP
-            else if ((curSrcApIdx+1) == actvSrcAps.size())
-            {
-                if (verbosity > 2)
-                {
-                    msg = "Last src AP; new idx = " + locCurCandId; 
-                    System.out.println(msg);
-                }
-                currentIds.add(locCurCandId);
-                currentComb.put(src,locCandsList.get(locCurCandId));
-                locCurCandId++;
-                nextIds.set(curSrcApIdx,locCurCandId);
-
-                // Check for completion
-                finished = true;
-                for (int i=0; i<nextIds.size(); i++)
-                {
-                    int nextId = nextIds.get(i)+1;
-                    if (i == curSrcApIdx)
-                    {
-                        nextId = nextId - 1; //has been incremented above
-                    } 
-                    if (nextId < totCandsPerAP.get(i))
-                    {
-                        finished = false;
-                        break;
-                    }
-                }
-                if(verbosity > 2)
-                {
-                    msg = "Check completion on " + nextIds + ": " + finished;
-                    System.out.println(msg);
-                }
-            }
+        // Move to the next combination: last srcAP runs fastest
+        nextIds = new ArrayList<Integer>(currentIds);
+        int lastSrcApIdx = nextIds.size()-1;
+        nextIds.set(lastSrcApIdx,nextIds.get(lastSrcApIdx)+1);
+        finished = !adjustIds(nextIds);
+        if(verbosity > 2)
+        {
+            System.out.println("Check completion on " + nextIds + ": "
+                               + finished);
         }
 
         numbGenCombs++;
+        nextCombIdx++;
+        if (rangeEnd > -1 && nextCombIdx >= rangeEnd)
+        {
+            finished = true;
+        }
 
         if (verbosity > 2)
         {
@@ -712,7 +867,9 @@ public class FragsCombinationIterator
 
     /**
      * @return the total number of <code>FragsCombination</code>s
-     * that can be generated from the set of candidates set.
+     * that can be generated from the set of candidates set, excluding those
+     * skipped because related by symmetry to other combinations (see
+     * {@link FragmentSpaceParameters#pruneSymmetricCombinations()}).
      */
 
     public int getTotNumbCombs()
@@ -732,6 +889,19 @@ public class FragsCombinationIterator
         return numbGenCombs;
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the index (0-based) of the combination that will be produced
+     * by the next call of {@link #next()}. Combinations are numbered as in
+     * {@link #setRange(int, int)}.
+     */
+
+    public int getNextCombIndex()
+    {
+        return nextCombIdx;
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -0,0 +1,280 @@
+package denoptim.fragspace;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.vecmath.Point3d;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import denoptim.constants.DENOPTIMConstants;
+import denoptim.exception.DENOPTIMException;
+import denoptim.molecule.DENOPTIMFragment;
+import denoptim.molecule.DENOPTIMGraph;
+import denoptim.molecule.DENOPTIMVertex;
+import denoptim.molecule.SymmetricSet;
+import denoptim.utils.FragmentUtils;
+
+/**
+ * Unit test for the iterator over combinations of fragments
+ *
+ * @author Marco Foscato
+ */
+
+public class FragsCombinationIteratorTest
+{
+    private final String APCS = "apc-S"
+            + DENOPTIMConstants.SEPARATORAPPROPSCL + "0";
+    private final String APC1 = "apc-1"
+            + DENOPTIMConstants.SEPARATORAPPROPSCL + "0";
+
+    /**
+     * Candidates per AP of the scaffold: two fragments and the empty AP
+     */
+    private final int CANDSPERAP = 3;
+
+    /**
+     * Number of APs on the scaffold
+     */
+    private final int NUMAPS = 3;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Defines a fragment space with one scaffold holding three APs and two
+     * fragments with one AP each.
+     */
+
+    private void buildFragmentSpace() throws DENOPTIMException
+    {
+        ArrayList<IAtomContainer> scaffLib = new ArrayList<IAtomContainer>();
+        DENOPTIMFragment scaf = new DENOPTIMFragment();
+        scaf.addAtom(new Atom("Zn", new Point3d(0.0, 0.0, 0.0)));
+        scaf.addAP(0, APCS, new Point3d(1.0, 0.0, 0.0));
+        scaf.addAP(0, APCS, new Point3d(0.0, 1.0, 0.0));
+        scaf.addAP(0, APCS, new Point3d(0.0, 0.0, 1.0));
+        scaffLib.add(new AtomContainer(scaf));
+
+        ArrayList<IAtomContainer> fragLib = new ArrayList<IAtomContainer>();
+        for (String el : new String[] {"C", "N"})
+        {
+            DENOPTIMFragment frg = new DENOPTIMFragment();
+            frg.addAtom(new Atom(el, new Point3d(0.0, 0.0, 0.0)));
+            frg.addAP(0, APC1, new Point3d(1.0, 0.0, 0.0));
+            fragLib.add(new AtomContainer(frg));
+        }
+
+        HashMap<String,ArrayList<String>> cpMap =
+                new HashMap<String,ArrayList<String>>();
+        cpMap.put(APCS, new ArrayList<String>(Arrays.asList(APC1)));
+        HashMap<String,Integer> boMap = new HashMap<String,Integer>();
+        boMap.put(APCS, 1);
+        boMap.put(APC1, 1);
+
+        FragmentSpace.defineFragmentSpace(scaffLib, fragLib,
+                new ArrayList<IAtomContainer>(), cpMap, boMap,
+                new HashMap<String,String>(), new HashSet<String>(),
+                new HashMap<String,ArrayList<String>>());
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param symmetricAPs whether the three APs of the scaffold are in the
+     * same symmetric set
+     * @return the graph made of the scaffold only
+     */
+
+    private DENOPTIMGraph makeRootGraph(boolean symmetricAPs)
+            throws DENOPTIMException
+    {
+        DENOPTIMVertex v = new DENOPTIMVertex(0, 0,
+                FragmentUtils.getAPForFragment(0, 0), 0);
+        if (symmetricAPs)
+        {
+            ArrayList<SymmetricSet> ssets = new ArrayList<SymmetricSet>();
+            ssets.add(new SymmetricSet(
+                    new ArrayList<Integer>(Arrays.asList(0, 1, 2))));
+            v.setSymmetricAP(ssets);
+        }
+        DENOPTIMGraph g = new DENOPTIMGraph();
+        g.addVertex(v);
+        return g;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Runs the iterator to the end
+     * @return the indexes of the candidates of each combination produced
+     */
+
+    private List<List<Integer>> collectIds(FragsCombinationIterator it)
+    {
+        List<List<Integer>> all = new ArrayList<List<Integer>>();
+        while (it.hasNext())
+        {
+            all.add(new ArrayList<Integer>(it.getNextIds()));
+            it.next();
+        }
+        return all;
+    }
+
+//------------------------------------------------------------------------------
+
+    @AfterEach
+    public void cleanup()
+    {
+        FragmentSpaceParameters.resetParameters();
+        FragmentSpace.clearAll();
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testCartesianProductWithoutPruning() throws Exception
+    {
+        buildFragmentSpace();
+        FragmentSpaceParameters.pruneSymmetricCombs = false;
+
+        FragsCombinationIterator it = new FragsCombinationIterator(
+                makeRootGraph(true));
+        int expected = (int) Math.pow(CANDSPERAP, NUMAPS);
+        assertEquals(expected, it.getTotNumbCombs());
+
+        List<List<Integer>> all = collectIds(it);
+        assertEquals(expected, all.size());
+        assertEquals(expected, new HashSet<List<Integer>>(all).size(),
+                "Duplicate combinations");
+        assertEquals(expected, it.getNumGeneratedCombs());
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testPruningOfSymmetricCombinations() throws Exception
+    {
+        buildFragmentSpace();
+        FragmentSpaceParameters.pruneSymmetricCombs = true;
+
+        // Multisets of size NUMAPS from CANDSPERAP candidates: C(5,3)
+        int expected = 10;
+        FragsCombinationIterator it = new FragsCombinationIterator(
+                makeRootGraph(true));
+        assertEquals(expected, it.getTotNumbCombs());
+
+        List<List<Integer>> all = collectIds(it);
+        assertEquals(expected, all.size());
+        assertEquals(expected, new HashSet<List<Integer>>(all).size(),
+                "Duplicate combinations");
+        for (List<Integer> ids : all)
+        {
+            for (int i=1; i<ids.size(); i++)
+            {
+                assertTrue(ids.get(i-1) <= ids.get(i),
+                        "Not the representative combination: " + ids);
+            }
+        }
+
+        // Without symmetric APs there is nothing to prune
+        it = new FragsCombinationIterator(makeRootGraph(false));
+        assertEquals((int) Math.pow(CANDSPERAP, NUMAPS), it.getTotNumbCombs());
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testRangeAndRank() throws Exception
+    {
+        buildFragmentSpace();
+        for (boolean prune : new boolean[] {false, true})
+        {
+            FragmentSpaceParameters.pruneSymmetricCombs = prune;
+            DENOPTIMGraph root = makeRootGraph(true);
+            List<List<Integer>> all = collectIds(
+                    new FragsCombinationIterator(root));
+
+            for (int k=0; k<all.size(); k++)
+            {
+                FragsCombinationIterator it =
+                        new FragsCombinationIterator(root);
+                it.setRange(k, k+1);
+                assertEquals(all.get(k), it.getNextIds(),
+                        "Unranking of combination " + k);
+                assertEquals(k, it.getNextCombIndex());
+                it.next();
+                assertFalse(it.hasNext(), "Iterator exceeds its range");
+
+                // rankOf is the inverse of the unranking in setRange
+                FragsCombinationIterator other =
+                        new FragsCombinationIterator(root);
+                other.setStartingPoint(
+                        new ArrayList<Integer>(all.get(k)));
+                assertEquals(k, other.getNextCombIndex(),
+                        "Ranking of combination " + all.get(k));
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testResumeFromStartingPoint() throws Exception
+    {
+        buildFragmentSpace();
+        for (boolean prune : new boolean[] {false, true})
+        {
+            FragmentSpaceParameters.pruneSymmetricCombs = prune;
+            DENOPTIMGraph root = makeRootGraph(true);
+            List<List<Integer>> all = collectIds(
+                    new FragsCombinationIterator(root));
+
+            FragsCombinationIterator it = new FragsCombinationIterator(root);
+            int done = 4;
+            for (int i=0; i<done; i++)
+            {
+                it.next();
+            }
+            ArrayList<Integer> checkpoint =
+                    new ArrayList<Integer>(it.getNextIds());
+
+            FragsCombinationIterator resumed =
+                    new FragsCombinationIterator(root);
+            resumed.setStartingPoint(checkpoint);
+            List<List<Integer>> rest = collectIds(resumed);
+            assertEquals(all.subList(done, all.size()), rest);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+}
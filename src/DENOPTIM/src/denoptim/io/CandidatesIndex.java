@@ -0,0 +1,667 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import denoptim.constants.DENOPTIMConstants;
+import denoptim.exception.DENOPTIMException;
+
+/**
+ * Compact, columnar index of the candidates generated by an evolutionary
+ * experiment. For each candidate, the index holds the name, the generation,
+ * the fitness (<code>NaN</code> if the candidate has no fitness), the unique
+ * identifier, the file where the candidate is stored, and the byte offset of
+ * the candidate's record in such file. The index allows to inspect a run
+ * without reading any chemical representation: molecular structures can
+ * be fetched on demand using {@link #readRecord(int)}.
+ * <p>On file, the index is a tab-separated text file with one line per
+ * candidate. Lines starting with <code>#</code> are comments.
+ * Pathnames of molecule files are relative to the folder containing
+ * the index file, unless they point outside such folder.</p>
+ *
+ * @author Marco Foscato
+ */
+
+public class CandidatesIndex
+{
+    /**
+     * Number of entries
+     */
+    private int size = 0;
+
+    /**
+     * Folder against which relative pathnames are resolved
+     */
+    private final File baseDir;
+
+    // The columns of the index
+    private String[] names = new String[1024];
+    private int[] generations = new int[1024];
+    private double[] fitness = new double[1024];
+    private String[] uids = new String[1024];
+    private String[] files = new String[1024];
+    private long[] offsets = new long[1024];
+
+    /**
+     * Header of index files
+     */
+    private static final String HEADER = "#Name\tGeneration\tFitness\tUID"
+            + "\tFile\tOffset";
+
+    /**
+     * Lock used to synchronize writing on index files
+     */
+    private static final Object LOCK = new Object();
+
+    private static final String NL = System.getProperty("line.separator");
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Constructs an empty index.
+     * @param baseDir the folder against which relative pathnames of molecule
+     * files are resolved.
+     */
+    public CandidatesIndex(File baseDir)
+    {
+        this.baseDir = baseDir;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Adds an entry to this index.
+     * @param name the name of the candidate.
+     * @param generation the generation the candidate belongs to.
+     * @param fit the fitness value, or <code>NaN</code>.
+     * @param uid the unique identifier.
+     * @param molFile pathname of the file containing the candidate, either
+     * absolute or relative to the base folder of this index.
+     * @param offset byte offset of the candidate's record in the file.
+     */
+    public void add(String name, int generation, double fit, String uid,
+            String molFile, long offset)
+    {
+        if (size == names.length)
+        {
+            int n = size * 2;
+            names = Arrays.copyOf(names, n);
+            generations = Arrays.copyOf(generations, n);
+            fitness = Arrays.copyOf(fitness, n);
+            uids = Arrays.copyOf(uids, n);
+            files = Arrays.copyOf(files, n);
+            offsets = Arrays.copyOf(offsets, n);
+        }
+        names[size] = name;
+        generations[size] = generation;
+        fitness[size] = fit;
+        uids[size] = uid;
+        files[size] = molFile;
+        offsets[size] = offset;
+        size++;
+    }
+
+//------------------------------------------------------------------------------
+
+    public int size()
+    {
+        return size;
+    }
+
+//------------------------------------------------------------------------------
+
+    public String getName(int i)
+    {
+        return names[i];
+    }
+
+//------------------------------------------------------------------------------
+
+    public int getGeneration(int i)
+    {
+        return generations[i];
+    }
+
+//------------------------------------------------------------------------------
+
+    public double getFitness(int i)
+    {
+        return fitness[i];
+    }
+
+//------------------------------------------------------------------------------
+
+    public boolean hasFitness(int i)
+    {
+        return !Double.isNaN(fitness[i]);
+    }
+
+//------------------------------------------------------------------------------
+
+    public String getUID(int i)
+    {
+        return uids[i];
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param i the index of the entry.
+     * @return the file containing the record of the i-th candidate.
+     */
+    public File getMoleculeFile(int i)
+    {
+        File f = new File(files[i]);
+        if (!f.isAbsolute() && baseDir != null)
+        {
+            f = new File(baseDir, files[i]);
+        }
+        return f;
+    }
+
+//------------------------------------------------------------------------------
+
+    public long getOffset(int i)
+    {
+        return offsets[i];
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of entries that have a fitness value.
+     */
+    public int countWithFitness()
+    {
+        int n = 0;
+        for (int i=0; i<size; i++)
+        {
+            if (hasFitness(i))
+            {
+                n++;
+            }
+        }
+        return n;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reads the SDF record of the i-th candidate.
+     * @param i the index of the entry.
+     * @return the text of the SDF record.
+     * @throws DENOPTIMException
+     */
+    public String readRecord(int i) throws DENOPTIMException
+    {
+        return readRecord(getMoleculeFile(i), getOffset(i));
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reads a single SDF record starting at a given byte offset.
+     * @param file the SDF file.
+     * @param offset the byte offset where the record starts.
+     * @return the text of the SDF record, including the terminator.
+     * @throws DENOPTIMException
+     */
+    public static String readRecord(File file, long offset)
+            throws DENOPTIMException
+    {
+        StringBuilder sb = new StringBuilder();
+        FileInputStream fis = null;
+        BufferedReader br = null;
+        try
+        {
+            fis = new FileInputStream(file);
+            fis.getChannel().position(offset);
+            br = new BufferedReader(new InputStreamReader(fis,
+                    StandardCharsets.UTF_8));
+            String line;
+            while ((line = br.readLine()) != null)
+            {
+                sb.append(line).append('\n');
+                if (line.startsWith("$$$$"))
+                {
+                    break;
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new DENOPTIMException("Could not read record at offset "
+                    + offset + " in '" + file + "'.", e);
+        }
+        finally
+        {
+            try
+            {
+                if (br != null)
+                {
+                    br.close();
+                }
+                else if (fis != null)
+                {
+                    fis.close();
+                }
+            }
+            catch (IOException ioe)
+            {
+                throw new DENOPTIMException(ioe);
+            }
+        }
+        return sb.toString();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Appends one entry to an index file, creating the file if needed.
+     * Multiple threads can safely append to the same file.
+     * @param indexFile the index file.
+     * @param name the name of the candidate.
+     * @param generation the generation the candidate belongs to.
+     * @param fit the fitness value, or <code>NaN</code>.
+     * @param uid the unique identifier.
+     * @param molFile pathname of the file containing the candidate.
+     * @param offset byte offset of the candidate's record in the file.
+     * @throws DENOPTIMException
+     */
+    public static void appendEntry(File indexFile, String name,
+            int generation, double fit, String uid, String molFile,
+            long offset) throws DENOPTIMException
+    {
+        String line = formatLine(name, generation, fit, uid,
+                relativize(indexFile.getAbsoluteFile().getParentFile(),
+                        molFile), offset);
+        synchronized (LOCK)
+        {
+            FileWriter fw = null;
+            try
+            {
+                boolean isNew = !indexFile.exists();
+                fw = new FileWriter(indexFile, true);
+                if (isNew)
+                {
+                    fw.write(HEADER + NL);
+                }
+                fw.write(line + NL);
+            }
+            catch (IOException e)
+            {
+                throw new DENOPTIMException(e);
+            }
+            finally
+            {
+                try
+                {
+                    if (fw != null)
+                    {
+                        fw.close();
+                    }
+                }
+                catch (IOException ioe)
+                {
+                    throw new DENOPTIMException(ioe);
+                }
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Writes this index to file.
+     * @param indexFile the file to write.
+     * @throws DENOPTIMException
+     */
+    public void write(File indexFile) throws DENOPTIMException
+    {
+        File dir = indexFile.getAbsoluteFile().getParentFile();
+        StringBuilder sb = new StringBuilder();
+        sb.append(HEADER).append(NL);
+        for (int i=0; i<size; i++)
+        {
+            sb.append(formatLine(names[i], generations[i], fitness[i],
+                    uids[i], relativize(dir, getMoleculeFile(i).getPath()),
+                    offsets[i])).append(NL);
+        }
+        DenoptimIO.writeData(indexFile.getAbsolutePath(), sb.toString(), false);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reads an index file.
+     * @param indexFile the file to read.
+     * @return the index.
+     * @throws DENOPTIMException
+     */
+    public static CandidatesIndex read(File indexFile) throws DENOPTIMException
+    {
+        CandidatesIndex idx = new CandidatesIndex(
+                indexFile.getAbsoluteFile().getParentFile());
+        BufferedReader br = null;
+        try
+        {
+            br = new BufferedReader(new FileReader(indexFile));
+            String line;
+            while ((line = br.readLine()) != null)
+            {
+                if (line.startsWith("#") || line.trim().isEmpty())
+                {
+                    continue;
+                }
+                String[] w = line.split("\t");
+                if (w.length != 6)
+                {
+                    throw new DENOPTIMException("Unexpected line in index "
+                            + "file '" + indexFile + "': " + line);
+                }
+                idx.add(w[0], Integer.parseInt(w[1]),
+                        Double.parseDouble(w[2]), w[3], w[4],
+                        Long.parseLong(w[5]));
+            }
+        }
+        catch (IOException | NumberFormatException e)
+        {
+            throw new DENOPTIMException("Could not read index file '"
+                    + indexFile + "'.", e);
+        }
+        finally
+        {
+            try
+            {
+                if (br != null)
+                {
+                    br.close();
+                }
+            }
+            catch (IOException ioe)
+            {
+                throw new DENOPTIMException(ioe);
+            }
+        }
+        return idx;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds the index for the results of an evolutionary experiment that
+     * was run without writing the index (i.e., old runs). Generation folders
+     * are scanned for files with fitness provider output, and such files are
+     * scanned as text to collect only the SDF properties needed by the index.
+     * No chemical representation is built.
+     * @param runFolder the folder containing the generation folders.
+     * @return the index.
+     * @throws DENOPTIMException
+     */
+    public static CandidatesIndex indexRunFolder(File runFolder)
+            throws DENOPTIMException
+    {
+        CandidatesIndex idx = new CandidatesIndex(runFolder);
+        String root = DENOPTIMConstants.GAGENDIRNAMEROOT;
+        File[] genFolders = runFolder.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File pathname) {
+                return pathname.isDirectory()
+                        && pathname.getName().startsWith(root);
+            }
+        });
+        if (genFolders == null)
+        {
+            throw new DENOPTIMException("Could not list content of '"
+                    + runFolder + "'.");
+        }
+        Arrays.sort(genFolders);
+        for (File genFolder : genFolders)
+        {
+            int genId = getGenerationFromFolderName(genFolder.getName());
+            if (genId < 0)
+            {
+                continue;
+            }
+            File[] fitFiles = genFolder.listFiles(new FileFilter() {
+                @Override
+                public boolean accept(File pathname) {
+                    return pathname.getName().endsWith("FIT.sdf");
+                }
+            });
+            if (fitFiles == null)
+            {
+                throw new DENOPTIMException("Could not list content of '"
+                        + genFolder + "'.");
+            }
+            Arrays.sort(fitFiles);
+            for (File fitFile : fitFiles)
+            {
+                String relPath = relativize(runFolder, fitFile.getPath());
+                scanSDFFile(fitFile, genId, relPath, idx);
+            }
+        }
+        return idx;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Parses the generation number from the name of a generation folder.
+     * @param folderName the name of the folder, e.g., <code>Gen004</code>.
+     * @return the generation number or -1 if the name is not the name of a
+     * generation folder.
+     */
+    public static int getGenerationFromFolderName(String folderName)
+    {
+        String root = DENOPTIMConstants.GAGENDIRNAMEROOT;
+        if (!folderName.startsWith(root))
+        {
+            return -1;
+        }
+        try
+        {
+            return Integer.parseInt(folderName.substring(root.length()));
+        }
+        catch (NumberFormatException e)
+        {
+            return -1;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Scans an SDF file as text and adds one entry per record.
+     */
+    static void scanSDFFile(File sdf, int genId, String relPath,
+            CandidatesIndex idx) throws DENOPTIMException
+    {
+        InputStream is = null;
+        try
+        {
+            is = new BufferedInputStream(new FileInputStream(sdf));
+            ByteArrayOutputStream lineBuf = new ByteArrayOutputStream();
+            long pos = 0;
+            long recStart = 0;
+            int lineInRec = 0;
+            String title = "";
+            String uid = "";
+            double fit = Double.NaN;
+            String pendingTag = null;
+            int b;
+            boolean eof = false;
+            while (!eof)
+            {
+                b = is.read();
+                if (b == -1)
+                {
+                    eof = true;
+                    if (lineBuf.size() == 0)
+                    {
+                        break;
+                    }
+                } else {
+                    pos++;
+                    if (b != '\n')
+                    {
+                        lineBuf.write(b);
+                        continue;
+                    }
+                }
+                String line = new String(lineBuf.toByteArray(),
+                        StandardCharsets.UTF_8);
+                if (line.endsWith("\r"))
+                {
+                    line = line.substring(0, line.length()-1);
+                }
+                lineBuf.reset();
+
+                if (lineInRec == 0)
+                {
+                    title = line.trim();
+                }
+                lineInRec++;
+
+                if (pendingTag != null)
+                {
+                    if (pendingTag.equals(DENOPTIMConstants.FITNESSTAG))
+                    {
+                        try
+                        {
+                            fit = Double.parseDouble(line.trim());
+                        }
+                        catch (NumberFormatException e)
+                        {
+                            fit = Double.NaN;
+                        }
+                    }
+                    else if (pendingTag.equals(DENOPTIMConstants.UNIQUEIDTAG))
+                    {
+                        uid = line.trim();
+                    }
+                    pendingTag = null;
+                }
+                else if (line.startsWith(">"))
+                {
+                    int i0 = line.indexOf('<');
+                    int i1 = line.indexOf('>', i0+1);
+                    if (i0 > 0 && i1 > i0)
+                    {
+                        pendingTag = line.substring(i0+1, i1);
+                    }
+                }
+                else if (line.startsWith("$$$$"))
+                {
+                    idx.add(title, genId, fit, uid, relPath, recStart);
+                    recStart = pos;
+                    lineInRec = 0;
+                    title = "";
+                    uid = "";
+                    fit = Double.NaN;
+                }
+            }
+            // Record not terminated by '$$$$'
+            if (lineInRec > 0)
+            {
+                idx.add(title, genId, fit, uid, relPath, recStart);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new DENOPTIMException("Could not scan file '" + sdf + "'.",
+                    e);
+        }
+        finally
+        {
+            try
+            {
+                if (is != null)
+                {
+                    is.close();
+                }
+            }
+            catch (IOException ioe)
+            {
+                throw new DENOPTIMException(ioe);
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    private static String formatLine(String name, int generation, double fit,
+            String uid, String molFile, long offset)
+    {
+        return clean(name) + "\t" + generation + "\t" + fit + "\t"
+                + clean(uid) + "\t" + molFile + "\t" + offset;
+    }
+
+//------------------------------------------------------------------------------
+
+    private static String clean(String s)
+    {
+        if (s == null || s.isEmpty())
+        {
+            return "-";
+        }
+        return s.replaceAll("\\s", "_");
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Makes a pathname relative to a given folder, if the pathname points to
+     * a location inside such folder.
+     */
+    private static String relativize(File dir, String pathname)
+    {
+        if (dir == null)
+        {
+            return pathname;
+        }
+        File f = new File(pathname);
+        if (!f.isAbsolute())
+        {
+            return pathname;
+        }
+        String d = dir.getAbsolutePath() + File.separator;
+        if (pathname.startsWith(d))
+        {
+            return pathname.substring(d.length());
+        }
+        return pathname;
+    }
+
+//------------------------------------------------------------------------------
+
+}
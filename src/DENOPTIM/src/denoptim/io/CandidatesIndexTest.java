@@ -0,0 +1,116 @@
+package denoptim.io;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit test for the index of candidates
+ * 
+ * @author Marco Foscato
+ */
+
+public class CandidatesIndexTest
+{
+    private final String SEP = System.getProperty("file.separator");
+
+    @TempDir
+    File tempDir;
+    
+//------------------------------------------------------------------------------
+    
+    private String record(String name, String tag, String value)
+    {
+        return name + "\n  CDK\n\n"
+                + "  1  0  0  0  0  0  0  0  0  0999 V2000\n"
+                + "    0.0000    0.0000    0.0000 C   0  0\n"
+                + "M  END\n"
+                + "> <" + tag + ">\n" + value + "\n\n"
+                + "> <UID>\n" + name + "-UID\n\n"
+                + "$$$$\n";
+    }
+	
+//------------------------------------------------------------------------------
+	
+    @Test
+    public void testIndexRunFolder() throws Exception
+    {
+        File gen0 = new File(tempDir + SEP + "Gen00");
+        File gen1 = new File(tempDir + SEP + "Gen01");
+        gen0.mkdir();
+        gen1.mkdir();
+        FileWriter fw = new FileWriter(gen0 + SEP + "M01_FIT.sdf");
+        fw.write(record("M01", "FITNESS", "1.5"));
+        fw.close();
+        fw = new FileWriter(gen1 + SEP + "M02_FIT.sdf");
+        fw.write(record("M02", "MOL_ERROR", "#Bad"));
+        fw.write(record("M03", "FITNESS", "-2.0"));
+        fw.close();
+        
+        CandidatesIndex idx = CandidatesIndex.indexRunFolder(tempDir);
+        assertEquals(3, idx.size());
+        assertEquals(2, idx.countWithFitness());
+        assertEquals("M01", idx.getName(0));
+        assertEquals(0, idx.getGeneration(0));
+        assertEquals(1.5, idx.getFitness(0), 0.000001);
+        assertEquals("M01-UID", idx.getUID(0));
+        assertFalse(idx.hasFitness(1));
+        assertEquals(1, idx.getGeneration(2));
+        assertTrue(idx.getOffset(2) > 0);
+        assertTrue(idx.readRecord(2).startsWith("M03"));
+        assertTrue(idx.readRecord(2).trim().endsWith("$$$$"));
+        
+        File indexFile = new File(tempDir + SEP + "index.txt");
+        idx.write(indexFile);
+        CandidatesIndex idx2 = CandidatesIndex.read(indexFile);
+        assertEquals(3, idx2.size());
+        assertEquals(idx.getMoleculeFile(2), idx2.getMoleculeFile(2));
+        assertEquals(idx.getOffset(2), idx2.getOffset(2));
+        assertEquals(-2.0, idx2.getFitness(2), 0.000001);
+    }
+    
+//------------------------------------------------------------------------------
+    
+    @Test
+    public void testAppendEntry() throws Exception
+    {
+        File indexFile = new File(tempDir + SEP + "index.txt");
+        CandidatesIndex.appendEntry(indexFile, "M1", 3, 0.5, "uid 1", 
+                tempDir + SEP + "Gen03" + SEP + "M1_FIT.sdf", 0);
+        CandidatesIndex.appendEntry(indexFile, "M2", 3, Double.NaN, "uid2", 
+                tempDir + SEP + "Gen03" + SEP + "M2_FIT.sdf", 0);
+        CandidatesIndex idx = CandidatesIndex.read(indexFile);
+        assertEquals(2, idx.size());
+        assertEquals("uid_1", idx.getUID(0));
+        assertEquals(1, idx.countWithFitness());
+        assertEquals(new File(tempDir + SEP + "Gen03" + SEP + "M2_FIT.sdf"),
+                idx.getMoleculeFile(1));
+    }
+    
+//------------------------------------------------------------------------------
+
+}
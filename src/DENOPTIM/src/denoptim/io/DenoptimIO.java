@@ -49,6 +49,7 @@ import java.io.ObjectInputStream;
 import java.io.FileOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
@@ -938,7 +939,13 @@ public class DenoptimIO
 //------------------------------------------------------------------------------
 
     /**
-     *
+     * Reads fingerprints from either a binary fingerprint file (see
+     * {@link FingerprintStore}) or a text file in the legacy format, with
+     * one identifier followed by comma-separated booleans per line.
+     * Large collections of fingerprints should be stored in binary files,
+     * which can be created from legacy ones with
+     * {@link #convertFingerprintData(String, String)}, and accessed
+     * with {@link FingerprintStore#open(File)} to avoid copying them.
      * @param fileName
      * @return list of fingerprints in bit representation
      * @throws DENOPTIMException
@@ -946,6 +953,26 @@ public class DenoptimIO
     public static ArrayList<BitSet> readFingerprintData(String fileName)
             throws DENOPTIMException
     {
+        File file = new File(fileName);
+        if (FingerprintStore.isFingerprintStore(file))
+        {
+            ArrayList<BitSet> fps = null;
+            try (FingerprintStore store = FingerprintStore.open(file))
+            {
+                fps = store.getAllBitSets();
+            }
+            catch (IOException ioe)
+            {
+                throw new DENOPTIMException(ioe);
+            }
+            if (fps.isEmpty())
+            {
+                throw new DENOPTIMException("No data found in file: "
+                        + fileName);
+            }
+            return fps;
+        }
+
         ArrayList<BitSet> fps = new ArrayList<>();
 
         BufferedReader br = null;
@@ -997,6 +1024,24 @@ public class DenoptimIO
         return fps;
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Converts a text file of fingerprints in the legacy format (one
+     * identifier followed by comma-separated booleans per line) into a
+     * binary fingerprint file (see {@link FingerprintStore}).
+     * @param textFileName the file in the legacy format.
+     * @param binFileName the binary file to create.
+     * @return the number of converted fingerprints.
+     * @throws DENOPTIMException
+     */
+    public static int convertFingerprintData(String textFileName,
+            String binFileName) throws DENOPTIMException
+    {
+        return FingerprintStore.convertTextFile(new File(textFileName),
+                new File(binFileName));
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -1258,6 +1303,94 @@ public class DenoptimIO
         return sb.toString();
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Writes a single molecule into a string using the SDF format.
+     *
+     * @param mol the molecule to write
+     * @return the SDF record, including the <code>$$$$</code> terminator
+     * @throws DENOPTIMException
+     */
+    public static String getSDFString(IAtomContainer mol)
+            throws DENOPTIMException
+    {
+        StringWriter stringWriter = new StringWriter();
+        SDFWriter sdfWriter = null;
+        try
+        {
+            sdfWriter = new SDFWriter(stringWriter);
+            sdfWriter.write(mol);
+        }
+        catch (CDKException cdke)
+        {
+            throw new DENOPTIMException(cdke);
+        }
+        finally
+        {
+            try
+            {
+                if (sdfWriter != null)
+                {
+                    sdfWriter.close();
+                }
+            }
+            catch (IOException ioe)
+            {
+                throw new DENOPTIMException(ioe);
+            }
+        }
+        return stringWriter.toString();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reads a string in SDF format and returns the first molecule found in it.
+     *
+     * @param sdfString the text of the SDF record(s)
+     * @return the first molecular object in the string
+     * @throws DENOPTIMException if no molecule could be read
+     */
+    public static IAtomContainer readSDFString(String sdfString)
+            throws DENOPTIMException
+    {
+        MDLV2000Reader mdlreader = null;
+        ArrayList<IAtomContainer> lstContainers = new ArrayList<>();
+        try
+        {
+            mdlreader = new MDLV2000Reader(new StringReader(sdfString));
+            ChemFile chemFile = (ChemFile) mdlreader.read(
+                    (ChemObject) new ChemFile());
+            lstContainers.addAll(
+                    ChemFileManipulator.getAllAtomContainers(chemFile));
+        }
+        catch (Throwable t)
+        {
+            throw new DENOPTIMException(t);
+        }
+        finally
+        {
+            try
+            {
+                if (mdlreader != null)
+                {
+                    mdlreader.close();
+                }
+            }
+            catch (IOException ioe)
+            {
+                throw new DENOPTIMException(ioe);
+            }
+        }
+
+        if (lstContainers.isEmpty())
+        {
+            throw new DENOPTIMException("No data found in SDF string.");
+        }
+        return lstContainers.get(0);
+    }
+
 //------------------------------------------------------------------------------
 
     public static void writeMolecule2D(String fileName, IAtomContainer mol)
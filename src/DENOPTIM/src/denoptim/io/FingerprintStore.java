@@ -0,0 +1,636 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import denoptim.exception.DENOPTIMException;
+
+/**
+ * Binary file of fingerprints. The file is made of
+ * <ul>
+ * <li>a header of {@value #HEADERSIZE} bytes: the magic number
+ * <code>DNFP</code>, the version of the format, the number of bits per
+ * fingerprint, the number of 64-bit words per fingerprint, the number of
+ * fingerprints, and the offset of the section of identifiers,</li>
+ * <li>the fingerprints, each as a fixed number of 64-bit words (bit
+ * <i>i</i> is bit <i>i</i>%64 of word <i>i</i>/64, as in
+ * {@link BitSet#toLongArray()}),</li>
+ * <li>the identifiers of the fingerprints, each as a 4-bytes length followed
+ * by the UTF-8 encoded characters.</li>
+ * </ul>
+ * All numbers are big-endian. A 1024-bit fingerprint takes 128 bytes.
+ * <p>When opened, the fingerprints are mapped in memory and made available
+ * as read-only views that do not copy the data
+ * (see {@link #getView(int)}). Files in the legacy text format, where each
+ * line contains an identifier followed by one comma-separated boolean per
+ * bit, can be converted with {@link #convertTextFile(File, File)}.</p>
+ *
+ * @author Marco Foscato
+ */
+
+public class FingerprintStore implements Closeable
+{
+    /**
+     * Magic number identifying the format: "DNFP" in ASCII
+     */
+    public static final int MAGIC = 0x444E4650;
+
+    /**
+     * Version of the format
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Size in bytes of the header
+     */
+    public static final int HEADERSIZE = 32;
+
+    /**
+     * Number of bits per fingerprint
+     */
+    private final int nBits;
+
+    /**
+     * Number of 64-bit words per fingerprint
+     */
+    private final int nWords;
+
+    /**
+     * Number of fingerprints
+     */
+    private final int count;
+
+    /**
+     * Number of fingerprints per mapped chunk of the file
+     */
+    private final int recordsPerChunk;
+
+    /**
+     * Mapped chunks of the fingerprints section
+     */
+    private final LongBuffer[] chunks;
+
+    /**
+     * Identifiers of the fingerprints
+     */
+    private final String[] ids;
+
+    /**
+     * The opened file
+     */
+    private final RandomAccessFile raf;
+
+//------------------------------------------------------------------------------
+
+    private FingerprintStore(File file) throws IOException, DENOPTIMException
+    {
+        raf = new RandomAccessFile(file, "r");
+        boolean done = false;
+        try
+        {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADERSIZE);
+            while (header.hasRemaining())
+            {
+                if (channel.read(header, header.position()) < 0)
+                {
+                    throw new DENOPTIMException("Truncated header in "
+                            + "fingerprint file " + file);
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC)
+            {
+                throw new DENOPTIMException("File " + file + " is not a binary "
+                        + "fingerprint file.");
+            }
+            int version = header.getInt();
+            if (version != VERSION)
+            {
+                throw new DENOPTIMException("Unsupported version " + version
+                        + " of binary fingerprint file " + file);
+            }
+            nBits = header.getInt();
+            nWords = header.getInt();
+            long n = header.getLong();
+            long idsOffset = header.getLong();
+            long recordBytes = 8L * nWords;
+            if (n > Integer.MAX_VALUE || nWords != (nBits + 63) / 64
+                    || idsOffset != HEADERSIZE + n * recordBytes)
+            {
+                throw new DENOPTIMException("Inconsistent header in binary "
+                        + "fingerprint file " + file);
+            }
+            count = (int) n;
+
+            // A single mapping cannot exceed 2GB
+            recordsPerChunk = (int) Math.max(1,
+                    Integer.MAX_VALUE / Math.max(1, recordBytes));
+            int nChunks = count == 0 ? 0 : (count - 1) / recordsPerChunk + 1;
+            chunks = new LongBuffer[nChunks];
+            for (int c=0; c<nChunks; c++)
+            {
+                long first = (long) c * recordsPerChunk;
+                long num = Math.min(recordsPerChunk, count - first);
+                MappedByteBuffer mbb = channel.map(
+                        FileChannel.MapMode.READ_ONLY,
+                        HEADERSIZE + first * recordBytes, num * recordBytes);
+                chunks[c] = mbb.asLongBuffer();
+            }
+
+            ids = new String[count];
+            try (DataInputStream dis = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file), 65536)))
+            {
+                long toSkip = idsOffset;
+                while (toSkip > 0)
+                {
+                    long skipped = dis.skip(toSkip);
+                    if (skipped <= 0)
+                    {
+                        throw new EOFException("Cannot reach identifiers.");
+                    }
+                    toSkip = toSkip - skipped;
+                }
+                for (int i=0; i<count; i++)
+                {
+                    byte[] b = new byte[dis.readInt()];
+                    dis.readFully(b);
+                    ids[i] = new String(b, StandardCharsets.UTF_8);
+                }
+            }
+            done = true;
+        }
+        finally
+        {
+            if (!done)
+            {
+                raf.close();
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Opens a binary fingerprint file and maps its fingerprints in memory.
+     * @param file the file to open.
+     * @return the opened file.
+     * @throws DENOPTIMException if the file cannot be read or is not a
+     * binary fingerprint file.
+     */
+    public static FingerprintStore open(File file) throws DENOPTIMException
+    {
+        try
+        {
+            return new FingerprintStore(file);
+        }
+        catch (IOException ioe)
+        {
+            throw new DENOPTIMException("Cannot read binary fingerprint file "
+                    + file, ioe);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param file the file to check.
+     * @return <code>true</code> if the file starts with the magic number of
+     * binary fingerprint files.
+     */
+    public static boolean isFingerprintStore(File file)
+    {
+        if (!file.isFile() || file.length() < HEADERSIZE)
+        {
+            return false;
+        }
+        try (DataInputStream dis = new DataInputStream(
+                new FileInputStream(file)))
+        {
+            return dis.readInt() == MAGIC;
+        }
+        catch (IOException ioe)
+        {
+            return false;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of fingerprints.
+     */
+    public int size()
+    {
+        return count;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of bits of each fingerprint.
+     */
+    public int getNumberOfBits()
+    {
+        return nBits;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param i the index of a fingerprint.
+     * @return the identifier of the fingerprint.
+     */
+    public String getId(int i)
+    {
+        return ids[i];
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Provides a read-only view of a fingerprint in the mapped file. No data
+     * is copied. The view is independent of other views, and can thus be
+     * used by one thread while others use other views.
+     * @param i the index of a fingerprint.
+     * @return the 64-bit words of the fingerprint.
+     */
+    public LongBuffer getView(int i)
+    {
+        if (i < 0 || i >= count)
+        {
+            throw new IndexOutOfBoundsException("Fingerprint " + i
+                    + " not in [0," + count + ").");
+        }
+        LongBuffer view = chunks[i / recordsPerChunk].duplicate();
+        int start = (i % recordsPerChunk) * nWords;
+        view.position(start);
+        view.limit(start + nWords);
+        return view.slice();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param i the index of a fingerprint.
+     * @return a copy of the 64-bit words of the fingerprint.
+     */
+    public long[] getWords(int i)
+    {
+        long[] words = new long[nWords];
+        getView(i).get(words);
+        return words;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param i the index of a fingerprint.
+     * @return a copy of the fingerprint as a bit set.
+     */
+    public BitSet getBitSet(int i)
+    {
+        return BitSet.valueOf(getView(i));
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Calculates the Tanimoto coefficient between a stored fingerprint and
+     * a packed query fingerprint, directly on the mapped data.
+     * @param i the index of the stored fingerprint.
+     * @param query the packed query fingerprint.
+     * @return the Tanimoto coefficient. Two empty fingerprints are
+     * considered identical.
+     */
+    public double tanimoto(int i, long[] query)
+    {
+        LongBuffer view = getView(i);
+        int and = 0;
+        int or = 0;
+        for (int w=0; w<nWords; w++)
+        {
+            long a = view.get(w);
+            long b = w < query.length ? query[w] : 0L;
+            and = and + Long.bitCount(a & b);
+            or = or + Long.bitCount(a | b);
+        }
+        if (or == 0)
+        {
+            return 1.0;
+        }
+        return ((double) and) / or;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reads all the fingerprints into bit sets.
+     * @return the list of fingerprints.
+     */
+    public ArrayList<BitSet> getAllBitSets()
+    {
+        ArrayList<BitSet> fps = new ArrayList<BitSet>(count);
+        for (int i=0; i<count; i++)
+        {
+            fps.add(getBitSet(i));
+        }
+        return fps;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Closes the file. Views obtained from this store must not be used
+     * after closing.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        raf.close();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Writes a binary fingerprint file one fingerprint at a time. The
+     * identifiers are kept in memory until the writer is closed.
+     */
+    public static class Writer implements Closeable
+    {
+        private final File file;
+        private final int nBits;
+        private final int nWords;
+        private final DataOutputStream dos;
+        private final ArrayList<String> ids = new ArrayList<String>();
+
+        /**
+         * Creates a new file, overwriting any existing file.
+         * @param file the file to write.
+         * @param nBits the number of bits of each fingerprint.
+         * @throws DENOPTIMException if the file cannot be created.
+         */
+        public Writer(File file, int nBits) throws DENOPTIMException
+        {
+            this.file = file;
+            this.nBits = nBits;
+            this.nWords = (nBits + 63) / 64;
+            try
+            {
+                dos = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(file), 65536));
+                // The header is completed when closing the writer
+                dos.write(new byte[HEADERSIZE]);
+            }
+            catch (IOException ioe)
+            {
+                throw new DENOPTIMException("Cannot write binary fingerprint "
+                        + "file " + file, ioe);
+            }
+        }
+
+        /**
+         * Appends a fingerprint.
+         * @param id the identifier of the fingerprint.
+         * @param words the packed fingerprint. Bits beyond the length of
+         * the fingerprints of this file are ignored.
+         * @throws DENOPTIMException if the fingerprint cannot be written.
+         */
+        public void add(String id, long[] words) throws DENOPTIMException
+        {
+            try
+            {
+                for (int w=0; w<nWords; w++)
+                {
+                    long word = w < words.length ? words[w] : 0L;
+                    if (w == nWords - 1 && nBits % 64 != 0)
+                    {
+                        word = word & ((1L << (nBits % 64)) - 1);
+                    }
+                    dos.writeLong(word);
+                }
+            }
+            catch (IOException ioe)
+            {
+                throw new DENOPTIMException("Cannot write binary fingerprint "
+                        + "file " + file, ioe);
+            }
+            ids.add(id);
+        }
+
+        /**
+         * Appends a fingerprint.
+         * @param id the identifier of the fingerprint.
+         * @param bs the fingerprint.
+         * @throws DENOPTIMException if the fingerprint cannot be written.
+         */
+        public void add(String id, BitSet bs) throws DENOPTIMException
+        {
+            add(id, bs.toLongArray());
+        }
+
+        /**
+         * Writes the identifiers and completes the header.
+         */
+        @Override
+        public void close() throws IOException
+        {
+            for (String id : ids)
+            {
+                byte[] b = id.getBytes(StandardCharsets.UTF_8);
+                dos.writeInt(b.length);
+                dos.write(b);
+            }
+            dos.close();
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw"))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(nBits);
+                out.writeInt(nWords);
+                out.writeLong(ids.size());
+                out.writeLong(HEADERSIZE + 8L * nWords * ids.size());
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Converts a file of fingerprints in the legacy text format into a
+     * binary fingerprint file. In the text format, each non-empty line
+     * contains an identifier followed by one boolean (<code>true</code> or
+     * <code>false</code>) per bit, all separated by commas. All lines must
+     * define the same number of bits. The text is parsed one line at a
+     * time, so the size of the input is not limited by the available memory.
+     * The binary file is first written to a temporary file that replaces
+     * the destination only once the conversion is complete, so a failed
+     * conversion does not leave a truncated binary file behind.
+     * @param textFile the file in the legacy text format.
+     * @param binFile the binary file to create.
+     * @return the number of converted fingerprints.
+     * @throws DENOPTIMException if the input cannot be read or parsed, or if
+     * the output cannot be written.
+     */
+    public static int convertTextFile(File textFile, File binFile)
+            throws DENOPTIMException
+    {
+        File tmpFile = null;
+        Writer writer = null;
+        boolean done = false;
+        int lineNum = 0;
+        int nBits = -1;
+        int nFps = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(textFile),
+                65536))
+        {
+            String line;
+            while ((line = br.readLine()) != null)
+            {
+                lineNum++;
+                if (line.trim().length() == 0)
+                {
+                    continue;
+                }
+                int len = line.length();
+                int pos = line.indexOf(',');
+                if (pos < 0)
+                {
+                    pos = len;
+                }
+                String id = line.substring(0, pos).trim();
+                BitSet bs = new BitSet();
+                int bit = 0;
+                pos++;
+                while (pos < len)
+                {
+                    int end = line.indexOf(',', pos);
+                    if (end < 0)
+                    {
+                        end = len;
+                    }
+                    int s = pos;
+                    int e = end;
+                    while (s < e && line.charAt(s) == ' ')
+                    {
+                        s++;
+                    }
+                    while (e > s && line.charAt(e - 1) == ' ')
+                    {
+                        e--;
+                    }
+                    if (e - s == 4 && line.regionMatches(true, s, "true", 0, 4))
+                    {
+                        bs.set(bit);
+                    }
+                    bit++;
+                    pos = end + 1;
+                }
+                if (writer == null)
+                {
+                    nBits = bit;
+                    File file = binFile.getAbsoluteFile();
+                    tmpFile = File.createTempFile(file.getName(), ".tmp",
+                            file.getParentFile());
+                    writer = new Writer(tmpFile, nBits);
+                }
+                else if (bit != nBits)
+                {
+                    throw new DENOPTIMException("Line " + lineNum + " of "
+                            + textFile + " defines " + bit + " bits, but "
+                            + nBits + " were expected.");
+                }
+                writer.add(id, bs);
+            }
+            if (writer == null)
+            {
+                throw new DENOPTIMException("No data found in file: "
+                        + textFile);
+            }
+            nFps = writer.ids.size();
+            try
+            {
+                // Only a complete conversion gets a valid header
+                writer.close();
+                Files.move(tmpFile.toPath(), binFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (IOException ioe)
+            {
+                throw new DENOPTIMException("Cannot write binary "
+                        + "fingerprint file " + binFile, ioe);
+            }
+            done = true;
+        }
+        catch (IOException ioe)
+        {
+            throw new DENOPTIMException("Cannot convert fingerprint file "
+                    + textFile, ioe);
+        }
+        finally
+        {
+            if (!done)
+            {
+                if (writer != null)
+                {
+                    try
+                    {
+                        writer.dos.close();
+                    }
+                    catch (IOException ioe)
+                    {
+                        // The partial output is discarded anyway
+                    }
+                }
+                if (tmpFile != null && tmpFile.exists())
+                {
+                    tmpFile.delete();
+                }
+            }
+        }
+        return nFps;
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,164 @@
+package denoptim.io;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import denoptim.exception.DENOPTIMException;
+
+/**
+ * Unit test for the binary file of fingerprints
+ *
+ * @author Marco Foscato
+ */
+
+public class FingerprintStoreTest
+{
+    private final String SEP = System.getProperty("file.separator");
+
+    @TempDir
+    File tempDir;
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testWriteAndRead() throws Exception
+    {
+        int nBits = 100;
+        Random rnd = new Random(42);
+        List<BitSet> fps = new ArrayList<BitSet>();
+        File file = new File(tempDir.getAbsolutePath() + SEP + "fps.bin");
+        FingerprintStore.Writer writer = new FingerprintStore.Writer(file,
+                nBits);
+        for (int i=0; i<300; i++)
+        {
+            BitSet bs = new BitSet(nBits);
+            for (int j=0; j<nBits; j++)
+            {
+                if (rnd.nextInt(4) == 0)
+                {
+                    bs.set(j);
+                }
+            }
+            fps.add(bs);
+            writer.add("id-" + i, bs);
+        }
+        writer.close();
+
+        assertTrue(FingerprintStore.isFingerprintStore(file));
+        assertEquals(FingerprintStore.HEADERSIZE + 300 * 2 * 8
+                + 300 * 4 + 10 * 4 + 90 * 5 + 200 * 6, file.length());
+
+        try (FingerprintStore store = FingerprintStore.open(file))
+        {
+            assertEquals(300, store.size());
+            assertEquals(nBits, store.getNumberOfBits());
+            for (int i=0; i<300; i++)
+            {
+                assertEquals("id-" + i, store.getId(i));
+                assertEquals(fps.get(i), store.getBitSet(i));
+                LongBuffer view = store.getView(i);
+                assertEquals(2, view.remaining());
+                long[] words = fps.get(i).toLongArray();
+                assertEquals(words.length > 0 ? words[0] : 0L, view.get(0));
+            }
+            BitSet a = fps.get(0);
+            BitSet b = fps.get(1);
+            BitSet and = (BitSet) a.clone();
+            and.and(b);
+            BitSet or = (BitSet) a.clone();
+            or.or(b);
+            assertEquals(((double) and.cardinality()) / or.cardinality(),
+                    store.tanimoto(1, a.toLongArray()), 1.0e-12);
+        }
+
+        assertEquals(fps, DenoptimIO.readFingerprintData(
+                file.getAbsolutePath()));
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testConvertTextFile() throws Exception
+    {
+        File txt = new File(tempDir.getAbsolutePath() + SEP + "fps.txt");
+        FileWriter fw = new FileWriter(txt);
+        fw.write("molA, true, false, false, true, false\n");
+        fw.write("\n");
+        fw.write("molB, false, false, true, true, TRUE\n");
+        fw.close();
+
+        File bin = new File(tempDir.getAbsolutePath() + SEP + "fps.bin");
+        assertFalse(FingerprintStore.isFingerprintStore(txt));
+        assertEquals(2, DenoptimIO.convertFingerprintData(
+                txt.getAbsolutePath(), bin.getAbsolutePath()));
+
+        List<BitSet> legacy = DenoptimIO.readFingerprintData(
+                txt.getAbsolutePath());
+        List<BitSet> binary = DenoptimIO.readFingerprintData(
+                bin.getAbsolutePath());
+        assertEquals(legacy.get(0), binary.get(0));
+
+        try (FingerprintStore store = FingerprintStore.open(bin))
+        {
+            assertEquals(5, store.getNumberOfBits());
+            assertEquals("molB", store.getId(1));
+            BitSet expected = new BitSet();
+            expected.set(2);
+            expected.set(3);
+            expected.set(4);
+            assertEquals(expected, store.getBitSet(1));
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testFailedConversionLeavesNoOutput() throws Exception
+    {
+        File txt = new File(tempDir.getAbsolutePath() + SEP + "fps.txt");
+        FileWriter fw = new FileWriter(txt);
+        fw.write("molA, true, false, false, true, false\n");
+        fw.write("molB, false, true\n");
+        fw.close();
+
+        File bin = new File(tempDir.getAbsolutePath() + SEP + "fps.bin");
+        assertThrows(DENOPTIMException.class,
+                () -> FingerprintStore.convertTextFile(txt, bin));
+        assertFalse(bin.exists());
+        assertEquals(1, tempDir.listFiles().length);
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,382 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+
+import denoptim.exception.DENOPTIMException;
+
+/**
+ * Disk-backed index of the records contained in one or more SDF files.
+ * The byte offset of each record is written to an index file, which is then
+ * mapped in memory, so that the index takes almost no heap space whatever
+ * the number of records. Records are read on demand with
+ * {@link #readRecord(int)}, i.e., only the records that are actually used
+ * are parsed.
+ *
+ * @author Marco Foscato
+ */
+
+public class SDFOffsetIndex implements Closeable
+{
+    /**
+     * The indexed SDF files
+     */
+    private final File[] sdfFiles;
+
+    /**
+     * Index of the first record of each SDF file
+     */
+    private final int[] firstRecord;
+
+    /**
+     * Total number of records
+     */
+    private final int size;
+
+    /**
+     * Mapped offsets of the records
+     */
+    private final LongBuffer offsets;
+
+    /**
+     * The opened index file
+     */
+    private final RandomAccessFile raf;
+
+//------------------------------------------------------------------------------
+
+    private SDFOffsetIndex(File[] sdfFiles, int[] firstRecord, int size,
+            File indexFile) throws IOException
+    {
+        this.sdfFiles = sdfFiles;
+        this.firstRecord = firstRecord;
+        this.size = size;
+        raf = new RandomAccessFile(indexFile, "r");
+        offsets = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0,
+                8L * size).asLongBuffer();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Scans SDF files and writes the offsets of all their records to an index
+     * file, which is overwritten if it exists. Records are not parsed, but
+     * the scan verifies that each record defines the required properties,
+     * so that malformed input is reported before any record is used.
+     * @param files the SDF files to index.
+     * @param indexFile the file where to write the offsets.
+     * @param requiredProps the names of the properties that every record
+     * must define.
+     * @return the index.
+     * @throws DENOPTIMException if any file cannot be read or written, if
+     * any record lacks a required property, or if the number of records
+     * exceeds the capacity of the index.
+     */
+    public static SDFOffsetIndex build(List<File> files, File indexFile,
+            String... requiredProps) throws DENOPTIMException
+    {
+        File[] sdfFiles = files.toArray(new File[files.size()]);
+        int[] firstRecord = new int[sdfFiles.length];
+        long count = 0;
+        DataOutputStream dos = null;
+        try
+        {
+            dos = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(indexFile), 65536));
+            for (int f=0; f<sdfFiles.length; f++)
+            {
+                firstRecord[f] = (int) count;
+                count = count + scanRecordOffsets(sdfFiles[f], dos,
+                        requiredProps);
+                if (count > Integer.MAX_VALUE / 8)
+                {
+                    throw new DENOPTIMException("Too many SDF records to "
+                            + "index: " + count);
+                }
+            }
+        }
+        catch (IOException ioe)
+        {
+            throw new DENOPTIMException("Could not write index file '"
+                    + indexFile + "'.", ioe);
+        }
+        finally
+        {
+            try
+            {
+                if (dos != null)
+                {
+                    dos.close();
+                }
+            }
+            catch (IOException ioe)
+            {
+                throw new DENOPTIMException(ioe);
+            }
+        }
+
+        try
+        {
+            return new SDFOffsetIndex(sdfFiles, firstRecord, (int) count,
+                    indexFile);
+        }
+        catch (IOException ioe)
+        {
+            throw new DENOPTIMException("Could not read index file '"
+                    + indexFile + "'.", ioe);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Scans an SDF file as bytes and writes the offset of each record.
+     * Records start at the beginning of the file and after each line
+     * starting with <code>$$$$</code>, unless only white space follows.
+     * Property headers, i.e., lines starting with <code>&gt;</code>, are
+     * checked against the required properties.
+     * @return the number of records.
+     * @throws DENOPTIMException if a record lacks a required property.
+     */
+    static int scanRecordOffsets(File sdf, DataOutputStream dos,
+            String[] requiredProps) throws IOException, DENOPTIMException
+    {
+        int count = 0;
+        boolean[] found = new boolean[requiredProps.length];
+        try (InputStream is = new FileInputStream(sdf))
+        {
+            byte[] buf = new byte[65536];
+            long pos = 0;
+            long pendingStart = 0;
+            int dollarsAtLineStart = 0;
+            boolean atLineStart = true;
+            boolean inRecord = false;
+            StringBuilder header = null;
+            int n;
+            while ((n = is.read(buf)) > 0)
+            {
+                for (int i=0; i<n; i++, pos++)
+                {
+                    byte b = buf[i];
+                    if (b == '\n')
+                    {
+                        if (header != null)
+                        {
+                            markProperty(header, requiredProps, found);
+                            header = null;
+                        }
+                        if (dollarsAtLineStart == 4)
+                        {
+                            pendingStart = pos + 1;
+                            if (inRecord)
+                            {
+                                checkProperties(sdf, count, requiredProps,
+                                        found);
+                                inRecord = false;
+                            }
+                        }
+                        atLineStart = true;
+                        dollarsAtLineStart = 0;
+                        continue;
+                    }
+                    if (header != null)
+                    {
+                        header.append((char) b);
+                    }
+                    else if (atLineStart && b == '>' && inRecord
+                            && requiredProps.length > 0)
+                    {
+                        header = new StringBuilder();
+                    }
+                    if (atLineStart && b == '$' && dollarsAtLineStart < 4)
+                    {
+                        dollarsAtLineStart++;
+                    }
+                    else if (dollarsAtLineStart < 4)
+                    {
+                        atLineStart = false;
+                        dollarsAtLineStart = 0;
+                    }
+                    if (pendingStart >= 0 && b != ' ' && b != '\t'
+                            && b != '\r')
+                    {
+                        dos.writeLong(pendingStart);
+                        count++;
+                        pendingStart = -1;
+                        inRecord = true;
+                    }
+                }
+            }
+            if (header != null)
+            {
+                markProperty(header, requiredProps, found);
+            }
+            if (inRecord)
+            {
+                checkProperties(sdf, count, requiredProps, found);
+            }
+        }
+        return count;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Flags the required property named in the header of an SDF property,
+     * i.e., the text between <code>&lt;</code> and <code>&gt;</code>.
+     */
+    private static void markProperty(StringBuilder header,
+            String[] requiredProps, boolean[] found)
+    {
+        int start = header.indexOf("<");
+        int end = header.indexOf(">", start + 1);
+        if (start < 0 || end < 0)
+        {
+            return;
+        }
+        String name = header.substring(start + 1, end);
+        for (int j=0; j<requiredProps.length; j++)
+        {
+            if (requiredProps[j].equals(name))
+            {
+                found[j] = true;
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Verifies that a record has all the required properties, and resets
+     * the flags for the next record.
+     * @param recNum the 1-based number of the record in its file.
+     */
+    private static void checkProperties(File sdf, int recNum,
+            String[] requiredProps, boolean[] found) throws DENOPTIMException
+    {
+        for (int j=0; j<requiredProps.length; j++)
+        {
+            if (!found[j])
+            {
+                throw new DENOPTIMException("Record " + recNum + " of file '"
+                        + sdf + "' does not have the property '"
+                        + requiredProps[j] + "'.");
+            }
+        }
+        Arrays.fill(found, false);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of records.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param i the index of a record.
+     * @return the SDF file containing the record.
+     */
+    public File getFile(int i)
+    {
+        checkIndex(i);
+        int f = Arrays.binarySearch(firstRecord, i);
+        if (f < 0)
+        {
+            f = -f - 2;
+        }
+        else
+        {
+            // Skip files without records
+            while (f + 1 < firstRecord.length && firstRecord[f + 1] == i)
+            {
+                f++;
+            }
+        }
+        return sdfFiles[f];
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param i the index of a record.
+     * @return the byte offset of the record in its SDF file.
+     */
+    public long getOffset(int i)
+    {
+        checkIndex(i);
+        return offsets.get(i);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reads the text of a record.
+     * @param i the index of a record.
+     * @return the text of the SDF record, including the terminator.
+     * @throws DENOPTIMException if the record cannot be read.
+     */
+    public String readRecord(int i) throws DENOPTIMException
+    {
+        return CandidatesIndex.readRecord(getFile(i), getOffset(i));
+    }
+
+//------------------------------------------------------------------------------
+
+    private void checkIndex(int i)
+    {
+        if (i < 0 || i >= size)
+        {
+            throw new IndexOutOfBoundsException("Record " + i + " not in [0,"
+                    + size + ").");
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Closes the index file.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        raf.close();
+    }
+
+//------------------------------------------------------------------------------
+
+}
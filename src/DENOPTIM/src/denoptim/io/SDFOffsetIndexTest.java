@@ -0,0 +1,155 @@
+package denoptim.io;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import denoptim.exception.DENOPTIMException;
+
+/**
+ * Unit test for the index of SDF records
+ *
+ * @author Marco Foscato
+ */
+
+public class SDFOffsetIndexTest
+{
+    private final String SEP = System.getProperty("file.separator");
+
+    @TempDir
+    File tempDir;
+
+//------------------------------------------------------------------------------
+
+    private String record(String name)
+    {
+        return name + "\n  CDK\n\n"
+                + "  1  0  0  0  0  0  0  0  0  0999 V2000\n"
+                + "    0.0000    0.0000    0.0000 C   0  0\n"
+                + "M  END\n"
+                + "> <UID>\n" + name + "-UID\n\n"
+                + "$$$$\n";
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testBuild() throws Exception
+    {
+        File sdfA = new File(tempDir.getAbsolutePath() + SEP + "a.sdf");
+        FileWriter fw = new FileWriter(sdfA);
+        fw.write(record("molA1") + record("") + record("molA3") + "\n\n");
+        fw.close();
+
+        File sdfEmpty = new File(tempDir.getAbsolutePath() + SEP + "e.sdf");
+        new FileWriter(sdfEmpty).close();
+
+        File sdfB = new File(tempDir.getAbsolutePath() + SEP + "b.sdf");
+        fw = new FileWriter(sdfB);
+        // Last record without terminator
+        String last = record("molB2");
+        fw.write(record("molB1") + last.substring(0, last.length() - 5));
+        fw.close();
+
+        List<File> files = new ArrayList<File>();
+        files.add(sdfA);
+        files.add(sdfEmpty);
+        files.add(sdfB);
+        File idxFile = new File(tempDir.getAbsolutePath() + SEP + "idx.bin");
+        try (SDFOffsetIndex idx = SDFOffsetIndex.build(files, idxFile))
+        {
+            assertEquals(5, idx.size());
+            assertEquals(5 * 8, idxFile.length());
+            assertEquals(0, idx.getOffset(0));
+            assertEquals(record("molA1").length(), idx.getOffset(1));
+            assertEquals(sdfA, idx.getFile(2));
+            assertEquals(sdfB, idx.getFile(3));
+            assertEquals(sdfB, idx.getFile(4));
+
+            assertEquals(record("molA1"), idx.readRecord(0));
+            assertEquals(record(""), idx.readRecord(1));
+            assertEquals(record("molA3"), idx.readRecord(2));
+            assertEquals(record("molB1"), idx.readRecord(3));
+            assertTrue(idx.readRecord(4).startsWith("molB2\n"));
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testRequiredProperties() throws Exception
+    {
+        String props = "> <GraphENC>\n0 0_1_0_0,\n\n"
+                + ">  <FITNESS>  (1)\n1.5\n\n";
+        String good = record("molA1").replace("$$$$", props + "$$$$");
+        File sdf = new File(tempDir.getAbsolutePath() + SEP + "a.sdf");
+        FileWriter fw = new FileWriter(sdf);
+        fw.write(good + good);
+        fw.close();
+
+        List<File> files = new ArrayList<File>();
+        files.add(sdf);
+        File idxFile = new File(tempDir.getAbsolutePath() + SEP + "idx.bin");
+        try (SDFOffsetIndex idx = SDFOffsetIndex.build(files, idxFile,
+                "GraphENC", "FITNESS"))
+        {
+            assertEquals(2, idx.size());
+        }
+
+        // Second record without fitness
+        String noFitness = record("molA2").replace("$$$$",
+                "> <GraphENC>\n0 0_1_0_0,\n\n$$$$");
+        fw = new FileWriter(sdf);
+        fw.write(good + noFitness + good);
+        fw.close();
+        DENOPTIMException e = assertThrows(DENOPTIMException.class,
+                () -> SDFOffsetIndex.build(files, idxFile, "GraphENC",
+                        "FITNESS"));
+        assertTrue(e.getMessage().contains("Record 2 "), e.getMessage());
+        assertTrue(e.getMessage().contains("'FITNESS'"), e.getMessage());
+
+        // Last record without terminator nor graph
+        String last = record("molA3");
+        fw = new FileWriter(sdf);
+        fw.write(good + last.substring(0, last.length() - 5));
+        fw.close();
+        e = assertThrows(DENOPTIMException.class,
+                () -> SDFOffsetIndex.build(files, idxFile, "GraphENC"));
+        assertTrue(e.getMessage().contains("Record 2 "), e.getMessage());
+
+        // Properties are not required unless requested
+        try (SDFOffsetIndex idx = SDFOffsetIndex.build(files, idxFile))
+        {
+            assertEquals(2, idx.size());
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+}
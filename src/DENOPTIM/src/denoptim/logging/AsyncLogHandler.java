@@ -0,0 +1,254 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.logging;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Handler that decouples the threads producing log records from the
+ * formatting and writing of such records. Records are placed in a bounded
+ * ring buffer and a background thread hands them over to the target handler
+ * (e.g., a <code>FileHandler</code>), so the producing threads never wait for
+ * the lock of the target handler, nor for formatting and I/O.
+ * When the buffer is full, records with level below
+ * <code>WARNING</code> are dropped and counted, while records with higher
+ * level wait for room in the buffer. The number of dropped records is
+ * reported in the log.
+ *
+ * @author Marco Foscato
+ */
+
+public class AsyncLogHandler extends Handler
+{
+    /**
+     * The handler that formats and writes the records
+     */
+    private final Handler target;
+
+    /**
+     * Ring buffer of records waiting to be written
+     */
+    private final ArrayBlockingQueue<LogRecord> buffer;
+
+    /**
+     * Background thread writing records
+     */
+    private final Thread writer;
+
+    /**
+     * Number of records placed in the buffer
+     */
+    private final AtomicLong enqueued = new AtomicLong(0);
+
+    /**
+     * Number of records given to the target handler
+     */
+    private final AtomicLong written = new AtomicLong(0);
+
+    /**
+     * Number of records dropped since the last report
+     */
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    /**
+     * Lock used to wait for the buffer to be emptied
+     */
+    private final Object drainLock = new Object();
+
+    /**
+     * Flag signaling that this handler is closed
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Default capacity of the buffer
+     */
+    public static final int DEFAULTCAPACITY = 8192;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Constructs a handler feeding the given target handler
+     * @param target the handler that will format and write the records.
+     * @param capacity the maximum number of records waiting to be written.
+     */
+    public AsyncLogHandler(Handler target, int capacity)
+    {
+        this.target = target;
+        this.buffer = new ArrayBlockingQueue<LogRecord>(capacity);
+        setLevel(Level.ALL);
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run()
+            {
+                writeRecords();
+            }
+        }, "DENOPTIM-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+//------------------------------------------------------------------------------
+
+    @Override
+    public void publish(LogRecord record)
+    {
+        if (closed || !isLoggable(record))
+        {
+            return;
+        }
+        // The caller can only be identified from the calling thread
+        record.getSourceClassName();
+
+        if (record.getLevel().intValue() >= Level.WARNING.intValue())
+        {
+            try
+            {
+                buffer.put(record);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                dropped.incrementAndGet();
+                return;
+            }
+        }
+        else if (!buffer.offer(record))
+        {
+            dropped.incrementAndGet();
+            return;
+        }
+        enqueued.incrementAndGet();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Loop of the background thread
+     */
+    private void writeRecords()
+    {
+        while (!closed || !buffer.isEmpty())
+        {
+            LogRecord record = null;
+            try
+            {
+                record = buffer.poll(100, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                // We are being closed: write what is left
+                record = buffer.poll();
+            }
+            if (record != null)
+            {
+                target.publish(record);
+                written.incrementAndGet();
+            }
+            reportDropped();
+            synchronized (drainLock)
+            {
+                if (written.get() >= enqueued.get())
+                {
+                    drainLock.notifyAll();
+                }
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Writes the number of records that have been dropped since the last
+     * report, if any.
+     */
+    private void reportDropped()
+    {
+        long n = dropped.getAndSet(0);
+        if (n > 0)
+        {
+            target.publish(new LogRecord(Level.WARNING, "Log buffer full: "
+                    + n + " log records with level below WARNING have been "
+                    + "dropped."));
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Waits until all the records placed in the buffer so far have been
+     * written, and flushes the target handler.
+     */
+    @Override
+    public void flush()
+    {
+        long targetCount = enqueued.get();
+        synchronized (drainLock)
+        {
+            while (written.get() < targetCount && writer.isAlive())
+            {
+                try
+                {
+                    drainLock.wait(100);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        target.flush();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Writes all the records in the buffer, stops the background thread, and
+     * closes the target handler.
+     */
+    @Override
+    public synchronized void close() throws SecurityException
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+        writer.interrupt();
+        try
+        {
+            writer.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        target.flush();
+        target.close();
+    }
+
+//------------------------------------------------------------------------------
+
+}
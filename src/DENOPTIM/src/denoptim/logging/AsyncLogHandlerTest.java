@@ -0,0 +1,96 @@
+package denoptim.logging;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the asynchronous log handler
+ *
+ * @author Marco Foscato
+ */
+
+public class AsyncLogHandlerTest
+{
+
+    /**
+     * Handler collecting the records it receives
+     */
+    private class CollectingHandler extends Handler
+    {
+        List<LogRecord> records = new ArrayList<LogRecord>();
+        boolean closed = false;
+
+        @Override
+        public synchronized void publish(LogRecord record)
+        {
+            records.add(record);
+        }
+
+        @Override
+        public void flush()
+        {}
+
+        @Override
+        public void close() throws SecurityException
+        {
+            closed = true;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testOrderAndDrain() throws Exception
+    {
+        CollectingHandler target = new CollectingHandler();
+        AsyncLogHandler h = new AsyncLogHandler(target, 1000);
+        for (int i=0; i<500; i++)
+        {
+            h.publish(new LogRecord(Level.INFO, "msg" + i));
+        }
+        h.flush();
+        assertEquals(500, target.records.size());
+        for (int i=0; i<500; i++)
+        {
+            assertEquals("msg" + i, target.records.get(i).getMessage());
+        }
+
+        h.publish(new LogRecord(Level.SEVERE, "last"));
+        h.close();
+        assertTrue(target.closed);
+        assertEquals("last", target.records.get(500).getMessage());
+
+        // Nothing is written after closing
+        h.publish(new LogRecord(Level.SEVERE, "ignored"));
+        assertEquals(501, target.records.size());
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -21,11 +21,22 @@ package denoptim.logging;
 import java.util.logging.Logger;
 import java.util.logging.FileHandler;
 import java.util.logging.Formatter;
+import java.util.logging.Handler;
 import java.util.logging.SimpleFormatter;
 import java.util.logging.XMLFormatter;
 import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 
+import denoptim.exception.DENOPTIMException;
+
 
 /**
  * Logger class for DENOPTIM
@@ -39,6 +50,22 @@ public class DENOPTIMLogger
     public static final Logger appLogger = Logger.getLogger("DENOPTIMLogger");
     private static DENOPTIMLogger uniqInstance = null;
     private static boolean hasBeenSet = false;
+
+    /**
+     * Counts of repetitive events that are reported collectively
+     */
+    private static final ConcurrentHashMap<String,LongAdder> repeatedEvents =
+            new ConcurrentHashMap<String,LongAdder>();
+
+    /**
+     * Period (seconds) of the report on repetitive events
+     */
+    public static final long REPORTPERIOD = 60;
+
+    /**
+     * Background thread reporting repetitive events
+     */
+    private static ScheduledExecutorService reporter = null;
     
 //------------------------------------------------------------------------------
     
@@ -59,17 +86,45 @@ public class DENOPTIMLogger
     }
     
 //------------------------------------------------------------------------------
-    
+
+    /**
+     * Configures the logger to write records of level <code>INFO</code> or
+     * higher to the given file. See {@link #setupLogger(String, Level)}.
+     * @param logFile the pathname of the log file.
+     * @throws IOException
+     */
     public void setupLogger(String logFile) throws IOException
+    {
+        setupLogger(logFile, Level.INFO);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Configures the logger to write to the given file. The format depends
+     * on the extension of the file (HTML, XML, or plain text for
+     * <code>.log</code> and <code>.txt</code>). Records are written
+     * asynchronously by a background thread (see {@link AsyncLogHandler}).
+     * Any previous configuration is closed after writing any pending record.
+     * @param logFile the pathname of the log file.
+     * @param level the minimum level of the records to write. Code that
+     * builds expensive messages should check 
+     * <code>appLogger.isLoggable(level)</code> first.
+     * @throws IOException
+     */
+    public void setupLogger(String logFile, Level level) throws IOException
     {
     	//TODO: this is a hack to allow changing setup and use the singleton
     	// logger for two different and independent experiments run is a 
     	// sequence (parallelization not possible yet.
     	
+        reportRepeatedEvents();
     	int n = appLogger.getHandlers().length;
     	for (int i=0; i<n; i++)
     	{
-    	    appLogger.removeHandler(appLogger.getHandlers()[0]);
+    	    Handler h = appLogger.getHandlers()[0];
+    	    appLogger.removeHandler(h);
+    	    h.close();
     	}
     	//this commenting is still part of the hack
     	//if (!hasBeenSet)
@@ -97,13 +152,136 @@ public class DENOPTIMLogger
             if (toFile)
             {
                 appLogger.setUseParentHandlers(false);
-                appLogger.addHandler(fileHdlr);
+                appLogger.addHandler(new AsyncLogHandler(fileHdlr,
+                        AsyncLogHandler.DEFAULTCAPACITY));
+            } else {
+                fileHdlr.close();
             }
-            appLogger.setLevel(Level.FINEST);
+            appLogger.setLevel(level);
+            startReporter();
             hasBeenSet = true;
         //}
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Interprets the value of the keywords defining the log level, i.e.,
+     * the name of a level (e.g., <code>INFO</code>, <code>FINE</code>,
+     * <code>FINEST</code>) or its integer value.
+     * @param value the string to interpret.
+     * @return the log level.
+     * @throws DENOPTIMException if the value is not a log level.
+     */
+    public static Level parseLevel(String value) throws DENOPTIMException
+    {
+        try
+        {
+            return Level.parse(value.trim().toUpperCase());
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new DENOPTIMException("Unable to understand log level '"
+                    + value + "'. Use SEVERE, WARNING, INFO, CONFIG, FINE, "
+                    + "FINER, FINEST, ALL, or OFF.", e);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Starts the background thread that periodically reports repetitive
+     * events, and makes sure pending records are written when the JVM
+     * shuts down.
+     */
+    private static synchronized void startReporter()
+    {
+        if (reporter != null)
+        {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r)
+                    {
+                        Thread t = new Thread(r, "DENOPTIM-log-reporter");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        reporter.scheduleAtFixedRate(new Runnable() {
+                    @Override
+                    public void run()
+                    {
+                        reportRepeatedEvents();
+                    }
+                }, REPORTPERIOD, REPORTPERIOD, TimeUnit.SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run()
+            {
+                reportRepeatedEvents();
+                for (Handler h : appLogger.getHandlers())
+                {
+                    h.close();
+                }
+            }
+        });
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Counts an event that is expected to occur many times, e.g., the 
+     * rejection of a candidate for a specific reason. Instead of writing one
+     * record for each event, the number of occurrences of each event is
+     * written periodically (see {@link #REPORTPERIOD}).
+     * @param event a short label identifying the type of event.
+     */
+    public static void countRepeatedEvent(String event)
+    {
+        if (!appLogger.isLoggable(Level.INFO))
+        {
+            return;
+        }
+        repeatedEvents.computeIfAbsent(event, k -> new LongAdder()).increment();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Writes the number of occurrences of each repetitive event since the 
+     * previous report, if any.
+     */
+    public static void reportRepeatedEvents()
+    {
+        Map<String,Long> counts = new TreeMap<String,Long>();
+        for (String event : repeatedEvents.keySet())
+        {
+            LongAdder n = repeatedEvents.get(event);
+            if (n != null)
+            {
+                long c = n.sumThenReset();
+                if (c > 0)
+                {
+                    counts.put(event, c);
+                }
+            }
+        }
+        if (counts.isEmpty())
+        {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Occurrences of repetitive events since last report:");
+        for (Map.Entry<String,Long> e : counts.entrySet())
+        {
+            sb.append(" ").append(e.getKey()).append("=").append(e.getValue());
+        }
+        appLogger.log(Level.INFO, sb.toString());
+    }
+
 //------------------------------------------------------------------------------
     // avoid cloning
 
@@ -0,0 +1,238 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies with log-linear buckets, in the spirit of
+ * HdrHistogram. Values (typically nanoseconds) are placed in buckets that
+ * double in width every {@value #SUBBUCKETS} buckets, so that any recorded
+ * value is represented with a relative error below
+ * 1/{@value #SUBBUCKETS}, whatever its magnitude.
+ * Recording a value costs a couple of atomic increments, so it can be done
+ * from any number of threads without synchronization.
+ *
+ * @author Marco Foscato
+ */
+
+public class LatencyHistogram
+{
+    /**
+     * Number of bits used to resolve values within a power of two
+     */
+    private static final int SUBBUCKETBITS = 4;
+
+    /**
+     * Number of buckets per power of two
+     */
+    public static final int SUBBUCKETS = 1 << SUBBUCKETBITS;
+
+    /**
+     * Total number of buckets: enough to cover all positive long values
+     */
+    private static final int NUMBUCKETS = SUBBUCKETS
+            * (64 - SUBBUCKETBITS);
+
+    /**
+     * Counts per bucket
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(NUMBUCKETS);
+
+    /**
+     * Number of recorded values
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Sum of the recorded values
+     */
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Largest recorded value
+     */
+    private final AtomicLong max = new AtomicLong(0);
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     * @param value the value to record.
+     */
+    public void record(long value)
+    {
+        if (value < 0)
+        {
+            value = 0;
+        }
+        buckets.incrementAndGet(getBucketIndex(value));
+        count.increment();
+        sum.add(value);
+        long m = max.get();
+        while (value > m && !max.compareAndSet(m, value))
+        {
+            m = max.get();
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param value a non-negative value.
+     * @return the index of the bucket containing the given value.
+     */
+    static int getBucketIndex(long value)
+    {
+        if (value < SUBBUCKETS)
+        {
+            return (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - SUBBUCKETBITS;
+        int sub = (int) (value >>> shift) - SUBBUCKETS;
+        return SUBBUCKETS * (shift + 1) + sub;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param idx the index of a bucket.
+     * @return the largest value that falls in the given bucket.
+     */
+    static long getBucketUpperBound(int idx)
+    {
+        if (idx < SUBBUCKETS)
+        {
+            return idx;
+        }
+        int shift = idx / SUBBUCKETS - 1;
+        long sub = idx % SUBBUCKETS;
+        long lower = (SUBBUCKETS + sub) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of recorded values.
+     */
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the largest recorded value.
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the average of the recorded values, or zero if there is none.
+     */
+    public double getMean()
+    {
+        long n = count.sum();
+        if (n == 0)
+        {
+            return 0.0;
+        }
+        return ((double) sum.sum()) / n;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the value below which a given percentage of the recorded values
+     * fall. The result is the upper bound of the bucket that contains such
+     * value, so it overestimates the exact percentile by less than
+     * 1/{@value #SUBBUCKETS}, but never reports more than the largest recorded
+     * value.
+     * @param percentile the percentage, in the range 0-100.
+     * @return the value at the given percentile, or zero if no value has been
+     * recorded.
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long[] counts = new long[NUMBUCKETS];
+        long tot = 0;
+        for (int i=0; i<NUMBUCKETS; i++)
+        {
+            counts[i] = buckets.get(i);
+            tot = tot + counts[i];
+        }
+        if (tot == 0)
+        {
+            return 0;
+        }
+        long target = (long) Math.ceil(percentile / 100.0 * tot);
+        if (target < 1)
+        {
+            target = 1;
+        }
+        long cumulative = 0;
+        for (int i=0; i<NUMBUCKETS; i++)
+        {
+            cumulative = cumulative + counts[i];
+            if (cumulative >= target)
+            {
+                return Math.min(getBucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Moves all the recorded values into a new histogram, leaving this one
+     * empty and ready to record more values. Values recorded concurrently
+     * with this operation end up either in the returned histogram or in this
+     * one, but are never lost.
+     * @return a histogram with the values recorded so far.
+     */
+    public LatencyHistogram drain()
+    {
+        LatencyHistogram snapshot = new LatencyHistogram();
+        for (int i=0; i<NUMBUCKETS; i++)
+        {
+            long n = buckets.getAndSet(i, 0);
+            if (n > 0)
+            {
+                snapshot.buckets.set(i, n);
+            }
+        }
+        snapshot.count.add(count.sumThenReset());
+        snapshot.sum.add(sum.sumThenReset());
+        snapshot.max.set(max.getAndSet(0));
+        return snapshot;
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,87 @@
+package denoptim.logging;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the histogram of latencies
+ *
+ * @author Marco Foscato
+ */
+
+public class LatencyHistogramTest
+{
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testBuckets() throws Exception
+    {
+        long[] values = new long[] {0, 1, 15, 16, 17, 31, 32, 33, 1000,
+                123456789L, Long.MAX_VALUE};
+        for (long v : values)
+        {
+            int idx = LatencyHistogram.getBucketIndex(v);
+            long upper = LatencyHistogram.getBucketUpperBound(idx);
+            assertTrue(upper >= v, "Upper bound of bucket for " + v);
+            assertTrue(upper - v <= v / LatencyHistogram.SUBBUCKETS,
+                    "Resolution of bucket for " + v);
+            if (idx > 0)
+            {
+                assertTrue(LatencyHistogram.getBucketUpperBound(idx-1) < v,
+                        "Upper bound of previous bucket for " + v);
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testPercentiles() throws Exception
+    {
+        LatencyHistogram h = new LatencyHistogram();
+        for (long v=1; v<=1000; v++)
+        {
+            h.record(v * 1000);
+        }
+        assertEquals(1000, h.getCount());
+        assertEquals(1000000, h.getMax());
+        assertEquals(500500.0, h.getMean(), 0.001);
+        assertEquals(500000, h.getValueAtPercentile(50),
+                500000 / LatencyHistogram.SUBBUCKETS);
+        assertEquals(950000, h.getValueAtPercentile(95),
+                950000 / LatencyHistogram.SUBBUCKETS);
+        assertEquals(990000, h.getValueAtPercentile(99),
+                990000 / LatencyHistogram.SUBBUCKETS);
+        assertEquals(1000000, h.getValueAtPercentile(100));
+
+        LatencyHistogram snapshot = h.drain();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getValueAtPercentile(50));
+        assertEquals(1000000, snapshot.getValueAtPercentile(100));
+    }
+
+//------------------------------------------------------------------------------
+
+}
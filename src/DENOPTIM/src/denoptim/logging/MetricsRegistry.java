@@ -0,0 +1,411 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.logging;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import denoptim.exception.DENOPTIMException;
+import denoptim.io.DenoptimIO;
+
+/**
+ * Registry of performance metrics collected while running DENOPTIM
+ * experiments: the latency of each stage of the
+ * generation and evaluation of candidates, the number of completed
+ * candidates, the number of rejected candidates by reason of rejection, and
+ * the number of hits and misses of caches.
+ * All the metrics are recorded with lock-free data structures, so
+ * any thread can record them without synchronization.
+ * The collected metrics are
+ * reported and reset by {@link #writeReport(String, String)}, which is meant
+ * to be called at the end of each generation or level.
+ *
+ * @author Marco Foscato
+ */
+
+public class MetricsRegistry
+{
+    /**
+     * The stages of the generation and evaluation of candidates for which
+     * we collect latencies.
+     */
+    public enum Stage
+    {
+        GRAPH_BUILDING("graph_building"),
+        INCHI("inchi"),
+        BUILD_3D("3d_building"),
+        RING_CLOSURE("ring_closure_search"),
+        EXTERNAL_FITNESS("external_fitness"),
+        INTERNAL_FITNESS("internal_fitness"),
+        IO("io");
+
+        private final String name;
+
+        Stage(String name)
+        {
+            this.name = name;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+    }
+
+    /**
+     * Flag enabling the collection of metrics
+     */
+    private static volatile boolean enabled = true;
+
+    /**
+     * Latencies (nanoseconds) of each stage
+     */
+    private static final LatencyHistogram[] latencies =
+            new LatencyHistogram[Stage.values().length];
+    static {
+        for (int i=0; i<latencies.length; i++)
+        {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Number of candidates that completed their evaluation
+     */
+    private static final LongAdder candidates = new LongAdder();
+
+    /**
+     * Number of rejected candidates by reason of rejection
+     */
+    private static final ConcurrentHashMap<String,LongAdder> rejections =
+            new ConcurrentHashMap<String,LongAdder>();
+
+    /**
+     * Number of hits (index 0) and misses (index 1) of each named cache
+     */
+    private static final ConcurrentHashMap<String,LongAdder[]> caches =
+            new ConcurrentHashMap<String,LongAdder[]>();
+
+    /**
+     * Time stamp of the beginning of the current reporting interval
+     */
+    private static volatile long intervalStart = System.nanoTime();
+
+    /**
+     * Column headers of the CSV report
+     */
+    private static final String CSVHEADER = "label,elapsed_s,kind,name,"
+            + "count,rate_per_s,mean_ms,p50_ms,p95_ms,p99_ms,max_ms";
+
+    private static final String NL = System.getProperty("line.separator");
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Enables or disables the collection of metrics.
+     * @param value <code>true</code> to collect metrics.
+     */
+    public static void setEnabled(boolean value)
+    {
+        enabled = value;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return <code>true</code> if metrics are being collected.
+     */
+    public static boolean isEnabled()
+    {
+        return enabled;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Provides the time stamp to be given to
+     * {@link #record(Stage, long)} at the end of a stage.
+     * @return the current time stamp in nanoseconds.
+     */
+    public static long start()
+    {
+        return System.nanoTime();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Records the latency of a stage.
+     * @param stage the stage that has been completed.
+     * @param startNanos the time stamp taken with {@link #start()} at the
+     * beginning of the stage.
+     */
+    public static void record(Stage stage, long startNanos)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+        latencies[stage.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Counts a candidate that completed its evaluation.
+     */
+    public static void countCandidate()
+    {
+        if (!enabled)
+        {
+            return;
+        }
+        candidates.increment();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Counts a candidate rejected for the given reason. Rejections are also
+     * reported collectively in the log
+     * (see {@link DENOPTIMLogger#countRepeatedEvent(String)}).
+     * @param reason a short label of the category of rejection.
+     */
+    public static void countRejection(String reason)
+    {
+        DENOPTIMLogger.countRepeatedEvent("rejected:" + reason);
+        if (!enabled)
+        {
+            return;
+        }
+        rejections.computeIfAbsent(reason, k -> new LongAdder()).increment();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Counts a lookup in a cache.
+     * @param cache the name of the cache.
+     * @param hit <code>true</code> if the lookup found what was looked for.
+     */
+    public static void countCacheLookup(String cache, boolean hit)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+        caches.computeIfAbsent(cache, k -> new LongAdder[] {
+                new LongAdder(), new LongAdder()})[hit ? 0 : 1].increment();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Clears all metrics and starts a new reporting interval.
+     */
+    public static void reset()
+    {
+        for (LatencyHistogram h : latencies)
+        {
+            h.drain();
+        }
+        candidates.reset();
+        rejections.clear();
+        caches.clear();
+        intervalStart = System.nanoTime();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Writes the metrics collected since the previous report, and starts a
+     * new reporting interval. Records are appended to two files: a CSV file
+     * with one line per metric, and a file with one JSON object per
+     * report. In both files the records of a report are identified by the
+     * given label, e.g., the generation or level they refer to.
+     * @param label the identifier of this report.
+     * @param pathRoot the pathname of the reports without extension. The
+     * extensions <code>.csv</code> and <code>.json</code> are added to it.
+     * @throws DENOPTIMException if the reports could not be written.
+     */
+    public static void writeReport(String label, String pathRoot)
+            throws DENOPTIMException
+    {
+        long now = System.nanoTime();
+        double elapsed = (now - intervalStart) / 1.0e9;
+        intervalStart = now;
+
+        long numCand = candidates.sumThenReset();
+        Map<String,Long> rejs = new TreeMap<String,Long>();
+        for (String reason : rejections.keySet())
+        {
+            LongAdder n = rejections.get(reason);
+            if (n != null)
+            {
+                rejs.put(reason, n.sumThenReset());
+            }
+        }
+        Map<String,long[]> lookups = new TreeMap<String,long[]>();
+        for (String cache : caches.keySet())
+        {
+            LongAdder[] n = caches.get(cache);
+            if (n != null)
+            {
+                lookups.put(cache, new long[] {n[0].sumThenReset(),
+                        n[1].sumThenReset()});
+            }
+        }
+        LatencyHistogram[] snapshots = new LatencyHistogram[latencies.length];
+        for (int i=0; i<latencies.length; i++)
+        {
+            snapshots[i] = latencies[i].drain();
+        }
+
+        String csvFile = pathRoot + ".csv";
+        StringBuilder csv = new StringBuilder();
+        if (!new File(csvFile).exists())
+        {
+            csv.append(CSVHEADER).append(NL);
+        }
+        String prefix = label + "," + fmt(elapsed) + ",";
+        csv.append(prefix).append("throughput,candidates,").append(numCand)
+            .append(",").append(fmt(rate(numCand, elapsed))).append(",,,,,");
+        for (Map.Entry<String,Long> e : rejs.entrySet())
+        {
+            csv.append(NL).append(prefix).append("rejection,")
+                .append(e.getKey()).append(",").append(e.getValue())
+                .append(",").append(fmt(rate(e.getValue(), elapsed)))
+                .append(",,,,,");
+        }
+        for (Map.Entry<String,long[]> e : lookups.entrySet())
+        {
+            long[] n = e.getValue();
+            csv.append(NL).append(prefix).append("cache,")
+                .append(e.getKey()).append("_hits,").append(n[0])
+                .append(",").append(fmt(rate(n[0], elapsed)))
+                .append(",,,,,");
+            csv.append(NL).append(prefix).append("cache,")
+                .append(e.getKey()).append("_misses,").append(n[1])
+                .append(",").append(fmt(rate(n[1], elapsed)))
+                .append(",,,,,");
+        }
+        for (Stage s : Stage.values())
+        {
+            LatencyHistogram h = snapshots[s.ordinal()];
+            if (h.getCount() == 0)
+            {
+                continue;
+            }
+            csv.append(NL).append(prefix).append("latency,")
+                .append(s.getName()).append(",").append(h.getCount())
+                .append(",").append(fmt(rate(h.getCount(), elapsed)))
+                .append(",").append(fmt(h.getMean() / 1.0e6))
+                .append(",").append(ms(h.getValueAtPercentile(50)))
+                .append(",").append(ms(h.getValueAtPercentile(95)))
+                .append(",").append(ms(h.getValueAtPercentile(99)))
+                .append(",").append(ms(h.getMax()));
+        }
+        DenoptimIO.writeData(csvFile, csv.toString(), true);
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"label\":\"").append(label).append("\"");
+        json.append(",\"elapsed_s\":").append(fmt(elapsed));
+        json.append(",\"candidates\":").append(numCand);
+        json.append(",\"candidates_per_s\":")
+            .append(fmt(rate(numCand, elapsed)));
+        json.append(",\"rejections\":{");
+        String sep = "";
+        for (Map.Entry<String,Long> e : rejs.entrySet())
+        {
+            json.append(sep).append("\"").append(e.getKey()).append("\":")
+                .append(e.getValue());
+            sep = ",";
+        }
+        json.append("},\"caches\":{");
+        sep = "";
+        for (Map.Entry<String,long[]> e : lookups.entrySet())
+        {
+            long[] n = e.getValue();
+            long tot = n[0] + n[1];
+            json.append(sep).append("\"").append(e.getKey()).append("\":{")
+                .append("\"hits\":").append(n[0])
+                .append(",\"misses\":").append(n[1])
+                .append(",\"hit_rate\":")
+                .append(fmt(tot == 0 ? 0.0 : ((double) n[0]) / tot))
+                .append("}");
+            sep = ",";
+        }
+        json.append("},\"stages\":{");
+        sep = "";
+        for (Stage s : Stage.values())
+        {
+            LatencyHistogram h = snapshots[s.ordinal()];
+            if (h.getCount() == 0)
+            {
+                continue;
+            }
+            json.append(sep).append("\"").append(s.getName()).append("\":{")
+                .append("\"count\":").append(h.getCount())
+                .append(",\"mean_ms\":").append(fmt(h.getMean() / 1.0e6))
+                .append(",\"p50_ms\":")
+                .append(ms(h.getValueAtPercentile(50)))
+                .append(",\"p95_ms\":")
+                .append(ms(h.getValueAtPercentile(95)))
+                .append(",\"p99_ms\":")
+                .append(ms(h.getValueAtPercentile(99)))
+                .append(",\"max_ms\":").append(ms(h.getMax()))
+                .append("}");
+            sep = ",";
+        }
+        json.append("}}");
+        DenoptimIO.writeData(pathRoot + ".json", json.toString(), true);
+    }
+
+//------------------------------------------------------------------------------
+
+    private static double rate(long n, double seconds)
+    {
+        if (seconds <= 0.0)
+        {
+            return 0.0;
+        }
+        return n / seconds;
+    }
+
+//------------------------------------------------------------------------------
+
+    private static String ms(long nanos)
+    {
+        return fmt(nanos / 1.0e6);
+    }
+
+//------------------------------------------------------------------------------
+
+    private static String fmt(double value)
+    {
+        return String.format(Locale.ENGLISH, "%.3f", value);
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.io.Serializable;
@@ -56,6 +57,18 @@ public class DENOPTIMGraph implements Serializable, Cloneable
     
     String localMsg;
 
+    /*
+     * Edges grouped by AP class on source vertex and AP class on target
+     * vertex, or null. Computed on demand and not serialized.
+     */
+    private transient Map<String,Map<String,List<DENOPTIMEdge>>> edgesPerAPCls;
+
+    /*
+     * The list of edges, and its size, from which edgesPerAPCls was made
+     */
+    private transient ArrayList<DENOPTIMEdge> edgesOfAPClsIndex;
+    private transient int numEdgesOfAPClsIndex;
+
 
 //------------------------------------------------------------------------------
 
@@ -265,6 +278,7 @@ public class DENOPTIMGraph implements Serializable, Cloneable
 
     public void setEdgeList(ArrayList<DENOPTIMEdge> m_edges)
     {
+        resetEdgesPerAPClasses();
         gEdges = m_edges;
     }
 
@@ -459,6 +473,7 @@ public class DENOPTIMGraph implements Serializable, Cloneable
 
     public void addEdge(DENOPTIMEdge m_edge)
     {
+        resetEdgesPerAPClasses();
         gEdges.add(m_edge);
     }
 
@@ -664,6 +679,7 @@ public class DENOPTIMGraph implements Serializable, Cloneable
 
     public void removeEdge(DENOPTIMEdge m_edge)
     {
+        resetEdgesPerAPClasses();
         if (gEdges.contains(m_edge))
         {
             gEdges.remove(m_edge);
@@ -680,6 +696,62 @@ public class DENOPTIMGraph implements Serializable, Cloneable
         }
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the edges of this graph grouped by the AP class on the source
+     * vertex (first key) and the AP class on the target vertex (second key).
+     * The grouping is computed once and kept until the edges are changed by
+     * means of this graph's methods. Code that changes the edges or their
+     * AP classes by other means must call {@link #resetEdgesPerAPClasses()}.
+     * @return the edges per pair of AP classes. Do not modify.
+     */
+
+    public synchronized Map<String,Map<String,List<DENOPTIMEdge>>>
+                                                        getEdgesPerAPClasses()
+    {
+        if (edgesPerAPCls == null || edgesOfAPClsIndex != gEdges
+                || numEdgesOfAPClsIndex != gEdges.size())
+        {
+            Map<String,Map<String,List<DENOPTIMEdge>>> map =
+                        new HashMap<String,Map<String,List<DENOPTIMEdge>>>();
+            for (DENOPTIMEdge e : gEdges)
+            {
+                Map<String,List<DENOPTIMEdge>> perTrg = map.get(
+                                                       e.getSourceReaction());
+                if (perTrg == null)
+                {
+                    perTrg = new HashMap<String,List<DENOPTIMEdge>>();
+                    map.put(e.getSourceReaction(), perTrg);
+                }
+                List<DENOPTIMEdge> lst = perTrg.get(e.getTargetReaction());
+                if (lst == null)
+                {
+                    lst = new ArrayList<DENOPTIMEdge>();
+                    perTrg.put(e.getTargetReaction(), lst);
+                }
+                lst.add(e);
+            }
+            edgesPerAPCls = map;
+            edgesOfAPClsIndex = gEdges;
+            numEdgesOfAPClsIndex = gEdges.size();
+        }
+        return edgesPerAPCls;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Forces recalculation of the grouping returned by
+     * {@link #getEdgesPerAPClasses()}.
+     */
+
+    public synchronized void resetEdgesPerAPClasses()
+    {
+        edgesPerAPCls = null;
+        edgesOfAPClsIndex = null;
+    }
+
 //------------------------------------------------------------------------------
 
     public DENOPTIMEdge getEdgeAtPosition(int m_pos)
@@ -1171,6 +1243,7 @@ public class DENOPTIMGraph implements Serializable, Cloneable
         {
             gEdges.clear();
         }
+        resetEdgesPerAPClasses();
         if (gRings != null)
         {
             gRings.clear();
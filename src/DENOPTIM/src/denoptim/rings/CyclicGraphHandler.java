@@ -25,6 +25,8 @@ import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Collections;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 
 import org.apache.commons.math3.random.MersenneTwister;
 import org.openscience.cdk.Atom;
@@ -34,7 +36,6 @@ import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.graph.PathTools;
-import org.openscience.cdk.graph.matrix.TopologicalMatrix;
 
 import javax.vecmath.Point3d;
 import javax.vecmath.Vector3d;
@@ -58,7 +59,6 @@ import denoptim.utils.GraphConversionTool;
 import denoptim.utils.ManySMARTSQuery;
 import denoptim.utils.ObjectPair;
 import denoptim.utils.RandomUtils;
-import denoptim.utils.RingClosingUtils;
 
 import java.util.logging.Level;
 
@@ -91,10 +91,10 @@ public class CyclicGraphHandler
     private HashMap<String, ArrayList<String>> rcCPMap;
 
     /**
-     * variables needed by recursive methods
+     * Minimum number of ring closing vertices with compatible partners for
+     * exploring the combinations of rings in parallel
      */
-    private int recCount = 0;
-    private int maxLng = 0;
+    public static final int MINRCVSFORPARALLEL = 12;
 
     /**
      * Verbosity level
@@ -242,8 +242,30 @@ public class CyclicGraphHandler
 //-----------------------------------------------------------------------------
 
     /**
-     * Identifies all possible ring closing paths and returns them as list of 
-     * DENOPTIMRings ready to be appended to a DENOPTIMGraph.
+     * Receives combinations of rings one at a time.
+     */
+
+    public interface RingSetConsumer
+    {
+        /**
+         * Processes a combination of rings.
+         * @param ringSet the combination of rings
+         * @return <code>false</code> to stop the search for further
+         * combinations
+         * @throws DENOPTIMException to stop the search with an error
+         */
+        public boolean accept(Set<DENOPTIMRing> ringSet)
+                                                      throws DENOPTIMException;
+    }
+
+//-----------------------------------------------------------------------------
+
+    /**
+     * Identifies all possible ring closing paths and returns them as list of
+     * DENOPTIMRings ready to be appended to a DENOPTIMGraph. The alternatives
+     * for the first ring closing vertex are explored in parallel if there are
+     * at least {@value #MINRCVSFORPARALLEL} ring closing vertices with
+     * compatible partners.
      * @param mol the molecule
      * @param molGraph the molecular graph
      * @return the candidate closable paths in the given graph
@@ -254,192 +276,25 @@ public class CyclicGraphHandler
                                                         DENOPTIMGraph molGraph)
                                                        throws DENOPTIMException
     {
-        // All the candidate paths 
-        Map<ObjectPair,PathSubGraph> allGoodPaths = 
-                                        new HashMap<ObjectPair,PathSubGraph>();
-
-        ArrayList<DENOPTIMVertex> rcaVertLst = molGraph.getFreeRCVertices();
-
-        Map<DENOPTIMVertex,ArrayList<Integer>> vIdToAtmId = 
-                     DENOPTIMMoleculeUtils.getVertexToAtmIdMap(rcaVertLst,mol);
+        RingCombinations combs = new RingCombinations(mol, molGraph);
+        boolean parallel = combs.getVertexCount() >= MINRCVSFORPARALLEL;
 
-        // Get manager of ring size problems
-        RingSizeManager rsm = new RingSizeManager();
-        rsm.initialize(mol, molGraph);
-
-        // identify compatible pairs of RCA vertices
-        Map<DENOPTIMVertex,ArrayList<DENOPTIMVertex>> compatMap =
-                       new HashMap<DENOPTIMVertex,ArrayList<DENOPTIMVertex>>();
-        for (int i=0; i<rcaVertLst.size(); i++)
+        // All possible ring closing paths will be stored here
+        ArrayList<Set<DENOPTIMRing>> allCombsOfRings =
+                                     new ArrayList<Set<DENOPTIMRing>>();
+        for (int[] pairs :
+                      combs.getEnumerator().getAllMaximumMatchings(parallel))
         {
-            DENOPTIMVertex vI = rcaVertLst.get(i);
-            for (int j=i+1; j<rcaVertLst.size(); j++)
+            Set<DENOPTIMRing> ringsComb = combs.makeRings(pairs);
+            if (ringsComb != null)
             {
-                DENOPTIMVertex vJ = rcaVertLst.get(j);
-                if (!rsm.getCompatibilityOfPair(vI,vJ))
-                {
-                    continue;
-                }
-
-                // make the new candidate RCA pair
-                PathSubGraph subGraph = new PathSubGraph(vI,vJ,molGraph);
-                boolean keepRcaPair = evaluatePathClosability(subGraph, mol);
-
-                if (!keepRcaPair)
-                {
-                    if (verbosity > 1)
-                    {
-                        System.out.println("Rejecting RCA pair");
-                    }
-                    continue;
-                }
-
-                // finally store this pair as a compatible pair
-                if (verbosity > 1)
-                {
-                    System.out.println("All compatibility criteria satisfied");
-                    System.out.println("Storing verified RCA pair");
-                }
-
-                // Store the information that the two vertex are compatible
-                if (compatMap.containsKey(vI))
-                {
-                    compatMap.get(vI).add(vJ);
-                }
-                else
-                {
-                    ArrayList<DENOPTIMVertex> lst =
-                                            new ArrayList<DENOPTIMVertex>();
-                    lst.add(vJ);
-                    compatMap.put(vI,lst);
-                }
-                if (compatMap.containsKey(vJ))
-                {
-                    compatMap.get(vJ).add(vI);
-                }
-                else
-                {
-                    ArrayList<DENOPTIMVertex> lst =
-                                            new ArrayList<DENOPTIMVertex>();
-                    lst.add(vI);
-                    compatMap.put(vJ,lst);
-                }
-
-                // store the RCA pair for further use
-                ObjectPair compatPair;
-                if (vI.getVertexId() > vJ.getVertexId())
-                {
-                    compatPair = new ObjectPair(vI,vJ);
-                }
-                else
-                {
-                    compatPair = new ObjectPair(vJ,vI);
-                }
-                allGoodPaths.put(compatPair,subGraph);
+                allCombsOfRings.add(ringsComb);
             }
         }
 
-        if (verbosity > 1)
-        {
-            System.out.println("Compatibility Map for RCAs: ");
-            System.out.println(compatMap);
-        }
-
-        // Identify paths that share bonds (interdependent paths)
-        Map<IBond,Set<PathSubGraph>> interdepPaths =
-                                new HashMap<IBond,Set<PathSubGraph>>();
-        if (RingClosureParameters.checkInterdependentChains())
-        {
-            for (PathSubGraph rpA : allGoodPaths.values())
-            {
-                for (PathSubGraph rpB : allGoodPaths.values())
-                {
-                    if (rpA == rpB)
-                    {
-                        continue;
-                    }
-    
-                    DENOPTIMVertex hA = rpA.getHeadVertex();
-                    DENOPTIMVertex tA = rpA.getTailVertex();
-                    DENOPTIMVertex hB = rpB.getHeadVertex();
-                    DENOPTIMVertex tB = rpB.getTailVertex();
-    
-                    if ((hA == hB || hA == tB) || (tA == hB || tA == tB))
-                    {
-                        continue;
-                    }
-    
-                    for (IBond bnd : rpA.getBondPath())
-                    {
-                        // ignore non-rotatable bonds
-                        // NOTE: here we assume that rotatable bonds have been
-                        // identified before.
-                        Object rotFlg = bnd.getProperty(
-                                          DENOPTIMConstants.BONDPROPROTATABLE);
-                        if (rotFlg==null || !Boolean.valueOf(rotFlg.toString()))
-                        {
-                            continue;
-                        }
-    
-                        if (rpB.getBondPath().contains(bnd))
-                        {
-                            if (interdepPaths.containsKey(bnd))
-                            {
-                                interdepPaths.get(bnd).add(rpA);
-                                interdepPaths.get(bnd).add(rpB);
-                            }
-                            else
-                            {
-                                Set<PathSubGraph> paths = 
-                                                   new HashSet<PathSubGraph>();
-                                paths.add(rpA);
-                                paths.add(rpB);
-                                interdepPaths.put(bnd,paths);
-                            }
-                        }
-                    }
-                }
-            }
-            if (verbosity > 1)
-            {
-                for (IBond bnd : interdepPaths.keySet())
-                {
-                    System.out.println("Interdependent paths for bond " + bnd);
-                    Set<PathSubGraph> sop = interdepPaths.get(bnd);
-                    for (PathSubGraph p : sop)
-                    {
-                        System.out.println(" vA: "+p.getHeadVertex()
-                                          +" vB: "+p.getTailVertex());
-                    }
-                }
-            }
-        }
-
-        // Generate all combinations of compatible, closable paths
-        ArrayList<ObjectPair> lstPairs = new ArrayList<ObjectPair>();
-        ArrayList<Integer> usedId = new ArrayList<Integer>();
-        ArrayList<DENOPTIMVertex> sortedKeys = new ArrayList<DENOPTIMVertex>();
-        for (DENOPTIMVertex keyVert : compatMap.keySet())
-        {
-            sortedKeys.add(keyVert);
-        }
-
-        // All possible ring closing paths will be stored here
-        ArrayList<Set<DENOPTIMRing>> allCombsOfRings =
-                                     new ArrayList<Set<DENOPTIMRing>>();
-        
-        boolean res = combineCompatPathSubGraphs(0,
-                                        sortedKeys,
-                                        compatMap,
-                                        lstPairs,
-                                        usedId,
-                                        allGoodPaths,
-                                        interdepPaths,
-                                        allCombsOfRings);
-
         if (verbosity > 0)
         {
-            System.out.println("All possible combination of rings: " + 
+            System.out.println("All possible combination of rings: " +
                                                              allCombsOfRings);
         }
 
@@ -449,286 +304,262 @@ public class CyclicGraphHandler
 //-----------------------------------------------------------------------------
 
     /**
-     * Recursive method to identify all the combination of rings.
+     * Identifies the same combinations of ring closing paths as
+     * {@link #getPossibleCombinationOfRings(IAtomContainer, DENOPTIMGraph)},
+     * but gives each combination to the consumer as soon as it is found,
+     * so that the combinations are never all kept in memory.
+     * @param mol the molecule
+     * @param molGraph the molecular graph
+     * @param consumer the receiver of the combinations of rings
+     * @return <code>false</code> if the consumer stopped the search
      */
 
-    private boolean combineCompatPathSubGraphs(int ii0,
-                       ArrayList<DENOPTIMVertex> sortedKeys,
-                       Map<DENOPTIMVertex,ArrayList<DENOPTIMVertex>> compatMap,
-                       ArrayList<ObjectPair> lstPairs,
-                       ArrayList<Integer> usedId,
-                       Map<ObjectPair,PathSubGraph> allGoodPaths,
-                       Map<IBond,Set<PathSubGraph>> interdepPaths,
-                       ArrayList<Set<DENOPTIMRing>> allCombsOfRings)
+    public boolean forEachCombinationOfRings(IAtomContainer mol,
+                                                 DENOPTIMGraph molGraph,
+                                                 RingSetConsumer consumer)
                                                       throws DENOPTIMException
     {
-        //TODO del
-        int objId = this.hashCode();
-        String recLab = new String(new char[recCount]).replace("\0", "-");
-        boolean debug = false;
-        if (debug)
-        {
-            System.out.println(objId+"-"+recLab+"> Begin of new recursion: "+recCount);
-            System.out.println(objId+"-"+recLab+"> sortedKeys= "+sortedKeys);
-            System.out.println(objId+"-"+recLab+"> usedId= "+usedId);
-            System.out.println(objId+"-"+recLab+"> ii0= "+ii0);
-            System.out.println(objId+"-"+recLab+"> lstPairs= "+lstPairs);
-            System.out.println(objId+"-"+recLab+"> compatMap= "+compatMap);
-            System.out.println(objId+"-"+recLab+"> allCombsOfRings");
-            for (Set<DENOPTIMRing> ringSet : allCombsOfRings)
+        RingCombinations combs = new RingCombinations(mol, molGraph);
+        return combs.getEnumerator().forEachMaximumMatching(pairs -> {
+            Set<DENOPTIMRing> ringsComb = combs.makeRings(pairs);
+            if (ringsComb == null)
             {
-                System.out.println("        "+ringSet);
+                return true;
             }
-        }
-
-        boolean inFound = false;
-        boolean addedNew = false;
-        for (int ii=ii0; ii<sortedKeys.size(); ii++)
-        {
-            DENOPTIMVertex vi = sortedKeys.get(ii);
-            int vIdI = vi.getVertexId();
-
-            //TODO del
-            if (debug)
-                System.out.println(objId+"-"+recLab+"> vIdI= "+vIdI);
-
-            if (usedId.contains(vIdI))
+            if (verbosity > 0)
             {
-                continue;
+                System.out.println("Combination of rings: " + ringsComb);
             }
+            return consumer.accept(ringsComb);
+        });
+    }
 
-            for (DENOPTIMVertex vj : compatMap.get(vi))
-            {
-                int vIdJ = vj.getVertexId();
-
-                //TODO
-                if (debug)
-                    System.out.println(objId+"-"+recLab+"> vIdJ= "+vIdJ);
-
-                if (usedId.contains(vIdJ) || usedId.contains(vIdI))
-                {
-                    continue;
-                }
-
-                ObjectPair op;
-                if (vIdI > vIdJ)
-                {
-                    op = new ObjectPair(vi,vj);
-                }
-                else
-                {
-                    op = new ObjectPair(vj,vi);
-                }
-                lstPairs.add(op);
-                usedId.add(vIdI);
-                usedId.add(vIdJ);
+//-----------------------------------------------------------------------------
 
-                if (lstPairs.size() > maxLng)
-                {
-                    maxLng = lstPairs.size();
-                }
-                recCount++;
-                inFound = combineCompatPathSubGraphs(ii+1,
-                                        sortedKeys,
-                                        compatMap,
-                                        lstPairs,
-                                        usedId,
-                                        allGoodPaths,
-                                        interdepPaths,
-                                        allCombsOfRings);
-                recCount--;
-
-                //TODO del
-                if (debug)
-                    System.out.println(objId+"-"+recLab+"> lstPairs.size() & maxLng= "+lstPairs.size() +" " +maxLng); 
-
-                if (!inFound && lstPairs.size() == maxLng)
-                {
+    /**
+     * @return the key of the pair of vertices in the map of paths, which
+     * has the vertex with the higher ID first
+     */
 
-                    //TODO del
-                    if (debug)
-                        System.out.println(objId+"-"+recLab+"> in A");
+    private static ObjectPair makePairKey(DENOPTIMVertex vI, DENOPTIMVertex vJ)
+    {
+        if (vI.getVertexId() > vJ.getVertexId())
+        {
+            return new ObjectPair(vI,vJ);
+        }
+        return new ObjectPair(vJ,vI);
+    }
 
-                    boolean closable = true;
-                    if (RingClosureParameters.checkInterdependentChains() &&
-                               hasInterdependentPaths(lstPairs, interdepPaths))
-                    {
-                        closable = checkClosabilityOfInterdependentPaths(
-                                                        lstPairs,
-                                                        interdepPaths,
-                                                        allGoodPaths);
-                    }
-                    if (closable)
-                    {
+//-----------------------------------------------------------------------------
 
-                        //TODO del
-                        if (debug)
-                            System.out.println(objId+"-"+recLab+"> in B");
+    /**
+     * The closable paths among the ring closing vertices (RCVs) of a graph,
+     * and the enumerator of the largest sets of paths that do not share RCVs.
+     * Only the RCVs with at least one compatible partner take part in the
+     * enumeration.
+     */
 
-                        Set<DENOPTIMRing> ringsComb = 
-                                                   new HashSet<DENOPTIMRing>();
-                        for (ObjectPair opFinal : lstPairs)
-                        {
-                            PathSubGraph path = allGoodPaths.get(opFinal);
-                            ArrayList<DENOPTIMVertex> arrLst = 
+    private class RingCombinations
+    {
+        // RCVs with compatible partners, indexed as in the enumerator
+        private ArrayList<DENOPTIMVertex> verts =
                                                new ArrayList<DENOPTIMVertex>();
-                            arrLst.addAll(path.getVertecesPath());
 
-                            DENOPTIMRing ring = new DENOPTIMRing(arrLst);
-
-                            List<DENOPTIMEdge> es = path.getEdgesPath();
-                            int btH = es.get(0).getBondType();
-                            int btT = es.get(es.size()-1).getBondType();
-                            if (btH != btT)
-                            {
-                                String s = "Attempt to close rings is not "
-                                + "compatible to the different bond type "
-                                + "specified by the head and tail APs: (" 
-                                + btH + "!=" + btT + " for vertices " 
-                                + path.getHeadVertex() + " " 
-                                + path.getTailVertex() + ")"; 
-                                throw new DENOPTIMException(s);
-                            }
-                            ring.setBondType(btH);
+        // All the candidate paths
+        private Map<ObjectPair,PathSubGraph> allGoodPaths =
+                                        new HashMap<ObjectPair,PathSubGraph>();
 
-                            ringsComb.add(ring);
+        // Paths that share bonds, or null if not checked
+        private InterdependentPaths interdepPaths = null;
 
-                            //TODO del
-                            if (debug)
-                                System.out.println(objId+"-"+recLab+"> added ringComb: "+ring);
-                        }
+        private MaximumMatchingEnumerator enumerator;
 
-                        boolean notNewCmb = false;
-                        for(Set<DENOPTIMRing> oldCmb : allCombsOfRings)
-                        {
+        //---------------------------------------------------------------------
 
-                            //TODO del
-                            if (debug)
-                            {
-                                System.out.println(objId+"-"+recLab+"> Comparing ring sets: ");
-                                System.out.println("o> old: "+oldCmb);
-                                System.out.println("o> new: "+ringsComb);
-                            }
+        public RingCombinations(IAtomContainer mol, DENOPTIMGraph molGraph)
+                                                      throws DENOPTIMException
+        {
+            ArrayList<DENOPTIMVertex> rcaVertLst =
+                                                 molGraph.getFreeRCVertices();
 
-                            notNewCmb = RingClosingUtils.areSameRingsSet(oldCmb,
-                                                                     ringsComb);
-                            //TODO del
-                            if (debug)
-                                System.out.println("o> result: "+notNewCmb);
+            // Get manager of ring size problems
+            RingSizeManager rsm = new RingSizeManager();
+            rsm.initialize(mol, molGraph);
 
-                            if (notNewCmb)
-                            {
-                                break;
-                            }
-                        }
+            // identify compatible pairs of RCA vertices
+            List<int[]> compatPairs = new ArrayList<int[]>();
+            boolean[] hasPartner = new boolean[rcaVertLst.size()];
+            for (int i=0; i<rcaVertLst.size(); i++)
+            {
+                DENOPTIMVertex vI = rcaVertLst.get(i);
+                for (int j=i+1; j<rcaVertLst.size(); j++)
+                {
+                    DENOPTIMVertex vJ = rcaVertLst.get(j);
+                    if (!rsm.getCompatibilityOfPair(vI,vJ))
+                    {
+                        continue;
+                    }
 
-                        if (!notNewCmb)
+                    // make the new candidate RCA pair
+                    PathSubGraph subGraph = new PathSubGraph(vI,vJ,molGraph);
+                    if (!evaluatePathClosability(subGraph, mol))
+                    {
+                        if (verbosity > 1)
                         {
-                            //TODO del
-                            if (debug)
-                                System.out.println(objId+"-"+recLab+"> addinf to all combs of ring.");
-
-                            allCombsOfRings.add(ringsComb);
-                            addedNew = true;
+                            System.out.println("Rejecting RCA pair");
                         }
+                        continue;
                     }
-                }
-                if (!inFound)
-                {
-
-                    //TODO del
-                    if (debug)
-                        System.out.println(objId+"-"+recLab+"> in C");
 
-                    ArrayList<ObjectPair> toDel = new ArrayList<ObjectPair>();
-                    for (int ir = recCount; ir<lstPairs.size(); ir++)
+                    // finally store this pair as a compatible pair
+                    if (verbosity > 1)
                     {
-                        ObjectPair opToRemove = lstPairs.get(ir);
-                        DENOPTIMVertex delVA = (DENOPTIMVertex) 
-                                                        opToRemove.getFirst();
-                        DENOPTIMVertex delVB = (DENOPTIMVertex) 
-                                                        opToRemove.getSecond();
-                        usedId.remove(usedId.indexOf(delVA.getVertexId()));
-                        usedId.remove(usedId.indexOf(delVB.getVertexId()));
-                        toDel.add(opToRemove);
+                        System.out.println("All compatibility criteria "
+                                                               + "satisfied");
+                        System.out.println("Storing verified RCA pair");
                     }
-                    lstPairs.removeAll(toDel);
+                    compatPairs.add(new int[] {i, j});
+                    hasPartner[i] = true;
+                    hasPartner[j] = true;
 
-                    //TODO del
-                    if (debug)
-                    {
-                        System.out.println(objId+"-"+recLab+"> in C: after removal usedId: "+usedId);
-                        System.out.println(objId+"-"+recLab+"> in C: after removal lstPairs: "+lstPairs);
-                    }
+                    // store the RCA pair for further use
+                    allGoodPaths.put(makePairKey(vI,vJ),subGraph);
                 }
+            }
 
-                if (lstPairs.contains(op))
+            // Index the RCVs that have compatible partners
+            int[] pos = new int[rcaVertLst.size()];
+            for (int i=0; i<rcaVertLst.size(); i++)
+            {
+                pos[i] = -1;
+                if (hasPartner[i])
                 {
+                    pos[i] = verts.size();
+                    verts.add(rcaVertLst.get(i));
+                }
+            }
+            if (verts.size() > MaximumMatchingEnumerator.MAXVERTICES)
+            {
+                throw new DENOPTIMException("Too many ring closing vertices "
+                     + "with compatible partners (" + verts.size() + " > "
+                     + MaximumMatchingEnumerator.MAXVERTICES + ").");
+            }
+            long[] adj = new long[verts.size()];
+            for (int[] pair : compatPairs)
+            {
+                int a = pos[pair[0]];
+                int b = pos[pair[1]];
+                adj[a] |= 1L << b;
+                adj[b] |= 1L << a;
+            }
+            enumerator = new MaximumMatchingEnumerator(adj);
 
-                    //TODO del
-                    if (debug)
-                        System.out.println(objId+"-"+recLab+"> in D");
-
-                    lstPairs.remove(op);
-                    usedId.remove(usedId.indexOf(vIdI));
-                    usedId.remove(usedId.indexOf(vIdJ));
+            if (verbosity > 1)
+            {
+                System.out.println("Compatibility Map for RCAs: ");
+                for (int[] pair : compatPairs)
+                {
+                    System.out.println(" " + rcaVertLst.get(pair[0]) + " - "
+                                                  + rcaVertLst.get(pair[1]));
+                }
+            }
 
-                    //TODO del
-                    if (debug)
+            // Identify paths that share bonds (interdependent paths)
+            if (RingClosureParameters.checkInterdependentChains())
+            {
+                interdepPaths = new InterdependentPaths(allGoodPaths.values());
+                if (verbosity > 1)
+                {
+                    Map<IBond,Set<PathSubGraph>> pathsByBnd =
+                                                interdepPaths.getPathsByBond();
+                    for (IBond bnd : pathsByBnd.keySet())
                     {
-                        System.out.println(objId+"-"+recLab+"> in D: after removal usedId: "+usedId);
-                        System.out.println(objId+"-"+recLab+"> in D: after removal lstPairs: "+lstPairs);
+                        System.out.println("Interdependent paths for bond "
+                                                                       + bnd);
+                        Set<PathSubGraph> sop = pathsByBnd.get(bnd);
+                        for (PathSubGraph p : sop)
+                        {
+                            System.out.println(" vA: "+p.getHeadVertex()
+                                              +" vB: "+p.getTailVertex());
+                        }
                     }
                 }
             }
         }
-        
-        //TODO del
-        if (debug)
-            System.out.println(objId+"-"+recLab+"> returning= "+addedNew);
 
-        return addedNew;
-    }
+        //---------------------------------------------------------------------
 
-//-----------------------------------------------------------------------------
+        public int getVertexCount()
+        {
+            return verts.size();
+        }
 
-    /**
-     * Checks whether the combination of RCA's pairs leads to interdependent 
-     * paths, that is, paths that share one or more bonds. 
-     */
+        //---------------------------------------------------------------------
 
-    private boolean hasInterdependentPaths(ArrayList<ObjectPair> lstPairs,
-                                    Map<IBond,Set<PathSubGraph>> interdepPaths)
-    {
-        boolean result = false;
-        
-        for (IBond bnd : interdepPaths.keySet())
+        public MaximumMatchingEnumerator getEnumerator()
         {
-            Set<PathSubGraph> psgSet = interdepPaths.get(bnd);
-            for (PathSubGraph psg : psgSet)
+            return enumerator;
+        }
+
+        //---------------------------------------------------------------------
+
+        /**
+         * Makes the rings for a set of pairs of RCVs.
+         * @param pairs the pairs as given by the enumerator
+         * @return the rings, or null if the interdependent paths among the
+         * given ones cannot be closed simultaneously
+         */
+
+        public Set<DENOPTIMRing> makeRings(int[] pairs)
+                                                      throws DENOPTIMException
+        {
+            ArrayList<ObjectPair> lstPairs = new ArrayList<ObjectPair>();
+            for (int p=0; p<pairs.length; p+=2)
             {
-                DENOPTIMVertex va1 = psg.getHeadVertex();
-                DENOPTIMVertex va2 = psg.getTailVertex();
+                lstPairs.add(makePairKey(verts.get(pairs[p]),
+                                         verts.get(pairs[p+1])));
+            }
 
-                for (ObjectPair op : lstPairs)
+            if (interdepPaths != null &&
+                            interdepPaths.involvesAny(lstPairs, allGoodPaths))
+            {
+                if (!checkClosabilityOfInterdependentPaths(lstPairs,
+                                                           interdepPaths,
+                                                           allGoodPaths))
                 {
-                    DENOPTIMVertex vb1 = (DENOPTIMVertex) op.getFirst();
-                    DENOPTIMVertex vb2 = (DENOPTIMVertex) op.getSecond();
-                
-                    if ((va1 == vb1 && va2 == vb2) ||
-                        (va1 == vb2 && va2 == vb1))
-                    {
-                        result = true;
-                        break;
-                    }
+                    return null;
                 }
-                if (result)
-                    break;
             }
-            if (result)
-                break;
+
+            Set<DENOPTIMRing> ringsComb = new HashSet<DENOPTIMRing>();
+            for (ObjectPair opFinal : lstPairs)
+            {
+                PathSubGraph path = allGoodPaths.get(opFinal);
+                ArrayList<DENOPTIMVertex> arrLst =
+                                               new ArrayList<DENOPTIMVertex>();
+                arrLst.addAll(path.getVertecesPath());
+
+                DENOPTIMRing ring = new DENOPTIMRing(arrLst);
+
+                List<DENOPTIMEdge> es = path.getEdgesPath();
+                int btH = es.get(0).getBondType();
+                int btT = es.get(es.size()-1).getBondType();
+                if (btH != btT)
+                {
+                    String s = "Attempt to close rings is not "
+                    + "compatible to the different bond type "
+                    + "specified by the head and tail APs: ("
+                    + btH + "!=" + btT + " for vertices "
+                    + path.getHeadVertex() + " "
+                    + path.getTailVertex() + ")";
+                    throw new DENOPTIMException(s);
+                }
+                ring.setBondType(btH);
+
+                ringsComb.add(ring);
+            }
+            return ringsComb;
         }
-        return result;
     }
 
 //-----------------------------------------------------------------------------
@@ -741,38 +572,13 @@ public class CyclicGraphHandler
 
     private boolean checkClosabilityOfInterdependentPaths(
                                 ArrayList<ObjectPair> lstPairs,
-                                Map<IBond,Set<PathSubGraph>> interdepPaths,
+                                InterdependentPaths interdepPaths,
                                 Map<ObjectPair,PathSubGraph> allGoodPaths)
     {
         // Identify the interdependent sets of paths
-        Set<ArrayList<ObjectPair>> listOfIntrDepPaths = 
-                                          new HashSet<ArrayList<ObjectPair>>();
-        for (IBond bnd : interdepPaths.keySet())
-        {
-            ArrayList<ObjectPair> locSop = new ArrayList<ObjectPair>();
-            Set<PathSubGraph> psgSet = interdepPaths.get(bnd);
-            for (PathSubGraph psg : psgSet)
-            {
-                DENOPTIMVertex va1 = psg.getHeadVertex();
-                DENOPTIMVertex va2 = psg.getTailVertex();
-
-                for (ObjectPair op : lstPairs)
-                {
-                    DENOPTIMVertex vb1 = (DENOPTIMVertex) op.getFirst();
-                    DENOPTIMVertex vb2 = (DENOPTIMVertex) op.getSecond();
-
-                    if ((va1 == vb1 && va2 == vb2) ||
-                        (va1 == vb2 && va2 == vb1))
-                    {
-                        locSop.add(op);
-                    }
-                }
-            }
-            if (locSop.size() > 1)
-            {
-                listOfIntrDepPaths.add(locSop);
-            }
-        }
+        List<ArrayList<ObjectPair>> listOfIntrDepPaths = 
+                                   interdepPaths.getGroups(lstPairs,
+                                                           allGoodPaths);
 
         // Verify simultaneous closeness of each group of interdependent paths
         boolean closable = true;
@@ -922,9 +728,9 @@ public class CyclicGraphHandler
         // Molecular representation of the current system
         private IAtomContainer mol;
 
-        // Topological matrix: contains the number of bonds (shortest path) 
-        // separating the two atoms having idex i and j in the current system
-        private int[][] topoMat;
+        // Topological distances: contains the number of bonds (shortest path)
+        // separating the RCAs of the RCVs having index i and j in lstVert
+        private int[][] rcaDist;
         
         // List of Ring Closing Vertices (RCV as DENOPTIMVerex) each containing
         // an available Ring Closing Attractor (RCA)
@@ -977,8 +783,8 @@ public class CyclicGraphHandler
             // Define link between list of vertices and list of atoms
             vIdToAtmId = DENOPTIMMoleculeUtils.getVertexToAtmIdMap(lstVert,mol);
 
-            // Build topological matrix
-            fillTopologicalMatrix(); 
+            // Calculate distances between RCAs
+            fillRCADistances();
 
             // Define compatibility of RCA pairs and weight factors
             calculateCompatibilityOfAllRCAPairs();
@@ -990,31 +796,34 @@ public class CyclicGraphHandler
 
         //---------------------------------------------------------------------
 
-        // NOTE: we don't really need the whole topological matrix, so the 
-        // calculation of the shortest paths between the RCAs could be more
-        // efficient
-
-//TODO evaluate use of ShortestPath to fill only certain entries of topoMat
+        // NOTE: only the distances between RCAs are needed, so we search
+        // the shortest paths starting from the RCAs rather than calculating
+        // the whole topological matrix
 
-        private void fillTopologicalMatrix()
+        private void fillRCADistances()
         {
             long startTime = System.nanoTime();
-            topoMat = TopologicalMatrix.getMatrix(mol);
+            int[] rcaAtms = new int[sz];
+            for (int i=0; i<sz; i++)
+            {
+                rcaAtms[i] = vIdToAtmId.get(lstVert.get(i)).get(0);
+            }
+            rcaDist = TopologicalDistances.fromMolecule(mol).getDistances(
+                                                                      rcaAtms);
             long endTime = System.nanoTime();
             long duration = (- startTime + endTime) / (long) 1000.0;
 
             if (verbosity > 1)
             {
-                System.out.println("TopoMat N: " + mol.getAtomCount() + " " 
-                                                   + duration + " microsec.");
-                int n = mol.getAtomCount();
-                System.out.println("Topological matrix (n=" + n + ")");
-                for (int i=0; i<n; i++)
+                System.out.println("RCA distances N: " + mol.getAtomCount() 
+                                             + " " + duration + " microsec.");
+                System.out.println("RCA distances (n=" + sz + ")");
+                for (int i=0; i<sz; i++)
                 {
                     String l = " ";
-                    for (int j=0; j<n; j++)
+                    for (int j=0; j<sz; j++)
                     {
-                        l = l + " " + topoMat[i][j];
+                        l = l + " " + rcaDist[i][j];
                     }
                     System.out.println(l);
                 }
@@ -1057,9 +866,7 @@ public class CyclicGraphHandler
                     if (rcaI.isCompatible(rcaJ) &&
                         evaluateRCVPair(vI,vJ,graph))
                     {
-                        //TODO: evluate the use of ShortestPath instead of this
-                        int ringSize = topoMat[vIdToAtmId.get(vI).get(0)]
-                                              [vIdToAtmId.get(vJ).get(0)] - 1;
+                        int ringSize = rcaDist[i][j] - 1;
                         int szFct = 0;
                         if (ringSize < RingClosureParameters.getMaxRingSize())
                         {
@@ -1143,8 +950,7 @@ public class CyclicGraphHandler
 
                 DENOPTIMVertex vJ = lstVert.get(j);
 
-                int ringSize = topoMat[vIdToAtmId.get(vI).get(0)]
-                                      [vIdToAtmId.get(vJ).get(0)] - 1;
+                int ringSize = rcaDist[i][j] - 1;
                 int szFct = 0;
                 if (ringSize < RingClosureParameters.getMaxRingSize())
                 {
@@ -1210,7 +1016,7 @@ public class CyclicGraphHandler
             }
 
             // Update this RingSizeManager
-            fillTopologicalMatrix();
+            fillRCADistances();
             calculateCompatibilityOfAllRCAPairs();
         }
 
@@ -1254,11 +1060,19 @@ public class CyclicGraphHandler
         private List<IBond> bonds;
         private ArrayList<Double> angs;
 
+        // Position of each bond in the list of bonds
+        private Map<IBond,Integer> bondPos;
+
         //---------------------------------------------------------------------
         public ClosableConf(List<IBond> bonds, ArrayList<Double> dihedrals)
         {
             this.bonds = bonds;
             this.angs = dihedrals;
+            this.bondPos = new HashMap<IBond,Integer>();
+            for (int i=0; i<bonds.size(); i++)
+            {
+                bondPos.put(bonds.get(i),i);
+            }
         }
 
         //---------------------------------------------------------------------
@@ -1273,7 +1087,7 @@ public class CyclicGraphHandler
             boolean shareBnd = false;
             for (IBond tBnd : this.bonds)
             {
-                if (other.bonds.contains(tBnd))
+                if (other.bondPos.containsKey(tBnd))
                 {
                     shareBnd = true;
                     break;
@@ -1289,23 +1103,18 @@ public class CyclicGraphHandler
             double thrs = RingClosureParameters.getPathConfSearchStep() / 2.0;
             for (int i=0; i<this.bonds.size(); i++)
             {
-                IBond tBnd = this.bonds.get(i);
-                for (int j=0; j<other.bonds.size(); j++)
+                Integer j = other.bondPos.get(this.bonds.get(i));
+                if (j == null || this.bonds.get(i) != other.bonds.get(j))
                 {
-                    IBond oBnd = other.bonds.get(j);
-                    if (tBnd == oBnd)
-                    {
-                        double diff = this.angs.get(i) - other.angs.get(j);
-                        diff = Math.abs(diff);
-                        if (diff > thrs)
-                        {
-                            canCoexist = false;
-                            break;
-                        }
-                    }
+                    continue;
                 }
-                if (!canCoexist)
+                double diff = this.angs.get(i) - other.angs.get(j);
+                diff = Math.abs(diff);
+                if (diff > thrs)
+                {
+                    canCoexist = false;
                     break;
+                }
             }
 
             return canCoexist;
@@ -1328,6 +1137,198 @@ public class CyclicGraphHandler
         }
     }
 
+//-----------------------------------------------------------------------------
+
+    /**
+     * Utility class collecting the candidate ring closing paths that are
+     * interdependent, i.e., that share rotatable bonds without sharing any
+     * end vertex. It is an inverted index from bonds to the paths using
+     * them, and is built in a single pass over the bonds of all paths.
+     */
+
+    private class InterdependentPaths
+    {
+        // Interdependent paths sharing each bond
+        private Map<IBond,Set<PathSubGraph>> pathsByBond =
+                                        new HashMap<IBond,Set<PathSubGraph>>();
+
+        // Bonds shared by each interdependent path
+        private Map<PathSubGraph,List<IBond>> bondsByPath =
+                                       new HashMap<PathSubGraph,List<IBond>>();
+
+        //---------------------------------------------------------------------
+        public InterdependentPaths(Collection<PathSubGraph> paths)
+        {
+            Map<IBond,List<PathSubGraph>> users =
+                                       new HashMap<IBond,List<PathSubGraph>>();
+            for (PathSubGraph path : paths)
+            {
+                for (IBond bnd : path.getBondPath())
+                {
+                    // ignore non-rotatable bonds
+                    // NOTE: here we assume that rotatable bonds have been
+                    // identified before.
+                    Object rotFlg = bnd.getProperty(
+                                          DENOPTIMConstants.BONDPROPROTATABLE);
+                    if (rotFlg==null || !Boolean.valueOf(rotFlg.toString()))
+                    {
+                        continue;
+                    }
+                    List<PathSubGraph> lst = users.get(bnd);
+                    if (lst == null)
+                    {
+                        lst = new ArrayList<PathSubGraph>();
+                        users.put(bnd,lst);
+                    }
+                    lst.add(path);
+                }
+            }
+
+            for (Map.Entry<IBond,List<PathSubGraph>> e : users.entrySet())
+            {
+                List<PathSubGraph> lst = e.getValue();
+                Set<PathSubGraph> interdep = new HashSet<PathSubGraph>();
+                for (int a=0; a<lst.size(); a++)
+                {
+                    for (int b=a+1; b<lst.size(); b++)
+                    {
+                        if (!shareEnds(lst.get(a),lst.get(b)))
+                        {
+                            interdep.add(lst.get(a));
+                            interdep.add(lst.get(b));
+                        }
+                    }
+                }
+                if (interdep.isEmpty())
+                {
+                    continue;
+                }
+                pathsByBond.put(e.getKey(),interdep);
+                for (PathSubGraph path : interdep)
+                {
+                    List<IBond> bnds = bondsByPath.get(path);
+                    if (bnds == null)
+                    {
+                        bnds = new ArrayList<IBond>();
+                        bondsByPath.put(path,bnds);
+                    }
+                    bnds.add(e.getKey());
+                }
+            }
+        }
+
+        //---------------------------------------------------------------------
+        private boolean shareEnds(PathSubGraph pA, PathSubGraph pB)
+        {
+            DENOPTIMVertex hA = pA.getHeadVertex();
+            DENOPTIMVertex tA = pA.getTailVertex();
+            DENOPTIMVertex hB = pB.getHeadVertex();
+            DENOPTIMVertex tB = pB.getTailVertex();
+            return (hA == hB || hA == tB) || (tA == hB || tA == tB);
+        }
+
+        //---------------------------------------------------------------------
+        public Map<IBond,Set<PathSubGraph>> getPathsByBond()
+        {
+            return pathsByBond;
+        }
+
+        //---------------------------------------------------------------------
+        /**
+         * @return <code>true</code> if any of the paths of the given RCA
+         * pairs is interdependent with some other path
+         */
+        public boolean involvesAny(List<ObjectPair> lstPairs,
+                                     Map<ObjectPair,PathSubGraph> allGoodPaths)
+        {
+            for (ObjectPair op : lstPairs)
+            {
+                if (bondsByPath.containsKey(allGoodPaths.get(op)))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        //---------------------------------------------------------------------
+        /**
+         * Groups the given RCA pairs so that pairs with interdependent paths,
+         * directly or via other pairs, are in the same group. Groups are
+         * found by union-find over the shared bonds.
+         * @return the groups with more than one RCA pair
+         */
+        public List<ArrayList<ObjectPair>> getGroups(
+                                     List<ObjectPair> lstPairs,
+                                     Map<ObjectPair,PathSubGraph> allGoodPaths)
+        {
+            int n = lstPairs.size();
+            int[] parent = new int[n];
+            Map<IBond,Integer> firstUser = new HashMap<IBond,Integer>();
+            for (int i=0; i<n; i++)
+            {
+                parent[i] = i;
+                List<IBond> bnds = bondsByPath.get(
+                                             allGoodPaths.get(lstPairs.get(i)));
+                if (bnds == null)
+                {
+                    continue;
+                }
+                for (IBond bnd : bnds)
+                {
+                    Integer j = firstUser.get(bnd);
+                    if (j == null)
+                    {
+                        firstUser.put(bnd,i);
+                    }
+                    else
+                    {
+                        parent[findRoot(parent,i)] = findRoot(parent,j);
+                    }
+                }
+            }
+
+            Map<Integer,ArrayList<ObjectPair>> groups =
+                             new LinkedHashMap<Integer,ArrayList<ObjectPair>>();
+            for (int i=0; i<n; i++)
+            {
+                int root = findRoot(parent,i);
+                ArrayList<ObjectPair> grp = groups.get(root);
+                if (grp == null)
+                {
+                    grp = new ArrayList<ObjectPair>();
+                    groups.put(root,grp);
+                }
+                grp.add(lstPairs.get(i));
+            }
+
+            List<ArrayList<ObjectPair>> result = 
+                                        new ArrayList<ArrayList<ObjectPair>>();
+            for (ArrayList<ObjectPair> grp : groups.values())
+            {
+                if (grp.size() > 1)
+                {
+                    result.add(grp);
+                }
+            }
+            return result;
+        }
+
+        //---------------------------------------------------------------------
+        private int findRoot(int[] parent, int i)
+        {
+            while (parent[i] != i)
+            {
+                // Path halving
+                parent[i] = parent[parent[i]];
+                i = parent[i];
+            }
+            return i;
+        }
+
+        //---------------------------------------------------------------------
+    }
+
 //-----------------------------------------------------------------------------
 
     /**
@@ -0,0 +1,287 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.rings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import denoptim.exception.DENOPTIMException;
+
+/**
+ * Enumerates the sets of disjoint pairs of vertices (i.e., matchings) of
+ * largest size in a graph of up to 64 vertices, such as the graph of
+ * compatible pairs of ring closing vertices. Sets of vertices are
+ * represented as bit masks. Each matching is generated once, by deciding
+ * the fate of the free vertex with the lowest index first: either it is
+ * paired with one of its free neighbors, or it is left unpaired. Branches
+ * that cannot lead to a matching of the largest size are pruned.
+ * Matchings are given to a {@link Visitor} as soon as they are found, so
+ * they need not be stored.
+ *
+ * @author Marco Foscato
+ */
+
+public class MaximumMatchingEnumerator
+{
+    /**
+     * Maximum number of vertices
+     */
+    public static final int MAXVERTICES = 64;
+
+    /**
+     * Neighbors of each vertex as bit mask
+     */
+    private final long[] adj;
+
+    /**
+     * Size of the largest matchings, or -1 if not known yet
+     */
+    private int maxSize = -1;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Receives the matchings.
+     */
+    public interface Visitor
+    {
+        /**
+         * Processes a matching.
+         * @param pairs the indexes of the paired vertices: vertex
+         * <code>pairs[2*i]</code> is paired with vertex
+         * <code>pairs[2*i+1]</code>, and the former has the lower index.
+         * @return <code>false</code> to stop the enumeration.
+         * @throws DENOPTIMException to stop the enumeration with an error.
+         */
+        public boolean visit(int[] pairs) throws DENOPTIMException;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Constructor
+     * @param adjacency the neighbors of each vertex as bit mask: bit
+     * <i>j</i> of <code>adjacency[i]</code> is set if vertices <i>i</i>
+     * and <i>j</i> can be paired. Must be symmetric.
+     * @throws DENOPTIMException if there are more than {@value #MAXVERTICES}
+     * vertices.
+     */
+    public MaximumMatchingEnumerator(long[] adjacency) throws DENOPTIMException
+    {
+        if (adjacency.length > MAXVERTICES)
+        {
+            throw new DENOPTIMException("Cannot enumerate combinations of "
+                    + "pairs among more than " + MAXVERTICES + " vertices ("
+                    + adjacency.length + " given).");
+        }
+        this.adj = adjacency;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of pairs in the largest matchings.
+     */
+    public int getMaximumSize()
+    {
+        if (maxSize < 0)
+        {
+            maxSize = findMaxSize(allVertices(), 0, 0);
+        }
+        return maxSize;
+    }
+
+//------------------------------------------------------------------------------
+
+    private long allVertices()
+    {
+        return adj.length == 64 ? -1L : (1L << adj.length) - 1L;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Removes the vertices that have no neighbor among the free vertices.
+     */
+    private long prune(long free)
+    {
+        long res = free;
+        long m = free;
+        while (m != 0)
+        {
+            int v = Long.numberOfTrailingZeros(m);
+            m &= m - 1;
+            if ((adj[v] & free) == 0)
+            {
+                res &= ~(1L << v);
+            }
+        }
+        return res;
+    }
+
+//------------------------------------------------------------------------------
+
+    private int findMaxSize(long free, int size, int best)
+    {
+        free = prune(free);
+        if (free == 0)
+        {
+            return Math.max(size, best);
+        }
+        if (size + Long.bitCount(free) / 2 <= best)
+        {
+            return best;
+        }
+        int v = Long.numberOfTrailingZeros(free);
+        long rest = free & ~(1L << v);
+        long nbrs = adj[v] & rest;
+        while (nbrs != 0)
+        {
+            int u = Long.numberOfTrailingZeros(nbrs);
+            nbrs &= nbrs - 1;
+            best = findMaxSize(rest & ~(1L << u), size + 1, best);
+        }
+        return findMaxSize(rest, size, best);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Enumerates all the largest matchings, in canonical order.
+     * @param visitor the receiver of the matchings.
+     * @return <code>false</code> if the visitor stopped the enumeration.
+     * @throws DENOPTIMException if the visitor throws it.
+     */
+    public boolean forEachMaximumMatching(Visitor visitor)
+            throws DENOPTIMException
+    {
+        int target = getMaximumSize();
+        if (target == 0)
+        {
+            return true;
+        }
+        return enumerate(allVertices(), new int[2*target], 0, target,
+                visitor);
+    }
+
+//------------------------------------------------------------------------------
+
+    private boolean enumerate(long free, int[] pairs, int size, int target,
+            Visitor visitor) throws DENOPTIMException
+    {
+        if (size == target)
+        {
+            return visitor.visit(pairs.clone());
+        }
+        free = prune(free);
+        if (size + Long.bitCount(free) / 2 < target)
+        {
+            return true;
+        }
+        int v = Long.numberOfTrailingZeros(free);
+        long rest = free & ~(1L << v);
+        long nbrs = adj[v] & rest;
+        while (nbrs != 0)
+        {
+            int u = Long.numberOfTrailingZeros(nbrs);
+            nbrs &= nbrs - 1;
+            pairs[2*size] = v;
+            pairs[2*size+1] = u;
+            if (!enumerate(rest & ~(1L << u), pairs, size+1, target, visitor))
+            {
+                return false;
+            }
+        }
+        return enumerate(rest, pairs, size, target, visitor);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Collects all the largest matchings, in the same order as
+     * {@link #forEachMaximumMatching(Visitor)}.
+     * @param parallel use <code>true</code> to explore the alternatives for
+     * the first vertex in parallel on the common fork-join pool.
+     * @return the list of matchings, see {@link Visitor#visit(int[])}.
+     */
+    public List<int[]> getAllMaximumMatchings(boolean parallel)
+    {
+        final int target = getMaximumSize();
+        List<int[]> result = new ArrayList<int[]>();
+        if (target == 0)
+        {
+            return result;
+        }
+        final long free = prune(allVertices());
+        final int v = Long.numberOfTrailingZeros(free);
+        final long rest = free & ~(1L << v);
+
+        // First level branches: pair v with each neighbor, or leave it
+        List<Integer> branches = new ArrayList<Integer>();
+        long nbrs = adj[v] & rest;
+        while (nbrs != 0)
+        {
+            branches.add(Long.numberOfTrailingZeros(nbrs));
+            nbrs &= nbrs - 1;
+        }
+        branches.add(-1);
+
+        IntStream idx = IntStream.range(0, branches.size());
+        if (parallel)
+        {
+            idx = idx.parallel();
+        }
+        List<List<int[]>> perBranch = idx.mapToObj(b -> {
+            List<int[]> lst = new ArrayList<int[]>();
+            int u = branches.get(b);
+            int[] pairs = new int[2*target];
+            try
+            {
+                if (u < 0)
+                {
+                    enumerate(rest, pairs, 0, target, p -> lst.add(p));
+                }
+                else
+                {
+                    pairs[0] = v;
+                    pairs[1] = u;
+                    enumerate(rest & ~(1L << u), pairs, 1, target,
+                            p -> lst.add(p));
+                }
+            }
+            catch (DENOPTIMException e)
+            {
+                // Cannot happen: collecting never throws
+                throw new IllegalStateException(e);
+            }
+            return lst;
+        }).collect(Collectors.toList());
+
+        for (List<int[]> lst : perBranch)
+        {
+            result.addAll(lst);
+        }
+        return result;
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,169 @@
+package denoptim.rings;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import denoptim.exception.DENOPTIMException;
+
+/**
+ * Unit test for the enumeration of largest sets of disjoint pairs
+ *
+ * @author Marco Foscato
+ */
+
+public class MaximumMatchingEnumeratorTest
+{
+
+//------------------------------------------------------------------------------
+
+    private long[] makeAdjacency(int n, int[][] edges)
+    {
+        long[] adj = new long[n];
+        for (int[] e : edges)
+        {
+            adj[e[0]] |= 1L << e[1];
+            adj[e[1]] |= 1L << e[0];
+        }
+        return adj;
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testSquare() throws Exception
+    {
+        // Cycle 0-1-2-3-0 plus isolated vertex 4
+        long[] adj = makeAdjacency(5, new int[][] {
+            {0, 1}, {1, 2}, {2, 3}, {3, 0}});
+        MaximumMatchingEnumerator mme = new MaximumMatchingEnumerator(adj);
+        assertEquals(2, mme.getMaximumSize());
+        List<int[]> all = mme.getAllMaximumMatchings(false);
+        assertEquals(2, all.size());
+        assertArrayEquals(new int[] {0, 1, 2, 3}, all.get(0));
+        assertArrayEquals(new int[] {0, 3, 1, 2}, all.get(1));
+
+        List<int[]> seen = new ArrayList<int[]>();
+        assertFalse(mme.forEachMaximumMatching(p -> {
+            seen.add(p);
+            return false;
+        }));
+        assertEquals(1, seen.size());
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testAgainstBruteForce() throws Exception
+    {
+        Random rnd = new Random(7);
+        for (int trial=0; trial<30; trial++)
+        {
+            int n = 4 + rnd.nextInt(7);
+            List<int[]> edges = new ArrayList<int[]>();
+            for (int i=0; i<n; i++)
+                for (int j=i+1; j<n; j++)
+                    if (rnd.nextInt(3) == 0)
+                        edges.add(new int[] {i, j});
+            long[] adj = makeAdjacency(n, edges.toArray(new int[0][]));
+
+            // Brute force over all subsets of edges
+            int best = 0;
+            Set<Long> bestSets = new HashSet<Long>();
+            for (long s=0; s < (1L << edges.size()); s++)
+            {
+                long used = 0;
+                boolean ok = true;
+                for (int e=0; e<edges.size() && ok; e++)
+                {
+                    if ((s & (1L << e)) == 0)
+                        continue;
+                    long m = (1L << edges.get(e)[0]) | (1L << edges.get(e)[1]);
+                    ok = (used & m) == 0;
+                    used |= m;
+                }
+                if (!ok)
+                    continue;
+                int sz = Long.bitCount(s);
+                if (sz > best)
+                {
+                    best = sz;
+                    bestSets.clear();
+                }
+                if (sz == best && sz > 0)
+                {
+                    bestSets.add(s);
+                }
+            }
+
+            MaximumMatchingEnumerator mme = new MaximumMatchingEnumerator(adj);
+            assertEquals(best, mme.getMaximumSize());
+            List<int[]> all = mme.getAllMaximumMatchings(false);
+            assertEquals(bestSets.size(), all.size());
+            Set<Long> found = new HashSet<Long>();
+            for (int[] pairs : all)
+            {
+                long s = 0;
+                for (int p=0; p<pairs.length; p+=2)
+                {
+                    assertTrue(pairs[p] < pairs[p+1]);
+                    for (int e=0; e<edges.size(); e++)
+                    {
+                        if (edges.get(e)[0] == pairs[p]
+                                && edges.get(e)[1] == pairs[p+1])
+                            s |= 1L << e;
+                    }
+                }
+                found.add(s);
+            }
+            assertEquals(bestSets, found);
+
+            List<int[]> par = mme.getAllMaximumMatchings(true);
+            assertEquals(all.size(), par.size());
+            for (int i=0; i<all.size(); i++)
+            {
+                assertArrayEquals(all.get(i), par.get(i));
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testTooManyVertices() throws Exception
+    {
+        assertThrows(DENOPTIMException.class,
+                () -> new MaximumMatchingEnumerator(new long[65]));
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -24,6 +24,7 @@ import javax.vecmath.Point3d;
 import javax.vecmath.Vector3d;
 
 import denoptim.utils.GenUtils;
+import denoptim.utils.GeometryKernel;
 
 /**
  * RingClosure represents the arrangement of atoms and 
@@ -209,12 +210,10 @@ public class RingClosure
             distH2T1 < maxDH2T1 && distH2T1 > minDH2T1 &&
             distH2T2 < maxDH2T2 && distH2T2 > minDH2T2)
         {
-            h = new Vector3d(h2.x-h1.x, h2.y-h1.y, h2.z-h1.z);
-            t = new Vector3d(t2.x-t1.x, t2.y-t1.y, t2.z-t1.z);
-            h.normalize();
-            t.normalize();
-
-            if (h.dot(t) <= maxDotHT)
+            double dot = GeometryKernel.normalizedDot(
+                                      h2.x-h1.x, h2.y-h1.y, h2.z-h1.z,
+                                      t2.x-t1.x, t2.y-t1.y, t2.z-t1.z);
+            if (dot <= maxDotHT)
             {
                 if (debug)
                     System.out.println("  CLOSABLE!");
@@ -224,6 +223,42 @@ public class RingClosure
         return res;
     }
 
+//-----------------------------------------------------------------------------
+
+    /**
+     * Evaluate closability of the arrangement of four points stored in a
+     * buffer. This is equivalent to
+     * {@link #isClosable(double, double, double, double, double, double,
+     * double, boolean)} but does not require any <code>RingClosure</code>
+     * object.
+     * @param clsablConds the closability conditions in the order given by
+     * {@link #getClosabilityConditions(double)}
+     * @param xyz the buffer of points
+     * @param h1 index of the first point defining the head vector
+     * @param h2 index of the second point defining the head vector
+     * @param t1 index of the first point defining the tail vector
+     * @param t2 index of the second point defining the tail vector
+     * @return <code>true</code> is the arrangement of points respect the
+     * closability condition
+     */
+
+    public static boolean isClosable(double[] clsablConds,
+                                     GeometryKernel.Buffer xyz,
+                                     int h1, int h2, int t1, int t2)
+    {
+        double distH1T2 = GeometryKernel.distance(xyz, h1, t2);
+        if (!(distH1T2 < clsablConds[1] && distH1T2 > clsablConds[0]))
+            return false;
+        double distH2T1 = GeometryKernel.distance(xyz, h2, t1);
+        if (!(distH2T1 < clsablConds[3] && distH2T1 > clsablConds[2]))
+            return false;
+        double distH2T2 = GeometryKernel.distance(xyz, h2, t2);
+        if (!(distH2T2 < clsablConds[5] && distH2T2 > clsablConds[4]))
+            return false;
+        return GeometryKernel.normalizedDot(xyz, h2, h1, t2, t1)
+                                                          <= clsablConds[6];
+    }
+
 //-----------------------------------------------------------------------------
 
     /**
@@ -319,7 +354,24 @@ public class RingClosure
     public ArrayList<Double> getClosabilityConditions(double etrxTol)
     {
         ArrayList<Double> clsablConds = new ArrayList<Double>();
+        for (double c : getClosabilityConditionsAsArray(etrxTol))
+        {
+            clsablConds.add(c);
+        }
+        return clsablConds;
+    }
+
+//-----------------------------------------------------------------------------
 
+    /**
+     * Returns the min/max values defining the closability conditions in the
+     * order defined in {@link #getClosabilityConditions(double)}.
+     * @param etrxTol additional factor that multiplies dist. tolerance
+     * @return the vector of conditions
+     */
+
+    public double[] getClosabilityConditionsAsArray(double etrxTol)
+    {
         //Define conditions based on SrcAtom-to-RCA bonds and RC-strategy
         double lenH = h1.distance(h2);
         double lenT = t1.distance(t2);
@@ -352,15 +404,10 @@ public class RingClosure
         }
 
         //Collect conditions as a vector
-        clsablConds.add(minDistH1T2);
-        clsablConds.add(maxDistH1T2);
-        clsablConds.add(minDistH2T1);
-        clsablConds.add(maxDistH2T1);
-        clsablConds.add(minDistH2T2);
-        clsablConds.add(maxDistH2T2);
-        clsablConds.add(maxDotProdHT);
-
-        return clsablConds;
+        return new double[] {minDistH1T2, maxDistH1T2,
+                             minDistH2T1, maxDistH2T1,
+                             minDistH2T2, maxDistH2T2,
+                             maxDotProdHT};
     }
 
 //-----------------------------------------------------------------------------
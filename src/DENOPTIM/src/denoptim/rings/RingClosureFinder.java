@@ -19,12 +19,10 @@
 package denoptim.rings;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.vecmath.Point3d;
-import javax.vecmath.Vector3d;
-import javax.vecmath.Matrix3d;
-import javax.vecmath.AxisAngle4d;
 
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
@@ -33,8 +31,10 @@ import org.openscience.cdk.Atom;
 import org.openscience.cdk.interfaces.IBond;
 
 import denoptim.io.DenoptimIO;
+import denoptim.logging.MetricsRegistry;
 import denoptim.utils.DENOPTIMMathUtils;
 import denoptim.utils.GenUtils;
+import denoptim.utils.GeometryKernel;
 
 /**
  * Tool to explore the conformational space of chains of atoms and 
@@ -63,6 +63,12 @@ public class RingClosureFinder
     // Recursion counter for debug purposes
     private static int rec = 0;
 
+    /**
+     * Reusable storage of the coordinates of the chain of points
+     */
+    private static final ThreadLocal<GeometryKernel.Buffer> chainBuffer =
+                                          GeometryKernel.newThreadLocalBuffer();
+
 //----------------------------------------------------------------------------
 
     /**
@@ -104,10 +110,12 @@ public class RingClosureFinder
         
 
         // Create the chain of points to work with
-        List<Point3d> ptsChain = new ArrayList<Point3d>();
+        GeometryKernel.Buffer ptsChain = chainBuffer.get();
+        ptsChain.clear();
         for (int i=0; i<path.size(); i++)
         {
-            ptsChain.add(new Point3d(path.get(i).getPoint3d()));
+            Point3d p = path.get(i).getPoint3d();
+            ptsChain.add(p.x, p.y, p.z);
         }
 
         // Get closability condition
@@ -122,24 +130,22 @@ public class RingClosureFinder
                                          path.get(h2).getPoint3d(),
                                          path.get(t1).getPoint3d(),
                                          path.get(t2).getPoint3d());
-        ArrayList<Double> clsablConds = rc.getClosabilityConditions(
+        double[] clsablConds = rc.getClosabilityConditionsAsArray(
                            RingClosureParameters.getConfPathExtraTolerance());
         if (verbosity > 1)
         {
             System.out.println("RingClosability conditions vector:");
-            System.out.println(clsablConds);
+            System.out.println(Arrays.toString(clsablConds));
         }
 
         // Make work vector of dihedrals (angles around rotatable bonds)
         // avoiding linearities
-        ArrayList<Double> dihedrals = new ArrayList<Double>();
-        ArrayList<Double> dihIncement = new ArrayList<Double>();
+        double[] dihedrals = new double[sz-1];
+        double[] dihIncement = new double[sz-1];
         int nn = 0;
         for (int i=2; i<ptsChain.size(); i++)
         {
-            double a = DENOPTIMMathUtils.angle(ptsChain.get(i-2),
-                                               ptsChain.get(i-1),
-                                               ptsChain.get(i));
+            double a = GeometryKernel.angle(ptsChain, i-2, i-1, i);
             if (a >= RingClosureParameters.getLinearityLimit())
             {
                 if (verbosity > 0)
@@ -150,26 +156,24 @@ public class RingClosureFinder
             {
                 nn++;
             }
-            if (i==2)
-            {
-                // add FIRST even if it is always not rotatable
-                dihedrals.add(0.0);
-                dihIncement.add(0.0);
-            }
-            else
+            // FIRST is always not rotatable and keeps dihedral 0.0
+            if (i>2)
             {
                 ArrayList<Point3d> refPoints = dihRefs.get(i-3);
-                dihedrals.add(DENOPTIMMathUtils.computeDihedralAngle(
+                dihedrals[i-2] = DENOPTIMMathUtils.computeDihedralAngle(
                                                         refPoints.get(0), 
                                                         refPoints.get(1), 
                                                         refPoints.get(2),
-                                                        refPoints.get(3)));
-                dihIncement.add(0.0);
+                                                        refPoints.get(3));
             }
         }
-        // add LAST even if it is always not rotatable
-        dihedrals.add(0.0);
-        dihIncement.add(0.0);
+        // LAST is always not rotatable and keeps dihedral 0.0
+
+        boolean[] rotatable = new boolean[rotatability.size()];
+        for (int i=0; i<rotatable.length; i++)
+        {
+            rotatable[i] = rotatability.get(i);
+        }
 
         if (verbosity > 0)
         {
@@ -180,7 +184,7 @@ public class RingClosureFinder
 
         long startTime = System.nanoTime();
         boolean innerRes = hasClosableRotamer(ptsChain,
-                                rotatability,
+                                rotatable,
                                 dihedrals,
                                 dihIncement,
                                 0,
@@ -188,6 +192,7 @@ public class RingClosureFinder
                                 h1,h2,t1,t2,
                                 clsablConds,
                                 closableConfs);
+        MetricsRegistry.record(MetricsRegistry.Stage.RING_CLOSURE, startTime);
         long endTime = System.nanoTime();
         long time = (endTime - startTime) / (long) 1000.0;
 
@@ -207,30 +212,34 @@ public class RingClosureFinder
 
     /**
      * Scan rotatable space looking for conformations that satisfy closability
-     * condition.
+     * condition. The points of the chain are rotated in place and are
+     * restored to their original position before returning.
      *
-     * @param chain the chain of atoms as a list of points in 3D space
+     * @param chain the chain of atoms as a buffer of points in 3D space
      * @param rotatability flags defining which bond is rotatable
      * @param dihedrals the current value of the dihedral angles
+     * @param dihIncement the current increment of the dihedral angles
      * @param activeRot index of the currently active (rotating) bond
      * @param step the step taken by each sequential rotation of the bond
      * @param h1 the index of the first point defining the head vector
      * @param h2 the index of the second point defining the head vector
      * @param t1 the index of the first point defining the tail vector
      * @param t2 the index of the second point defining the tail vector
-     * @param clsablConds the closability condition vector meant to feed
-     * <code>RingClosure</code> 
+     * @param clsablConds the closability condition vector as given by
+     * {@link RingClosure#getClosabilityConditionsAsArray(double)}
+     * @param closableConfs collector of the dihedral angles of the closable
+     * conformations
      * @return <code>true</code> when the first closable conformation is found
      */
 
-    public static boolean hasClosableRotamer(List<Point3d> chain, 
-                                ArrayList<Boolean> rotatability,
-                                ArrayList<Double> dihedrals,
-                                ArrayList<Double> dihIncement,
+    public static boolean hasClosableRotamer(GeometryKernel.Buffer chain,
+                                boolean[] rotatability,
+                                double[] dihedrals,
+                                double[] dihIncement,
                                 int activeRot,
                                 double step,
                                 int h1, int h2, int t1, int t2,
-                                ArrayList<Double> clsablConds,
+                                double[] clsablConds,
                                 ArrayList<ArrayList<Double>> closableConfs)
     {
 
@@ -238,7 +247,7 @@ public class RingClosureFinder
         if (verbosity > 2)
             System.out.println(rec+"-Rec: "+activeRot);
         int totStp = (int) (360.0 / step);
-        if (!rotatability.get(activeRot))
+        if (!rotatability[activeRot])
         {
             if (verbosity > 2)
                 System.out.println(rec+"-Rec: not active");
@@ -250,45 +259,13 @@ public class RingClosureFinder
                 System.out.println(rec+"-RecLop: "+activeRot+" I:"+i);
             if (i != 0)
             {
-                dihIncement.set(activeRot,dihIncement.get(activeRot) + step);
+                dihIncement[activeRot] = dihIncement[activeRot] + step;
 
                 // Move the whole branch of points that lie after the rotbond
-                Point3d srcRotBnd = chain.get(activeRot);
-                Point3d endRotBnd = chain.get(activeRot+1);
-                Vector3d rotAxis = new Vector3d(endRotBnd.x - srcRotBnd.x, 
-                                                endRotBnd.y - srcRotBnd.y,
-                                                endRotBnd.z - srcRotBnd.z);
-                rotAxis.normalize();
-                Matrix3d rotMat = new Matrix3d();
-
-                rotMat.set(new AxisAngle4d(rotAxis,Math.toRadians(step)));
-
-                if (verbosity > 2)
-                {
-                    System.out.println(" srcRotBnd: " + srcRotBnd);
-                    System.out.println(" endRotBnd: " + endRotBnd);
-                    System.out.println(" rotAxis:   " + rotAxis);
-                    System.out.println(" rotMat:    " + rotMat);
-                }
-
-                for (int ip = activeRot+2; ip<chain.size(); ip++)
-                {
-                    Point3d pt = chain.get(ip);
-                    // Translate to origin of rot. axis while making vector
-                    Vector3d newVec = new Vector3d(pt.x - srcRotBnd.x,
-                                                   pt.y - srcRotBnd.y,
-                                                   pt.z - srcRotBnd.z);
-                    // Rotate
-                    rotMat.transform(newVec);
-
-                    // Translate back to original space
-                    pt.x = newVec.x + srcRotBnd.x;
-                    pt.y = newVec.y + srcRotBnd.y;
-                    pt.z = newVec.z + srcRotBnd.z;
-                }
+                rotateBranch(chain, activeRot, Math.toRadians(step));
             }
 
-            if (activeRot+1 < dihedrals.size())
+            if (activeRot+1 < dihedrals.length)
             {
                 // Lauch exploration of next level
                 rec++;
@@ -307,19 +284,14 @@ public class RingClosureFinder
             else
             {
                 // Evaluate current conformation
-                Point3d pH1 = chain.get(h1);
-                Point3d pH2 = chain.get(h2);
-                Point3d pT1 = chain.get(t1);
-                Point3d pT2 = chain.get(t2);
-                RingClosure rc = new RingClosure(pH1,pH2,pT1,pT2);
-                res = rc.isClosable(clsablConds,false);
+                res = RingClosure.isClosable(clsablConds,chain,h1,h2,t1,t2);
                 if (res)
                 {
                     // Store vector of dihedrals
                     ArrayList<Double> conf = new ArrayList<Double>();
-                    for (int ib=0; ib<dihedrals.size(); ib++)
+                    for (int ib=0; ib<dihedrals.length; ib++)
                     {
-                        double tot = dihedrals.get(ib) + dihIncement.get(ib);
+                        double tot = dihedrals[ib] + dihIncement[ib];
                         if (tot > 180.0)
                         {
                             tot = tot - 360.0;
@@ -334,8 +306,10 @@ public class RingClosureFinder
                         if (verbosity > 1 && writeAllConfs)
                         {
                             reportForDebug("closable.sdf",chain);
-                            System.out.println(" Dihedrals:  " + dihedrals);
-                            System.out.println(" Increments: " + dihIncement);
+                            System.out.println(" Dihedrals:  "
+                                              + Arrays.toString(dihedrals));
+                            System.out.println(" Increments: "
+                                              + Arrays.toString(dihIncement));
                             System.out.println(" Conf.:      " + conf);
                             System.out.println(" See 'closable.sdf'");
 //			    GenUtils.pause();
@@ -349,11 +323,13 @@ public class RingClosureFinder
                         reportForDebug("not_closable.sdf",chain);
                         System.out.println("Conformation of path is NOT "
                                         +"closable! See 'not_closable.sdf'");
-                        System.out.println(" Dihedrals:  " + dihedrals);
-                        System.out.println(" Increments: " + dihIncement);
+                        System.out.println(" Dihedrals:  "
+                                              + Arrays.toString(dihedrals));
+                        System.out.println(" Increments: "
+                                              + Arrays.toString(dihIncement));
                         System.out.println(" Chain:      ");
                         for (int ii=0; ii<chain.size(); ii++)
-                            System.out.println("   " + chain.get(ii));
+                            System.out.println("   " + chain.toString(ii));
 //                        GenUtils.pause();
                     }
                 }
@@ -373,54 +349,62 @@ public class RingClosureFinder
         }
 
         // reset
-        if (rotatability.get(activeRot))
+        if (rotatability[activeRot])
         {
-            dihIncement.set(activeRot,dihIncement.get(activeRot) 
-                                                          - step*(totStp-1));
+            dihIncement[activeRot] = dihIncement[activeRot]
+                                                          - step*(totStp-1);
 
             // Move back the whole branch of points that lie after the rotbond
-            Point3d srcRotBnd = chain.get(activeRot);
-            Point3d endRotBnd = chain.get(activeRot+1);
-            Vector3d rotAxis = new Vector3d(endRotBnd.x - srcRotBnd.x,
-                                            endRotBnd.y - srcRotBnd.y,
-                                            endRotBnd.z - srcRotBnd.z);
-            rotAxis.normalize();
-            Matrix3d rotMat = new Matrix3d();
-            rotMat.set(new AxisAngle4d(rotAxis,
-                                       Math.toRadians(-step * (totStp - 1))));
-
-            for (int ip = activeRot+2; ip<chain.size(); ip++)
-            {
-                Point3d pt = chain.get(ip);
-                // Translate to origin of rot. axis while making vector
-                Vector3d newVec = new Vector3d(pt.x - srcRotBnd.x,
-                                               pt.y - srcRotBnd.y,
-                                               pt.z - srcRotBnd.z);
-                // Rotate
-                rotMat.transform(newVec);
-
-                // Translate back to original space
-                pt.x = newVec.x + srcRotBnd.x;
-                pt.y = newVec.y + srcRotBnd.y;
-                pt.z = newVec.z + srcRotBnd.z;
-            }
+            rotateBranch(chain, activeRot,
+                                       Math.toRadians(-step * (totStp - 1)));
         }
 
         return res;
     }
 
+//----------------------------------------------------------------------------
+
+    /**
+     * Rotates in place the points that lie after a bond of the chain, i.e.,
+     * the branch of points that follows the rotatable bond.
+     * @param chain the chain of points
+     * @param rotBnd index of the rotatable bond, i.e., of its first point
+     * @param angle the angle of rotation (radians)
+     */
+
+    private static void rotateBranch(GeometryKernel.Buffer chain, int rotBnd,
+                                     double angle)
+    {
+        int src = rotBnd;
+        int end = rotBnd+1;
+        if (verbosity > 2)
+        {
+            System.out.println(" srcRotBnd: " + chain.toString(src));
+            System.out.println(" endRotBnd: " + chain.toString(end));
+            System.out.println(" rotAngle:  " + angle);
+        }
+        GeometryKernel.rotate(chain, rotBnd+2, chain.size(),
+                              chain.x[src], chain.y[src], chain.z[src],
+                              chain.x[end] - chain.x[src],
+                              chain.y[end] - chain.y[src],
+                              chain.z[end] - chain.z[src],
+                              angle);
+    }
+
 //----------------------------------------------------------------------------
 
     /**
      * Method for reporting a path of atoms (list of points) as SDF file
      */
 
-    private static void reportForDebug(String filename, List<Point3d> chain)
+    private static void reportForDebug(String filename,
+                                       GeometryKernel.Buffer chain)
     {
         IAtomContainer mol = new AtomContainer();
         for (int ia=0 ; ia<chain.size(); ia++)
         {
-            Atom atm = new Atom("He",chain.get(ia));
+            Atom atm = new Atom("He",new Point3d(chain.x[ia], chain.y[ia],
+                                                 chain.z[ia]));
             mol.addAtom(atm);
             if (ia > 0)
                mol.addBond(ia-1,ia,IBond.Order.valueOf("SINGLE"));
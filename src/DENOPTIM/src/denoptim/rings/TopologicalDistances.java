@@ -0,0 +1,211 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.rings;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+
+/**
+ * Topological distances (i.e., number of bonds along the shortest path)
+ * among selected atoms of a molecule. The connectivity is stored in
+ * compressed sparse row format and the distances are found by breadth-first
+ * search from the selected atoms only, so that the cost is proportional to
+ * the number of selected atoms times the size of the molecule, rather than
+ * to the cube of the size of the molecule as for the full topological matrix.
+ *
+ * @author Marco Foscato
+ */
+
+public class TopologicalDistances
+{
+    /**
+     * Distance between atoms that are not connected
+     */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * Number of atoms
+     */
+    private final int n;
+
+    /**
+     * Position of the first neighbor of each atom in {@link #neighbors}.
+     * The neighbors of atom <i>i</i> are in the range from
+     * <code>offsets[i]</code> (inclusive) to <code>offsets[i+1]</code>
+     * (exclusive).
+     */
+    private final int[] offsets;
+
+    /**
+     * Neighbors of all the atoms
+     */
+    private final int[] neighbors;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Constructor from a list of bonds.
+     * @param nAtoms the number of atoms.
+     * @param bondBegin the index of the first atom of each bond.
+     * @param bondEnd the index of the second atom of each bond.
+     */
+    public TopologicalDistances(int nAtoms, int[] bondBegin, int[] bondEnd)
+    {
+        if (bondBegin.length != bondEnd.length)
+        {
+            throw new IllegalArgumentException("Bonds have " + bondBegin.length
+                    + " begin atoms but " + bondEnd.length + " end atoms.");
+        }
+        n = nAtoms;
+        offsets = new int[n + 1];
+        for (int b=0; b<bondBegin.length; b++)
+        {
+            offsets[bondBegin[b] + 1]++;
+            offsets[bondEnd[b] + 1]++;
+        }
+        for (int i=0; i<n; i++)
+        {
+            offsets[i+1] = offsets[i+1] + offsets[i];
+        }
+        neighbors = new int[offsets[n]];
+        int[] fill = Arrays.copyOf(offsets, n);
+        for (int b=0; b<bondBegin.length; b++)
+        {
+            neighbors[fill[bondBegin[b]]++] = bondEnd[b];
+            neighbors[fill[bondEnd[b]]++] = bondBegin[b];
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Collects the connectivity of a molecule. Bonds involving more than two
+     * atoms are taken as bonds between their first two atoms.
+     * @param mol the molecule.
+     * @return the distances calculator for the molecule.
+     */
+    public static TopologicalDistances fromMolecule(IAtomContainer mol)
+    {
+        Map<IAtom,Integer> atmIds = new IdentityHashMap<IAtom,Integer>();
+        for (int i=0; i<mol.getAtomCount(); i++)
+        {
+            atmIds.put(mol.getAtom(i), i);
+        }
+        int nBonds = mol.getBondCount();
+        int[] bgn = new int[nBonds];
+        int[] end = new int[nBonds];
+        for (int b=0; b<nBonds; b++)
+        {
+            IBond bnd = mol.getBond(b);
+            bgn[b] = atmIds.get(bnd.getAtom(0));
+            end[b] = atmIds.get(bnd.getAtom(1));
+        }
+        return new TopologicalDistances(mol.getAtomCount(), bgn, end);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of atoms.
+     */
+    public int getAtomCount()
+    {
+        return n;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Calculates the distances among a set of atoms. The search from each
+     * atom stops as soon as all the other atoms of the set have been reached.
+     * @param atoms the indexes of the atoms.
+     * @return the table of distances, where the entry <i>[i][j]</i> is the
+     * distance between <code>atoms[i]</code> and <code>atoms[j]</code>, or
+     * {@link #UNREACHABLE} if they are not connected.
+     */
+    public int[][] getDistances(int[] atoms)
+    {
+        int k = atoms.length;
+        int[][] table = new int[k][k];
+
+        // Position of each atom in the set, or -1
+        int[] target = new int[n];
+        Arrays.fill(target, -1);
+        int nTargets = 0;
+        for (int t=0; t<k; t++)
+        {
+            if (target[atoms[t]] < 0)
+            {
+                nTargets++;
+            }
+            target[atoms[t]] = t;
+        }
+
+        int[] dist = new int[n];
+        int[] queue = new int[n];
+        for (int s=0; s<k; s++)
+        {
+            Arrays.fill(table[s], UNREACHABLE);
+            Arrays.fill(dist, -1);
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = atoms[s];
+            dist[atoms[s]] = 0;
+            int found = 0;
+            while (head < tail)
+            {
+                int a = queue[head++];
+                if (target[a] >= 0)
+                {
+                    found++;
+                    if (found == nTargets)
+                    {
+                        break;
+                    }
+                }
+                for (int p=offsets[a]; p<offsets[a+1]; p++)
+                {
+                    int nbr = neighbors[p];
+                    if (dist[nbr] < 0)
+                    {
+                        dist[nbr] = dist[a] + 1;
+                        queue[tail++] = nbr;
+                    }
+                }
+            }
+            // Atoms queued but not visited already have their final distance
+            for (int t=0; t<k; t++)
+            {
+                if (dist[atoms[t]] >= 0)
+                {
+                    table[s][t] = dist[atoms[t]];
+                }
+            }
+        }
+        return table;
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,119 @@
+package denoptim.rings;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the topological distances among selected atoms
+ *
+ * @author Marco Foscato
+ */
+
+public class TopologicalDistancesTest
+{
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testDistances() throws Exception
+    {
+        // Six-membered ring 0-5 with a chain 5-6-7-8, and isolated atom 9
+        int[] bgn = new int[] {0, 1, 2, 3, 4, 5, 5, 6, 7};
+        int[] end = new int[] {1, 2, 3, 4, 5, 0, 6, 7, 8};
+        TopologicalDistances td = new TopologicalDistances(10, bgn, end);
+        assertEquals(10, td.getAtomCount());
+
+        int[][] d = td.getDistances(new int[] {8, 2, 9, 5});
+        int[][] expected = new int[][] {
+            {0, 6, TopologicalDistances.UNREACHABLE, 3},
+            {6, 0, TopologicalDistances.UNREACHABLE, 3},
+            {TopologicalDistances.UNREACHABLE, TopologicalDistances.UNREACHABLE,
+                0, TopologicalDistances.UNREACHABLE},
+            {3, 3, TopologicalDistances.UNREACHABLE, 0}};
+        for (int i=0; i<expected.length; i++)
+        {
+            for (int j=0; j<expected.length; j++)
+            {
+                assertEquals(expected[i][j], d[i][j], "Entry " + i + "," + j);
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testAgainstAllPairs() throws Exception
+    {
+        // Ladder-like graph with rungs: many alternative paths
+        int nRungs = 30;
+        int n = 2 * nRungs;
+        int nb = 3 * nRungs - 2;
+        int[] bgn = new int[nb];
+        int[] end = new int[nb];
+        int b = 0;
+        for (int i=0; i<nRungs; i++)
+        {
+            bgn[b] = 2*i;
+            end[b++] = 2*i + 1;
+            if (i > 0)
+            {
+                bgn[b] = 2*(i-1);
+                end[b++] = 2*i;
+                bgn[b] = 2*(i-1) + 1;
+                end[b++] = 2*i + 1;
+            }
+        }
+
+        // Reference from Floyd-Warshall
+        int inf = 1000000;
+        int[][] ref = new int[n][n];
+        for (int i=0; i<n; i++)
+        {
+            for (int j=0; j<n; j++)
+            {
+                ref[i][j] = i == j ? 0 : inf;
+            }
+        }
+        for (int i=0; i<nb; i++)
+        {
+            ref[bgn[i]][end[i]] = 1;
+            ref[end[i]][bgn[i]] = 1;
+        }
+        for (int k=0; k<n; k++)
+            for (int i=0; i<n; i++)
+                for (int j=0; j<n; j++)
+                    ref[i][j] = Math.min(ref[i][j], ref[i][k] + ref[k][j]);
+
+        int[] atoms = new int[] {0, 7, 13, 58, 59, 30};
+        int[][] d = new TopologicalDistances(n, bgn, end).getDistances(atoms);
+        for (int i=0; i<atoms.length; i++)
+        {
+            for (int j=0; j<atoms.length; j++)
+            {
+                assertEquals(ref[atoms[i]][atoms[j]], d[i][j]);
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+}
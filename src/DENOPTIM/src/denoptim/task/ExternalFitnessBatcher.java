@@ -0,0 +1,460 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import denoptim.constants.DENOPTIMConstants;
+import denoptim.exception.DENOPTIMException;
+import denoptim.fitness.FitnessParameters;
+import denoptim.io.DenoptimIO;
+import denoptim.logging.DENOPTIMLogger;
+import denoptim.utils.TaskUtils;
+
+/**
+ * Collects candidates from concurrently running fitness tasks and sends them
+ * to the external fitness provider in batches. Each batch is written into a
+ * single multi-molecule SDF file, the external fitness provider is called
+ * once per batch, and the multi-molecule SDF file it produces is split
+ * into the records pertaining to each candidate. Records are matched to
+ * the candidates by title, or, if no match is found by title, by graph ID
+ * (i.e., the <code>GCODE</code> property).
+ * <p>A batch is submitted as soon as it contains as many candidates as
+ * defined by {@link FitnessParameters#getBatchSize()}, or when the first
+ * candidate in the batch has waited for longer than
+ * {@link FitnessParameters#getBatchTimeout()} milliseconds.
+ * The thread that closes the batch is the one running the external process,
+ * while the other threads wait for the results. A thread that is
+ * interrupted while its batch is still open withdraws its candidate, and
+ * the last thread to withdraw discards the batch.</p>
+ * <p>While the external process runs, its {@link ProcessHandler} is
+ * registered in the task of each candidate of the batch, so that stopping
+ * any of those tasks kills the process, and all the candidates of the batch
+ * are reported as failed.</p>
+ *
+ * @author Marco Foscato
+ */
+
+public class ExternalFitnessBatcher
+{
+    /**
+     * The batch that is currently collecting candidates
+     */
+    private static Batch openBatch = null;
+
+    /**
+     * Synchronisation lock for the definition of batches
+     */
+    private static final Object LOCK = new Object();
+
+    /**
+     * System-dependent file separator
+     */
+    private static final String SEP = System.getProperty("file.separator");
+
+    /**
+     * System-dependent line separator (newline)
+     */
+    private static final String NL = System.getProperty("line.separator");
+
+//------------------------------------------------------------------------------
+
+    /**
+     * The request of evaluation of a single candidate, and the place where
+     * the result for that candidate is stored.
+     */
+    public static class Request
+    {
+        private final IAtomContainer mol;
+        private final String title;
+        private final String gcode;
+        private final String workDir;
+        private final Task task;
+        private IAtomContainer processedMol = null;
+        private String outFile = null;
+        private String error = null;
+
+        Request(IAtomContainer mol, String workDir)
+        {
+            this(mol, workDir, null);
+        }
+
+        Request(IAtomContainer mol, String workDir, Task task)
+        {
+            this.mol = mol;
+            this.workDir = workDir;
+            this.task = task;
+            Object t = mol.getProperty(CDKConstants.TITLE);
+            this.title = t == null ? null : t.toString();
+            Object g = mol.getProperty(DENOPTIMConstants.GCODETAG);
+            this.gcode = g == null ? null : g.toString();
+        }
+
+        /**
+         * @return the record pertaining to this candidate as found in the
+         * output of the external fitness provider, or <code>null</code> if
+         * no such record could be found.
+         */
+        public IAtomContainer getProcessedMolecule()
+        {
+            return processedMol;
+        }
+
+        /**
+         * @return the pathname of the output file produced by the external
+         * fitness provider for the batch this request belonged to.
+         */
+        public String getBatchOutputFile()
+        {
+            return outFile;
+        }
+
+        /**
+         * @return the error preventing to retrieve the results for this
+         * request, or <code>null</code> if there was no such error.
+         */
+        public String getError()
+        {
+            return error;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * A group of requests that is sent to the external fitness provider with
+     * a single call.
+     */
+    private static class Batch
+    {
+        private final List<Request> requests = new ArrayList<Request>();
+        private final long deadline;
+        private boolean done = false;
+
+        private Batch(long deadline)
+        {
+            this.deadline = deadline;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Adds a candidate to the currently open batch and waits until the
+     * external fitness provider has processed the batch. This method blocks
+     * the calling thread.
+     * @param mol the chemical representation of the candidate.
+     * Must have a title and/or <code>GCODE</code> property.
+     * @param workDir the directory where batch input/output files are
+     * written if this candidate happens to be the first of its batch.
+     * @param uidFile pathname to the file with UIDs of previously evaluated
+     * candidates, or <code>null</code>.
+     * @param task the task asking for the evaluation of the candidate, or
+     * <code>null</code>. Stopping this task kills the external process
+     * running the batch of this candidate.
+     * @return the request with the results.
+     * @throws DENOPTIMException if the thread is interrupted while waiting.
+     */
+
+    public static Request evaluate(IAtomContainer mol, String workDir,
+            String uidFile, Task task) throws DENOPTIMException
+    {
+        Request req = new Request(mol, workDir, task);
+        Batch batch;
+        boolean runner = false;
+        synchronized (LOCK)
+        {
+            if (openBatch == null)
+            {
+                openBatch = new Batch(System.currentTimeMillis()
+                        + FitnessParameters.getBatchTimeout());
+            }
+            batch = openBatch;
+            batch.requests.add(req);
+            if (batch.requests.size() >= FitnessParameters.getBatchSize())
+            {
+                openBatch = null;
+                runner = true;
+            }
+        }
+
+        try
+        {
+            if (!runner)
+            {
+                synchronized (batch)
+                {
+                    long wait = batch.deadline - System.currentTimeMillis();
+                    while (!batch.done && wait > 0)
+                    {
+                        batch.wait(wait);
+                        wait = batch.deadline - System.currentTimeMillis();
+                    }
+                }
+                synchronized (LOCK)
+                {
+                    // Time is up: whoever gets here first runs the batch
+                    if (openBatch == batch)
+                    {
+                        openBatch = null;
+                        runner = true;
+                    }
+                }
+                if (!runner)
+                {
+                    synchronized (batch)
+                    {
+                        while (!batch.done)
+                        {
+                            batch.wait();
+                        }
+                    }
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            withdraw(batch, req);
+            Thread.currentThread().interrupt();
+            throw new DENOPTIMException("Interrupted while waiting for batch "
+                    + "of candidates to be evaluated.", e);
+        }
+
+        if (runner)
+        {
+            try
+            {
+                runBatch(batch, uidFile);
+            }
+            finally
+            {
+                synchronized (batch)
+                {
+                    batch.done = true;
+                    batch.notifyAll();
+                }
+            }
+        }
+        return req;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Removes a request from a batch that is still collecting candidates.
+     * If no request is left, the batch is discarded, so that the next
+     * candidate starts a new batch rather than joining a batch nobody waits
+     * for. Batches that have been closed already are left untouched, as
+     * they are being run.
+     * @param batch the batch of the request.
+     * @param req the request to remove.
+     */
+
+    private static void withdraw(Batch batch, Request req)
+    {
+        synchronized (LOCK)
+        {
+            if (openBatch != batch)
+            {
+                return;
+            }
+            batch.requests.remove(req);
+            if (batch.requests.isEmpty())
+            {
+                openBatch = null;
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Runs the external fitness provider on a batch and distributes the
+     * results among the requests. Any failure is recorded in the requests,
+     * so that each candidate can report it separately.
+     */
+
+    private static void runBatch(Batch batch, String uidFile)
+    {
+        int batchId = TaskUtils.getUniqueTaskIndex();
+        String workDir = batch.requests.get(0).workDir;
+        String root = workDir + SEP + DENOPTIMConstants.FITBATCHFILENAMEPREFIX
+                + batchId;
+        String inFile = root + DENOPTIMConstants.FITFILENAMEEXTIN;
+        String outFile = root + DENOPTIMConstants.FITFILENAMEEXTOUT;
+        for (Request r : batch.requests)
+        {
+            r.outFile = outFile;
+        }
+
+        ArrayList<IAtomContainer> mols = new ArrayList<IAtomContainer>();
+        for (Request r : batch.requests)
+        {
+            mols.add(r.mol);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(FitnessParameters.getExternalFitnessProviderInterpreter());
+        sb.append(" ").append(FitnessParameters.getExternalFitnessProvider())
+              .append(" ").append(inFile)
+              .append(" ").append(outFile)
+              .append(" ").append(workDir)
+              .append(" ").append(batchId);
+        if (uidFile != null)
+        {
+            sb.append(" ").append(uidFile);
+        }
+
+        String err = null;
+        try
+        {
+            DenoptimIO.writeMoleculeSet(inFile, mols);
+
+            DENOPTIMLogger.appLogger.log(Level.INFO, "Calling external "
+                    + "fitness provider on batch of " + mols.size()
+                    + " candidates: => " + sb + NL);
+
+            ProcessHandler ph = new ProcessHandler(sb.toString(),
+                    Integer.toString(batchId));
+            registerProcessHandler(batch, ph);
+            try
+            {
+                ph.runProcess();
+            }
+            finally
+            {
+                registerProcessHandler(batch, null);
+            }
+            if (ph.getExitCode() != 0)
+            {
+                err = "Failed to execute fitness provider "
+                        + FitnessParameters.getExternalFitnessProviderInterpreter()
+                        + " command '"
+                        + FitnessParameters.getExternalFitnessProvider()
+                        + "' on " + inFile;
+                DENOPTIMLogger.appLogger.severe(err);
+                DENOPTIMLogger.appLogger.severe(ph.getErrorOutput());
+            }
+        }
+        catch (Throwable t)
+        {
+            err = "Failed to run fitness provider on batch " + batchId + ": "
+                    + t.getMessage();
+            DENOPTIMLogger.appLogger.severe(err);
+        }
+
+        if (err == null)
+        {
+            try
+            {
+                distributeResults(batch.requests,
+                        DenoptimIO.readSDFFile(outFile));
+            }
+            catch (Throwable t)
+            {
+                // Each request will find itself without results, and will
+                // thus be handled as unreadable.
+                DENOPTIMLogger.appLogger.log(Level.WARNING, "Unreadable file "
+                        + "from fitness provider run on batch " + batchId
+                        + ". Check " + outFile + ".");
+            }
+        } else {
+            for (Request r : batch.requests)
+            {
+                r.error = err;
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Makes the handler of the external process reachable by the tasks of all
+     * the requests of a batch, so that stopping any of those tasks stops the
+     * process.
+     * @param batch the batch being run.
+     * @param ph the handler of the process running the batch, or
+     * <code>null</code> to unregister it.
+     */
+
+    private static void registerProcessHandler(Batch batch, ProcessHandler ph)
+    {
+        for (Request r : batch.requests)
+        {
+            if (r.task != null)
+            {
+                r.task.processHandler = ph;
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Assigns the records produced by the fitness provider to the requests.
+     * Records are matched by title first, and by <code>GCODE</code> as
+     * a second option. Records that are found for no request are ignored.
+     * @param requests the requests to satisfy.
+     * @param records the records produced by the fitness provider.
+     */
+
+    static void distributeResults(List<Request> requests,
+            List<IAtomContainer> records)
+    {
+        Map<String,IAtomContainer> byTitle =
+                new HashMap<String,IAtomContainer>();
+        Map<String,IAtomContainer> byGCode =
+                new HashMap<String,IAtomContainer>();
+        for (IAtomContainer rec : records)
+        {
+            Object t = rec.getProperty(CDKConstants.TITLE);
+            if (t != null)
+            {
+                byTitle.putIfAbsent(t.toString(), rec);
+            }
+            Object g = rec.getProperty(DENOPTIMConstants.GCODETAG);
+            if (g != null)
+            {
+                byGCode.putIfAbsent(g.toString(), rec);
+            }
+        }
+
+        for (Request r : requests)
+        {
+            if (r.title != null && byTitle.containsKey(r.title))
+            {
+                r.processedMol = byTitle.get(r.title);
+            }
+            else if (r.gcode != null && byGCode.containsKey(r.gcode))
+            {
+                r.processedMol = byGCode.get(r.gcode);
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+}
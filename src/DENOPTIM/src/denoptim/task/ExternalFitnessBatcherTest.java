@@ -0,0 +1,215 @@
+package denoptim.task;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openscience.cdk.AtomContainer;
+import org.openscience.cdk.CDKConstants;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import denoptim.constants.DENOPTIMConstants;
+import denoptim.fitness.FitnessParameters;
+
+/**
+ * Unit test for the assignment of the results of batched fitness
+ * evaluations to the candidates.
+ *
+ * @author Marco Foscato
+ */
+
+public class ExternalFitnessBatcherTest
+{
+    @TempDir
+    File tempDir;
+
+//------------------------------------------------------------------------------
+
+    @AfterEach
+    public void cleanup()
+    {
+        FitnessParameters.resetParameters();
+    }
+
+//------------------------------------------------------------------------------
+
+    private IAtomContainer makeMol(String title, String gcode)
+    {
+        IAtomContainer mol = new AtomContainer();
+        if (title != null)
+        {
+            mol.setProperty(CDKConstants.TITLE, title);
+        }
+        if (gcode != null)
+        {
+            mol.setProperty(DENOPTIMConstants.GCODETAG, gcode);
+        }
+        return mol;
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testReorderedRecords() throws Exception
+    {
+        List<ExternalFitnessBatcher.Request> reqs =
+                new ArrayList<ExternalFitnessBatcher.Request>();
+        for (int i=0; i<4; i++)
+        {
+            reqs.add(new ExternalFitnessBatcher.Request(
+                    makeMol("M" + i, Integer.toString(i)), "."));
+        }
+
+        List<IAtomContainer> recs = new ArrayList<IAtomContainer>();
+        for (int i=3; i>-1; i--)
+        {
+            recs.add(makeMol("M" + i, Integer.toString(i)));
+        }
+
+        ExternalFitnessBatcher.distributeResults(reqs, recs);
+
+        for (int i=0; i<4; i++)
+        {
+            assertSame(recs.get(3-i), reqs.get(i).getProcessedMolecule(),
+                    "Wrong record for request " + i);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testMatchByGCode() throws Exception
+    {
+        List<ExternalFitnessBatcher.Request> reqs =
+                new ArrayList<ExternalFitnessBatcher.Request>();
+        reqs.add(new ExternalFitnessBatcher.Request(makeMol("M0", "10"), "."));
+        reqs.add(new ExternalFitnessBatcher.Request(makeMol(null, "11"), "."));
+        reqs.add(new ExternalFitnessBatcher.Request(makeMol("M2", "12"), "."));
+
+        // The provider renamed M0 but kept its GCODE, and wrote the record
+        // of M2 with the GCODE of M0: the title has priority.
+        IAtomContainer recA = makeMol("renamed", "10");
+        IAtomContainer recB = makeMol(null, "11");
+        IAtomContainer recC = makeMol("M2", "10");
+        List<IAtomContainer> recs = new ArrayList<IAtomContainer>();
+        recs.add(recC);
+        recs.add(recB);
+        recs.add(recA);
+
+        ExternalFitnessBatcher.distributeResults(reqs, recs);
+
+        assertSame(recC, reqs.get(2).getProcessedMolecule());
+        assertSame(recB, reqs.get(1).getProcessedMolecule());
+        assertSame(recC, reqs.get(0).getProcessedMolecule(),
+                "First record with the GCODE is used");
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testMissingRecords() throws Exception
+    {
+        List<ExternalFitnessBatcher.Request> reqs =
+                new ArrayList<ExternalFitnessBatcher.Request>();
+        reqs.add(new ExternalFitnessBatcher.Request(makeMol("M0", "0"), "."));
+        reqs.add(new ExternalFitnessBatcher.Request(makeMol("M1", "1"), "."));
+        reqs.add(new ExternalFitnessBatcher.Request(makeMol("M2", "2"), "."));
+
+        IAtomContainer recA = makeMol("M2", "2");
+        IAtomContainer unrelated = makeMol("X", "99");
+        List<IAtomContainer> recs = new ArrayList<IAtomContainer>();
+        recs.add(unrelated);
+        recs.add(recA);
+
+        ExternalFitnessBatcher.distributeResults(reqs, recs);
+
+        assertNull(reqs.get(0).getProcessedMolecule());
+        assertNull(reqs.get(1).getProcessedMolecule());
+        assertSame(recA, reqs.get(2).getProcessedMolecule());
+
+        ExternalFitnessBatcher.distributeResults(reqs.subList(0, 1),
+                new ArrayList<IAtomContainer>());
+        assertNull(reqs.get(0).getProcessedMolecule());
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testStopTaskKillsBatch() throws Exception
+    {
+        // A fitness provider that never completes
+        File script = new File(tempDir, "neverEnds.sh");
+        FileWriter fw = new FileWriter(script);
+        fw.write("exec sleep 600\n");
+        fw.close();
+        FitnessParameters.interpretKeyword("FP-SOURCE=",
+                script.getAbsolutePath());
+        FitnessParameters.interpretKeyword("FP-INTERPRETER=", "bash");
+        FitnessParameters.interpretKeyword("FP-BATCHSIZE=", "1");
+
+        Task task = new DummyTask(0);
+        AtomicReference<ExternalFitnessBatcher.Request> result =
+                new AtomicReference<ExternalFitnessBatcher.Request>();
+        Thread runner = new Thread(() -> {
+            try
+            {
+                result.set(ExternalFitnessBatcher.evaluate(
+                        makeMol("M0", "0"), tempDir.getAbsolutePath(), null,
+                        task));
+            }
+            catch (Throwable t)
+            {
+                // Leaves the result unset
+            }
+        });
+        runner.start();
+
+        // Wait for the batch to be running
+        long deadline = System.currentTimeMillis() + 10000;
+        while (task.processHandler == null
+                && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertNotNull(task.processHandler, "Batch not started");
+
+        // Stopping the task kills the process running the batch
+        task.stopTask();
+        runner.join(10000);
+        assertFalse(runner.isAlive(), "Batch not stopped with its task");
+        assertNotNull(result.get());
+        assertNotNull(result.get().getError());
+        assertNull(task.processHandler);
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,557 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.task;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import denoptim.exception.DENOPTIMException;
+import denoptim.fitness.FitnessParameters;
+import denoptim.io.DenoptimIO;
+import denoptim.logging.DENOPTIMLogger;
+
+/**
+ * Pool of persistent external fitness provider processes (co-processes).
+ * Each co-process is started once and is then fed with candidates via its
+ * standard input, while the results are collected from its standard output.
+ * <p>Both requests and replies are length-prefixed SDF records: a line with
+ * the number of bytes of the record (decimal, ASCII) followed by the
+ * UTF-8 encoded SDF record itself. Each request is expected to produce
+ * exactly one reply. The reply is interpreted exactly as the output file
+ * of the conventional external fitness provider, i.e., it may contain
+ * the <code>FITNESS</code> or <code>MOL_ERROR</code> properties.</p>
+ * <p>Co-processes are launched with the command
+ * <code>&lt;interpreter&gt; &lt;source&gt; --coprocess &lt;id&gt;
+ * [&lt;UIDfile&gt;]</code>.
+ * A co-process that crashes, or that does not reply within the time given
+ * by {@link FitnessParameters#getCoProcessTimeout()}, is killed and
+ * replaced by a new one.</p>
+ *
+ * @author Marco Foscato
+ */
+
+public class FitnessCoProcessPool
+{
+    /**
+     * Co-processes that are currently not serving any request
+     */
+    private static BlockingQueue<CoProcess> idle = null;
+
+    /**
+     * All co-processes of the pool, whether idle or busy
+     */
+    private static List<CoProcess> all = null;
+
+    /**
+     * Pathname to the file with UIDs given to the co-processes
+     */
+    private static String uidFile = null;
+
+    /**
+     * Synchronisation lock for the initialisation of the pool
+     */
+    private static final Object LOCK = new Object();
+
+//------------------------------------------------------------------------------
+
+    /**
+     * A single persistent process and the tools to talk to it.
+     */
+    private static class CoProcess
+    {
+        private final int cpId;
+        private Process proc = null;
+        private OutputStream toProc = null;
+        private InputStream fromProc = null;
+        private StreamGobbler errGobbler = null;
+
+        /**
+         * Set when the pool is shut down: the co-process cannot be restarted
+         */
+        private boolean retired = false;
+
+        /**
+         * Thread reading replies, so that we can put a timeout on them
+         */
+        private final ExecutorService reader =
+                Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "FitnessCoProcessReader");
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        private CoProcess(int cpId)
+        {
+            this.cpId = cpId;
+        }
+
+        private synchronized void start() throws DENOPTIMException
+        {
+            if (retired)
+            {
+                throw new DENOPTIMException("Fitness provider co-processes "
+                        + "have been shut down.");
+            }
+            StringBuilder sb = new StringBuilder();
+            sb.append(FitnessParameters.getExternalFitnessProviderInterpreter())
+                .append(" ").append(
+                        FitnessParameters.getExternalFitnessProvider())
+                .append(" --coprocess ").append(cpId);
+            if (uidFile != null)
+            {
+                sb.append(" ").append(uidFile);
+            }
+            DENOPTIMLogger.appLogger.log(Level.INFO, "Starting fitness "
+                    + "provider co-process: => " + sb);
+            try
+            {
+                ProcessBuilder pb = new ProcessBuilder("/bin/bash", "-c",
+                        sb.toString());
+                proc = pb.start();
+            }
+            catch (IOException e)
+            {
+                throw new DENOPTIMException("Could not start fitness provider "
+                        + "co-process '" + sb + "'.", e);
+            }
+            toProc = new BufferedOutputStream(proc.getOutputStream());
+            fromProc = new BufferedInputStream(proc.getInputStream());
+            errGobbler = new StreamGobbler(proc.getErrorStream(), "ERR");
+            errGobbler.setDaemon(true);
+            errGobbler.start();
+        }
+
+        private synchronized boolean isAlive()
+        {
+            return proc != null && proc.isAlive();
+        }
+
+        private synchronized boolean isRetired()
+        {
+            return retired;
+        }
+
+        /**
+         * Kills the process and stops the reader for good. A request that
+         * is in flight fails as soon as the streams are closed.
+         */
+        private synchronized void retire()
+        {
+            retired = true;
+            kill();
+            for (Runnable r : reader.shutdownNow())
+            {
+                if (r instanceof Future)
+                {
+                    ((Future<?>) r).cancel(true);
+                }
+            }
+        }
+
+        private synchronized void kill()
+        {
+            if (proc != null)
+            {
+                proc.destroyForcibly();
+                // Closing the output flushes it, which fails if the process
+                // is gone: close the input regardless
+                try
+                {
+                    toProc.close();
+                }
+                catch (IOException e)
+                {
+                    // nothing to do: the process is gone anyway
+                }
+                try
+                {
+                    fromProc.close();
+                }
+                catch (IOException e)
+                {
+                    // nothing to do: the process is gone anyway
+                }
+                proc = null;
+            }
+        }
+
+        private String getErrorOutput()
+        {
+            if (errGobbler == null)
+            {
+                return "";
+            }
+            return errGobbler.getMessages();
+        }
+
+        private String send(String sdfRecord, long timeout)
+                throws IOException, TimeoutException, InterruptedException
+        {
+            writeFrame(toProc, sdfRecord);
+            Future<String> reply;
+            try
+            {
+                reply = reader.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws IOException
+                    {
+                        return readFrame(fromProc);
+                    }
+                });
+            }
+            catch (RejectedExecutionException e)
+            {
+                throw new IOException("Co-process has been shut down.", e);
+            }
+            try
+            {
+                return reply.get(timeout, TimeUnit.MILLISECONDS);
+            }
+            catch (java.util.concurrent.ExecutionException e)
+            {
+                throw new IOException(e.getCause());
+            }
+            catch (CancellationException e)
+            {
+                throw new IOException("Co-process has been shut down.", e);
+            }
+            finally
+            {
+                reply.cancel(true);
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Starts the co-processes, unless they are already running.
+     * @param uidFilePathname pathname to the file with UIDs of previously
+     * evaluated candidates, or <code>null</code>.
+     * @throws DENOPTIMException
+     */
+
+    private static void ensureStarted(String uidFilePathname)
+            throws DENOPTIMException
+    {
+        synchronized (LOCK)
+        {
+            if (idle != null)
+            {
+                return;
+            }
+            uidFile = uidFilePathname;
+            int n = FitnessParameters.getNumberOfCoProcesses();
+            BlockingQueue<CoProcess> q = new ArrayBlockingQueue<CoProcess>(n);
+            List<CoProcess> cps = new ArrayList<CoProcess>();
+            for (int i=0; i<n; i++)
+            {
+                CoProcess cp = new CoProcess(i);
+                cps.add(cp);
+                try
+                {
+                    cp.start();
+                }
+                catch (DENOPTIMException e)
+                {
+                    for (CoProcess other : cps)
+                    {
+                        other.retire();
+                    }
+                    throw e;
+                }
+                q.add(cp);
+            }
+            all = cps;
+            idle = q;
+            Runtime.getRuntime().addShutdownHook(new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    shutdown();
+                }
+            });
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Sends a candidate to one of the co-processes and waits for the reply.
+     * If the co-process crashed or does not reply in time, it is replaced by
+     * a new co-process and the request is attempted once more.
+     * @param mol the chemical representation of the candidate.
+     * @param uidFilePathname pathname to the file with UIDs of previously
+     * evaluated candidates, or <code>null</code>. Used only upon the first
+     * call, which starts the co-processes.
+     * @return the record returned by the co-process, or <code>null</code> if
+     * the reply could not be interpreted as an SDF record.
+     * @throws DENOPTIMException if no reply could be obtained.
+     */
+
+    public static IAtomContainer evaluate(IAtomContainer mol,
+            String uidFilePathname) throws DENOPTIMException
+    {
+        ensureStarted(uidFilePathname);
+        String request = DenoptimIO.getSDFString(mol);
+
+        // The queue we take from is also the one we return to, even if the
+        // pool is shut down, and maybe restarted, in the meantime.
+        BlockingQueue<CoProcess> queue;
+        synchronized (LOCK)
+        {
+            queue = idle;
+        }
+        if (queue == null)
+        {
+            throw new DENOPTIMException("Fitness provider co-processes have "
+                    + "been shut down.");
+        }
+
+        CoProcess cp;
+        try
+        {
+            cp = queue.take();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new DENOPTIMException("Interrupted while waiting for an idle "
+                    + "fitness provider co-process.", e);
+        }
+
+        String reply = null;
+        String err = "";
+        try
+        {
+            for (int attempt=0; attempt<2; attempt++)
+            {
+                if (!cp.isAlive())
+                {
+                    if (cp.isRetired())
+                    {
+                        throw new DENOPTIMException("Fitness provider "
+                                + "co-processes have been shut down.");
+                    }
+                    DENOPTIMLogger.appLogger.log(Level.WARNING, "Fitness "
+                            + "provider co-process " + cp.cpId + " is not "
+                            + "running. Restarting it. " + cp.getErrorOutput());
+                    cp.kill();
+                    cp.start();
+                }
+                try
+                {
+                    reply = cp.send(request,
+                            FitnessParameters.getCoProcessTimeout());
+                    break;
+                }
+                catch (TimeoutException e)
+                {
+                    err = "Fitness provider co-process " + cp.cpId
+                            + " did not reply within "
+                            + FitnessParameters.getCoProcessTimeout() + " ms.";
+                    DENOPTIMLogger.appLogger.log(Level.WARNING, err);
+                    cp.kill();
+                    // A timeout is most likely due to this very request, so
+                    // we do not try it again.
+                    break;
+                }
+                catch (IOException e)
+                {
+                    err = "Fitness provider co-process " + cp.cpId
+                            + " failed: " + e.getMessage() + " "
+                            + cp.getErrorOutput();
+                    DENOPTIMLogger.appLogger.log(Level.WARNING, err);
+                    cp.kill();
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            cp.kill();
+            Thread.currentThread().interrupt();
+            throw new DENOPTIMException("Interrupted while waiting for reply "
+                    + "from fitness provider co-process.", e);
+        }
+        finally
+        {
+            synchronized (LOCK)
+            {
+                if (idle != queue)
+                {
+                    // Pool shut down while we were using this co-process
+                    cp.retire();
+                }
+                // Also retired co-processes go back, so that any thread
+                // waiting on this queue is released
+                queue.add(cp);
+            }
+        }
+
+        if (reply == null)
+        {
+            throw new DENOPTIMException(err);
+        }
+
+        try
+        {
+            return DenoptimIO.readSDFString(reply);
+        }
+        catch (DENOPTIMException e)
+        {
+            return null;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Stops all co-processes, including those that are serving a request.
+     * Such requests fail.
+     */
+
+    public static void shutdown()
+    {
+        synchronized (LOCK)
+        {
+            if (idle == null)
+            {
+                return;
+            }
+            for (CoProcess cp : all)
+            {
+                cp.retire();
+            }
+            all = null;
+            idle = null;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of co-processes waiting for a request, or -1 if the
+     * pool is not running.
+     */
+
+    static int countIdle()
+    {
+        synchronized (LOCK)
+        {
+            return idle == null ? -1 : idle.size();
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Writes a length-prefixed record to a stream.
+     * @param os the stream to write to.
+     * @param record the text to write.
+     * @throws IOException
+     */
+
+    static void writeFrame(OutputStream os, String record) throws IOException
+    {
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        os.write((bytes.length + "\n").getBytes(StandardCharsets.US_ASCII));
+        os.write(bytes);
+        os.flush();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reads a length-prefixed record from a stream. Empty lines before the
+     * length are ignored.
+     * @param is the stream to read from.
+     * @return the text of the record.
+     * @throws IOException if the stream ends or is not properly formatted.
+     */
+
+    static String readFrame(InputStream is) throws IOException
+    {
+        StringBuilder len = new StringBuilder();
+        while (true)
+        {
+            int c = is.read();
+            if (c == -1)
+            {
+                throw new EOFException("Stream closed before reading length "
+                        + "of record.");
+            }
+            if (c == '\n')
+            {
+                if (len.toString().trim().length() > 0)
+                {
+                    break;
+                }
+                continue;
+            }
+            len.append((char) c);
+        }
+        int n;
+        try
+        {
+            n = Integer.parseInt(len.toString().trim());
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException("Unexpected length of record: '" + len
+                    + "'.");
+        }
+        byte[] bytes = new byte[n];
+        int off = 0;
+        while (off < n)
+        {
+            int r = is.read(bytes, off, n - off);
+            if (r == -1)
+            {
+                throw new EOFException("Stream closed after " + off + " of "
+                        + n + " bytes.");
+            }
+            off += r;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,141 @@
+package denoptim.task;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openscience.cdk.AtomContainer;
+
+import denoptim.exception.DENOPTIMException;
+import denoptim.fitness.FitnessParameters;
+
+/**
+ * Unit test for the communication protocol of fitness provider co-processes.
+ * 
+ * @author Marco Foscato
+ */
+
+public class FitnessCoProcessPoolTest
+{
+    @TempDir
+    File tempDir;
+
+//------------------------------------------------------------------------------
+
+    @AfterEach
+    public void cleanup()
+    {
+        FitnessCoProcessPool.shutdown();
+        FitnessParameters.resetParameters();
+    }
+	
+//------------------------------------------------------------------------------
+	
+    @Test
+    public void testFrameRoundTrip() throws Exception
+    {
+        String recA = "molA\n  CDK\n\n  0  0  0  0  0  0  0  0  0  0999 V2000"
+                + "\nM  END\n> <FITNESS>\n1.23\n\n$$$$\n";
+        String recB = "\u00c5-titled\nM  END\n$$$$\n";
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        FitnessCoProcessPool.writeFrame(os, recA);
+        FitnessCoProcessPool.writeFrame(os, recB);
+        
+        InputStream is = new ByteArrayInputStream(os.toByteArray());
+        assertEquals(recA, FitnessCoProcessPool.readFrame(is));
+        assertEquals(recB, FitnessCoProcessPool.readFrame(is));
+        assertThrows(EOFException.class, 
+                () -> FitnessCoProcessPool.readFrame(is));
+    }
+    
+//------------------------------------------------------------------------------
+	
+    @Test
+    public void testTruncatedFrame() throws Exception
+    {
+        InputStream is = new ByteArrayInputStream("\n25\nshort".getBytes());
+        assertThrows(EOFException.class, 
+                () -> FitnessCoProcessPool.readFrame(is));
+    }
+    
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testShutdownWithRequestInFlight() throws Exception
+    {
+        // A co-process that never replies
+        File script = new File(tempDir, "neverReplies.sh");
+        FileWriter fw = new FileWriter(script);
+        fw.write("exec sleep 600\n");
+        fw.close();
+        FitnessParameters.interpretKeyword("FP-SOURCE=",
+                script.getAbsolutePath());
+        FitnessParameters.interpretKeyword("FP-INTERPRETER=", "bash");
+        FitnessParameters.interpretKeyword("FP-COPROCESSES=", "1");
+        FitnessParameters.interpretKeyword("FP-COPROCESSTIMEOUT=", "600000");
+
+        AtomicReference<Throwable> thrown = new AtomicReference<Throwable>();
+        Thread requester = new Thread(() -> {
+            try
+            {
+                FitnessCoProcessPool.evaluate(new AtomContainer(), null);
+            }
+            catch (Throwable t)
+            {
+                thrown.set(t);
+            }
+        });
+        requester.start();
+
+        // Wait for the only co-process to be busy
+        long deadline = System.currentTimeMillis() + 10000;
+        while (FitnessCoProcessPool.countIdle() != 0
+                && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(0, FitnessCoProcessPool.countIdle());
+
+        // Shutdown kills also the busy co-process, so the request fails
+        // long before its timeout
+        FitnessCoProcessPool.shutdown();
+        requester.join(10000);
+        assertFalse(requester.isAlive(), "Request not stopped by shutdown");
+        assertTrue(thrown.get() instanceof DENOPTIMException,
+                "Unexpected outcome: " + thrown.get());
+        assertEquals(-1, FitnessCoProcessPool.countIdle());
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -35,6 +35,7 @@ import denoptim.fitness.FitnessParameters;
 import denoptim.fitness.FitnessProvider;
 import denoptim.io.DenoptimIO;
 import denoptim.logging.DENOPTIMLogger;
+import denoptim.logging.MetricsRegistry;
 import denoptim.molecule.DENOPTIMGraph;
 import denoptim.molecule.DENOPTIMMolecule;
 import denoptim.utils.DENOPTIMMoleculeUtils;
@@ -135,24 +136,42 @@ public abstract class FitnessTask extends Task
         	fitProvMol.removeProperty(DENOPTIMConstants.GMSGTAG);
         }
         
-        // Write file with input data to fitness provider
-        DenoptimIO.writeMolecule(fitProvInputFile, fitProvMol, false);
+        // Write file with input data to fitness provider. In batch mode the
+        // provider reads the file collecting the entire batch, but this
+        // file is still written to keep the per-candidate record of the
+        // input. Co-processes get their input via pipes.
+        if (!FitnessParameters.useCoProcessFitness())
+        {
+            long tIO = MetricsRegistry.start();
+            DenoptimIO.writeMolecule(fitProvInputFile, fitProvMol, false);
+            MetricsRegistry.record(MetricsRegistry.Stage.IO, tIO);
+        }
         
         // Run fitness provider
+        long tFit = MetricsRegistry.start();
         if (FitnessParameters.useExternalFitness())
         {
-	        if (!runExternalFitness())
+            boolean done = runExternalFitness();
+            MetricsRegistry.record(MetricsRegistry.Stage.EXTERNAL_FITNESS, 
+                    tFit);
+	        if (!done)
 	        {
+	            MetricsRegistry.countRejection("fitness_provider_error");
 	            return result;
 	        }
         } else {
         	// NB: the internal fitness provider removed dummy atoms before 
             // calculating CDK descriptors, so the 'fitProvMol' changes
-        	if (!runInternalFitness())
+            boolean done = runInternalFitness();
+            MetricsRegistry.record(MetricsRegistry.Stage.INTERNAL_FITNESS, 
+                    tFit);
+        	if (!done)
 	        {
+	            MetricsRegistry.countRejection("fitness_provider_error");
 	            return result;
 	        }
         }
+        MetricsRegistry.countCandidate();
         
         // Optional image creation
         if (FitnessParameters.makePictures())
@@ -185,55 +204,93 @@ public abstract class FitnessTask extends Task
 
 	private boolean runExternalFitness() throws DENOPTIMException
 	{
-		StringBuilder sb = new StringBuilder();
-        sb.append(FitnessParameters.getExternalFitnessProviderInterpreter());
-        sb.append(" ").append(
-        		FitnessParameters.getExternalFitnessProvider())
-              .append(" ").append(fitProvInputFile)
-              .append(" ").append(fitProvOutFile)
-              .append(" ").append(workDir)
-              .append(" ").append(id);
-        if (fitProvUIDFile != null)
-        {
-            sb.append(" ").append(fitProvUIDFile);
-        }
-        
-        String msg = "Calling external fitness provider: => " + sb + NL;
-        DENOPTIMLogger.appLogger.log(Level.INFO, msg);
-
-        // run the process
-        processHandler = new ProcessHandler(sb.toString(), 
-        		Integer.toString(id));
-
-        processHandler.runProcess();
-        if (processHandler.getExitCode() != 0)
-        {
-            msg = "Failed to execute fitness provider " 
-                + FitnessParameters.getExternalFitnessProviderInterpreter()
-                    .toString()
-		        + " command '" + FitnessParameters.getExternalFitnessProvider()
-		        + "' on " + fitProvInputFile;
-            DENOPTIMLogger.appLogger.severe(msg);
-            DENOPTIMLogger.appLogger.severe(
-            		processHandler.getErrorOutput());
-            throw new DENOPTIMException(msg);
-        }
-        processHandler = null;
-        
-        // Read results from fitness provider
         IAtomContainer processedMol = new AtomContainer();
         boolean unreadable = false;
-        try
+        String unreadableFile = fitProvOutFile;
+        String msg = "";
+        
+        if (FitnessParameters.useCoProcessFitness())
         {
-            processedMol = DenoptimIO.readSingleSDFFile(fitProvOutFile);
-            if (processedMol.isEmpty())
+            // The fitness provider is a persistent process fed via pipes
+            processedMol = FitnessCoProcessPool.evaluate(fitProvMol, 
+                    fitProvUIDFile);
+            if (processedMol == null || processedMol.isEmpty())
             {
-                unreadable=true;
+                unreadable = true;
+            } else {
+                DenoptimIO.writeMolecule(fitProvOutFile, processedMol, false);
             }
         }
-        catch (Throwable t)
+        else if (FitnessParameters.useBatchedExternalFitness())
         {
-            unreadable=true;
+            // The fitness provider is run on a batch of candidates
+            ExternalFitnessBatcher.Request req = 
+                    ExternalFitnessBatcher.evaluate(fitProvMol, workDir, 
+                            fitProvUIDFile, this);
+            if (req.getError() != null)
+            {
+                throw new DENOPTIMException(req.getError());
+            }
+            processedMol = req.getProcessedMolecule();
+            unreadableFile = req.getBatchOutputFile();
+            if (processedMol == null || processedMol.isEmpty())
+            {
+                unreadable = true;
+            } else {
+                DenoptimIO.writeMolecule(fitProvOutFile, processedMol, false);
+            }
+        } else {
+    		StringBuilder sb = new StringBuilder();
+            sb.append(FitnessParameters.getExternalFitnessProviderInterpreter());
+            sb.append(" ").append(
+            		FitnessParameters.getExternalFitnessProvider())
+                  .append(" ").append(fitProvInputFile)
+                  .append(" ").append(fitProvOutFile)
+                  .append(" ").append(workDir)
+                  .append(" ").append(id);
+            if (fitProvUIDFile != null)
+            {
+                sb.append(" ").append(fitProvUIDFile);
+            }
+            
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                msg = "Calling external fitness provider: => " + sb + NL;
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
+    
+            // run the process
+            processHandler = new ProcessHandler(sb.toString(), 
+            		Integer.toString(id));
+    
+            processHandler.runProcess();
+            if (processHandler.getExitCode() != 0)
+            {
+                msg = "Failed to execute fitness provider " 
+                    + FitnessParameters.getExternalFitnessProviderInterpreter()
+                        .toString()
+    		        + " command '" + FitnessParameters.getExternalFitnessProvider()
+    		        + "' on " + fitProvInputFile;
+                DENOPTIMLogger.appLogger.severe(msg);
+                DENOPTIMLogger.appLogger.severe(
+                		processHandler.getErrorOutput());
+                throw new DENOPTIMException(msg);
+            }
+            processHandler = null;
+            
+            // Read results from fitness provider
+            try
+            {
+                processedMol = DenoptimIO.readSingleSDFFile(fitProvOutFile);
+                if (processedMol.isEmpty())
+                {
+                    unreadable=true;
+                }
+            }
+            catch (Throwable t)
+            {
+                unreadable=true;
+            }
         }
         
         // Check readability and 
@@ -249,15 +306,28 @@ public abstract class FitnessTask extends Task
             DENOPTIMLogger.appLogger.log(Level.WARNING, msg);
             
             //TODO use constant
-            String fileBkp = fitProvOutFile + "_Unreadble";
-            try {
-				FileUtils.copyFile(new File(fitProvOutFile), new File(fileBkp));
-			} catch (IOException e) {
-				// At this point the file must be there!
-				throw new DENOPTIMException("File '"+ fitProvOutFile + "' has "
-						+ "disappeared (it was there, but not anymore!)");
-			}
-            FileUtils.deleteQuietly(new File(fitProvOutFile));
+            String fileBkp = unreadableFile + "_Unreadble";
+            if (FitnessParameters.useCoProcessFitness())
+            {
+                // There is no file: the reply came through a pipe
+                fileBkp = "log of fitness provider co-processes";
+            }
+            else if (FitnessParameters.useBatchedExternalFitness())
+            {
+                // The batch output is shared among candidates: do not move it
+                fileBkp = unreadableFile;
+            } else {
+                try {
+    				FileUtils.copyFile(new File(fitProvOutFile), 
+    				        new File(fileBkp));
+    			} catch (IOException e) {
+    				// At this point the file must be there!
+    				throw new DENOPTIMException("File '"+ fitProvOutFile 
+    				        + "' has disappeared (it was there, but not "
+    				        + "anymore!)");
+    			}
+                FileUtils.deleteQuietly(new File(fitProvOutFile));
+            }
             
             String err = "#FTask: Unable to retrive data. See " + fileBkp;
             processedMol = new AtomContainer();
@@ -360,8 +430,12 @@ public abstract class FitnessTask extends Task
 	
 	private boolean runInternalFitness() throws DENOPTIMException 
 	{
-		String msg = "Calling internal fitness provider. "+ NL;
-	    DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+		String msg = "";
+	    if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+	    {
+	        msg = "Calling internal fitness provider. "+ NL;
+	        DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+	    }
 
 	    double fitVal;
 		try {
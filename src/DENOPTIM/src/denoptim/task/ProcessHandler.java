@@ -31,6 +31,12 @@ public class ProcessHandler
     private int exitCode;
     private transient Process proc = null;
 
+    /**
+     * Flag signalling that the process has been stopped, possibly before
+     * it could be started
+     */
+    private boolean stopped = false;
+
     /**
      * Content of the standard output for the process.
      */
@@ -75,7 +81,15 @@ public class ProcessHandler
         try
         {
             ProcessBuilder pb = new ProcessBuilder("/bin/bash", "-c", cmdStr);
-            proc = pb.start();
+            synchronized (this)
+            {
+                if (stopped)
+                {
+                    exitCode = -1;
+                    return;
+                }
+                proc = pb.start();
+            }
 
             Runtime.getRuntime().addShutdownHook(new Thread()
             {
@@ -160,7 +174,15 @@ public class ProcessHandler
         try
         {
             ProcessBuilder pb = new ProcessBuilder("/bin/bash", "-c", cmdStr);
-            proc = pb.start();
+            synchronized (this)
+            {
+                if (stopped)
+                {
+                    exitCode = -1;
+                    return;
+                }
+                proc = pb.start();
+            }
 
             Runtime.getRuntime().addShutdownHook(new Thread()
             {
@@ -297,8 +319,9 @@ public class ProcessHandler
 
 //------------------------------------------------------------------------------
 
-    public void stopProcess()
+    public synchronized void stopProcess()
     {
+        stopped = true;
         try
         {
             if (proc != null)
@@ -65,7 +65,7 @@ public abstract class Task implements Callable<Object>
     /**
      * Executor for external bash script
      */
-    protected ProcessHandler processHandler;
+    protected volatile ProcessHandler processHandler;
     
     /**
      * Pathname of work directory
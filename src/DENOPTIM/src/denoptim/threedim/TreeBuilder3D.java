@@ -28,8 +28,6 @@ import java.util.List;
 import javax.vecmath.Point2d;
 import javax.vecmath.Point3d;
 import javax.vecmath.Vector3d;
-import javax.vecmath.Matrix3d;
-import javax.vecmath.AxisAngle4d;
 
 import org.openscience.cdk.Atom;
 import org.openscience.cdk.Bond;
@@ -43,6 +41,7 @@ import denoptim.exception.DENOPTIMException;
 import denoptim.fragspace.FragmentSpace;
 import denoptim.io.DenoptimIO;
 import denoptim.logging.DENOPTIMLogger;
+import denoptim.logging.MetricsRegistry;
 import denoptim.molecule.DENOPTIMAttachmentPoint;
 import denoptim.molecule.DENOPTIMEdge;
 import denoptim.molecule.DENOPTIMGraph;
@@ -54,6 +53,7 @@ import denoptim.utils.DENOPTIMMathUtils;
 import denoptim.utils.DENOPTIMMoleculeUtils;
 import denoptim.utils.FragmentUtils;
 import denoptim.utils.GenUtils;
+import denoptim.utils.GeometryKernel;
 
 
 /**
@@ -119,6 +119,12 @@ public class TreeBuilder3D
      */
     private boolean debug = false;
 
+    /**
+     * Reusable storage of the coordinates of the fragment being appended
+     */
+    private static final ThreadLocal<GeometryKernel.Buffer> xyzBuffer =
+                                          GeometryKernel.newThreadLocalBuffer();
+
 //------------------------------------------------------------------------------
 
     /**
@@ -201,6 +207,8 @@ public class TreeBuilder3D
     public IAtomContainer convertGraphTo3DAtomContainer(DENOPTIMGraph m_graph,
     		boolean removeRCAs) throws DENOPTIMException
     {
+        long t0 = MetricsRegistry.start();
+
         // Clean all
         this.clean();
         
@@ -449,6 +457,7 @@ public class TreeBuilder3D
             mol.setProperty(DENOPTIMConstants.GMSGTAG, graph.getMsg());
         }
         this.conversionCompleted = true;
+        MetricsRegistry.record(MetricsRegistry.Stage.BUILD_3D, t0);
 
         return mol;
     }
@@ -523,101 +532,87 @@ public class TreeBuilder3D
             throw new DENOPTIMException(t);
         }
 
-        // Get all APs on the incoming fragment (we need to rototranslate them)
-        ArrayList<Point3d> allApsAsPt3D = new ArrayList<Point3d>();
+        // Collect the coordinates of all atoms and then of all APs on the
+        // incoming fragment (we need to rototranslate them)
+        GeometryKernel.Buffer xyz = xyzBuffer.get();
+        xyz.clear();
+        for (IAtom atm : inFrag.atoms())
+        {
+            Point3d p = FragmentUtils.getPoint3d(atm);
+            xyz.add(p.x, p.y, p.z);
+        }
+        int nAtms = xyz.size();
         for (int iap=0; iap<inVtx.getNumberOfAP(); iap++)
         {
             DENOPTIMAttachmentPoint ap = inVtx.getAttachmentPoints().get(iap);
-            Point3d pt = new Point3d(ap.getDirectionVector());
-            allApsAsPt3D.add(pt);
+            xyz.add(ap.getDirectionVector());
         }
+        int nPts = xyz.size();
 
         // Get the attachment point on the incoming fragment (i.e., ApB)
         int idApB = edge.getTargetDAP();
         DENOPTIMAttachmentPoint apB = inVtx.getAttachmentPoints().get(idApB);
         int idSrcAtmB = apB.getAtomPositionNumber();
-        Point3d trgApB = new Point3d(allApsAsPt3D.get(idApB));
-        Point3d srcApB = new Point3d(FragmentUtils.getPoint3d(
-        		inFrag.getAtom(idSrcAtmB)));
+        int trgApB = nAtms + idApB;
+        int srcApB = idSrcAtmB;
 
         // Translate atoms and APs of fragment so that trgApB is on srcApA
-        Point3d tr1 = new Point3d();
-        tr1.sub(trgApB,srcApA);
-        for (IAtom atm : inFrag.atoms())
-        {
-        	atm.setPoint3d(FragmentUtils.getPoint3d(atm));
-            atm.getPoint3d().sub(tr1);
-        }
-        for (Point3d pt : allApsAsPt3D)
-        {
-            pt.sub(tr1);
-        }
-        trgApB = new Point3d(allApsAsPt3D.get(idApB));
-        srcApB = new Point3d(FragmentUtils.getPoint3d(
-        		inFrag.getAtom(idSrcAtmB)));
+        GeometryKernel.translate(xyz, 0, nPts,
+                                 -(xyz.x[trgApB] - srcApA.x),
+                                 -(xyz.y[trgApB] - srcApA.y),
+                                 -(xyz.z[trgApB] - srcApA.z));
 
         //Get Vectors ApA and ApB (NOTE: inverse versus of ApB!!!)
-        Vector3d vectApA = new Vector3d();
-        Vector3d vectApB = new Vector3d();
-        vectApA.sub(trgApA,srcApA);
-        vectApB.sub(srcApB,trgApB);
-        vectApA.normalize();
-        vectApB.normalize();
+        double vAx = trgApA.x - srcApA.x;
+        double vAy = trgApA.y - srcApA.y;
+        double vAz = trgApA.z - srcApA.z;
+        double vBx = xyz.x[srcApB] - xyz.x[trgApB];
+        double vBy = xyz.y[srcApB] - xyz.y[trgApB];
+        double vBz = xyz.z[srcApB] - xyz.z[trgApB];
 
         if (debug)
         {
 	    System.err.println("After first translation and Before rotation");
             System.err.println("srcApA "+srcApA);
             System.err.println("trgApA "+trgApA);
-            System.err.println("vectApA "+vectApA);
-            System.err.println("srcApB "+srcApB);
-            System.err.println("trgApB "+trgApB);
-            System.err.println("vectApB "+vectApB);
+            System.err.println("srcApB "+xyz.toString(srcApB));
+            System.err.println("trgApB "+xyz.toString(trgApB));
         }
 
-        // Get rotation matrix that aligns ApB to ApA
-        double rotAng = vectApA.angle(vectApB);
+        // Get rotation that aligns ApB to ApA
+        double rotAng = GeometryKernel.vectorAngle(vAx, vAy, vAz,
+                                                   vBx, vBy, vBz);
         double threshold = 0.00001;
         if (rotAng >= threshold)
         {
-            Vector3d rotAxis = new Vector3d();
+            double axX, axY, axZ;
             if (rotAng <= (Math.PI-0.00001))
             {
-                rotAxis.cross(vectApB,vectApA);
+                // cross product ApB x ApA
+                axX = vBy * vAz - vBz * vAy;
+                axY = vBz * vAx - vBx * vAz;
+                axZ = vBx * vAy - vBy * vAx;
             }
             else
             {
-                rotAxis = DENOPTIMMathUtils.getNormalDirection(vectApA);
+                Vector3d vectApA = new Vector3d(vAx, vAy, vAz);
+                vectApA.normalize();
+                Vector3d normal = DENOPTIMMathUtils.getNormalDirection(
+                                                                   vectApA);
+                axX = normal.x;
+                axY = normal.y;
+                axZ = normal.z;
             }
-            Matrix3d rotMat = new Matrix3d();
-	        rotAxis.normalize();
-            rotMat.set(new AxisAngle4d(rotAxis,rotAng));
 
             if (debug)
             {
                 System.err.println("rotAng "+rotAng);
-                System.err.println("rotAxis "+rotAxis);
-                System.err.println("rotMat "+rotMat);
+                System.err.println("rotAxis ("+axX+", "+axY+", "+axZ+")");
             }
 
             // Rotate atoms and APs of fragment
-            for (IAtom atm : inFrag.atoms())
-            {
-            	//At this point all atoms have point3d
-                atm.getPoint3d().sub(srcApA);
-                rotMat.transform(atm.getPoint3d());
-                atm.getPoint3d().add(srcApA);
-            }
-            for (Point3d pt :  allApsAsPt3D)
-            {
-                pt.sub(srcApA);
-                rotMat.transform(pt);
-                pt.add(srcApA);
-            }
-
-            // Update points defining AP vector
-            trgApB = new Point3d(allApsAsPt3D.get(idApB));
-            srcApB = new Point3d(inFrag.getAtom(idSrcAtmB).getPoint3d());
+            GeometryKernel.rotate(xyz, 0, nPts, srcApA.x, srcApA.y, srcApA.z,
+                                  axX, axY, axZ, rotAng);
         }
         else
         {
@@ -632,10 +627,8 @@ public class TreeBuilder3D
             System.err.println("After rotation before second translation");
             System.err.println("srcApA "+srcApA);
             System.err.println("trgApA "+trgApA);
-            System.err.println("vectApA "+vectApA);
-            System.err.println("srcApB "+srcApB);
-            System.err.println("trgApB "+trgApB);
-            System.err.println("vectApB "+vectApB);
+            System.err.println("srcApB "+xyz.toString(srcApB));
+            System.err.println("trgApB "+xyz.toString(trgApB));
         }
 
         // Check whether this edge involves a Ring Closing Attractors
@@ -654,18 +647,24 @@ public class TreeBuilder3D
         }
 
         // Get translation vector accounting for different length of the APs
-        vectApA.sub(trgApA,srcApA);
-        vectApB.sub(srcApB,trgApB);
+        vBx = xyz.x[srcApB] - xyz.x[trgApB];
+        vBy = xyz.y[srcApB] - xyz.y[trgApB];
+        vBz = xyz.z[srcApB] - xyz.z[trgApB];
 
-        Point3d tr2 = new Point3d();
+        double tr2x = 0.0;
+        double tr2y = 0.0;
+        double tr2z = 0.0;
         if (edgeToRCA)
         {
             // Here we set translation vector as to move the incoming fragment
             // of the lenght of the longest AP. This is to place RCA at 
             // a bonding distance from the connected atom
-            if (vectApA.length() > vectApB.length())
+            if (Math.sqrt(vAx*vAx + vAy*vAy + vAz*vAz) >
+                                   Math.sqrt(vBx*vBx + vBy*vBy + vBz*vBz))
             {
-                tr2.add(vectApA);
+                tr2x = vAx;
+                tr2y = vAy;
+                tr2z = vAz;
             }
             else
             {
@@ -675,32 +674,41 @@ public class TreeBuilder3D
         }
         else
         {
-            tr2.sub(vectApA,vectApB);
-            tr2.scale(0.5);
+            tr2x = (vAx - vBx) * 0.5;
+            tr2y = (vAy - vBy) * 0.5;
+            tr2z = (vAz - vBz) * 0.5;
         }
 
         // Translate atoms and APs to their final position
-        for (IAtom atm : inFrag.atoms())
+        GeometryKernel.translate(xyz, 0, nPts, tr2x, tr2y, tr2z);
+        for (int i=0; i<nPts; i++)
         {
-            atm.getPoint3d().add(tr2);
-            if ((atm.getPoint3d().x != atm.getPoint3d().x) ||
-                (atm.getPoint3d().y != atm.getPoint3d().y) ||
-                (atm.getPoint3d().z != atm.getPoint3d().z))
+            if ((xyz.x[i] != xyz.x[i]) || (xyz.y[i] != xyz.y[i]) ||
+                (xyz.z[i] != xyz.z[i]))
             {
                 String str = "ERROR! NaN coordinated from rototranslation of "
                              + "3D fragment. Check source code.";
                 throw new DENOPTIMException(str);
             }
         }
-        for (Point3d pt : allApsAsPt3D)
+
+        // Copy the new coordinates to the atoms and to the APs
+        int ia = 0;
+        for (IAtom atm : inFrag.atoms())
         {
-            pt.add(tr2);
-            if ((pt.x != pt.x ) || (pt.y != pt.y ) || (pt.z != pt.z ))
+            Point3d p = atm.getPoint3d();
+            if (p == null)
             {
-                String str = "ERROR! NaN coordinated from rototranslation of "
-                             + "3D fragment's APs. Check source code.";
-                throw new DENOPTIMException(str);
+                p = new Point3d();
+                atm.setPoint3d(p);
             }
+            p.set(xyz.x[ia], xyz.y[ia], xyz.z[ia]);
+            ia++;
+        }
+        double[][] allApsCoords = new double[nPts - nAtms][3];
+        for (int iap=0; iap<allApsCoords.length; iap++)
+        {
+            xyz.get(nAtms + iap, allApsCoords[iap]);
         }
 
         // Store vertex ID on atoms
@@ -737,13 +745,12 @@ public class TreeBuilder3D
             int connNum = oriAP.getAtmConnections();
             int apConn = oriAP.getAPConnections();
             String apCls = oriAP.getAPClass();
-            Point3d pt = allApsAsPt3D.get(i);
 
             DENOPTIMAttachmentPoint newAP = new DENOPTIMAttachmentPoint(
                                                atmPos,
                                                connNum,
                                                apConn,
-                                               new double[] {pt.x, pt.y, pt.z});
+                                               allApsCoords[i]);
 
             newAP.setAPClass(apCls);
             apsOnThisFrag.add(newAP);
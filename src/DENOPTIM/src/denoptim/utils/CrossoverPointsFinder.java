@@ -0,0 +1,365 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.commons.math3.random.MersenneTwister;
+
+import denoptim.fragspace.FragmentSpace;
+import denoptim.molecule.DENOPTIMEdge;
+import denoptim.molecule.DENOPTIMGraph;
+import denoptim.molecule.DENOPTIMVertex;
+
+/**
+ * Finds the pairs of vertices of two graphs that can be used as crossover
+ * points when crossover is driven by the compatibility of AP classes.
+ *
+ * @author Marco Foscato
+ */
+
+public class CrossoverPointsFinder
+{
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Identify a pair of vertices that are suitable for crossover. The pair
+     * is chosen with one random number from {@link RandomUtils#getRNG()}
+     * among all pairs listed by male vertex and then by female vertex, in
+     * the order of the vertices.
+     * @param male <code>DENOPTIMGraph</code> of one member (the male) of the
+     * parents
+     * @param female <code>DENOPTIMGraph</code> of one member (the female) of
+     * the parents
+     * @return the vertex ids of the male and female crossover points, or
+     * <code>null</code> if there is no suitable pair
+     */
+
+    public static int[] locateCompatiblePair(DENOPTIMGraph male,
+                                             DENOPTIMGraph female)
+    {
+        XOverSites mSites = new XOverSites(male);
+        XOverSites fSites = new XOverSites(female);
+        int[] pairsPerMaleSite = countPairsPerSite(mSites, fSites);
+        int tot = 0;
+        for (int n : pairsPerMaleSite)
+        {
+            tot = tot + n;
+        }
+
+        if (tot == 0)
+            return null;
+        int idx = 0;
+        if (tot > 1)
+        {
+            MersenneTwister mtrand = RandomUtils.getRNG();
+            idx = mtrand.nextInt(tot);
+        }
+
+        // Decode the index of the pair as if all pairs were listed by male
+        // vertex and then by female vertex, in the order of the vertices
+        int m = 0;
+        while (idx >= pairsPerMaleSite[m])
+        {
+            idx = idx - pairsPerMaleSite[m];
+            m++;
+        }
+        for (int f=0; f<fSites.size(); f++)
+        {
+            if (mSites.molIds[m] == fSites.molIds[f]
+                || fSites.edges[f] == null)
+                continue;
+            if (isCrossoverPossible(mSites.edges[m], fSites.edges[f]))
+            {
+                if (idx == 0)
+                {
+                    return new int[] {mSites.vids[m], fSites.vids[f]};
+                }
+                idx--;
+            }
+        }
+        // Not reachable unless the graphs change while we work on them
+        return null;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Counts the pairs of vertices that are suitable for crossover, i.e., the
+     * pairs that {@link #locateCompatiblePair(DENOPTIMGraph, DENOPTIMGraph)}
+     * chooses from. This method does not use the random number generator
+     * and can be run on many pairs of graphs in parallel, as long as the
+     * graphs are not modified.
+     * @param male <code>DENOPTIMGraph</code> of one member (the male) of the
+     * parents
+     * @param female <code>DENOPTIMGraph</code> of one member (the female) of
+     * the parents
+     * @return the number of pairs of crossover points
+     */
+
+    public static int countCompatiblePairs(DENOPTIMGraph male,
+                                           DENOPTIMGraph female)
+    {
+        int tot = 0;
+        for (int n : countPairsPerSite(new XOverSites(male),
+                                       new XOverSites(female)))
+        {
+            tot = tot + n;
+        }
+        return tot;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Counts the crossover partners of each site on the male graph. Sites
+     * are grouped by the pair of AP classes of their edge toward the parent,
+     * and the compatibility of two such pairs is evaluated once per
+     * combination of groups rather than once per combination of vertices.
+     * Partners belonging to the same fragment (i.e., same molId) are
+     * excluded.
+     * @param mSites the crossover sites on the male graph
+     * @param fSites the crossover sites on the female graph
+     * @return the number of female partners of each male site
+     */
+
+    private static int[] countPairsPerSite(XOverSites mSites,
+                                                          XOverSites fSites)
+    {
+        int[] counts = new int[mSites.size()];
+        for (SiteGroup mGrp : mSites.groups)
+        {
+            int tot = 0;
+            Map<Integer,Integer> sameMolId = new HashMap<Integer,Integer>();
+            for (SiteGroup fGrp : fSites.groups)
+            {
+                if (!isCompatible(mGrp.srcClass, fGrp.trgClass)
+                    || !isCompatible(fGrp.srcClass, mGrp.trgClass))
+                    continue;
+                tot = tot + fGrp.sites.size();
+                for (Map.Entry<Integer,Integer> e : fGrp.molIdCounts.entrySet())
+                {
+                    Integer n = sameMolId.get(e.getKey());
+                    sameMolId.put(e.getKey(),
+                                         (n == null ? 0 : n) + e.getValue());
+                }
+            }
+            for (int m : mGrp.sites)
+            {
+                Integer n = sameMolId.get(mSites.molIds[m]);
+                counts[m] = tot - (n == null ? 0 : n);
+            }
+        }
+        return counts;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Sites of a graph that can be used as crossover points, i.e., the
+     * vertices that are neither scaffold nor capping groups, together with
+     * the edge toward their parent vertex. Sites are listed in the order of
+     * the vertices, and are grouped by the AP classes of their edge using
+     * {@link DENOPTIMGraph#getEdgesPerAPClasses()}.
+     */
+
+    private static class XOverSites
+    {
+        int[] vids;
+        int[] molIds;
+        DENOPTIMEdge[] edges;
+        List<SiteGroup> groups = new ArrayList<SiteGroup>();
+
+        XOverSites(DENOPTIMGraph g)
+        {
+            // First edge toward the parent of each vertex
+            Map<Integer,DENOPTIMEdge> edgeToParent =
+                                         new HashMap<Integer,DENOPTIMEdge>();
+            for (DENOPTIMEdge e : g.getEdgeList())
+            {
+                if (!edgeToParent.containsKey(e.getTargetVertex()))
+                {
+                    edgeToParent.put(e.getTargetVertex(), e);
+                }
+            }
+
+            ArrayList<DENOPTIMVertex> vrtxs = new ArrayList<DENOPTIMVertex>();
+            for (DENOPTIMVertex v : g.getVertexList())
+            {
+                int type = v.getFragmentType();
+                // if the fragment is a capping group or the scaffold ignore
+                if (type == 0 || type == 2)
+                    continue;
+                vrtxs.add(v);
+            }
+            vids = new int[vrtxs.size()];
+            molIds = new int[vrtxs.size()];
+            edges = new DENOPTIMEdge[vrtxs.size()];
+            Map<DENOPTIMEdge,Integer> siteOfEdge =
+                                new IdentityHashMap<DENOPTIMEdge,Integer>();
+            for (int i=0; i<vrtxs.size(); i++)
+            {
+                vids[i] = vrtxs.get(i).getVertexId();
+                molIds[i] = vrtxs.get(i).getMolId();
+                edges[i] = edgeToParent.get(vids[i]);
+                if (edges[i] != null)
+                {
+                    siteOfEdge.put(edges[i], i);
+                }
+            }
+
+            if (!groupSites(g.getEdgesPerAPClasses(), siteOfEdge))
+            {
+                // Edges or AP classes changed behind the graph's back
+                g.resetEdgesPerAPClasses();
+                groupSites(g.getEdgesPerAPClasses(), siteOfEdge);
+            }
+        }
+
+        private boolean groupSites(
+                        Map<String,Map<String,List<DENOPTIMEdge>>> perClasses,
+                        Map<DENOPTIMEdge,Integer> siteOfEdge)
+        {
+            groups.clear();
+            int found = 0;
+            for (Map.Entry<String,Map<String,List<DENOPTIMEdge>>> perSrc :
+                                                        perClasses.entrySet())
+            {
+                for (Map.Entry<String,List<DENOPTIMEdge>> perTrg :
+                                                perSrc.getValue().entrySet())
+                {
+                    SiteGroup grp = new SiteGroup(perSrc.getKey(),
+                                                             perTrg.getKey());
+                    for (DENOPTIMEdge e : perTrg.getValue())
+                    {
+                        Integer site = siteOfEdge.get(e);
+                        if (site == null)
+                            continue;
+                        if (!Objects.equals(e.getSourceReaction(), grp.srcClass)
+                            || !Objects.equals(e.getTargetReaction(),
+                                                                grp.trgClass))
+                            return false;
+                        grp.add(site, molIds[site]);
+                        found++;
+                    }
+                    if (grp.sites.size() > 0)
+                    {
+                        groups.add(grp);
+                    }
+                }
+            }
+            return found == siteOfEdge.size();
+        }
+
+        int size()
+        {
+            return vids.length;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Crossover sites sharing the AP classes of their edge toward the parent
+     */
+
+    private static class SiteGroup
+    {
+        String srcClass;
+        String trgClass;
+        List<Integer> sites = new ArrayList<Integer>();
+        Map<Integer,Integer> molIdCounts = new HashMap<Integer,Integer>();
+
+        SiteGroup(String srcClass, String trgClass)
+        {
+            this.srcClass = srcClass;
+            this.trgClass = trgClass;
+        }
+
+        void add(int site, int molId)
+        {
+            sites.add(site);
+            Integer n = molIdCounts.get(molId);
+            molIdCounts.put(molId, (n == null ? 0 : n) + 1);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Evaluate AP class-compatibility of a pair of edges with respect to
+     * crossover.
+     * The condition for performing AP class-compatible crossover is that the
+     * AP class on source vertex of edge A is compatible with the AP class on
+     * target vertex of edge B, and that AP class on source vertex of edgeB is
+     * compatible with the AP class on target vertex of edge A.
+     * @param eA first edge of the pair
+     * @param eB second edge of the pair
+     * @return <code>true</code> if the condition is satisfied
+     */
+    private static boolean isCrossoverPossible(DENOPTIMEdge eA, DENOPTIMEdge eB)
+    {
+        String apClassSrcA = eA.getSourceReaction();
+        String apClassTrgA = eA.getTargetReaction();
+        String apClassSrcB = eB.getSourceReaction();
+        String apClassTrgB = eB.getTargetReaction();
+
+        if (isCompatible(apClassSrcA, apClassTrgB))
+        {
+            if (isCompatible(apClassSrcB, apClassTrgA))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Check the compatibility between two classes. Note that, due to the non
+     * symmetric nature of the compatibility matrix, the result for
+     * isCompatible(A,B) may be different from isCompatible(B,A)
+     * @param parentAPclass class of the attachment point (AP) on the parent
+     * vertex (inner level)
+     * @param childAPclass class of the attachment point (AP) on the child
+     * vertex (outer level)
+     * @return <code>true</code> if the combination corresponds to a true entry
+     * in the compatibility matrix meaning that the two classes, in the
+     * specified order, are compatible
+     */
+
+    private static boolean isCompatible(String parentAPclass,
+                                                          String childAPclass)
+    {
+        ArrayList<String> compatibleClasses =
+                    FragmentSpace.getCompatibilityMatrix().get(parentAPclass);
+        return compatibleClasses != null
+                               && compatibleClasses.contains(childAPclass);
+    }
+
+//------------------------------------------------------------------------------
+
+}
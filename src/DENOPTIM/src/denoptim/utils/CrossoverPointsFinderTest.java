@@ -0,0 +1,282 @@
+package denoptim.utils;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import denoptim.fragspace.FragmentSpace;
+import denoptim.molecule.DENOPTIMAttachmentPoint;
+import denoptim.molecule.DENOPTIMEdge;
+import denoptim.molecule.DENOPTIMGraph;
+import denoptim.molecule.DENOPTIMVertex;
+
+/**
+ * Unit test for the search of crossover points
+ *
+ * @author Marco Foscato
+ */
+
+public class CrossoverPointsFinderTest
+{
+    private final String[] APCLASSES = new String[] {"a:0", "b:0", "c:0"};
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Defines a compatibility matrix that is not symmetric: a->b, b->a,
+     * b->c, and c->c.
+     */
+
+    @BeforeEach
+    public void setCompatibilityMatrix()
+    {
+        HashMap<String,ArrayList<String>> cpMap =
+                new HashMap<String,ArrayList<String>>();
+        cpMap.put("a:0", new ArrayList<String>(Arrays.asList("b:0")));
+        cpMap.put("b:0", new ArrayList<String>(Arrays.asList("a:0", "c:0")));
+        cpMap.put("c:0", new ArrayList<String>(Arrays.asList("c:0")));
+        FragmentSpace.setCompatibilityMatrix(cpMap);
+    }
+
+//------------------------------------------------------------------------------
+
+    @AfterEach
+    public void cleanup()
+    {
+        FragmentSpace.clearAll();
+    }
+
+//------------------------------------------------------------------------------
+
+    private DENOPTIMVertex makeVertex(int vid, int molId, int type)
+    {
+        return new DENOPTIMVertex(vid, molId,
+                new ArrayList<DENOPTIMAttachmentPoint>(), type);
+    }
+
+//------------------------------------------------------------------------------
+
+    private DENOPTIMEdge makeEdge(int src, int trg, String srcCls,
+            String trgCls)
+    {
+        DENOPTIMEdge e = new DENOPTIMEdge(src, trg, 0, 0, 1);
+        e.setSourceReaction(srcCls);
+        e.setTargetReaction(trgCls);
+        return e;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds a random tree rooted on a scaffold. Capping groups are leaves,
+     * and fragments are given few molIds so that male and female share some.
+     */
+
+    private DENOPTIMGraph makeRandomGraph(MersenneTwister rng, int firstVid)
+    {
+        DENOPTIMGraph g = new DENOPTIMGraph();
+        g.addVertex(makeVertex(firstVid, 0, 0));
+        ArrayList<Integer> parents = new ArrayList<Integer>();
+        parents.add(firstVid);
+        int n = rng.nextInt(12);
+        for (int i=1; i<=n; i++)
+        {
+            int vid = firstVid + i;
+            int type = rng.nextInt(4) == 0 ? 2 : 1;
+            g.addVertex(makeVertex(vid, 1 + rng.nextInt(4), type));
+            g.addEdge(makeEdge(parents.get(rng.nextInt(parents.size())), vid,
+                    APCLASSES[rng.nextInt(APCLASSES.length)],
+                    APCLASSES[rng.nextInt(APCLASSES.length)]));
+            if (type == 1)
+            {
+                parents.add(vid);
+            }
+        }
+        return g;
+    }
+
+//------------------------------------------------------------------------------
+
+    private boolean isCompatible(String parentAPclass, String childAPclass)
+    {
+        ArrayList<String> compatibleClasses =
+                FragmentSpace.getCompatibilityMatrix().get(parentAPclass);
+        return compatibleClasses != null
+                && compatibleClasses.contains(childAPclass);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reference implementation listing all the pairs of crossover points by
+     * scanning all pairs of vertices.
+     */
+
+    private ArrayList<int[]> listPairs(DENOPTIMGraph male,
+            DENOPTIMGraph female)
+    {
+        ArrayList<int[]> xpairs = new ArrayList<int[]>();
+        for (int i=0; i<male.getVertexCount(); i++)
+        {
+            DENOPTIMVertex mvert = male.getVertexAtPosition(i);
+            int mvid = mvert.getVertexId();
+            if (mvert.getFragmentType() == 0 || mvert.getFragmentType() == 2)
+                continue;
+            DENOPTIMEdge eA = male.getEdgeAtPosition(
+                    male.getIndexOfEdgeWithParent(mvid));
+            for (int j=0; j<female.getVertexCount(); j++)
+            {
+                DENOPTIMVertex fvert = female.getVertexAtPosition(j);
+                int fvid = fvert.getVertexId();
+                if (fvert.getFragmentType() == 0
+                        || fvert.getFragmentType() == 2)
+                    continue;
+                if (mvert.getMolId() == fvert.getMolId())
+                    continue;
+                DENOPTIMEdge eB = female.getEdgeAtPosition(
+                        female.getIndexOfEdgeWithParent(fvid));
+                if (isCompatible(eA.getSourceReaction(),
+                                 eB.getTargetReaction())
+                        && isCompatible(eB.getSourceReaction(),
+                                        eA.getTargetReaction()))
+                {
+                    xpairs.add(new int[] {mvid, fvid});
+                }
+            }
+        }
+        return xpairs;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reference choice of the crossover points: one random number picks
+     * one of the pairs listed by {@link #listPairs(DENOPTIMGraph,
+     * DENOPTIMGraph)}.
+     */
+
+    private int[] choosePair(ArrayList<int[]> xpairs)
+    {
+        if (xpairs.size() == 0)
+            return null;
+        if (xpairs.size() == 1)
+            return xpairs.get(0);
+        return xpairs.get(RandomUtils.getRNG().nextInt(xpairs.size()));
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testSmallPair() throws Exception
+    {
+        // Male: scaffold 0 -> 1 (a,b) -> 2 (b,c), and capping group 3
+        DENOPTIMGraph male = new DENOPTIMGraph();
+        male.addVertex(makeVertex(0, 0, 0));
+        male.addVertex(makeVertex(1, 1, 1));
+        male.addVertex(makeVertex(2, 2, 1));
+        male.addVertex(makeVertex(3, 3, 2));
+        male.addEdge(makeEdge(0, 1, "a:0", "b:0"));
+        male.addEdge(makeEdge(1, 2, "b:0", "c:0"));
+        male.addEdge(makeEdge(2, 3, "c:0", "c:0"));
+
+        // Female: scaffold 10 -> 11 (b,a) -> 12 (a,b), and
+        // 10 -> 13 (b,c) -> 14 (c,c)
+        DENOPTIMGraph female = new DENOPTIMGraph();
+        female.addVertex(makeVertex(10, 0, 0));
+        female.addVertex(makeVertex(11, 2, 1));
+        female.addVertex(makeVertex(12, 3, 1));
+        female.addVertex(makeVertex(13, 4, 1));
+        female.addVertex(makeVertex(14, 1, 1));
+        female.addEdge(makeEdge(10, 11, "b:0", "a:0"));
+        female.addEdge(makeEdge(11, 12, "a:0", "b:0"));
+        female.addEdge(makeEdge(10, 13, "b:0", "c:0"));
+        female.addEdge(makeEdge(13, 14, "c:0", "c:0"));
+
+        // Vertex 1 pairs with 12, and vertex 2 pairs with 13 and 14, but not
+        // with 11 that has the same molId
+        ArrayList<int[]> expected = listPairs(male, female);
+        assertEquals(3, expected.size());
+        assertArrayEquals(new int[] {1, 12}, expected.get(0));
+        assertArrayEquals(new int[] {2, 13}, expected.get(1));
+        assertArrayEquals(new int[] {2, 14}, expected.get(2));
+        assertEquals(3, CrossoverPointsFinder.countCompatiblePairs(male,
+                female));
+
+        for (long seed=0; seed<20; seed++)
+        {
+            RandomUtils.initialiseRNG(seed);
+            int[] pair = CrossoverPointsFinder.locateCompatiblePair(male,
+                    female);
+            long next = RandomUtils.getRNG().nextLong();
+            RandomUtils.initialiseRNG(seed);
+            assertArrayEquals(choosePair(expected), pair, "Seed " + seed);
+            assertEquals(RandomUtils.getRNG().nextLong(), next,
+                    "Different use of random numbers with seed " + seed);
+        }
+
+        // Without compatible classes there is nothing to choose from
+        FragmentSpace.setCompatibilityMatrix(
+                new HashMap<String,ArrayList<String>>());
+        assertEquals(0, CrossoverPointsFinder.countCompatiblePairs(male,
+                female));
+        assertNull(CrossoverPointsFinder.locateCompatiblePair(male, female));
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testAsPairwiseEnumeration() throws Exception
+    {
+        MersenneTwister rng = new MersenneTwister(321L);
+        for (int t=0; t<300; t++)
+        {
+            DENOPTIMGraph male = makeRandomGraph(rng, 0);
+            DENOPTIMGraph female = makeRandomGraph(rng, 100);
+            ArrayList<int[]> expected = listPairs(male, female);
+            assertEquals(expected.size(),
+                    CrossoverPointsFinder.countCompatiblePairs(male, female),
+                    "Number of pairs in trial " + t);
+
+            long seed = rng.nextLong();
+            RandomUtils.initialiseRNG(seed);
+            int[] pair = CrossoverPointsFinder.locateCompatiblePair(male,
+                    female);
+            long next = RandomUtils.getRNG().nextLong();
+            RandomUtils.initialiseRNG(seed);
+            assertArrayEquals(choosePair(expected), pair,
+                    "Crossover points in trial " + t);
+            assertEquals(RandomUtils.getRNG().nextLong(), next,
+                    "Different use of random numbers in trial " + t);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -26,8 +26,6 @@ import java.math.BigDecimal;
 import javax.vecmath.Point3d;
 import javax.vecmath.Vector3d;
 
-import denoptim.constants.DENOPTIMConstants;
-
 /**
  * Some useful math operations
  * @author Vishwesh Venkatraman
@@ -205,12 +203,8 @@ public class DENOPTIMMathUtils
     public static double computeDihedralAngle(Point3d p0, Point3d p1, 
 						Point3d p2, Point3d p3)
     {
-        double[] v0 = new double[] {p0.x, p0.y, p0.z};
-        double[] v1 = new double[] {p1.x, p1.y, p1.z};
-        double[] v2 = new double[] {p2.x, p2.y, p2.z};
-        double[] v3 = new double[] {p3.x, p3.y, p3.z};
-
-	return computeDihedralAngle(v0, v1, v2, v3);
+        return GeometryKernel.dihedral(p0.x, p0.y, p0.z, p1.x, p1.y, p1.z,
+                                       p2.x, p2.y, p2.z, p3.x, p3.y, p3.z);
     }
 
 //------------------------------------------------------------------------------
@@ -228,18 +222,10 @@ public class DENOPTIMMathUtils
     public static double computeDihedralAngle (double[] v0, double[] v1,
                                                 double[] v2, double[] v3)
     {
-        double[] r1 = subtract(v1, v0);
-        double[] r2 = subtract(v2, v1);
-        double[] r3 = subtract(v3, v2);
-
-        double[] n1 = computeCrossProduct(r1, r2);
-        double[] n2 = computeCrossProduct(r2, r3);
-
-        double psin = computeDotProduct(n1, r3) *
-                            Math.sqrt(computeDotProduct(r2, r2));
-        double pcos = computeDotProduct(n1, n2);
-
-        return Math.toDegrees(Math.atan2(psin, pcos));
+        return GeometryKernel.dihedral(v0[0], v0[1], v0[2],
+                                       v1[0], v1[1], v1[2],
+                                       v2[0], v2[1], v2[2],
+                                       v3[0], v3[1], v3[2]);
     }
 
 //------------------------------------------------------------------------------
@@ -287,31 +273,8 @@ public class DENOPTIMMathUtils
      */
     public static double angle(Point3d a, Point3d b, Point3d c)
     {
-        double xba = a.x - b.x;
-        double xbc = c.x - b.x;
-        double yba = a.y - b.y;
-        double ybc = c.y - b.y;
-        double zba = a.z - b.z;
-        double zbc = c.z - b.z;
-
-        double ba = Math.sqrt(xba*xba + yba*yba + zba*zba);
-        double bc = Math.sqrt(xbc*xbc + ybc*ybc + zbc*zbc);
-
-        double dot = xba*xbc + yba*ybc + zba*zbc;
-        dot /= (ba * bc);
-
-        double angle;
-	if (dot < 0.0 && 
-       Math.abs(Math.abs(dot)-1.0) < DENOPTIMConstants.FLOATCOMPARISONTOLERANCE)
-	{
-	    angle = 180.0;
-	}
-	else
-	{
-	    angle = Math.toDegrees(Math.acos(dot));
-	}
-
-        return angle;
+        return GeometryKernel.angle(a.x, a.y, a.z, b.x, b.y, b.z,
+                                    c.x, c.y, c.z);
     }
     
 //------------------------------------------------------------------------------
@@ -369,11 +332,6 @@ public class DENOPTIMMathUtils
 
 //------------------------------------------------------------------------------
 
-    private static double[] tp1 = new double[3];
-    private static double[] tp2 = new double[3];
-    private static double[] tp3 = new double[3];
-    private static double[] tp4 = new double[3];
-
     /** 
      * Calculate the torsion angle between the 4 points.
      * @param p1
@@ -384,12 +342,7 @@ public class DENOPTIMMathUtils
      */
     public static double torsion(Point3d p1, Point3d p2, Point3d p3, Point3d p4)
     {
-        p1.get(tp1);
-        p2.get(tp2);
-        p3.get(tp3);
-        p4.get(tp4);
-
-	return computeDihedralAngle(tp1, tp2, tp3, tp4);
+        return computeDihedralAngle(p1, p2, p3, p4);
     }
 
 //------------------------------------------------------------------------------
@@ -94,6 +94,7 @@ import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 import denoptim.constants.DENOPTIMConstants;
 import denoptim.exception.DENOPTIMException;
 import denoptim.io.DenoptimIO;
+import denoptim.logging.MetricsRegistry;
 import denoptim.molecule.DENOPTIMGraph;
 import denoptim.molecule.DENOPTIMRing;
 import denoptim.molecule.DENOPTIMVertex;
@@ -428,6 +429,7 @@ public class DENOPTIMMoleculeUtils
     public static ObjectPair getInchiForMolecule(IAtomContainer mol)
                                                         throws DENOPTIMException
     {
+        long t0 = MetricsRegistry.start();
 
         IAtomContainer fmol = new AtomContainer();
         try 
@@ -481,6 +483,10 @@ public class DENOPTIMMoleculeUtils
         {
             throw new DENOPTIMException(cdke);
         }
+        finally
+        {
+            MetricsRegistry.record(MetricsRegistry.Stage.INCHI, t0);
+        }
         if (inchi.length() > 0)
             return new ObjectPair(inchi, null);
         else
@@ -889,6 +895,45 @@ public class DENOPTIMMoleculeUtils
         return tanimoto;
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Calculates the path-based fingerprint used by
+     * {@link #calculateSimilarity(IAtomContainer, IAtomContainer)} and packs
+     * it into an array of <code>long</code>, which is the representation
+     * used by {@link FingerprintIndex}.
+     * @param mol the molecule.
+     * @return the packed fingerprint, of {@link #getFingerprintSize()} bits.
+     * @throws DENOPTIMException
+     */
+
+    public static long[] getPackedFingerprint(IAtomContainer mol)
+                                                    throws DENOPTIMException
+    {
+        try
+        {
+            Fingerprinter fingerprinter = new Fingerprinter();
+            BitSet bs = fingerprinter.getFingerprint(mol);
+            return FingerprintIndex.pack(bs, fingerprinter.getSize());
+        }
+        catch (CDKException cdke)
+        {
+            throw new DENOPTIMException(cdke);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of bits of the fingerprints produced by
+     * {@link #getPackedFingerprint(IAtomContainer)}.
+     */
+
+    public static int getFingerprintSize()
+    {
+        return new Fingerprinter().getSize();
+    }
+
 
 //------------------------------------------------------------------------------
 
@@ -0,0 +1,707 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Index of binary fingerprints supporting similarity searches based on the
+ * Tanimoto coefficient. Fingerprints are stored as packed arrays of
+ * <code>long</code>, so that the Tanimoto coefficient is computed with a
+ * few population counts per 64 bits.
+ * Fingerprints are grouped by their number of set bits (the cardinality):
+ * since the Tanimoto coefficient of two fingerprints with cardinalities
+ * <i>a</i> and <i>b</i> cannot exceed min(a,b)/max(a,b),
+ * searches only visit the groups that can contain a hit, and top-k searches
+ * stop as soon as no group can improve the results found so far.
+ * Optionally, threshold searches can be restricted further to the
+ * fingerprints that share at least one locality-sensitive hash (MinHash
+ * banding) with the query. Such searches are approximated: fingerprints with
+ * similarity above the threshold can be missed with a probability that
+ * decreases with the number of bands.
+ * The index can be shared among threads.
+ *
+ * @author Marco Foscato
+ */
+
+public class FingerprintIndex
+{
+    /**
+     * Number of bits of the fingerprints
+     */
+    private final int nBits;
+
+    /**
+     * Number of <code>long</code> words of the packed fingerprints
+     */
+    private final int nWords;
+
+    /**
+     * Entries grouped by cardinality
+     */
+    private final ArrayList<ArrayList<Entry>> byCardinality;
+
+    /**
+     * Entries by key
+     */
+    private final Map<String,Entry> byKey = new HashMap<String,Entry>();
+
+    /**
+     * Number of LSH bands, or zero if LSH is not used
+     */
+    private final int numBands;
+
+    /**
+     * Number of MinHash values per LSH band
+     */
+    private final int rowsPerBand;
+
+    /**
+     * Buckets of entries for each LSH band
+     */
+    private final ArrayList<Map<Long,ArrayList<Entry>>> bands;
+
+    /**
+     * Lock protecting all the above collections
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Multipliers of the MinHash functions
+     */
+    private static final long[] SEEDS = makeSeeds(256);
+
+//------------------------------------------------------------------------------
+
+    /**
+     * A fingerprint stored in the index
+     */
+    private static class Entry
+    {
+        final String key;
+        final long[] words;
+        final int cardinality;
+
+        Entry(String key, long[] words)
+        {
+            this.key = key;
+            this.words = words;
+            this.cardinality = cardinality(words);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Result of a similarity search
+     */
+    public static class Match
+    {
+        private final String key;
+        private final double similarity;
+
+        public Match(String key, double similarity)
+        {
+            this.key = key;
+            this.similarity = similarity;
+        }
+
+        /**
+         * @return the key of the matching fingerprint.
+         */
+        public String getKey()
+        {
+            return key;
+        }
+
+        /**
+         * @return the Tanimoto coefficient with the query.
+         */
+        public double getSimilarity()
+        {
+            return similarity;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Comparator sorting matches by decreasing similarity
+     */
+    private static final Comparator<Match> MOSTSIMILARFIRST =
+            new Comparator<Match>() {
+        @Override
+        public int compare(Match m1, Match m2)
+        {
+            return Double.compare(m2.similarity, m1.similarity);
+        }
+    };
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Constructs an empty index with exact searches.
+     * @param nBits the length of the fingerprints.
+     */
+    public FingerprintIndex(int nBits)
+    {
+        this(nBits, 0, 0);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Constructs an empty index where threshold searches are restricted by
+     * LSH. The probability of finding a fingerprint with Tanimoto
+     * coefficient <i>s</i> to the query is approximately
+     * 1-(1-<i>s</i><sup>r</sup>)<sup>b</sup>, where <i>b</i> is the number
+     * of bands and <i>r</i> the number of rows per band.
+     * @param nBits the length of the fingerprints.
+     * @param numBands number of LSH bands, or zero to run exact searches.
+     * @param rowsPerBand number of MinHash values per band.
+     */
+    public FingerprintIndex(int nBits, int numBands, int rowsPerBand)
+    {
+        if (numBands * rowsPerBand > SEEDS.length)
+        {
+            throw new IllegalArgumentException("Too many MinHash values: "
+                    + "at most " + SEEDS.length + " are allowed.");
+        }
+        this.nBits = nBits;
+        this.nWords = (nBits + 63) / 64;
+        this.numBands = numBands;
+        this.rowsPerBand = rowsPerBand;
+        byCardinality = new ArrayList<ArrayList<Entry>>(nBits + 1);
+        for (int i=0; i<=nBits; i++)
+        {
+            byCardinality.add(new ArrayList<Entry>());
+        }
+        bands = new ArrayList<Map<Long,ArrayList<Entry>>>(numBands);
+        for (int i=0; i<numBands; i++)
+        {
+            bands.add(new HashMap<Long,ArrayList<Entry>>());
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Packs a fingerprint into an array of <code>long</code>.
+     * @param bs the fingerprint.
+     * @param nBits the length of the fingerprint.
+     * @return the packed fingerprint.
+     */
+    public static long[] pack(BitSet bs, int nBits)
+    {
+        long[] words = new long[(nBits + 63) / 64];
+        long[] src = bs.toLongArray();
+        System.arraycopy(src, 0, words, 0, Math.min(src.length, words.length));
+        return words;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param words a packed fingerprint.
+     * @return the number of set bits.
+     */
+    public static int cardinality(long[] words)
+    {
+        int n = 0;
+        for (long w : words)
+        {
+            n = n + Long.bitCount(w);
+        }
+        return n;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Calculates the Tanimoto coefficient of two packed fingerprints. Two
+     * empty fingerprints are considered identical.
+     * @param a first packed fingerprint.
+     * @param b second packed fingerprint.
+     * @return the Tanimoto coefficient.
+     */
+    public static double tanimoto(long[] a, long[] b)
+    {
+        int n = Math.min(a.length, b.length);
+        int and = 0;
+        int or = 0;
+        for (int i=0; i<n; i++)
+        {
+            and = and + Long.bitCount(a[i] & b[i]);
+            or = or + Long.bitCount(a[i] | b[i]);
+        }
+        for (int i=n; i<a.length; i++)
+        {
+            or = or + Long.bitCount(a[i]);
+        }
+        for (int i=n; i<b.length; i++)
+        {
+            or = or + Long.bitCount(b[i]);
+        }
+        if (or == 0)
+        {
+            return 1.0;
+        }
+        return ((double) and) / or;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Upper bound of the Tanimoto coefficient of fingerprints with the
+     * given cardinalities.
+     */
+    private static double bound(int a, int b)
+    {
+        if (a == b)
+        {
+            return 1.0;
+        }
+        return ((double) Math.min(a, b)) / Math.max(a, b);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the length of the fingerprints.
+     */
+    public int getNumberOfBits()
+    {
+        return nBits;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of fingerprints in the index.
+     */
+    public int size()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return byKey.size();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param key the key of a fingerprint.
+     * @return <code>true</code> if the index contains a fingerprint with the
+     * given key.
+     */
+    public boolean contains(String key)
+    {
+        lock.readLock().lock();
+        try
+        {
+            return byKey.containsKey(key);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param key the key of a fingerprint.
+     * @return the packed fingerprint with the given key, or
+     * <code>null</code> if there is no such fingerprint.
+     */
+    public long[] get(String key)
+    {
+        lock.readLock().lock();
+        try
+        {
+            Entry e = byKey.get(key);
+            return e == null ? null : e.words;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Adds a fingerprint to the index, unless the key is already in use.
+     * @param key the key identifying the fingerprint.
+     * @param words the packed fingerprint. The array is stored, not copied.
+     * @return <code>true</code> if the fingerprint has been added.
+     */
+    public boolean add(String key, long[] words)
+    {
+        checkLength(words);
+        lock.writeLock().lock();
+        try
+        {
+            if (byKey.containsKey(key))
+            {
+                return false;
+            }
+            store(new Entry(key, words));
+            return true;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Adds a fingerprint to the index only if the index does not contain any
+     * fingerprint with the same key or with Tanimoto coefficient to the
+     * given one equal to or above the threshold. The search and the addition
+     * are done atomically, so concurrent calls with similar fingerprints
+     * cannot both succeed.
+     * @param key the key identifying the fingerprint.
+     * @param words the packed fingerprint. The array is stored, not copied.
+     * @param threshold the minimum Tanimoto coefficient of a near-duplicate.
+     * @return <code>null</code> if the fingerprint has been added, or the
+     * key of the near-duplicate that prevented the addition.
+     */
+    public String addIfNovel(String key, long[] words, double threshold)
+    {
+        checkLength(words);
+        lock.writeLock().lock();
+        try
+        {
+            if (byKey.containsKey(key))
+            {
+                return key;
+            }
+            Entry query = new Entry(key, words);
+            List<Match> hits = searchAbove(query, threshold, 1);
+            if (!hits.isEmpty())
+            {
+                return hits.get(0).getKey();
+            }
+            store(query);
+            return null;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Finds all the fingerprints with Tanimoto coefficient to the query
+     * equal to or above a threshold. If this index uses LSH, the search is
+     * approximated.
+     * @param words the packed query fingerprint.
+     * @param threshold the minimum Tanimoto coefficient.
+     * @return the matches sorted by decreasing similarity.
+     */
+    public List<Match> findSimilar(long[] words, double threshold)
+    {
+        checkLength(words);
+        lock.readLock().lock();
+        try
+        {
+            List<Match> hits = searchAbove(new Entry(null, words), threshold,
+                    Integer.MAX_VALUE);
+            Collections.sort(hits, MOSTSIMILARFIRST);
+            return hits;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Finds the <i>k</i> fingerprints most similar to the query. This search
+     * is always exact.
+     * @param words the packed query fingerprint.
+     * @param k the maximum number of matches.
+     * @return the matches sorted by decreasing similarity.
+     */
+    public List<Match> findNearest(long[] words, int k)
+    {
+        checkLength(words);
+        List<Match> hits = new ArrayList<Match>();
+        if (k < 1)
+        {
+            return hits;
+        }
+        // Min-heap with the best k matches found so far
+        PriorityQueue<Match> best = new PriorityQueue<Match>(k,
+                Collections.reverseOrder(MOSTSIMILARFIRST));
+        int a = cardinality(words);
+        lock.readLock().lock();
+        try
+        {
+            // Visit groups by decreasing upper bound of the similarity
+            int lo = a;
+            int hi = a + 1;
+            while (lo >= 0 || hi <= nBits)
+            {
+                int b;
+                if (hi > nBits || (lo >= 0 && bound(a, lo) >= bound(a, hi)))
+                {
+                    b = lo;
+                    lo--;
+                }
+                else
+                {
+                    b = hi;
+                    hi++;
+                }
+                if (best.size() == k
+                        && bound(a, b) <= best.peek().getSimilarity())
+                {
+                    break;
+                }
+                for (Entry e : byCardinality.get(b))
+                {
+                    double sim = tanimoto(words, e.words);
+                    if (best.size() < k)
+                    {
+                        best.add(new Match(e.key, sim));
+                    }
+                    else if (sim > best.peek().getSimilarity())
+                    {
+                        best.poll();
+                        best.add(new Match(e.key, sim));
+                    }
+                }
+            }
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+        hits.addAll(best);
+        Collections.sort(hits, MOSTSIMILARFIRST);
+        return hits;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Searches fingerprints with Tanimoto coefficient equal to or above a
+     * threshold. Must be called while holding a lock.
+     * @param query the query entry.
+     * @param threshold the minimum Tanimoto coefficient.
+     * @param max the maximum number of matches to collect.
+     * @return the unsorted matches.
+     */
+    private List<Match> searchAbove(Entry query, double threshold, int max)
+    {
+        List<Match> hits = new ArrayList<Match>();
+        int a = query.cardinality;
+        // The bounds are widened by one because rounding may put a
+        // cardinality with similarity exactly equal to the threshold out of
+        // range. Similarities are anyway compared with the threshold below.
+        int minCard = (int) Math.ceil(threshold * a) - 1;
+        int maxCard = threshold > 0.0 ? (int) Math.floor(a / threshold) + 1
+                : nBits;
+        if (a == 0)
+        {
+            maxCard = 0;
+        }
+        minCard = Math.max(0, minCard);
+        maxCard = Math.min(nBits, maxCard);
+
+        if (numBands > 0)
+        {
+            Set<Entry> seen = new HashSet<Entry>();
+            long[] bandKeys = getBandKeys(query.words);
+            for (int i=0; i<numBands; i++)
+            {
+                ArrayList<Entry> bucket = bands.get(i).get(bandKeys[i]);
+                if (bucket == null)
+                {
+                    continue;
+                }
+                for (Entry e : bucket)
+                {
+                    if (e.cardinality < minCard || e.cardinality > maxCard
+                            || !seen.add(e))
+                    {
+                        continue;
+                    }
+                    double sim = tanimoto(query.words, e.words);
+                    if (sim >= threshold)
+                    {
+                        hits.add(new Match(e.key, sim));
+                        if (hits.size() >= max)
+                        {
+                            return hits;
+                        }
+                    }
+                }
+            }
+            return hits;
+        }
+
+        for (int b=minCard; b<=maxCard; b++)
+        {
+            for (Entry e : byCardinality.get(b))
+            {
+                double sim = tanimoto(query.words, e.words);
+                if (sim >= threshold)
+                {
+                    hits.add(new Match(e.key, sim));
+                    if (hits.size() >= max)
+                    {
+                        return hits;
+                    }
+                }
+            }
+        }
+        return hits;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Places an entry in all the collections. Must be called while holding
+     * the write lock.
+     */
+    private void store(Entry e)
+    {
+        byKey.put(e.key, e);
+        byCardinality.get(e.cardinality).add(e);
+        if (numBands > 0)
+        {
+            long[] bandKeys = getBandKeys(e.words);
+            for (int i=0; i<numBands; i++)
+            {
+                bands.get(i).computeIfAbsent(bandKeys[i],
+                        k -> new ArrayList<Entry>()).add(e);
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Computes the LSH key of each band from the MinHash signature of a
+     * fingerprint.
+     */
+    private long[] getBandKeys(long[] words)
+    {
+        int nHashes = numBands * rowsPerBand;
+        long[] minHashes = new long[nHashes];
+        Arrays.fill(minHashes, Long.MAX_VALUE);
+        for (int w=0; w<words.length; w++)
+        {
+            long word = words[w];
+            while (word != 0)
+            {
+                long bit = 64L * w + Long.numberOfTrailingZeros(word);
+                word = word & (word - 1);
+                for (int h=0; h<nHashes; h++)
+                {
+                    long v = mix(bit * SEEDS[h]);
+                    if (v < minHashes[h])
+                    {
+                        minHashes[h] = v;
+                    }
+                }
+            }
+        }
+        long[] keys = new long[numBands];
+        for (int i=0; i<numBands; i++)
+        {
+            long key = i;
+            for (int r=0; r<rowsPerBand; r++)
+            {
+                key = mix(key * 31 + minHashes[i * rowsPerBand + r]);
+            }
+            keys[i] = key;
+        }
+        return keys;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Bit mixing function (the finalizer of MurmurHash3)
+     */
+    private static long mix(long v)
+    {
+        v = (v ^ (v >>> 33)) * 0xff51afd7ed558ccdL;
+        v = (v ^ (v >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return v ^ (v >>> 33);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Generates odd multipliers for the MinHash functions. The sequence is
+     * fixed, so that LSH keys do not change between runs.
+     */
+    private static long[] makeSeeds(int n)
+    {
+        long[] seeds = new long[n];
+        long s = 0x9e3779b97f4a7c15L;
+        for (int i=0; i<n; i++)
+        {
+            s = mix(s + 0x9e3779b97f4a7c15L);
+            seeds[i] = s | 1L;
+        }
+        return seeds;
+    }
+
+//------------------------------------------------------------------------------
+
+    private void checkLength(long[] words)
+    {
+        if (words.length != nWords)
+        {
+            throw new IllegalArgumentException("Fingerprint of " + words.length
+                    + " words given to index of " + nWords + " words.");
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,223 @@
+package denoptim.utils;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the index of fingerprints
+ *
+ * @author Marco Foscato
+ */
+
+public class FingerprintIndexTest
+{
+    private static final int NBITS = 1024;
+
+//------------------------------------------------------------------------------
+
+    private static long[] randomFingerprint(Random rnd, double density)
+    {
+        BitSet bs = new BitSet(NBITS);
+        for (int i=0; i<NBITS; i++)
+        {
+            if (rnd.nextDouble() < density)
+            {
+                bs.set(i);
+            }
+        }
+        return FingerprintIndex.pack(bs, NBITS);
+    }
+
+//------------------------------------------------------------------------------
+
+    private static double bruteForceTanimoto(long[] a, long[] b)
+    {
+        BitSet bsA = BitSet.valueOf(a);
+        BitSet bsB = BitSet.valueOf(b);
+        BitSet and = (BitSet) bsA.clone();
+        and.and(bsB);
+        BitSet or = (BitSet) bsA.clone();
+        or.or(bsB);
+        if (or.cardinality() == 0)
+        {
+            return 1.0;
+        }
+        return ((double) and.cardinality()) / or.cardinality();
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testTanimoto() throws Exception
+    {
+        Random rnd = new Random(1234);
+        for (int i=0; i<50; i++)
+        {
+            long[] a = randomFingerprint(rnd, 0.1);
+            long[] b = randomFingerprint(rnd, 0.2);
+            assertEquals(bruteForceTanimoto(a, b),
+                    FingerprintIndex.tanimoto(a, b), 1.0e-12);
+        }
+        long[] empty = new long[NBITS / 64];
+        assertEquals(1.0, FingerprintIndex.tanimoto(empty, empty), 1.0e-12);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return a fingerprint with the first <code>n</code> bits set.
+     */
+    private static long[] prefixFingerprint(int n)
+    {
+        BitSet bs = new BitSet(NBITS);
+        bs.set(0, n);
+        return FingerprintIndex.pack(bs, NBITS);
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testSearches() throws Exception
+    {
+        Random rnd = new Random(5678);
+        FingerprintIndex idx = new FingerprintIndex(NBITS);
+        List<long[]> fps = new ArrayList<long[]>();
+        for (int i=0; i<500; i++)
+        {
+            long[] fp = randomFingerprint(rnd, 0.02 + 0.2 * rnd.nextDouble());
+            fps.add(fp);
+            assertTrue(idx.add("fp" + i, fp));
+        }
+        assertEquals(500, idx.size());
+
+        for (int q=0; q<20; q++)
+        {
+            long[] query = fps.get(rnd.nextInt(fps.size())).clone();
+            // Perturb the query to get a range of similarities
+            query[0] = query[0] ^ rnd.nextLong();
+
+            double threshold = 0.3;
+            int expected = 0;
+            double[] sims = new double[fps.size()];
+            for (int i=0; i<fps.size(); i++)
+            {
+                sims[i] = bruteForceTanimoto(query, fps.get(i));
+                if (sims[i] >= threshold)
+                {
+                    expected++;
+                }
+            }
+            List<FingerprintIndex.Match> hits = idx.findSimilar(query,
+                    threshold);
+            assertEquals(expected, hits.size(), "Number of hits");
+
+            List<FingerprintIndex.Match> nearest = idx.findNearest(query, 5);
+            assertEquals(5, nearest.size());
+            double[] sorted = sims.clone();
+            Arrays.sort(sorted);
+            for (int k=0; k<5; k++)
+            {
+                assertEquals(sorted[sorted.length-1-k],
+                        nearest.get(k).getSimilarity(), 1.0e-12);
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testAddIfNovel() throws Exception
+    {
+        Random rnd = new Random(91011);
+        FingerprintIndex idx = new FingerprintIndex(NBITS, 16, 4);
+        long[] fp = randomFingerprint(rnd, 0.1);
+        assertNull(idx.addIfNovel("first", fp, 0.9));
+
+        long[] near = fp.clone();
+        near[3] = near[3] ^ 1L;
+        assertEquals("first", idx.addIfNovel("second", near, 0.9));
+        assertEquals("first", idx.addIfNovel("first", near, 0.9));
+
+        long[] far = randomFingerprint(rnd, 0.1);
+        assertNull(idx.addIfNovel("third", far, 0.9));
+        assertEquals(2, idx.size());
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testHitsOnThreshold() throws Exception
+    {
+        // The Tanimoto coefficient of two prefix fingerprints is the ratio
+        // of their cardinalities, so some of them fall exactly on the
+        // threshold
+        FingerprintIndex idx = new FingerprintIndex(NBITS);
+        int maxCard = 300;
+        for (int b=1; b<=maxCard; b++)
+        {
+            idx.add("fp" + b, prefixFingerprint(b));
+        }
+
+        assertEquals(0.55, FingerprintIndex.tanimoto(prefixFingerprint(100),
+                prefixFingerprint(55)));
+        assertTrue(idx.findSimilar(prefixFingerprint(100), 0.55).stream()
+                .anyMatch(m -> m.getKey().equals("fp55")));
+        assertTrue(idx.findSimilar(prefixFingerprint(14), 0.56).stream()
+                .anyMatch(m -> m.getKey().equals("fp25")));
+
+        double[] thresholds = new double[] {0.07, 0.54, 0.55, 0.56, 0.67,
+                0.68, 0.81};
+        for (double t : thresholds)
+        {
+            for (int a=1; a<=maxCard; a++)
+            {
+                long[] query = prefixFingerprint(a);
+                int expected = 0;
+                for (int b=1; b<=maxCard; b++)
+                {
+                    if (bruteForceTanimoto(query, prefixFingerprint(b)) >= t)
+                    {
+                        expected++;
+                    }
+                }
+                assertEquals(expected, idx.findSimilar(query, t).size(),
+                        "Hits for cardinality " + a + " and threshold " + t);
+            }
+        }
+
+        FingerprintIndex novel = new FingerprintIndex(NBITS);
+        assertNull(novel.addIfNovel("fp100", prefixFingerprint(100), 0.55));
+        assertEquals("fp100", novel.addIfNovel("fp55", prefixFingerprint(55),
+                0.55));
+    }
+
+//------------------------------------------------------------------------------
+
+}
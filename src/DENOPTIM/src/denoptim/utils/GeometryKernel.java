@@ -0,0 +1,399 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.utils;
+
+import denoptim.constants.DENOPTIMConstants;
+
+/**
+ * Geometry operations working on primitive coordinates. Sets of points are
+ * stored in {@link Buffer}s, i.e., one array per Cartesian component, and
+ * are rotated and translated in place. None of the methods allocates
+ * objects, so that these operations can be used in the inner loops of
+ * conformational searches. The numerical recipes are those of
+ * <code>javax.vecmath</code>, so results are equivalent to those obtained
+ * with <code>Point3d</code>, <code>Vector3d</code> and
+ * <code>Matrix3d</code>.
+ *
+ * @author Marco Foscato
+ */
+
+public class GeometryKernel
+{
+    /**
+     * Threshold below which the length of a rotation axis is considered null
+     */
+    private static final double EPS = 1.0e-12;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * A growable set of points in 3D space stored as structure of arrays.
+     * Buffers are meant to be reused, see
+     * {@link GeometryKernel#newThreadLocalBuffer()}.
+     */
+
+    public static class Buffer
+    {
+        /**
+         * The x coordinates. Only the first {@link #size()} are meaningful.
+         */
+        public double[] x = new double[16];
+
+        /**
+         * The y coordinates. Only the first {@link #size()} are meaningful.
+         */
+        public double[] y = new double[16];
+
+        /**
+         * The z coordinates. Only the first {@link #size()} are meaningful.
+         */
+        public double[] z = new double[16];
+
+        private int size = 0;
+
+        /**
+         * Removes all points while keeping the allocated space.
+         */
+        public void clear()
+        {
+            size = 0;
+        }
+
+        /**
+         * @return the number of points in this buffer
+         */
+        public int size()
+        {
+            return size;
+        }
+
+        /**
+         * Appends a point.
+         * @return the index of the new point
+         */
+        public int add(double px, double py, double pz)
+        {
+            if (size == x.length)
+            {
+                int n = 2 * size;
+                double[] nx = new double[n];
+                double[] ny = new double[n];
+                double[] nz = new double[n];
+                System.arraycopy(x, 0, nx, 0, size);
+                System.arraycopy(y, 0, ny, 0, size);
+                System.arraycopy(z, 0, nz, 0, size);
+                x = nx;
+                y = ny;
+                z = nz;
+            }
+            x[size] = px;
+            y[size] = py;
+            z[size] = pz;
+            return size++;
+        }
+
+        /**
+         * Appends a point.
+         * @param p the coordinates of the point
+         * @return the index of the new point
+         */
+        public int add(double[] p)
+        {
+            return add(p[0], p[1], p[2]);
+        }
+
+        /**
+         * Copies the coordinates of a point into an array.
+         * @param i the index of the point
+         * @param p the array where to put the coordinates
+         */
+        public void get(int i, double[] p)
+        {
+            p[0] = x[i];
+            p[1] = y[i];
+            p[2] = z[i];
+        }
+
+        /**
+         * @param i the index of the point
+         * @return the string representation of the point
+         */
+        public String toString(int i)
+        {
+            return "(" + x[i] + ", " + y[i] + ", " + z[i] + ")";
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Creates a source of per-thread buffers. Each class using buffers as
+     * scratch space should use its own source to avoid that two methods
+     * work on the same buffer.
+     * @return a thread-local reusable buffer
+     */
+
+    public static ThreadLocal<Buffer> newThreadLocalBuffer()
+    {
+        return ThreadLocal.withInitial(Buffer::new);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Translates a range of points in place.
+     * @param b the buffer
+     * @param from index of the first point to move
+     * @param to index of the point after the last one to move
+     * @param dx translation along x
+     * @param dy translation along y
+     * @param dz translation along z
+     */
+
+    public static void translate(Buffer b, int from, int to,
+                                 double dx, double dy, double dz)
+    {
+        for (int i=from; i<to; i++)
+        {
+            b.x[i] += dx;
+            b.y[i] += dy;
+            b.z[i] += dz;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Rotates a range of points in place around an axis passing through a
+     * given origin.
+     * @param b the buffer
+     * @param from index of the first point to move
+     * @param to index of the point after the last one to move
+     * @param ox x coordinate of the origin of the axis
+     * @param oy y coordinate of the origin of the axis
+     * @param oz z coordinate of the origin of the axis
+     * @param ax x component of the direction of the axis (any length)
+     * @param ay y component of the direction of the axis (any length)
+     * @param az z component of the direction of the axis (any length)
+     * @param angle the angle of rotation (radians)
+     */
+
+    public static void rotate(Buffer b, int from, int to,
+                              double ox, double oy, double oz,
+                              double ax, double ay, double az, double angle)
+    {
+        double m00 = 1.0, m01 = 0.0, m02 = 0.0;
+        double m10 = 0.0, m11 = 1.0, m12 = 0.0;
+        double m20 = 0.0, m21 = 0.0, m22 = 1.0;
+        double mag = Math.sqrt(ax*ax + ay*ay + az*az);
+        if (mag >= EPS)
+        {
+            mag = 1.0/mag;
+            double nx = ax*mag;
+            double ny = ay*mag;
+            double nz = az*mag;
+            double sin = Math.sin(angle);
+            double cos = Math.cos(angle);
+            double t = 1.0 - cos;
+            double xz = nx * nz;
+            double xy = nx * ny;
+            double yz = ny * nz;
+            m00 = t * nx * nx + cos;
+            m01 = t * xy - sin * nz;
+            m02 = t * xz + sin * ny;
+            m10 = t * xy + sin * nz;
+            m11 = t * ny * ny + cos;
+            m12 = t * yz - sin * nx;
+            m20 = t * xz - sin * ny;
+            m21 = t * yz + sin * nx;
+            m22 = t * nz * nz + cos;
+        }
+        for (int i=from; i<to; i++)
+        {
+            double px = b.x[i] - ox;
+            double py = b.y[i] - oy;
+            double pz = b.z[i] - oz;
+            b.x[i] = m00*px + m01*py + m02*pz + ox;
+            b.y[i] = m10*px + m11*py + m12*pz + oy;
+            b.z[i] = m20*px + m21*py + m22*pz + oz;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the distance between two points of a buffer
+     */
+
+    public static double distance(Buffer b, int i, int j)
+    {
+        double dx = b.x[i] - b.x[j];
+        double dy = b.y[i] - b.y[j];
+        double dz = b.z[i] - b.z[j];
+        return Math.sqrt(dx*dx + dy*dy + dz*dz);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Computes the dot product of the normalized vectors i-j and k-l.
+     * @return the cosine of the angle between the two vectors
+     */
+
+    public static double normalizedDot(Buffer b, int i, int j, int k, int l)
+    {
+        return normalizedDot(b.x[i] - b.x[j], b.y[i] - b.y[j], b.z[i] - b.z[j],
+                             b.x[k] - b.x[l], b.y[k] - b.y[l], b.z[k] - b.z[l]);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Computes the dot product of the normalized vectors a and b.
+     * @return the cosine of the angle between the two vectors
+     */
+
+    public static double normalizedDot(double ax, double ay, double az,
+                                       double bx, double by, double bz)
+    {
+        double na = 1.0/Math.sqrt(ax*ax + ay*ay + az*az);
+        double nb = 1.0/Math.sqrt(bx*bx + by*by + bz*bz);
+        return (ax*na)*(bx*nb) + (ay*na)*(by*nb) + (az*na)*(bz*nb);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Computes the angle between two vectors.
+     * @return the angle in radians, in the range [0, PI]
+     */
+
+    public static double vectorAngle(double ax, double ay, double az,
+                                     double bx, double by, double bz)
+    {
+        double dot = (ax*bx + ay*by + az*bz)
+                     / (Math.sqrt(ax*ax + ay*ay + az*az)
+                        * Math.sqrt(bx*bx + by*by + bz*bz));
+        if (dot < -1.0)
+            dot = -1.0;
+        if (dot > 1.0)
+            dot = 1.0;
+        return Math.acos(dot);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Calculate the angle between three points of a buffer.
+     * @return the angle i-j-k in degrees
+     */
+
+    public static double angle(Buffer b, int i, int j, int k)
+    {
+        return angle(b.x[i], b.y[i], b.z[i],
+                     b.x[j], b.y[j], b.z[j],
+                     b.x[k], b.y[k], b.z[k]);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Calculate the angle between three points A-B-C, i.e., centered on B.
+     * @return the angle in degrees
+     */
+
+    public static double angle(double ax, double ay, double az,
+                               double bx, double by, double bz,
+                               double cx, double cy, double cz)
+    {
+        double xba = ax - bx;
+        double xbc = cx - bx;
+        double yba = ay - by;
+        double ybc = cy - by;
+        double zba = az - bz;
+        double zbc = cz - bz;
+
+        double ba = Math.sqrt(xba*xba + yba*yba + zba*zba);
+        double bc = Math.sqrt(xbc*xbc + ybc*ybc + zbc*zbc);
+
+        double dot = xba*xbc + yba*ybc + zba*zbc;
+        dot /= (ba * bc);
+
+        if (dot < 0.0 && Math.abs(Math.abs(dot)-1.0)
+                               < DENOPTIMConstants.FLOATCOMPARISONTOLERANCE)
+        {
+            return 180.0;
+        }
+        return Math.toDegrees(Math.acos(dot));
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Compute the dihedral angle defined by four points of a buffer.
+     * @return the dihedral angle i-j-k-l in degrees
+     */
+
+    public static double dihedral(Buffer b, int i, int j, int k, int l)
+    {
+        return dihedral(b.x[i], b.y[i], b.z[i],
+                        b.x[j], b.y[j], b.z[j],
+                        b.x[k], b.y[k], b.z[k],
+                        b.x[l], b.y[l], b.z[l]);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Compute the dihedral angle defined by four points.
+     * @return the dihedral angle in degrees
+     */
+
+    public static double dihedral(double x0, double y0, double z0,
+                                  double x1, double y1, double z1,
+                                  double x2, double y2, double z2,
+                                  double x3, double y3, double z3)
+    {
+        double r1x = x1 - x0;
+        double r1y = y1 - y0;
+        double r1z = z1 - z0;
+        double r2x = x2 - x1;
+        double r2y = y2 - y1;
+        double r2z = z2 - z1;
+        double r3x = x3 - x2;
+        double r3y = y3 - y2;
+        double r3z = z3 - z2;
+
+        double n1x = r1y * r2z - r1z * r2y;
+        double n1y = r1z * r2x - r1x * r2z;
+        double n1z = r1x * r2y - r1y * r2x;
+        double n2x = r2y * r3z - r2z * r3y;
+        double n2y = r2z * r3x - r2x * r3z;
+        double n2z = r2x * r3y - r2y * r3x;
+
+        double psin = (n1x * r3x + n1y * r3y + n1z * r3z) *
+                            Math.sqrt(r2x * r2x + r2y * r2y + r2z * r2z);
+        double pcos = n1x * n2x + n1y * n2y + n1z * n2z;
+
+        return Math.toDegrees(Math.atan2(psin, pcos));
+    }
+
+//------------------------------------------------------------------------------
+
+}
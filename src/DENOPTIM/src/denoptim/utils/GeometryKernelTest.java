@@ -0,0 +1,151 @@
+package denoptim.utils;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Random;
+
+import javax.vecmath.AxisAngle4d;
+import javax.vecmath.Matrix3d;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the geometry kernel
+ *
+ * @author Marco Foscato
+ */
+
+public class GeometryKernelTest
+{
+    private final double THRLD = 0.0000001;
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testBufferGrowth() throws Exception
+    {
+        GeometryKernel.Buffer b = new GeometryKernel.Buffer();
+        for (int i=0; i<100; i++)
+        {
+            assertEquals(i, b.add(i, -i, 2.0*i));
+        }
+        assertEquals(100, b.size());
+        double[] p = new double[3];
+        b.get(77, p);
+        assertEquals(77.0, p[0], THRLD);
+        assertEquals(-77.0, p[1], THRLD);
+        assertEquals(154.0, p[2], THRLD);
+        b.clear();
+        assertEquals(0, b.size());
+
+        ThreadLocal<GeometryKernel.Buffer> tl =
+                GeometryKernel.newThreadLocalBuffer();
+        assertSame(tl.get(), tl.get());
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testRotateAsVecmath() throws Exception
+    {
+        Random rng = new Random(123L);
+        for (int i=0; i<100; i++)
+        {
+            Vector3d axis = new Vector3d(rng.nextGaussian(),
+                    rng.nextGaussian(), rng.nextGaussian());
+            Point3d o = new Point3d(rng.nextGaussian(), rng.nextGaussian(),
+                    rng.nextGaussian());
+            Point3d p = new Point3d(rng.nextGaussian(), rng.nextGaussian(),
+                    rng.nextGaussian());
+            double ang = rng.nextDouble() * 2.0 * Math.PI;
+
+            Matrix3d rotMat = new Matrix3d();
+            rotMat.set(new AxisAngle4d(axis, ang));
+            Vector3d v = new Vector3d(p.x - o.x, p.y - o.y, p.z - o.z);
+            rotMat.transform(v);
+
+            GeometryKernel.Buffer b = new GeometryKernel.Buffer();
+            b.add(o.x, o.y, o.z);
+            b.add(p.x, p.y, p.z);
+            GeometryKernel.rotate(b, 1, 2, o.x, o.y, o.z,
+                    axis.x, axis.y, axis.z, ang);
+
+            assertEquals(v.x + o.x, b.x[1], THRLD);
+            assertEquals(v.y + o.y, b.y[1], THRLD);
+            assertEquals(v.z + o.z, b.z[1], THRLD);
+            assertEquals(o.x, b.x[0], THRLD, "Point out of range was moved");
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testTranslate() throws Exception
+    {
+        GeometryKernel.Buffer b = new GeometryKernel.Buffer();
+        b.add(1.0, 2.0, 3.0);
+        b.add(-1.0, 0.0, 1.0);
+        GeometryKernel.translate(b, 0, 2, 0.5, -1.0, 2.0);
+        assertEquals(1.5, b.x[0], THRLD);
+        assertEquals(-1.0, b.y[1], THRLD);
+        assertEquals(3.0, b.z[1], THRLD);
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testAnglesAndDihedrals() throws Exception
+    {
+        GeometryKernel.Buffer b = new GeometryKernel.Buffer();
+        b.add(0.0, 1.0, 0.0);
+        b.add(0.0, 0.0, 0.0);
+        b.add(1.0, 0.0, 0.0);
+        b.add(1.0, 0.0, 1.0);
+        b.add(-1.0, 0.0, 0.0);
+        b.add(1.0, 0.0, -1.0);
+        assertEquals(90.0, GeometryKernel.angle(b, 0, 1, 2), THRLD);
+        assertEquals(180.0, GeometryKernel.angle(b, 2, 1, 4), THRLD);
+        assertEquals(90.0, GeometryKernel.dihedral(b, 0, 1, 2, 3), THRLD);
+        assertEquals(90.0, GeometryKernel.dihedral(b, 3, 2, 1, 0), THRLD);
+        assertEquals(-90.0, GeometryKernel.dihedral(b, 0, 1, 2, 5), THRLD);
+        assertEquals(Math.sqrt(2.0), GeometryKernel.distance(b, 0, 2), THRLD);
+        assertEquals(0.0, GeometryKernel.normalizedDot(b, 0, 1, 2, 1), THRLD);
+        assertEquals(Math.PI, GeometryKernel.vectorAngle(1.0, 0.0, 0.0,
+                -2.0, 0.0, 0.0), THRLD);
+
+        Point3d p0 = new Point3d(0.3, 1.2, -0.4);
+        Point3d p1 = new Point3d(0.0, 0.1, 0.0);
+        Point3d p2 = new Point3d(1.1, 0.0, 0.2);
+        Point3d p3 = new Point3d(1.3, -0.8, 1.0);
+        assertEquals(DENOPTIMMathUtils.computeDihedralAngle(
+                new double[] {p0.x, p0.y, p0.z},
+                new double[] {p1.x, p1.y, p1.z},
+                new double[] {p2.x, p2.y, p2.z},
+                new double[] {p3.x, p3.y, p3.z}),
+                DENOPTIMMathUtils.torsion(p0, p1, p2, p3), THRLD);
+    }
+
+//------------------------------------------------------------------------------
+
+}
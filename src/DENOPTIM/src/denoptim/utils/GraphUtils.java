@@ -38,6 +38,7 @@ import denoptim.fragspace.FragmentSpace;
 import denoptim.fragspace.FragmentSpaceParameters;
 import denoptim.io.DenoptimIO;
 import denoptim.logging.DENOPTIMLogger;
+import denoptim.logging.MetricsRegistry;
 import denoptim.molecule.DENOPTIMAttachmentPoint;
 import denoptim.molecule.DENOPTIMEdge;
 import denoptim.molecule.DENOPTIMGraph;
@@ -63,6 +64,12 @@ public class GraphUtils
     private static AtomicInteger graphCounter = new AtomicInteger(1);
     private static AtomicInteger molCounter = new AtomicInteger(1);
 
+    /**
+     * Results of the chemical perception of the graphs evaluated so far
+     */
+    private static final PerceptionCache perceptionCache =
+            new PerceptionCache("perception", PerceptionCache.DEFAULTCAPACITY);
+
     private static boolean debug = false;
 
 //------------------------------------------------------------------------------
@@ -103,6 +110,18 @@ public class GraphUtils
         return vertexCounter.getAndIncrement();
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the value that will be given to the next call of the
+     * getUniqueVertexIndex method. The counter is not changed.
+     */
+
+    public static int peekUniqueVertexIndex()
+    {
+        return vertexCounter.get();
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -983,6 +1002,18 @@ public class GraphUtils
         return graphCounter.getAndIncrement();
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the value that will be given to the next call of the
+     * getUniqueGraphIndex method. The counter is not changed.
+     */
+
+    public static int peekUniqueGraphIndex()
+    {
+        return graphCounter.get();
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -1021,6 +1052,18 @@ public class GraphUtils
         return molCounter.getAndIncrement();
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the value that will be given to the next call of the
+     * getUniqueMoleculeIndex method. The counter is not changed.
+     */
+
+    public static int peekUniqueMoleculeIndex()
+    {
+        return molCounter.get();
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -1048,18 +1091,48 @@ public class GraphUtils
         // check for null graph
         if (molGraph == null)
         {
-            String msg = "Evaluation of graph: input graph is null!";
-            DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                String msg = "Evaluation of graph: input graph is null!";
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
+            MetricsRegistry.countRejection("null_graph");
             return null;
         }
 
-        // calculate the molecule representation        
+        // reuse the results of previous evaluations of the same graph
+        String key = PerceptionCache.getCanonicalKey(molGraph);
+        PerceptionCache.Perception known = perceptionCache.get(key);
+        if (known != null)
+        {
+            return evaluateKnownGraph(molGraph, known, "UNDEFINED_INCHI");
+        }
+
+        // reject candidates that are clearly too large before building them
+        String reason = preFilterGraph(molGraph);
+        if (reason != null)
+        {
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                String msg = "Evaluation of graph: pre-filter rejected graph ("
+                                                               + reason + ")";
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
+            countRejection(key, reason);
+            return null;
+        }
+
+        // calculate the molecule representation
         IAtomContainer mol = GraphConversionTool.convertGraphToMolecule(molGraph, true);
         if (mol == null)
         {
-            String msg ="Evaluation of graph: graph-to-mol returned null!"
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                String msg ="Evaluation of graph: graph-to-mol returned null!"
                                                           + molGraph.toString();
-            DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
+            countRejection(key, "graph_to_mol_failed");
             return null;
         }
 
@@ -1067,9 +1140,13 @@ public class GraphUtils
         boolean isConnected = ConnectivityChecker.isConnected(mol);
         if (!isConnected)
         {
-            String msg = "Evaluation of graph: Not all connected"
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                String msg = "Evaluation of graph: Not all connected"
                                                           + molGraph.toString();
-            DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
+            countRejection(key, "disconnected");
             return null;
         }
 
@@ -1078,29 +1155,41 @@ public class GraphUtils
         smiles = DENOPTIMMoleculeUtils.getSMILESForMolecule(mol);
         if (smiles == null)
         {
-            String msg = "Evaluation of graph: SMILES is null! "
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                String msg = "Evaluation of graph: SMILES is null! "
                                                           + molGraph.toString();
-            DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
             smiles = "FAIL: NO SMILES GENERATED";
         }
         // if by chance the smiles indicates a disconnected molecule
         if (smiles.contains("."))
         {
-            String msg = "Evaluation of graph: SMILES contains \".\"" + smiles;
-            DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                String msg = "Evaluation of graph: SMILES contains \".\""
+                                                                      + smiles;
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
+            countRejection(key, "disconnected");
             return null;
         }
 
         // criteria from definition of Fragment space
         // 1A) number of heavy atoms
+        int nHeavy = DENOPTIMMoleculeUtils.getHeavyAtomCount(mol);
         if (FragmentSpaceParameters.getMaxHeavyAtom() > 0)
         {
-            if (DENOPTIMMoleculeUtils.getHeavyAtomCount(mol) >
-                                      FragmentSpaceParameters.getMaxHeavyAtom())
+            if (nHeavy > FragmentSpaceParameters.getMaxHeavyAtom())
             {
-                String msg = "Evaluation of graph: Max atoms constraint "
+                if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+                {
+                    String msg = "Evaluation of graph: Max atoms constraint "
                                                        + " violated: " + smiles;
-                DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                    DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+                }
+                countRejection(key, "max_heavy_atoms");
                 return null;
             }
         }
@@ -1111,9 +1200,13 @@ public class GraphUtils
         {
             if (mw > FragmentSpaceParameters.getMaxMW())
             {
-                String msg = "Evaluation of graph: Molecular weight "
+                if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+                {
+                    String msg = "Evaluation of graph: Molecular weight "
                             + "constraint violated: " + smiles + " | MW: " + mw;
-                DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                    DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+                }
+                countRejection(key, "max_molecular_weight");
                 return null;
             }
         }
@@ -1125,9 +1218,13 @@ public class GraphUtils
         {
             if (nrot > FragmentSpaceParameters.getMaxRotatableBond())
             {
-                String msg = "Evaluation of graph: Max rotatable bonds "
+                if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+                {
+                    String msg = "Evaluation of graph: Max rotatable bonds "
                                               + "constraint violated: "+ smiles;
-                DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                    DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+                }
+                countRejection(key, "max_rotatable_bonds");
                 return null;
             }
         }
@@ -1138,8 +1235,12 @@ public class GraphUtils
         {
             if (foundForbiddenEnd(molGraph))
             {
-                String msg = "Evaluation of graph: forbidden end in graph!";
-                DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+                {
+                    String msg = "Evaluation of graph: forbidden end in graph!";
+                    DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+                }
+                countRejection(key, "forbidden_end");
                 return null;
             }
         }
@@ -1176,19 +1277,27 @@ public class GraphUtils
                 if (nThisType > RingClosureParameters.getMaxRcaPerType() ||
                          nCompType > RingClosureParameters.getMaxRcaPerType())
                 {
-                    String msg = "Evaluation of graph: too many RCAs! "
-                                  + rcaTyp + ":" + nThisType + " "
-                                  + rcaTypes.get(rcaTyp) + ":" + nCompType;
-                    DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                    if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+                    {
+                        String msg = "Evaluation of graph: too many RCAs! "
+                                      + rcaTyp + ":" + nThisType + " "
+                                      + rcaTypes.get(rcaTyp) + ":" + nCompType;
+                        DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+                    }
+                    countRejection(key, "too_many_rcas");
                     return null;
                 }
                 if (nThisType < RingClosureParameters.getMinRcaPerType() ||
                          nCompType < RingClosureParameters.getMinRcaPerType())
                 {
-                    String msg = "Evaluation of graph: too few RCAs! "
-                                  + rcaTyp + ":" + nThisType + " "
-                                  + rcaTypes.get(rcaTyp) + ":" + nCompType;
-                    DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                    if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+                    {
+                        String msg = "Evaluation of graph: too few RCAs! "
+                                      + rcaTyp + ":" + nThisType + " "
+                                      + rcaTypes.get(rcaTyp) + ":" + nCompType;
+                        DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+                    }
+                    countRejection(key, "too_few_rcas");
                     return null;
                 }
 
@@ -1198,18 +1307,27 @@ public class GraphUtils
             }
             if (nPossRings < RingClosureParameters.getMinRingClosures())
             {
-                String msg = "Evaluation of graph: too few ring candidates";
-                DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+                {
+                    String msg = "Evaluation of graph: too few ring candidates";
+                    DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+                }
+                countRejection(key, "too_few_ring_candidates");
                 return null;
             }
         }
 
         // get the smiles/Inchi representation
         ObjectPair pr = DENOPTIMMoleculeUtils.getInchiForMolecule(mol);
+        perceptionCache.put(key, new PerceptionCache.Perception(smiles,
+                (String) pr.getFirst(), mw, nrot, nHeavy));
         if (pr.getFirst() == null)
         {
-            String msg = "Evaluation of graph: INCHI is null!";
-            DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                String msg = "Evaluation of graph: INCHI is null!";
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
             pr.setFirst("UNDEFINED_INCHI");
         }
 
@@ -1221,6 +1339,137 @@ public class GraphUtils
         return res;
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Checks the constraints on the size of the candidate that can be
+     * evaluated from the graph alone, i.e., without building the molecular
+     * representation. The number of heavy atoms and the molecular weight of
+     * a candidate are the sum of the contributions of its fragments
+     * (see {@link FragmentSpace#getHeavyAtomCount(int, int)}), so candidates
+     * violating the limits given in {@link FragmentSpaceParameters} are
+     * identified exactly. Limits on the number of rotatable bonds are not
+     * checked, as such number is not additive.
+     * @param molGraph the graph to check
+     * @return the reason for rejecting the graph, or <code>null</code> if
+     * the graph does not violate the checked limits or if the contribution of
+     * any fragment is unknown.
+     */
+
+    public static String preFilterGraph(DENOPTIMGraph molGraph)
+    {
+        int maxHeavyAtoms = FragmentSpaceParameters.getMaxHeavyAtom();
+        double maxMW = FragmentSpaceParameters.getMaxMW();
+        boolean checkHeavyAtoms = maxHeavyAtoms > 0;
+        boolean checkMW = maxMW > 0;
+        int heavyAtoms = 0;
+        double mw = 0.0;
+        for (DENOPTIMVertex v : molGraph.getVertexList())
+        {
+            if (!checkHeavyAtoms && !checkMW)
+            {
+                return null;
+            }
+            if (checkHeavyAtoms)
+            {
+                int n = FragmentSpace.getHeavyAtomCount(v.getFragmentType(),
+                                                               v.getMolId());
+                checkHeavyAtoms = n >= 0;
+                heavyAtoms = heavyAtoms + n;
+            }
+            if (checkMW)
+            {
+                double w = FragmentSpace.getMolecularWeight(
+                                          v.getFragmentType(), v.getMolId());
+                checkMW = !Double.isNaN(w);
+                mw = mw + w;
+            }
+        }
+        if (checkHeavyAtoms && heavyAtoms > maxHeavyAtoms)
+        {
+            return "max_heavy_atoms";
+        }
+        // Tolerance for the summation of floating point numbers
+        if (checkMW && mw > maxMW + 1.0e-6)
+        {
+            return "max_molecular_weight";
+        }
+        return null;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Returns the results of the chemical perception of the graphs evaluated
+     * so far. The same cache is shared by all the programs that evaluate
+     * graphs.
+     * @return the cache of perception results
+     */
+
+    public static PerceptionCache getPerceptionCache()
+    {
+        return perceptionCache;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Counts the rejection of a graph and remembers the reason for rejecting
+     * it, so that the same graph can be rejected without evaluating it again.
+     * @param key the canonical key of the graph
+     * @param reason the reason for rejection
+     */
+
+    public static void countRejection(String key, String reason)
+    {
+        perceptionCache.put(key, PerceptionCache.Perception.rejected(reason));
+        MetricsRegistry.countRejection(reason);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Completes the evaluation of a graph that has been evaluated before,
+     * without repeating the chemical perception. Only the molecular
+     * representation is generated.
+     * @param molGraph the molecular graph representation
+     * @param known the results of the previous evaluation
+     * @param noInchi the string to report when the InChI is not available
+     * @return the same as {@link #evaluateGraph(DENOPTIMGraph)}
+     * @throws DENOPTIMException
+     */
+
+    public static Object[] evaluateKnownGraph(DENOPTIMGraph molGraph,
+                                   PerceptionCache.Perception known,
+                                   String noInchi) throws DENOPTIMException
+    {
+        if (known.isRejected())
+        {
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                String msg = "Evaluation of graph: rejected before ("
+                               + known.getRejection() + ") " + molGraph;
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
+            MetricsRegistry.countRejection(known.getRejection());
+            return null;
+        }
+
+        IAtomContainer mol = GraphConversionTool.convertGraphToMolecule(
+                                                               molGraph, true);
+        if (mol == null)
+        {
+            MetricsRegistry.countRejection("graph_to_mol_failed");
+            return null;
+        }
+
+        Object[] res = new Object[3];
+        res[0] = known.getInChI() == null ? noInchi : known.getInChI();
+        res[1] = known.getSMILES();
+        res[2] = mol;
+        return res;
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -1320,14 +1569,37 @@ public class GraphUtils
                                                         throws DENOPTIMException
     {
         ArrayList<DENOPTIMGraph> lstGraphs = new ArrayList<>();
+        forEachRingSetOfGraph(molGraph, ringSet -> {
+            lstGraphs.add(makeGraphWithRingSet(molGraph, ringSet));
+            return true;
+        });
+        return lstGraphs;
+    }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Evaluates the possibility of closing rings in a given graph and gives
+     * each alternative combination of rings to the consumer as soon as it is
+     * found. Use {@link #makeGraphWithRingSet(DENOPTIMGraph, Set)} to make
+     * the graph corresponding to each combination.
+     * @param molGraph the <code>DENOPTIMGraph</code> on which rings are to
+     * be identified
+     * @param consumer the receiver of the combinations of rings
+     * @return <code>false</code> if the consumer stopped the search
+     * @throws denoptim.exception.DENOPTIMException
+     */
+    public static boolean forEachRingSetOfGraph(DENOPTIMGraph molGraph,
+                                    CyclicGraphHandler.RingSetConsumer consumer)
+                                                        throws DENOPTIMException
+    {
         boolean rcnEnabled = FragmentSpace.useAPclassBasedApproach();
         if (!rcnEnabled)
-            return lstGraphs;
+            return true;
 
         boolean evaluateRings = RingClosureParameters.allowRingClosures();
         if (!evaluateRings)
-            return lstGraphs;
+            return true;
 
         // get a atoms/bonds molecular representation (no 3D needed)
         IAtomContainer mol = GraphConversionTool.convertGraphToMolecule(molGraph,false);
@@ -1338,57 +1610,57 @@ public class GraphUtils
                                    FragmentSpaceParameters.getRotSpaceDefFile(),
                                                                     true, true);
 
-        // get the set of possible RCA combinations = ring closures
+        // get the possible RCA combinations = ring closures
         CyclicGraphHandler cgh = new CyclicGraphHandler(
                                              FragmentSpace.getScaffoldLibrary(),
                                              FragmentSpace.getFragmentLibrary(),
                                               FragmentSpace.getCappingLibrary(),
                                       FragmentSpace.getRCCompatibilityMatrix());
-         ArrayList<Set<DENOPTIMRing>> allCombsOfRings =
-                               cgh.getPossibleCombinationOfRings(mol, molGraph);
-
-        // Keep closable chains that are relevant for chelate formation
-        if (RingClosureParameters.buildChelatesMode())
-        {
-            ArrayList<Set<DENOPTIMRing>> toRemove = new ArrayList<>();
-            for (Set<DENOPTIMRing> setRings : allCombsOfRings)
+        return cgh.forEachCombinationOfRings(mol, molGraph, setRings -> {
+            // Keep closable chains that are relevant for chelate formation
+            if (RingClosureParameters.buildChelatesMode()
+                && !cgh.checkChelatesGraph(molGraph,setRings))
             {
-                if (!cgh.checkChelatesGraph(molGraph,setRings))
-                {
-                    toRemove.add(setRings);
-                }
+                return true;
             }
-            allCombsOfRings.removeAll(toRemove);
-        }
+            return consumer.accept(setRings);
+        });
+    }
 
-        // prepare output graphs
-        for (Set<DENOPTIMRing> ringSet : allCombsOfRings)
-        {
-            // clone root graph
-            DENOPTIMGraph newGraph = (DENOPTIMGraph) DenoptimIO.deepCopy(
-                                                                      molGraph);
-            HashMap<Integer,Integer> vRenum = renumberVerticesGetMap(newGraph);
-            newGraph.setGraphId(getUniqueGraphIndex());
+//------------------------------------------------------------------------------
 
-            // add rings
-            for (DENOPTIMRing oldRing : ringSet)
+    /**
+     * Makes a copy of a graph, with new vertex IDs and a new graph ID, and
+     * adds the given rings to the copy.
+     * @param molGraph the graph to copy
+     * @param ringSet the rings defined on the vertices of
+     * <code>molGraph</code>
+     * @return the new graph
+     * @throws denoptim.exception.DENOPTIMException
+     */
+    public static DENOPTIMGraph makeGraphWithRingSet(DENOPTIMGraph molGraph,
+                                                      Set<DENOPTIMRing> ringSet)
+                                                        throws DENOPTIMException
+    {
+        // clone root graph
+        DENOPTIMGraph newGraph = (DENOPTIMGraph) DenoptimIO.deepCopy(molGraph);
+        HashMap<Integer,Integer> vRenum = renumberVerticesGetMap(newGraph);
+        newGraph.setGraphId(getUniqueGraphIndex());
+
+        // add rings
+        for (DENOPTIMRing oldRing : ringSet)
+        {
+            DENOPTIMRing newRing = new DENOPTIMRing();
+            for (int i=0; i<oldRing.getSize(); i++)
             {
-                DENOPTIMRing newRing = new DENOPTIMRing();
-                for (int i=0; i<oldRing.getSize(); i++)
-                {
-                    int oldVId = oldRing.getVertexAtPosition(i).getVertexId();
-                    int newVId = vRenum.get(oldVId);
-                    newRing.addVertex(newGraph.getVertexWithId(newVId));
-                }
-                newRing.setBondType(oldRing.getBondType());
-                newGraph.addRing(newRing);
+                int oldVId = oldRing.getVertexAtPosition(i).getVertexId();
+                int newVId = vRenum.get(oldVId);
+                newRing.addVertex(newGraph.getVertexWithId(newVId));
             }
-
-            // store 
-            lstGraphs.add(newGraph);
+            newRing.setBondType(oldRing.getBondType());
+            newGraph.addRing(newRing);
         }
-
-        return lstGraphs;
+        return newGraph;
     }
 
 //------------------------------------------------------------------------------
@@ -0,0 +1,135 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.math3.random.MersenneTwister;
+
+/**
+ * Sampling without replacement from the integers 0 to <i>n</i>-1 by means
+ * of a Fisher-Yates shuffle that is performed one step per draw. The array
+ * being shuffled is virtual: it starts as the identity and only the
+ * positions that have been swapped are stored, so each draw costs constant
+ * time and the memory used is proportional to the number of draws, not to
+ * <i>n</i>.
+ *
+ * @author Marco Foscato
+ */
+
+public class IncrementalShuffle
+{
+    /**
+     * Number of integers to sample from
+     */
+    private final int n;
+
+    /**
+     * Number of integers drawn so far
+     */
+    private int drawn = 0;
+
+    /**
+     * Values of the positions of the virtual array that differ from the
+     * identity
+     */
+    private final Map<Integer,Integer> displaced =
+            new HashMap<Integer,Integer>();
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Constructor
+     * @param n the number of integers to sample from.
+     */
+    public IncrementalShuffle(int n)
+    {
+        this.n = n;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return <code>true</code> if there are integers that have not been
+     * drawn yet.
+     */
+    public boolean hasNext()
+    {
+        return drawn < n;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of integers drawn so far.
+     */
+    public int getNumberOfDrawn()
+    {
+        return drawn;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of integers to sample from.
+     */
+    public int size()
+    {
+        return n;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Draws an integer that has not been drawn before.
+     * @param rng the random number generator.
+     * @return the drawn integer.
+     * @throws IllegalStateException if all the integers have been drawn.
+     */
+    public int next(MersenneTwister rng)
+    {
+        if (drawn >= n)
+        {
+            throw new IllegalStateException("All " + n + " integers have "
+                    + "already been drawn.");
+        }
+        int j = drawn + rng.nextInt(n - drawn);
+        int valueAtJ = valueAt(j);
+        // Position 'drawn' will never be read again, so it is not stored
+        if (j != drawn)
+        {
+            displaced.put(j, valueAt(drawn));
+        }
+        displaced.remove(drawn);
+        drawn++;
+        return valueAtJ;
+    }
+
+//------------------------------------------------------------------------------
+
+    private int valueAt(int position)
+    {
+        Integer v = displaced.get(position);
+        return v == null ? position : v;
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,86 @@
+package denoptim.utils;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for the sampling without replacement
+ *
+ * @author Marco Foscato
+ */
+
+public class IncrementalShuffleTest
+{
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testDrawAll() throws Exception
+    {
+        MersenneTwister rng = new MersenneTwister(123L);
+        int n = 1000;
+        IncrementalShuffle shuffle = new IncrementalShuffle(n);
+        Set<Integer> seen = new HashSet<Integer>();
+        while (shuffle.hasNext())
+        {
+            int v = shuffle.next(rng);
+            assertTrue(v >= 0 && v < n, "Value out of range: " + v);
+            assertTrue(seen.add(v), "Value drawn twice: " + v);
+        }
+        assertEquals(n, seen.size());
+        assertEquals(n, shuffle.getNumberOfDrawn());
+        assertFalse(shuffle.hasNext());
+        assertThrows(IllegalStateException.class, () -> shuffle.next(rng));
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testUniformity() throws Exception
+    {
+        MersenneTwister rng = new MersenneTwister(456L);
+        int n = 5;
+        int trials = 20000;
+        int[] firstDraws = new int[n];
+        for (int t=0; t<trials; t++)
+        {
+            IncrementalShuffle shuffle = new IncrementalShuffle(n);
+            shuffle.next(rng);
+            firstDraws[shuffle.next(rng)]++;
+        }
+        for (int i=0; i<n; i++)
+        {
+            assertEquals(trials / n, firstDraws[i], trials / n * 0.1,
+                    "Frequency of " + i);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+}
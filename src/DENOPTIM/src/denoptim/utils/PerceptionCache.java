@@ -0,0 +1,422 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import denoptim.logging.MetricsRegistry;
+import denoptim.molecule.DENOPTIMEdge;
+import denoptim.molecule.DENOPTIMGraph;
+import denoptim.molecule.DENOPTIMRing;
+import denoptim.molecule.DENOPTIMVertex;
+
+/**
+ * Bounded memory of the results of the chemical perception of graphs,
+ * i.e., SMILES, InChI key, molecular weight, number of rotatable bonds, and
+ * number of heavy atoms, or the reason for rejecting the graph.
+ * Results are identified by a canonical representation of the graph
+ * (see {@link #getCanonicalKey(DENOPTIMGraph)}) that does not depend on
+ * vertex IDs, so that graphs built more than once need not be perceived
+ * again. When the capacity is reached, the least recently used results are
+ * forgotten. The cache can be shared among threads.
+ *
+ * @author Marco Foscato
+ */
+
+public class PerceptionCache
+{
+    /**
+     * Default maximum number of results
+     */
+    public static final int DEFAULTCAPACITY = 100000;
+
+    /**
+     * Name used to report hits and misses
+     */
+    private final String name;
+
+    /**
+     * Results in order of access
+     */
+    private final LinkedHashMap<String,Perception> results;
+
+    /**
+     * Number of successful lookups
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Number of failed lookups
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Results of the perception of a graph.
+     */
+    public static class Perception
+    {
+        private final String smiles;
+        private final String inchi;
+        private final double mw;
+        private final int rotatableBonds;
+        private final int heavyAtoms;
+        private final String rejection;
+
+        /**
+         * Constructor for the results of an acceptable graph.
+         * @param smiles the SMILES string.
+         * @param inchi the InChI key, or <code>null</code> if it could not be
+         * generated.
+         * @param mw the molecular weight.
+         * @param rotatableBonds the number of rotatable bonds.
+         * @param heavyAtoms the number of heavy atoms.
+         */
+        public Perception(String smiles, String inchi, double mw,
+                int rotatableBonds, int heavyAtoms)
+        {
+            this.smiles = smiles;
+            this.inchi = inchi;
+            this.mw = mw;
+            this.rotatableBonds = rotatableBonds;
+            this.heavyAtoms = heavyAtoms;
+            this.rejection = null;
+        }
+
+        private Perception(String rejection)
+        {
+            this.smiles = null;
+            this.inchi = null;
+            this.mw = Double.NaN;
+            this.rotatableBonds = -1;
+            this.heavyAtoms = -1;
+            this.rejection = rejection;
+        }
+
+        /**
+         * Creates the results of a graph that has been rejected.
+         * @param reason the reason for rejection, as reported to
+         * {@link MetricsRegistry#countRejection(String)}.
+         * @return the results.
+         */
+        public static Perception rejected(String reason)
+        {
+            return new Perception(reason);
+        }
+
+        /**
+         * @return <code>true</code> if the graph has been rejected.
+         */
+        public boolean isRejected()
+        {
+            return rejection != null;
+        }
+
+        /**
+         * @return the reason for rejection, or <code>null</code> if the graph
+         * has not been rejected.
+         */
+        public String getRejection()
+        {
+            return rejection;
+        }
+
+        public String getSMILES()
+        {
+            return smiles;
+        }
+
+        public String getInChI()
+        {
+            return inchi;
+        }
+
+        public double getMolecularWeight()
+        {
+            return mw;
+        }
+
+        public int getRotatableBondCount()
+        {
+            return rotatableBonds;
+        }
+
+        public int getHeavyAtomCount()
+        {
+            return heavyAtoms;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Constructor
+     * @param name the name used to report hits and misses to the
+     * {@link MetricsRegistry}.
+     * @param capacity the maximum number of results to keep.
+     */
+    public PerceptionCache(String name, final int capacity)
+    {
+        this.name = name;
+        this.results = new LinkedHashMap<String,Perception>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String,Perception> eldest)
+            {
+                return size() > capacity;
+            }
+        };
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Looks for the results of the perception of a graph.
+     * @param key the canonical key of the graph. Can be <code>null</code>.
+     * @return the results, or <code>null</code> if the graph has not been
+     * perceived before or if the key is <code>null</code>.
+     */
+    public Perception get(String key)
+    {
+        if (key == null)
+        {
+            return null;
+        }
+        Perception p;
+        synchronized (results)
+        {
+            p = results.get(key);
+        }
+        if (p == null)
+        {
+            misses.incrementAndGet();
+        }
+        else
+        {
+            hits.incrementAndGet();
+        }
+        MetricsRegistry.countCacheLookup(name, p != null);
+        return p;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Stores the results of the perception of a graph.
+     * @param key the canonical key of the graph. If <code>null</code>
+     * nothing is stored.
+     * @param perception the results.
+     */
+    public void put(String key, Perception perception)
+    {
+        if (key == null)
+        {
+            return;
+        }
+        synchronized (results)
+        {
+            results.put(key, perception);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of stored results.
+     */
+    public int size()
+    {
+        synchronized (results)
+        {
+            return results.size();
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Forgets all results and resets the counts of hits and misses.
+     */
+    public void clear()
+    {
+        synchronized (results)
+        {
+            results.clear();
+        }
+        hits.set(0);
+        misses.set(0);
+    }
+
+//------------------------------------------------------------------------------
+
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+//------------------------------------------------------------------------------
+
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the fraction of lookups that found a result, or 0 if there
+     * has been no lookup.
+     */
+    public double getHitRate()
+    {
+        long h = hits.get();
+        long tot = h + misses.get();
+        return tot == 0 ? 0.0 : ((double) h) / tot;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Generates a string that identifies the chemical entity represented by
+     * a graph irrespective of the vertex IDs and of the order of vertices
+     * and edges in their lists. The spanning tree is written from its root
+     * following the attachment points of each vertex in increasing order,
+     * and rings are written as pairs of positions in such traversal.
+     * Graphs with the same key are converted into the same molecule, though
+     * graphs with different keys may still correspond to the same molecule.
+     * @param graph the graph.
+     * @return the key, or <code>null</code> if the edges of the graph do not
+     * define a forest.
+     */
+    public static String getCanonicalKey(DENOPTIMGraph graph)
+    {
+        Map<Integer,List<DENOPTIMEdge>> children =
+                new HashMap<Integer,List<DENOPTIMEdge>>();
+        Map<Integer,Integer> nParents = new HashMap<Integer,Integer>();
+        for (DENOPTIMEdge e : graph.getEdgeList())
+        {
+            List<DENOPTIMEdge> lst = children.get(e.getSourceVertex());
+            if (lst == null)
+            {
+                lst = new ArrayList<DENOPTIMEdge>();
+                children.put(e.getSourceVertex(), lst);
+            }
+            lst.add(e);
+            Integer n = nParents.get(e.getTargetVertex());
+            nParents.put(e.getTargetVertex(), n == null ? 1 : n + 1);
+        }
+        for (List<DENOPTIMEdge> lst : children.values())
+        {
+            Collections.sort(lst, (a, b) -> {
+                int c = Integer.compare(a.getSourceDAP(), b.getSourceDAP());
+                return c != 0 ? c : Integer.compare(a.getTargetDAP(),
+                        b.getTargetDAP());
+            });
+        }
+
+        Map<Integer,DENOPTIMVertex> vertices =
+                new HashMap<Integer,DENOPTIMVertex>();
+        for (DENOPTIMVertex v : graph.getVertexList())
+        {
+            vertices.put(v.getVertexId(), v);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        Map<Integer,Integer> positions = new HashMap<Integer,Integer>();
+        for (DENOPTIMVertex v : graph.getVertexList())
+        {
+            Integer n = nParents.get(v.getVertexId());
+            if (n == null)
+            {
+                appendSubtree(v, vertices, children, positions, sb);
+                sb.append(";");
+            }
+            else if (n > 1)
+            {
+                return null;
+            }
+        }
+        if (positions.size() != graph.getVertexCount())
+        {
+            // Some vertex is not reachable from a root: edges form a cycle
+            return null;
+        }
+
+        List<String> rings = new ArrayList<String>();
+        for (DENOPTIMRing r : graph.getRings())
+        {
+            Integer h = positions.get(r.getHeadVertex().getVertexId());
+            Integer t = positions.get(r.getTailVertex().getVertexId());
+            if (h == null || t == null)
+            {
+                return null;
+            }
+            rings.add(Math.min(h, t) + "-" + Math.max(h, t) + "="
+                    + r.getBondType());
+        }
+        Collections.sort(rings);
+        for (String r : rings)
+        {
+            sb.append(r).append(";");
+        }
+        return sb.toString();
+    }
+
+//------------------------------------------------------------------------------
+
+    private static void appendSubtree(DENOPTIMVertex v,
+            Map<Integer,DENOPTIMVertex> vertices,
+            Map<Integer,List<DENOPTIMEdge>> children,
+            Map<Integer,Integer> positions, StringBuilder sb)
+    {
+        positions.put(v.getVertexId(), positions.size());
+        sb.append(v.getFragmentType()).append(":").append(v.getMolId());
+        List<DENOPTIMEdge> lst = children.get(v.getVertexId());
+        if (lst == null)
+        {
+            return;
+        }
+        for (DENOPTIMEdge e : lst)
+        {
+            DENOPTIMVertex child = vertices.get(e.getTargetVertex());
+            if (child == null || positions.containsKey(child.getVertexId()))
+            {
+                continue;
+            }
+            sb.append("(").append(e.getSourceDAP()).append(">")
+                .append(e.getTargetDAP()).append("=")
+                .append(e.getBondType()).append(" ");
+            appendSubtree(child, vertices, children, positions, sb);
+            sb.append(")");
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+}
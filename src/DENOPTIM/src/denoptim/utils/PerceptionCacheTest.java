@@ -0,0 +1,159 @@
+package denoptim.utils;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import denoptim.molecule.DENOPTIMAttachmentPoint;
+import denoptim.molecule.DENOPTIMEdge;
+import denoptim.molecule.DENOPTIMGraph;
+import denoptim.molecule.DENOPTIMRing;
+import denoptim.molecule.DENOPTIMVertex;
+
+/**
+ * Unit test for the cache of perception results
+ *
+ * @author Marco Foscato
+ */
+
+public class PerceptionCacheTest
+{
+
+//------------------------------------------------------------------------------
+
+    private DENOPTIMVertex makeVertex(int vid, int molId, int numAP, int type)
+    {
+        ArrayList<DENOPTIMAttachmentPoint> aps =
+                new ArrayList<DENOPTIMAttachmentPoint>();
+        for (int i=0; i<numAP; i++)
+        {
+            aps.add(new DENOPTIMAttachmentPoint(i, 1, 1));
+        }
+        return new DENOPTIMVertex(vid, molId, aps, type);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds a scaffold with two branches and a ring between them.
+     * @param firstId the ID of the first vertex.
+     * @param swapBranches use <code>true</code> to add the branches, and the
+     * vertices, in the opposite order.
+     */
+    private DENOPTIMGraph makeGraph(int firstId, boolean swapBranches)
+    {
+        DENOPTIMGraph graph = new DENOPTIMGraph();
+        DENOPTIMVertex v0 = makeVertex(firstId, 0, 3, 0);
+        DENOPTIMVertex v1 = makeVertex(firstId + 7, 2, 2, 1);
+        DENOPTIMVertex v2 = makeVertex(firstId + 3, 3, 1, 1);
+        DENOPTIMVertex v3 = makeVertex(firstId + 5, 4, 1, 1);
+        graph.addVertex(v0);
+        DENOPTIMEdge e1 = new DENOPTIMEdge(v0.getVertexId(),
+                v1.getVertexId(), 0, 1, 1);
+        DENOPTIMEdge e2 = new DENOPTIMEdge(v1.getVertexId(),
+                v2.getVertexId(), 0, 0, 1);
+        DENOPTIMEdge e3 = new DENOPTIMEdge(v0.getVertexId(),
+                v3.getVertexId(), 2, 0, 2);
+        if (swapBranches)
+        {
+            graph.addVertex(v3);
+            graph.addEdge(e3);
+            graph.addVertex(v2);
+            graph.addVertex(v1);
+            graph.addEdge(e2);
+            graph.addEdge(e1);
+        }
+        else
+        {
+            graph.addVertex(v1);
+            graph.addEdge(e1);
+            graph.addVertex(v2);
+            graph.addEdge(e2);
+            graph.addVertex(v3);
+            graph.addEdge(e3);
+        }
+        graph.addRing(new DENOPTIMRing(new ArrayList<DENOPTIMVertex>(
+                Arrays.asList(v2, v1, v0, v3))));
+        return graph;
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testCanonicalKey() throws Exception
+    {
+        String key = PerceptionCache.getCanonicalKey(makeGraph(1, false));
+        assertEquals(key, PerceptionCache.getCanonicalKey(makeGraph(1, true)),
+                "Order of vertices and edges");
+        assertEquals(key, PerceptionCache.getCanonicalKey(makeGraph(20, true)),
+                "Vertex IDs");
+
+        DENOPTIMGraph g = makeGraph(1, false);
+        g.getEdgeList().get(0).setTargetDAP(0);
+        assertNotEquals(key, PerceptionCache.getCanonicalKey(g),
+                "Different attachment point");
+
+        g = makeGraph(1, false);
+        g.getRings().get(0).setBondType(2);
+        assertNotEquals(key, PerceptionCache.getCanonicalKey(g),
+                "Different ring closing bond");
+
+        g = makeGraph(1, false);
+        g.getVertexList().get(2).setMolId(5);
+        assertNotEquals(key, PerceptionCache.getCanonicalKey(g),
+                "Different fragment");
+
+        g = makeGraph(1, false);
+        g.addEdge(new DENOPTIMEdge(g.getVertexList().get(3).getVertexId(),
+                g.getVertexList().get(2).getVertexId(), 0, 0, 1));
+        assertNull(PerceptionCache.getCanonicalKey(g), "Not a tree");
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testBoundedCache() throws Exception
+    {
+        PerceptionCache cache = new PerceptionCache("test", 2);
+        cache.put("a", new PerceptionCache.Perception("C", "KEY-A", 16.04,
+                0, 1));
+        cache.put("b", PerceptionCache.Perception.rejected("disconnected"));
+        assertEquals("KEY-A", cache.get("a").getInChI());
+        cache.put("c", PerceptionCache.Perception.rejected("forbidden_end"));
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"), "Least recently used entry is forgotten");
+        assertTrue(cache.get("c").isRejected());
+        assertEquals("forbidden_end", cache.get("c").getRejection());
+        assertNull(cache.get(null));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.75, cache.getHitRate(), 1.0e-12);
+    }
+
+//------------------------------------------------------------------------------
+
+}
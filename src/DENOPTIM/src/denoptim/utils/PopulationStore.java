@@ -0,0 +1,341 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptim.utils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.commons.math3.random.MersenneTwister;
+
+import denoptim.molecule.DENOPTIMMolecule;
+
+/**
+ * Snapshot of a population stored by columns: the fitness values are kept in
+ * a primitive array together with the data structures needed to select
+ * members in constant or logarithmic time, i.e., the cumulative sums of the
+ * selection weights, an alias table (Vose's method) for roulette wheel
+ * selection, and a map from the UID of each member to its position, which
+ * is used to detect duplicates.
+ * The snapshot does not change if the population changes: a new snapshot
+ * must be built for each new population.
+ * <p>
+ * Selection weights are the fitness values, where negative values are
+ * taken as zero. If all weights are zero, members are selected uniformly.
+ * </p>
+ *
+ * @author Marco Foscato
+ */
+
+public class PopulationStore
+{
+    /**
+     * Fitness used for selection of each member
+     */
+    private final double[] fitness;
+
+    /**
+     * UID of each member
+     */
+    private final String[] uids;
+
+    /**
+     * Position of each member by UID (in upper case)
+     */
+    private final Map<String,Integer> slotByUID;
+
+    /**
+     * Cumulative sums of the selection weights
+     */
+    private final double[] cumulative;
+
+    /**
+     * Probability of keeping each column of the alias table
+     */
+    private final double[] aliasProb;
+
+    /**
+     * Alternative member of each column of the alias table
+     */
+    private final int[] alias;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds the snapshot of a population using the fitness of each member.
+     * @param popln the population.
+     */
+    public PopulationStore(List<DENOPTIMMolecule> popln)
+    {
+        this(popln, null);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds the snapshot of a population.
+     * @param popln the population.
+     * @param fitness the fitness to be used for selection of each member, or
+     * <code>null</code> to use the fitness of the members.
+     */
+    public PopulationStore(List<DENOPTIMMolecule> popln, double[] fitness)
+    {
+        int n = popln.size();
+        this.uids = new String[n];
+        if (fitness == null)
+        {
+            fitness = new double[n];
+            for (int i=0; i<n; i++)
+            {
+                fitness[i] = popln.get(i).getMoleculeFitness();
+            }
+        }
+        this.fitness = fitness;
+
+        slotByUID = new HashMap<String,Integer>(n * 2);
+        for (int i=0; i<n; i++)
+        {
+            uids[i] = popln.get(i).getMoleculeUID();
+            if (uids[i] != null)
+            {
+                slotByUID.putIfAbsent(uids[i].toUpperCase(Locale.ENGLISH), i);
+            }
+        }
+
+        // Selection weights
+        cumulative = new double[n];
+        double tot = 0.0;
+        for (int i=0; i<n; i++)
+        {
+            tot = tot + weight(i);
+            cumulative[i] = tot;
+        }
+
+        aliasProb = new double[n];
+        alias = new int[n];
+        buildAliasTable(tot);
+    }
+
+//------------------------------------------------------------------------------
+
+    private double weight(int i)
+    {
+        return fitness[i] > 0.0 ? fitness[i] : 0.0;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds the alias table according to Vose's method.
+     */
+    private void buildAliasTable(double tot)
+    {
+        int n = fitness.length;
+        if (n == 0)
+        {
+            return;
+        }
+        double[] scaled = new double[n];
+        for (int i=0; i<n; i++)
+        {
+            scaled[i] = tot > 0.0 ? weight(i) * n / tot : 1.0;
+        }
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int ns = 0;
+        int nl = 0;
+        for (int i=0; i<n; i++)
+        {
+            if (scaled[i] < 1.0)
+            {
+                small[ns++] = i;
+            }
+            else
+            {
+                large[nl++] = i;
+            }
+        }
+        while (ns > 0 && nl > 0)
+        {
+            int s = small[--ns];
+            int l = large[--nl];
+            aliasProb[s] = scaled[s];
+            alias[s] = l;
+            scaled[l] = (scaled[l] + scaled[s]) - 1.0;
+            if (scaled[l] < 1.0)
+            {
+                small[ns++] = l;
+            }
+            else
+            {
+                large[nl++] = l;
+            }
+        }
+        // Leftovers differ from 1 only by rounding errors
+        while (nl > 0)
+        {
+            int l = large[--nl];
+            aliasProb[l] = 1.0;
+            alias[l] = l;
+        }
+        while (ns > 0)
+        {
+            int s = small[--ns];
+            aliasProb[s] = 1.0;
+            alias[s] = s;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the number of members.
+     */
+    public int size()
+    {
+        return fitness.length;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param i the position of a member.
+     * @return the fitness used for selection of the member.
+     */
+    public double getFitness(int i)
+    {
+        return fitness[i];
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param i the position of a member.
+     * @return the UID of the member.
+     */
+    public String getUID(int i)
+    {
+        return uids[i];
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Finds a member by UID, ignoring case.
+     * @param uid the UID to look for.
+     * @return the position of the first member with the given UID, or -1.
+     */
+    public int indexOf(String uid)
+    {
+        if (uid == null)
+        {
+            return -1;
+        }
+        Integer slot = slotByUID.get(uid.toUpperCase(Locale.ENGLISH));
+        return slot == null ? -1 : slot;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param uid the UID to look for.
+     * @return <code>true</code> if a member has the given UID, ignoring case.
+     */
+    public boolean contains(String uid)
+    {
+        return indexOf(uid) >= 0;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Selects a member with probability proportional to its selection
+     * weight. Takes constant time and consumes one random number, like the
+     * linear roulette wheel did: the integer part of the scaled random
+     * number picks the column of the alias table, and its fractional part
+     * decides between the column and its alias.
+     * @param rng the random number generator.
+     * @return the position of the selected member.
+     */
+    public int sampleRoulette(MersenneTwister rng)
+    {
+        int n = fitness.length;
+        double u = rng.nextDouble() * n;
+        int col = Math.min((int) u, n-1);
+        return (u - col) < aliasProb[col] ? col : alias[col];
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Stochastic universal sampling: selects members with evenly spaced
+     * pointers on the cumulative selection weights, with a random offset.
+     * Each pointer takes logarithmic time.
+     * @param rng the random number generator.
+     * @param sz the number of members to select.
+     * @return the positions of the selected members.
+     */
+    public int[] sampleUniversal(MersenneTwister rng, int sz)
+    {
+        int n = fitness.length;
+        int[] selection = new int[sz];
+        double tot = n == 0 ? 0.0 : cumulative[n-1];
+        double startOffset = rng.nextDouble();
+        for (int j=0; j<sz; j++)
+        {
+            if (tot <= 0.0)
+            {
+                selection[j] = (int) ((startOffset + j) * n / sz);
+                continue;
+            }
+            double pointer = (startOffset + j) * tot / sz;
+            selection[j] = Math.min(firstAbove(pointer), n-1);
+        }
+        return selection;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the first position where the cumulative weight exceeds the
+     * given value, or the size if no such position exists.
+     */
+    private int firstAbove(double value)
+    {
+        int lo = 0;
+        int hi = cumulative.length;
+        while (lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (cumulative[mid] > value)
+            {
+                hi = mid;
+            }
+            else
+            {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,266 @@
+package denoptim.utils;
+
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.junit.jupiter.api.Test;
+
+import denoptim.molecule.DENOPTIMMolecule;
+
+/**
+ * Unit test for the columnar snapshot of a population
+ *
+ * @author Marco Foscato
+ */
+
+public class PopulationStoreTest
+{
+    private final double THRLD = 0.0000001;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Random number generator returning evenly spaced values in [0,1), so
+     * that the frequency of each outcome of a sampling is its exact
+     * probability.
+     */
+    private class GridRNG extends MersenneTwister
+    {
+        private static final long serialVersionUID = 1L;
+        private final int steps;
+        private int i = 0;
+
+        GridRNG(int steps)
+        {
+            this.steps = steps;
+        }
+
+        @Override
+        public double nextDouble()
+        {
+            return (i++ + 0.5) / steps;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    private ArrayList<DENOPTIMMolecule> makePopulation(double[] fitness)
+    {
+        ArrayList<DENOPTIMMolecule> popln = new ArrayList<DENOPTIMMolecule>();
+        for (int i=0; i<fitness.length; i++)
+        {
+            popln.add(new DENOPTIMMolecule(null, "UID-" + i, "", fitness[i]));
+        }
+        return popln;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reference implementation of the stochastic universal sampling by
+     * linear scan of the population.
+     */
+    private int[] linearSUS(double[] fitness, double startOffset, int sz)
+    {
+        int[] selection = new int[sz];
+        double aggregateFitness = 0;
+        for (int i=0; i<fitness.length; i++)
+        {
+            aggregateFitness += fitness[i];
+        }
+        double cumulativeExpectation = 0;
+        int index = 0;
+        for (int i=0; i<fitness.length; i++)
+        {
+            cumulativeExpectation += fitness[i] / aggregateFitness * sz;
+            while (cumulativeExpectation > startOffset + index)
+            {
+                selection[index] = i;
+                index++;
+            }
+        }
+        return selection;
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testIndexOfUIDs() throws Exception
+    {
+        ArrayList<DENOPTIMMolecule> popln = makePopulation(
+                new double[] {1.0, 2.0, 3.0});
+        popln.add(new DENOPTIMMolecule(null, "uid-1", "", 4.0));
+        PopulationStore store = new PopulationStore(popln);
+
+        assertEquals(4, store.size());
+        assertEquals(1, store.indexOf("UID-1"));
+        assertEquals(1, store.indexOf("uid-1"), "First match ignoring case");
+        assertEquals(2, store.indexOf("Uid-2"));
+        assertTrue(store.contains("UID-0"));
+        assertFalse(store.contains("UID-4"));
+        assertFalse(store.contains(null));
+        assertEquals("UID-2", store.getUID(2));
+        assertEquals(4.0, store.getFitness(3), THRLD);
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testAliasTable() throws Exception
+    {
+        double[] fitness = new double[] {1.0, 0.0, 3.0, 6.0, -2.0, 0.5, 0.5};
+        double tot = 11.0;
+        PopulationStore store = new PopulationStore(makePopulation(fitness));
+
+        int steps = fitness.length * 20000;
+        GridRNG rng = new GridRNG(steps);
+        int[] counts = new int[fitness.length];
+        for (int j=0; j<steps; j++)
+        {
+            counts[store.sampleRoulette(rng)]++;
+        }
+        for (int i=0; i<fitness.length; i++)
+        {
+            double expected = Math.max(0.0, fitness[i]) / tot;
+            assertEquals(expected, ((double) counts[i]) / steps, 0.0001,
+                    "Probability of member " + i);
+        }
+        assertEquals(0, counts[1], "Member with null weight selected");
+        assertEquals(0, counts[4], "Member with negative weight selected");
+
+        // With a real generator the frequencies converge to the weights
+        MersenneTwister mt = new MersenneTwister(123L);
+        counts = new int[fitness.length];
+        int trials = 200000;
+        for (int j=0; j<trials; j++)
+        {
+            counts[store.sampleRoulette(mt)]++;
+        }
+        for (int i=0; i<fitness.length; i++)
+        {
+            double expected = Math.max(0.0, fitness[i]) / tot;
+            assertEquals(expected, ((double) counts[i]) / trials, 0.01,
+                    "Frequency of member " + i);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testRouletteUsesOneRandomNumber() throws Exception
+    {
+        PopulationStore store = new PopulationStore(makePopulation(
+                new double[] {1.0, 2.0, 3.0}));
+        MersenneTwister rngA = new MersenneTwister(42L);
+        MersenneTwister rngB = new MersenneTwister(42L);
+        for (int j=0; j<10; j++)
+        {
+            store.sampleRoulette(rngA);
+            rngB.nextDouble();
+        }
+        assertEquals(rngB.nextLong(), rngA.nextLong());
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testUniformWhenNoPositiveWeight() throws Exception
+    {
+        double[] fitness = new double[] {0.0, -1.0, -3.0, 0.0};
+        PopulationStore store = new PopulationStore(makePopulation(fitness));
+
+        int steps = fitness.length * 1000;
+        GridRNG rng = new GridRNG(steps);
+        int[] counts = new int[fitness.length];
+        for (int j=0; j<steps; j++)
+        {
+            counts[store.sampleRoulette(rng)]++;
+        }
+        for (int i=0; i<fitness.length; i++)
+        {
+            assertEquals(1000, counts[i], "Draws of member " + i);
+        }
+
+        int[] sel = store.sampleUniversal(new MersenneTwister(1L), 8);
+        counts = new int[fitness.length];
+        for (int s : sel)
+        {
+            counts[s]++;
+        }
+        assertArrayEquals(new int[] {2, 2, 2, 2}, counts);
+    }
+
+//------------------------------------------------------------------------------
+
+    @Test
+    public void testSUSAsLinearScan() throws Exception
+    {
+        MersenneTwister rng = new MersenneTwister(789L);
+        for (int t=0; t<200; t++)
+        {
+            int n = 1 + rng.nextInt(50);
+            int sz = 1 + rng.nextInt(20);
+            double[] fitness = new double[n];
+            for (int i=0; i<n; i++)
+            {
+                fitness[i] = rng.nextInt(4) == 0 ? 0.0 : rng.nextDouble();
+            }
+            fitness[rng.nextInt(n)] = 1.0;
+            PopulationStore store = new PopulationStore(
+                    makePopulation(fitness));
+
+            long seed = rng.nextLong();
+            int[] sel = store.sampleUniversal(new MersenneTwister(seed), sz);
+            double startOffset = new MersenneTwister(seed).nextDouble();
+            assertArrayEquals(linearSUS(fitness, startOffset, sz), sel,
+                    "Trial " + t);
+
+            // Each member is selected floor(e) or ceil(e) times, where e is
+            // its expected number of selections
+            double tot = 0.0;
+            for (double f : fitness)
+            {
+                tot += f;
+            }
+            int[] counts = new int[n];
+            for (int s : sel)
+            {
+                counts[s]++;
+            }
+            for (int i=0; i<n; i++)
+            {
+                double e = fitness[i] / tot * sz;
+                assertTrue(counts[i] >= Math.floor(e) - THRLD
+                        && counts[i] <= Math.ceil(e) + THRLD,
+                        "Member " + i + " selected " + counts[i]
+                        + " times instead of " + e);
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+}
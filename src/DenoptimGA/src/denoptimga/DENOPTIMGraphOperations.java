@@ -41,6 +41,7 @@ import denoptim.molecule.SymmetricSet;
 import denoptim.rings.ChainLink;
 import denoptim.rings.ClosableChain;
 import denoptim.rings.RingClosureParameters;
+import denoptim.utils.CrossoverPointsFinder;
 import denoptim.utils.FragmentUtils;
 import denoptim.utils.GraphUtils;
 import denoptim.utils.RandomUtils;
@@ -67,126 +68,38 @@ public class DENOPTIMGraphOperations
      * the parents
      * @return a pair of vertex ids (male and female) that will be the crossover
      * points
+     * @see CrossoverPointsFinder#locateCompatiblePair(DENOPTIMGraph,
+     * DENOPTIMGraph)
      */
 
     protected static RMap locateCompatibleXOverPoints(DENOPTIMGraph male,
                                                     DENOPTIMGraph female)
     {
-        ArrayList<RMap> xpairs = new ArrayList<>();
-
-        for (int i=0; i<male.getVertexCount(); i++)
-        {
-            int mtype = male.getVertexAtPosition(i).getFragmentType();
-            int mvid = male.getVertexAtPosition(i).getVertexId();
-            int mfragid = male.getVertexAtPosition(i).getMolId();
-
-            //System.out.println("Male Fragment ID: "+mvid+" type: "+mtype+" ffragid: "+mfragid);
-
-            // if the fragment is a capping group or the scaffold itself ignore
-            if (mtype == 0 || mtype == 2)
-                continue;
-
-            // get edge toward parent vertex
-            // get the edge where the vertex in question is the destination vertex
-            // or end vertex. the source vertex then will be the crossover point
-            int medgeid = male.getIndexOfEdgeWithParent(mvid);
-            DENOPTIMEdge medge = male.getEdgeAtPosition(medgeid);
-
-            for (int j=0; j<female.getVertexCount(); j++)
-            {
-                int ftype = female.getVertexAtPosition(j).getFragmentType();
-                int fvid = female.getVertexAtPosition(j).getVertexId();
-                int ffragid = female.getVertexAtPosition(j).getMolId();
-                
-
-                //System.out.println("Female Fragment ID: "+fvid+" type: "+ftype+" ffragid: "+ffragid);
-
-                if (ftype == 0 || ftype == 2)
-                    continue;
-
-                // fragment ids should not match or we get the same molecule
-                if (mfragid == ffragid)
-                    continue;
-
-                // get edge toward parent vertex
-                int fedgeid = female.getIndexOfEdgeWithParent(fvid);
-                DENOPTIMEdge fedge = female.getEdgeAtPosition(fedgeid);
-
-                //Check condition for considering this combination
-                if (isCrossoverPossible(medge, fedge))
-                {
-                    // add the pair of vertex (one for the male, one for the female)
-                    RMap rp = new RMap(mvid, fvid);
-                    xpairs.add(rp);
-                }
-            }
-        }
-
-        if (xpairs.isEmpty())
+        int[] vids = CrossoverPointsFinder.locateCompatiblePair(male, female);
+        if (vids == null)
             return null;
-        else if (xpairs.size() == 1)
-            return xpairs.get(0);
-        else
-        {
-            MersenneTwister mtrand = RandomUtils.getRNG();
-            //int idx = GAParameters.getRNG().nextInt(xpairs.size());
-            int idx = mtrand.nextInt(xpairs.size());
-            return xpairs.get(idx);
-        }
-    }
-    
-//------------------------------------------------------------------------------
-
-    /**
-     * Evaluate AP class-compatibility of a pair of edges with respect to
-     * crossover.
-     * The condition for performing AP class-compatible crossover is that the
-     * AP class on source vertex of edge A is compatible with the AP class on 
-     * target vertex of edge B, and that AP class on source vertex of edgeB is
-     * compatible with the AP class on target vertex of edge A.
-     * @param eA first edge of the pair
-     * @param eB second edge of the pair
-     * @return <code>true</code> if the condition is satisfied
-     */
-    private static boolean isCrossoverPossible(DENOPTIMEdge eA, DENOPTIMEdge eB)
-    {
-        String apClassSrcA = eA.getSourceReaction();
-        String apClassTrgA = eA.getTargetReaction();
-        String apClassSrcB = eB.getSourceReaction();
-        String apClassTrgB = eB.getTargetReaction();
-        
-
-        if (isCompatible(apClassSrcA, apClassTrgB))
-        {
-            if (isCompatible(apClassSrcB, apClassTrgA))
-            {
-                return true;
-            }
-        }
-        return false;
+        return new RMap(vids[0], vids[1]);
     }
 
 //------------------------------------------------------------------------------
 
     /**
-     * Check the compatibility between two classes. Note that, due to the non 
-     * symmetric nature of the compatibility matrix, the result for
-     * isCompatible(A,B) may be different from isCompatible(B,A)
-     * @param parentAPclass class of the attachment point (AP) on the parent
-     * vertex (inner level)
-     * @param childAPclass class of the attachment point (AP) on the child
-     * vertex (outer level)
-     * @return <code>true</code> if the combination corresponds to a true entry
-     * in the compatibility matrix meaning that the two classes, in the 
-     * specified order, are compatible
+     * Counts the pairs of vertices that are suitable for crossover, i.e., the
+     * pairs that {@link #locateCompatibleXOverPoints(DENOPTIMGraph,
+     * DENOPTIMGraph)} chooses from. This method does not use the random
+     * number generator and can be run on many pairs of graphs in parallel,
+     * as long as the graphs are not modified.
+     * @param male <code>DENOPTIMGraph</code> of one member (the male) of the
+     * parents
+     * @param female <code>DENOPTIMGraph</code> of one member (the female) of
+     * the parents
+     * @return the number of pairs of crossover points
      */
 
-    private static boolean isCompatible(String parentAPclass, 
-                                                          String childAPclass)
+    protected static int countCompatibleXOverPoints(DENOPTIMGraph male,
+                                                    DENOPTIMGraph female)
     {
-        ArrayList<String> compatibleClasses = 
-                    FragmentSpace.getCompatibilityMatrix().get(parentAPclass);
-        return compatibleClasses.contains(childAPclass);
+        return CrossoverPointsFinder.countCompatiblePairs(male, female);
     }
 
 //----------------------------------------------------------------------------
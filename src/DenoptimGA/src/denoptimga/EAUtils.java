@@ -32,6 +32,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
+import java.util.stream.IntStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.math3.random.MersenneTwister;
@@ -39,7 +40,6 @@ import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.graph.ConnectivityChecker;
 import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.isomorphism.mcss.RMap;
 
 import denoptim.constants.DENOPTIMConstants;
 import denoptim.exception.DENOPTIMException;
@@ -48,6 +48,7 @@ import denoptim.fragspace.FragmentSpaceParameters;
 import denoptim.fragspace.IdFragmentAndAP;
 import denoptim.io.DenoptimIO;
 import denoptim.logging.DENOPTIMLogger;
+import denoptim.logging.MetricsRegistry;
 import denoptim.molecule.DENOPTIMAttachmentPoint;
 import denoptim.molecule.DENOPTIMEdge;
 import denoptim.molecule.DENOPTIMGraph;
@@ -61,11 +62,14 @@ import denoptim.rings.RingClosuresArchive;
 import denoptim.utils.DENOPTIMMathUtils;
 import denoptim.utils.DENOPTIMMoleculeUtils;
 import denoptim.utils.DENOPTIMStatUtils;
+import denoptim.utils.FingerprintIndex;
 import denoptim.utils.FragmentUtils;
 import denoptim.utils.GenUtils;
 import denoptim.utils.GraphConversionTool;
 import denoptim.utils.GraphUtils;
 import denoptim.utils.ObjectPair;
+import denoptim.utils.PerceptionCache;
+import denoptim.utils.PopulationStore;
 import denoptim.utils.RandomUtils;
 import denoptim.utils.RotationalSpaceUtils;
 
@@ -99,6 +103,38 @@ public class EAUtils
     // flag for debugging
     private static final boolean DEBUG = false;
 
+    /**
+     * Fingerprints of the candidates submitted to fitness evaluation, by UID
+     */
+    private static FingerprintIndex fpArchive = null;
+
+    /**
+     * Population for which fitness values for selection have been computed
+     */
+    private static ArrayList<DENOPTIMMolecule> selectionPopln = null;
+
+    /**
+     * Fitness values used for selection of parents from the population
+     * {@link #selectionPopln}, with the related selection tables
+     */
+    private static PopulationStore selectionStore = null;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Appends the performance metrics collected during a generation to the
+     * <code>metrics.csv</code> and <code>metrics.json</code> files in the 
+     * data directory of the GA run. See {@link MetricsRegistry}.
+     * @param genId the identifier of the generation.
+     * @throws DENOPTIMException
+     */
+
+    protected static void outputMetrics(String genId) throws DENOPTIMException
+    {
+        MetricsRegistry.writeReport(genId, GAParameters.getDataDirectory() 
+                + System.getProperty("file.separator") + "metrics");
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -236,17 +272,18 @@ public class EAUtils
         MersenneTwister rng = RandomUtils.getRNG();
 
         int[] mates = null;
+        PopulationStore store = getSelectionStore(popln);
 
         switch (stype)
         {
         case 1:
-            mates = SelectionHelper.performTournamentSelection(rng, popln, 2);
+            mates = SelectionHelper.performTournamentSelection(rng, store, 2);
             break;
         case 2:
-            mates = SelectionHelper.performRWS(rng, popln, 2);
+            mates = SelectionHelper.performRWS(rng, store, 2);
             break;
         case 3:
-            mates = SelectionHelper.performSUS(rng, popln, 2);
+            mates = SelectionHelper.performSUS(rng, store, 2);
             break;
         case 4:
             mates = SelectionHelper.performRandomSelection(rng, popln, 2);
@@ -277,19 +314,20 @@ public class EAUtils
 
         if (!FragmentSpace.useAPclassBasedApproach())
         {
+            PopulationStore store = getSelectionStore(molPopulation);
             switch (stype)
             {
             case 1:
                 mates = SelectionHelper.performTournamentSelection
-                                                (rng, molPopulation, 2);
+                                                (rng, store, 2);
                 break;
             case 2:
                 mates = SelectionHelper.performRWS
-                                                (rng, molPopulation, 2);
+                                                (rng, store, 2);
                 break;
             case 3:
                 mates = SelectionHelper.performSUS
-                                                (rng, molPopulation, 2);
+                                                (rng, store, 2);
                 break;
             case 4:
                 mates = SelectionHelper.performRandomSelection
@@ -306,6 +344,172 @@ public class EAUtils
         return mates;
     }    
               
+//------------------------------------------------------------------------------
+
+    /**
+     * Forgets the fingerprints of all the candidates encountered so far.
+     */
+
+    protected static synchronized void resetFingerprintArchive()
+    {
+        fpArchive = null;
+        selectionPopln = null;
+        selectionStore = null;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Forgets the results of the chemical perception of all the graphs
+     * evaluated so far.
+     */
+
+    protected static void resetPerceptionCache()
+    {
+        GraphUtils.getPerceptionCache().clear();
+    }
+
+//------------------------------------------------------------------------------
+
+    protected static synchronized FingerprintIndex getFingerprintArchive()
+    {
+        if (fpArchive == null)
+        {
+            fpArchive = new FingerprintIndex(
+                    DENOPTIMMoleculeUtils.getFingerprintSize());
+        }
+        return fpArchive;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Computes the fingerprint of a candidate and stores it in the archive
+     * of the candidates encountered so far. If requested, the fingerprint is
+     * stored only if the archive does not contain any near-duplicate of the
+     * candidate, that is, a candidate with the same UID or with Tanimoto
+     * similarity equal to or above the threshold given by
+     * {@link GAParameters#getNearDuplicateSimilarity()}.
+     * @param uid the unique identifier of the candidate.
+     * @param mol the molecular representation of the candidate.
+     * @param rejectNearDuplicates use <code>true</code> to check for
+     * near-duplicates.
+     * @return the UID of the near-duplicate found in the archive, or
+     * <code>null</code> if the candidate has been stored or could not be
+     * fingerprinted.
+     */
+
+    protected static String registerFingerprint(String uid, IAtomContainer mol,
+                                                 boolean rejectNearDuplicates)
+    {
+        if (uid == null || uid.equals("UNDEFINED"))
+        {
+            return null;
+        }
+        long[] fp = null;
+        try
+        {
+            fp = DENOPTIMMoleculeUtils.getPackedFingerprint(mol);
+        }
+        catch (DENOPTIMException de)
+        {
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                DENOPTIMLogger.appLogger.log(Level.FINE, "Cannot calculate "
+                        + "fingerprint of " + uid + ": " + de.getMessage());
+            }
+            return null;
+        }
+        FingerprintIndex archive = getFingerprintArchive();
+        if (rejectNearDuplicates)
+        {
+            return archive.addIfNovel(uid, fp,
+                    GAParameters.getNearDuplicateSimilarity());
+        }
+        archive.add(uid, fp);
+        return null;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Provides the fitness values to be used for selecting parents from a
+     * population. Without niching these are the fitness values of the
+     * members. Otherwise, each fitness value is shared among the members
+     * of its niche, i.e., it is divided by the niche count
+     * m<sub>i</sub> = &Sigma;<sub>j</sub> (1 - d<sub>ij</sub>/r),
+     * where d<sub>ij</sub> is the Tanimoto distance between members
+     * and the sum runs over the members with d<sub>ij</sub> &lt; r, the
+     * niche radius. Neighbors are found
+     * with a similarity search on an index of the fingerprints of the
+     * population. Since the population from which parents are selected does
+     * not change within a generation, the result is computed once and reused.
+     * @param popln the population.
+     * @return the store of the fitness values of the members in the order of
+     * the population, ready for selection.
+     */
+
+    protected static synchronized PopulationStore getSelectionStore(
+                                            ArrayList<DENOPTIMMolecule> popln)
+    {
+        int k = popln.size();
+        if (popln == selectionPopln && selectionStore != null
+                && selectionStore.size() == k)
+        {
+            return selectionStore;
+        }
+
+        double[] fitness = new double[k];
+        for (int i=0; i<k; i++)
+        {
+            fitness[i] = popln.get(i).getMoleculeFitness();
+        }
+        if (GAParameters.useNiching())
+        {
+            double radius = GAParameters.getNicheRadius();
+            FingerprintIndex archive = getFingerprintArchive();
+            FingerprintIndex pool = new FingerprintIndex(
+                    archive.getNumberOfBits());
+            long[][] fps = new long[k][];
+            for (int i=0; i<k; i++)
+            {
+                fps[i] = archive.get(popln.get(i).getMoleculeUID());
+                if (fps[i] != null)
+                {
+                    pool.add(Integer.toString(i), fps[i]);
+                }
+            }
+            for (int i=0; i<k; i++)
+            {
+                if (fps[i] == null)
+                {
+                    continue;
+                }
+                double nicheCount = 1.0;
+                String self = Integer.toString(i);
+                for (FingerprintIndex.Match m : pool.findSimilar(fps[i],
+                        1.0 - radius))
+                {
+                    if (!m.getKey().equals(self))
+                    {
+                        nicheCount += 1.0 - (1.0 - m.getSimilarity()) / radius;
+                    }
+                }
+                if (fitness[i] >= 0.0)
+                {
+                    fitness[i] = fitness[i] / nicheCount;
+                }
+                else
+                {
+                    fitness[i] = fitness[i] * nicheCount;
+                }
+            }
+        }
+        selectionPopln = popln;
+        selectionStore = new PopulationStore(popln, fitness);
+        return selectionStore;
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -336,15 +540,29 @@ public class EAUtils
 
             DENOPTIMGraph g1 = molPopulation.get(p1).getMoleculeGraph();
 
+            // the search for crossover points does not depend on the random
+            // number generator, so it is done in parallel
+            int[] numXOverPts = IntStream.range(0, molPopulation.size())
+                    .parallel()
+                    .map(i -> i == p1 ? 0 :
+                        DENOPTIMGraphOperations.countCompatibleXOverPoints(g1,
+                                molPopulation.get(i).getMoleculeGraph()))
+                    .toArray();
+
             ArrayList<Integer> indices = new ArrayList<>();
 
+            MersenneTwister xrng = RandomUtils.getRNG();
             for (int i=0; i<molPopulation.size(); i++)
             {
                 if (i == p1)
                     continue;
-                DENOPTIMGraph g2 = molPopulation.get(i).getMoleculeGraph();
-                RMap rp = DENOPTIMGraphOperations.locateCompatibleXOverPoints(g1, g2);
-                if (rp != null)
+                // consume random numbers as the choice of a pair of crossover
+                // points does, thus keeping the sequence of random numbers
+                if (numXOverPts[i] > 1)
+                {
+                    xrng.nextInt(numXOverPts[i]);
+                }
+                if (numXOverPts[i] > 0)
                 {
                     indices.add(i);
                 }
@@ -628,6 +846,10 @@ public class EAUtils
                 pmol.setName(molName);
                 molPopulation.add(pmol);
                 uidsFromInitPop.add(molinchi);
+                if (GAParameters.useFingerprints())
+                {
+                    registerFingerprint(molinchi, mol, false);
+                }
             }
         }
         writeUID(GAParameters.getUIDFileOut(),uidsFromInitPop,true);
@@ -729,7 +951,8 @@ public class EAUtils
 //------------------------------------------------------------------------------
 
     /**
-     * For each fragment, collect the reactions it is involved in
+     * For each fragment, collect the reactions it is involved in. The classes
+     * collected when defining the fragment space are used, if available.
      * @param mols
      */
 
@@ -738,8 +961,16 @@ public class EAUtils
         lstFragmentClass = new HashMap<>();
         for (int i=0; i<mols.size(); i++)
         {
-            IAtomContainer mol = mols.get(i);
-            ArrayList<String> lstRcn = FragmentUtils.getClassesForFragment(mol);
+            ArrayList<String> lstRcn = null;
+            if (FragmentSpace.getMapAPClassesPerFragment() != null)
+            {
+                lstRcn = FragmentSpace.getAPClassesPerFragment(i);
+            }
+            if (lstRcn == null)
+            {
+                IAtomContainer mol = mols.get(i);
+                lstRcn = FragmentUtils.getClassesForFragment(mol);
+            }
             lstFragmentClass.put(i, lstRcn);
             //System.err.println(i + " " + lstRcn.toString());
         }
@@ -937,6 +1168,7 @@ public class EAUtils
 
     protected static DENOPTIMGraph buildGraph() throws DENOPTIMException
     {
+        long t0 = MetricsRegistry.start();
         DENOPTIMGraph molGraph = new DENOPTIMGraph();
         molGraph.setGraphId(GraphUtils.getUniqueGraphIndex());
 
@@ -990,9 +1222,11 @@ public class EAUtils
                 //GenUtils.pause();
             }
 
+            MetricsRegistry.record(MetricsRegistry.Stage.GRAPH_BUILDING, t0);
             return molGraph;
         }
 
+        MetricsRegistry.countRejection("no_extension_of_scaffold");
         return null;
     }
 
@@ -1281,8 +1515,12 @@ public class EAUtils
                 allCombsOfRings.removeAll(toRemove);
                 if (allCombsOfRings.isEmpty())
                 {
-                    String msg = "Setup Rings: no combination of rings.";
-                    DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                    if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+                    {
+                        String msg = "Setup Rings: no combination of rings.";
+                        DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+                    }
+                    MetricsRegistry.countRejection("no_combination_of_rings");
                     return false;
                 }
             }
@@ -1320,9 +1558,12 @@ public class EAUtils
         String molsmiles = DENOPTIMMoleculeUtils.getSMILESForMolecule(mol);
         if (molsmiles == null)
         {
-            String msg = "Evaluation of graph: SMILES is null! "
-                                                        + molGraph.toString();
-            DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                String msg = "Evaluation of graph: SMILES is null! "
+                                                          + molGraph.toString();
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
             molsmiles = "FAIL: NO SMILES GENERATED";
         }
                 res[1] = molsmiles;
@@ -1331,8 +1572,11 @@ public class EAUtils
         ObjectPair pr = DENOPTIMMoleculeUtils.getInchiForMolecule(mol);
         if (pr.getFirst() == null)
         {
-            String msg = "Evaluation of graph: INCHI is null!";
-            DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                String msg = "Evaluation of graph: INCHI is null!";
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
             pr.setFirst("UNDEFINED");
         }
         res[0] = pr.getFirst();
@@ -1435,25 +1679,15 @@ public class EAUtils
 
     /**
      * Check if the population contains the specified InChi code
-     * @param mols
+     * @param store the snapshot of the population
      * @param molcode
      * @return <code>true</code> if found
      */
 
-    protected static boolean containsMolecule(ArrayList<DENOPTIMMolecule> mols,
+    protected static boolean containsMolecule(PopulationStore store,
                                                                 String molcode)
     {
-        if(mols.isEmpty())
-            return false;
-
-        for (DENOPTIMMolecule mol : mols)
-        {
-            if (mol.getMoleculeUID().compareToIgnoreCase(molcode) == 0)
-            {
-                return true;
-            }
-        }
-        return false;
+        return store.contains(molcode);
     }
 
 //------------------------------------------------------------------------------
@@ -1472,7 +1706,10 @@ public class EAUtils
             int id = vlst.get(i).getMolId();
             int ftype = vlst.get(i).getFragmentType();
             //System.err.println("FTYPE: " + ftype);
-            if (ftype == 1)
+            int nFrag = FragmentSpace.getHeavyAtomCount(ftype, id);
+            if (nFrag >= 0)
+                n += nFrag;
+            else if (ftype == 1)
                 n += DENOPTIMMoleculeUtils.getHeavyAtomCount(
                             FragmentSpace.getFragmentLibrary().get(id));
             else if (ftype == 2)
@@ -1499,8 +1736,11 @@ public class EAUtils
     protected static boolean isFragmentAdditionPossible(DENOPTIMGraph molGraph,
             int fragIdx, int nfrags)
     {
-        int n = nfrags * DENOPTIMMoleculeUtils.getHeavyAtomCount(
+        int nFrag = FragmentSpace.getHeavyAtomCount(1, fragIdx);
+        if (nFrag < 0)
+            nFrag = DENOPTIMMoleculeUtils.getHeavyAtomCount(
                         FragmentSpace.getFragmentLibrary().get(fragIdx));
+        int n = nfrags * nFrag;
 
         int natom = getNumberOfAtoms(molGraph);
 
@@ -1666,8 +1906,46 @@ public class EAUtils
     {
         if (molGraph == null)
         {
-            String msg = "Evaluation of graph: graph is null!";
-            DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                String msg = "Evaluation of graph: graph is null!";
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
+            MetricsRegistry.countRejection("null_graph");
+            return null;
+        }
+
+        // reuse the results of previous evaluations of the same graph
+        String key = PerceptionCache.getCanonicalKey(molGraph);
+        PerceptionCache.Perception known =
+                                       GraphUtils.getPerceptionCache().get(key);
+        if (known != null)
+        {
+            Object[] res = GraphUtils.evaluateKnownGraph(molGraph, known,
+                                                                 "UNDEFINED");
+            if (res == null)
+            {
+                molGraph.cleanup();
+                return null;
+            }
+            IAtomContainer mol = (IAtomContainer) res[2];
+            mol.setProperty("MOL_WT", known.getMolecularWeight());
+            mol.setProperty("ROT_BND", known.getRotatableBondCount());
+            return res;
+        }
+
+        // reject candidates that are clearly too large before building them
+        String reason = GraphUtils.preFilterGraph(molGraph);
+        if (reason != null)
+        {
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                String msg = "Evaluation of graph: pre-filter rejected graph ("
+                                                               + reason + ")";
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
+            GraphUtils.countRejection(key, reason);
+            molGraph.cleanup();
             return null;
         }
 
@@ -1675,9 +1953,13 @@ public class EAUtils
         IAtomContainer mol = GraphConversionTool.convertGraphToMolecule(molGraph,true);
         if (mol == null)
         { 
-            String msg ="Evaluation of graph: graph-to-mol returned null! " 
-                                                        + molGraph.toString();
-            DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                String msg ="Evaluation of graph: graph-to-mol returned null! " 
+                                                          + molGraph.toString();
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
+            GraphUtils.countRejection(key, "graph_to_mol_failed");
             molGraph.cleanup();
             return null;
         }
@@ -1686,9 +1968,13 @@ public class EAUtils
         boolean isConnected = ConnectivityChecker.isConnected(mol);
         if (!isConnected)
         {
-            String msg = "Evaluation of graph: Not all connected" 
-                                                        + molGraph.toString();
-            DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                String msg = "Evaluation of graph: Not all connected" 
+                                                          + molGraph.toString();
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
+            GraphUtils.countRejection(key, "disconnected");
             molGraph.cleanup();
             mol.removeAllElements();
             return null;
@@ -1700,32 +1986,43 @@ public class EAUtils
         //String molsmiles = DENOPTIMMoleculeUtils.getSMILESForMoleculeUsingBabel(mol);
         if (molsmiles == null)
         {
-            String msg = "Evaluation of graph: SMILES is null! " 
-                                                        + molGraph.toString();
-            DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                String msg = "Evaluation of graph: SMILES is null! " 
+                                                          + molGraph.toString();
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
             molsmiles = "FAIL: NO SMILES GENERATED";
         }
 
         // if by chance the molecule is disconnected
         if (molsmiles.contains("."))
         {
-            String msg = "Evaluation of graph: SMILES contains \".\"" 
-                                                                  + molsmiles;
-            DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                String msg = "Evaluation of graph: SMILES contains \".\"" 
+                                                                    + molsmiles;
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
+            GraphUtils.countRejection(key, "disconnected");
             molGraph.cleanup();
             mol.removeAllElements();
             return null;
         }
 
+        int nHeavy = DENOPTIMMoleculeUtils.getHeavyAtomCount(mol);
         if (FragmentSpaceParameters.getMaxHeavyAtom() > 0)
         {
-            if (DENOPTIMMoleculeUtils.getHeavyAtomCount(mol) >
-                                        FragmentSpaceParameters.getMaxHeavyAtom())
+            if (nHeavy > FragmentSpaceParameters.getMaxHeavyAtom())
             {
                 //System.err.println("Max atoms constraint violated");
-                String msg = "Evaluation of graph: Max atoms constraint "
-                                                  + " violated: " + molsmiles;
-                DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+                {
+                    String msg = "Evaluation of graph: Max atoms constraint "
+                                                    + " violated: " + molsmiles;
+                    DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+                }
+                GraphUtils.countRejection(key, "max_heavy_atoms");
                 molGraph.cleanup();
                 mol.removeAllElements();
                 return null;
@@ -1739,9 +2036,13 @@ public class EAUtils
             if (mw > FragmentSpaceParameters.getMaxMW())
             {
                 //System.err.println("Max weight constraint violated");
-                String msg = "Evaluation of graph: Molecular weight "
-                       + "constraint violated: " + molsmiles + " | MW: " + mw;
-                DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+                {
+                    String msg = "Evaluation of graph: Molecular weight "
+                         + "constraint violated: " + molsmiles + " | MW: " + mw;
+                    DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+                }
+                GraphUtils.countRejection(key, "max_molecular_weight");
                 molGraph.cleanup();
                 mol.removeAllElements();
                 return null;
@@ -1754,9 +2055,13 @@ public class EAUtils
         {
             if (nrot > FragmentSpaceParameters.getMaxRotatableBond())
             {
-                String msg = "Evaluation of graph: Max rotatable bonds "
-                                         + "constraint violated: "+ molsmiles;
-                DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+                {
+                    String msg = "Evaluation of graph: Max rotatable bonds "
+                                           + "constraint violated: "+ molsmiles;
+                    DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+                }
+                GraphUtils.countRejection(key, "max_rotatable_bonds");
                 molGraph.cleanup();
                 mol.removeAllElements();
                 return null;
@@ -1770,8 +2075,12 @@ public class EAUtils
         {
             if (foundForbiddenEnd(molGraph))
             {
-                String msg = "Evaluation of graph: forbidden end in graph!";
-                DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+                {
+                    String msg = "Evaluation of graph: forbidden end in graph!";
+                    DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+                }
+                GraphUtils.countRejection(key, "forbidden_end");
                 molGraph.cleanup();
                 mol.removeAllElements();
                 return null;
@@ -1811,19 +2120,31 @@ public class EAUtils
                 if (nThisType > RingClosureParameters.getMaxRcaPerType() || 
                          nCompType > RingClosureParameters.getMaxRcaPerType())
                 {
-                    String msg = "Evaluation of graph: too many RCAs! "
-                                  + rcaTyp + ":" + nThisType + " "
-                                  + rcaTypes.get(rcaTyp) + ":" + nCompType;
-                    DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                    if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+                    {
+                        String msg = "Evaluation of graph: too many RCAs! "
+                                      + rcaTyp + ":" + nThisType + " "
+                                      + rcaTypes.get(rcaTyp) + ":" + nCompType;
+                        DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+                    }
+                    GraphUtils.countRejection(key, "too_many_rcas");
+                    molGraph.cleanup();
+                    mol.removeAllElements();
                     return null;
                 }
                 if (nThisType < RingClosureParameters.getMinRcaPerType() ||
                          nCompType < RingClosureParameters.getMinRcaPerType())
                 {
-                    String msg = "Evaluation of graph: too few RCAs! "
-                                  + rcaTyp + ":" + nThisType + " "
-                                  + rcaTypes.get(rcaTyp) + ":" + nCompType;
-                    DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                    if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+                    {
+                        String msg = "Evaluation of graph: too few RCAs! "
+                                      + rcaTyp + ":" + nThisType + " "
+                                      + rcaTypes.get(rcaTyp) + ":" + nCompType;
+                        DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+                    }
+                    GraphUtils.countRejection(key, "too_few_rcas");
+                    molGraph.cleanup();
+                    mol.removeAllElements();
                     return null;
                 }
 
@@ -1834,18 +2155,29 @@ public class EAUtils
 
             if (nPossRings < RingClosureParameters.getMinRingClosures())
             {
-                String msg = "Evaluation of graph: too few ring candidates";
-                DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+                {
+                    String msg = "Evaluation of graph: too few ring candidates";
+                    DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+                }
+                GraphUtils.countRejection(key, "too_few_ring_candidates");
+                molGraph.cleanup();
+                mol.removeAllElements();
                 return null;
             }
         }
 
         // get the smiles/Inchi representation
         ObjectPair pr = DENOPTIMMoleculeUtils.getInchiForMolecule(mol);
+        GraphUtils.getPerceptionCache().put(key, new PerceptionCache.Perception(
+                molsmiles, (String) pr.getFirst(), mw, nrot, nHeavy));
         if (pr.getFirst() == null)
         {
-            String msg = "Evaluation of graph: INCHI is null!";
-            DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+            if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+            {
+                String msg = "Evaluation of graph: INCHI is null!";
+                DENOPTIMLogger.appLogger.log(Level.FINE, msg);
+            }
             pr.setFirst("UNDEFINED");
         }
 
@@ -33,6 +33,7 @@ import denoptim.fragspace.FragmentSpace;
 import denoptim.fragspace.FragmentSpaceParameters;
 import denoptim.io.DenoptimIO;
 import denoptim.logging.DENOPTIMLogger;
+import denoptim.logging.MetricsRegistry;
 import denoptim.molecule.DENOPTIMGraph;
 import denoptim.molecule.DENOPTIMMolecule;
 import denoptim.molecule.DENOPTIMVertex;
@@ -40,6 +41,7 @@ import denoptim.task.Task;
 import denoptim.task.TasksBatchManager;
 import denoptim.utils.GenUtils;
 import denoptim.utils.GraphUtils;
+import denoptim.utils.PopulationStore;
 import denoptim.utils.RandomUtils;
 import denoptim.utils.TaskUtils;
 
@@ -59,6 +61,9 @@ public class EvolutionaryAlgorithm
     {
         StopWatch watch = new StopWatch();
              watch.start();
+        MetricsRegistry.reset();
+        EAUtils.resetFingerprintArchive();
+        EAUtils.resetPerceptionCache();
         
         StringBuilder sb = new StringBuilder(32);
 
@@ -115,6 +120,8 @@ public class EvolutionaryAlgorithm
         String genOutfile = sb.toString();
         sb.setLength(0);
         EAUtils.outputPopulationDetails(molPopulation, genOutfile);
+        EAUtils.outputMetrics("Gen"
+                + GenUtils.getPaddedString(ndigits, 0));
         
         
         double sdev = EAUtils.getPopulationSD(molPopulation);
@@ -172,6 +179,8 @@ public class EvolutionaryAlgorithm
             sb.setLength(0);
 
             EAUtils.outputPopulationDetails(molPopulation, genOutfile);
+            EAUtils.outputMetrics("Gen"
+                    + GenUtils.getPaddedString(ndigits, curGen));
             
             DENOPTIMLogger.appLogger.log(Level.INFO,"Generation {0}" + " completed\n"
                 + "----------------------------------------"
@@ -219,8 +228,8 @@ public class EvolutionaryAlgorithm
     private boolean evolvePopulation(ArrayList<DENOPTIMMolecule> molPopulation,
                                 String genDir) throws DENOPTIMException
     {
-        // temporary store for inchi codes
-        ArrayList<String> codes = EAUtils.getInchiCodes(molPopulation);
+        // snapshot of the population, indexed by inchi codes
+        PopulationStore codes = new PopulationStore(molPopulation);
 
         ArrayList<Task> tasks = new ArrayList<>();
         
@@ -265,7 +274,8 @@ public class EvolutionaryAlgorithm
                     int parents[] = EAUtils.selectParents(clone_popln);
                     if (parents[0] == -1 || parents[1] == -1)
                     {
-                        DENOPTIMLogger.appLogger.info("Failed to identify compatible parents for crossover/mutation.");
+                        DENOPTIMLogger.countRepeatedEvent(
+                                "no_compatible_parents");
                         numatt++;
                         continue;
                     }
@@ -273,7 +283,8 @@ public class EvolutionaryAlgorithm
                     // perform crossover
                     if (parents[0] == parents[1])
                     {
-                        DENOPTIMLogger.appLogger.info("Crossover has indentical partners.");
+                        DENOPTIMLogger.countRepeatedEvent(
+                                "identical_crossover_partners");
                         numatt++;
                         continue;
                     }
@@ -346,7 +357,8 @@ public class EvolutionaryAlgorithm
                     i3 = EAUtils.selectSingleParent(clone_popln);
                     if (i3 == -1)
                     {
-                        DENOPTIMLogger.appLogger.info("Invalid parent selection.");
+                        DENOPTIMLogger.countRepeatedEvent(
+                                "invalid_parent_selection");
                         numatt++;
                         continue;
                     }
@@ -695,14 +707,13 @@ public class EvolutionaryAlgorithm
         
         for (DENOPTIMMolecule mol : molPopulation)
         {
-            if (!codes.contains(mol.getMoleculeUID()))
+            if (!EAUtils.containsMolecule(codes, mol.getMoleculeUID()))
             {
                 updated = true;
                 break;
             }
         }
         
-        codes.clear();
         return updated;
     }
 
@@ -178,6 +178,19 @@ public class GAParameters
     protected static String strXoverSelectionMode =
                                                 "STOCHASTIC UNIVERSAL SAMPLING";
 
+    /**
+     * Tanimoto similarity above which an offspring is considered a
+     * near-duplicate of a previously evaluated candidate, and is thus rejected.
+     * Non-positive values disable the rejection of near-duplicates.
+     */
+    protected static double nearDuplicateSimilarity = -1.0;
+
+    /**
+     * Radius (in Tanimoto distance) of the niches used for fitness sharing
+     * in the selection of parents. Non-positive values disable niching.
+     */
+    protected static double nicheRadius = -1.0;
+
     /**
      * The seed value for random number generation
      */
@@ -207,6 +220,11 @@ public class GAParameters
      * Print level
      */
     protected static int print_level = 0;
+
+    /**
+     * Minimum level of the records written to the log file
+     */
+    protected static Level logLevel = Level.INFO;
     
 //------------------------------------------------------------------------------
     
@@ -236,12 +254,15 @@ public class GAParameters
     	crossoverProbability = 0.8;
     	xoverSelectionMode = 3;
     	strXoverSelectionMode = "STOCHASTIC UNIVERSAL SAMPLING";
+    	nearDuplicateSimilarity = -1.0;
+    	nicheRadius = -1.0;
     	seed = 0L;
     	parallelizationScheme = 1;
     	numParallelTasks = 0;
     	sortOrderDecreasing = true;
     	precisionLevel = 3;
     	print_level = 0;
+    	logLevel = Level.INFO;
     	
         FragmentSpaceParameters.resetParameters();
         RingClosureParameters.resetParameters();
@@ -375,6 +396,45 @@ public class GAParameters
         return xoverSelectionMode;
     }
 
+//------------------------------------------------------------------------------
+
+    protected static double getNearDuplicateSimilarity()
+    {
+        return nearDuplicateSimilarity;
+    }
+
+//------------------------------------------------------------------------------
+
+    protected static boolean rejectNearDuplicates()
+    {
+        return nearDuplicateSimilarity > 0.0;
+    }
+
+//------------------------------------------------------------------------------
+
+    protected static double getNicheRadius()
+    {
+        return nicheRadius;
+    }
+
+//------------------------------------------------------------------------------
+
+    protected static boolean useNiching()
+    {
+        return nicheRadius > 0.0;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return <code>true</code> if the fingerprints of the candidates have to
+     * be collected.
+     */
+    protected static boolean useFingerprints()
+    {
+        return rejectNearDuplicates() || useNiching();
+    }
+
 //------------------------------------------------------------------------------
 
     protected static int getNumberOfConvergenceGenerations()
@@ -591,6 +651,16 @@ public class GAParameters
                     continue;
                 }
 
+                if (line.toUpperCase().startsWith("GA-LOGLEVEL="))
+                {
+                    option = line.substring(line.indexOf("=") + 1).trim();
+                    if (option.length() > 0)
+                    {
+                        logLevel = DENOPTIMLogger.parseLevel(option);
+                    }
+                    continue;
+                }
+
                 if (line.toUpperCase().startsWith("GA-SORTBYINCREASINGFITNESS="))
                 {
                     option = line.substring(line.indexOf("=") + 1).trim();
@@ -743,6 +813,26 @@ public class GAParameters
                         }
                     }
                 }
+
+                if (line.toUpperCase().startsWith(
+                                            "GA-NEARDUPLICATESIMILARITY="))
+                {
+                    option = line.substring(line.indexOf("=") + 1).trim();
+                    if (option.length() > 0)
+                    {
+                        GAParameters.nearDuplicateSimilarity =
+                                                Double.parseDouble(option);
+                    }
+                }
+
+                if (line.toUpperCase().startsWith("GA-NICHERADIUS="))
+                {
+                    option = line.substring(line.indexOf("=") + 1).trim();
+                    if (option.length() > 0)
+                    {
+                        GAParameters.nicheRadius = Double.parseDouble(option);
+                    }
+                }
             }
         }
         catch (NumberFormatException | IOException nfe)
@@ -844,7 +934,7 @@ public class GAParameters
 
         try
         {
-            DENOPTIMLogger.getInstance().setupLogger(logFile);
+            DENOPTIMLogger.getInstance().setupLogger(logFile, logLevel);
             FileUtils.copyFileToDirectory(new File(paramFile), new File(dataDir));
         }
         catch (IOException ioe)
@@ -932,6 +1022,16 @@ public class GAParameters
             error = "Mutation probability must be between 0 and 1.";
             throw new DENOPTIMException(error);
         }
+        if (GAParameters.nearDuplicateSimilarity > 1.)
+        {
+            error = "Similarity of near-duplicates must be between 0 and 1.";
+            throw new DENOPTIMException(error);
+        }
+        if (GAParameters.nicheRadius > 1.)
+        {
+            error = "Radius of niches must be between 0 and 1.";
+            throw new DENOPTIMException(error);
+        }
 
         if (initPoplnFile.length() > 0)
         {
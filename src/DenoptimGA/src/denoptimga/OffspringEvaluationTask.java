@@ -33,8 +33,10 @@ import denoptim.constants.DENOPTIMConstants;
 import denoptim.exception.DENOPTIMException;
 import denoptim.fitness.FitnessParameters;
 import denoptim.fragspace.FragmentSpace;
+import denoptim.io.CandidatesIndex;
 import denoptim.io.DenoptimIO;
 import denoptim.logging.DENOPTIMLogger;
+import denoptim.logging.MetricsRegistry;
 import denoptim.molecule.DENOPTIMGraph;
 import denoptim.molecule.DENOPTIMMolecule;
 import denoptim.task.FitnessTask;
@@ -103,6 +105,29 @@ public class OffspringEvaluationTask extends FitnessTask
     @Override
     public Object call() throws DENOPTIMException, Exception
     {
+        // Keep track of the fingerprint of this candidate, and reject it if it
+        // is too similar to any candidate encountered before
+        if (GAParameters.useFingerprints())
+        {
+            String twin = EAUtils.registerFingerprint(result.getMoleculeUID(),
+                    fitProvMol, GAParameters.rejectNearDuplicates());
+            if (twin != null)
+            {
+                if (DENOPTIMLogger.appLogger.isLoggable(Level.FINE))
+                {
+                    DENOPTIMLogger.appLogger.log(Level.FINE, "Rejecting {0}: "
+                            + "near-duplicate of {1}", new Object[]{molName,
+                                    twin});
+                }
+                MetricsRegistry.countRejection("near_duplicate");
+                result.setError("Near-duplicate of " + twin);
+                // Results with undefined UID are discarded
+                result.setMoleculeUID("UNDEFINED");
+                completed = true;
+                return result;
+            }
+        }
+
     	// Optionally improve the molecular representation, which
         // is otherwise only given by the collection of building
         // blocks (not aligned, nor roto-translated)
@@ -161,6 +186,19 @@ public class OffspringEvaluationTask extends FitnessTask
             throw new DENOPTIMException(ex);
         }
 
+        // Keep track of this candidate in the index of the run
+        File indexFile = new File(GAParameters.getDataDirectory() + SEP 
+                + DENOPTIMConstants.GAINDEXFILENAME);
+        double fitness = Double.NaN;
+        if (result.hasFitness())
+        {
+            fitness = result.getMoleculeFitness();
+        }
+        CandidatesIndex.appendEntry(indexFile, molName, 
+                CandidatesIndex.getGenerationFromFolderName(
+                        new File(workDir).getName()), 
+                fitness, result.getMoleculeUID(), fitProvOutFile, 0);
+
         if (result.getError() == null)
         {
             synchronized (numtry)
@@ -39,11 +39,13 @@ import denoptim.fragspace.FragmentSpace;
 import denoptim.fragspace.FragmentSpaceParameters;
 import denoptim.io.DenoptimIO;
 import denoptim.logging.DENOPTIMLogger;
+import denoptim.logging.MetricsRegistry;
 import denoptim.molecule.DENOPTIMGraph;
 import denoptim.molecule.DENOPTIMMolecule;
 import denoptim.molecule.DENOPTIMVertex;
 import denoptim.utils.GenUtils;
 import denoptim.utils.GraphUtils;
+import denoptim.utils.PopulationStore;
 import denoptim.utils.RandomUtils;
 import denoptim.utils.TaskUtils;
 
@@ -159,6 +161,9 @@ public class ParallelEvolutionaryAlgorithm
     {
         StopWatch watch = new StopWatch();
              watch.start();
+        MetricsRegistry.reset();
+        EAUtils.resetFingerprintArchive();
+        EAUtils.resetPerceptionCache();
 
         // start the threads
         tcons.prestartAllCoreThreads();
@@ -219,6 +224,8 @@ public class ParallelEvolutionaryAlgorithm
         sb.setLength(0);
 
         EAUtils.outputPopulationDetails(molPopulation, genOutfile);
+        EAUtils.outputMetrics("Gen"
+                + GenUtils.getPaddedString(ndigits, 0));
         
         double sdev = EAUtils.getPopulationSD(molPopulation);
         if (sdev < 0.0001)
@@ -274,6 +281,8 @@ public class ParallelEvolutionaryAlgorithm
             sb.setLength(0);
 
             EAUtils.outputPopulationDetails(molPopulation, genOutfile);
+            EAUtils.outputMetrics("Gen"
+                    + GenUtils.getPaddedString(ndigits, curGen));
             
             DENOPTIMLogger.appLogger.log(Level.INFO,"Generation {0}" + " completed\n"
                             + "----------------------------------------"
@@ -356,8 +365,8 @@ public class ParallelEvolutionaryAlgorithm
     private boolean evolvePopulation(ArrayList<DENOPTIMMolecule> molPopulation,
                                 String genDir) throws DENOPTIMException
     {
-        // temporary store for inchi codes
-        ArrayList<String> codes = EAUtils.getInchiCodes(molPopulation);
+        // snapshot of the population, indexed by inchi codes
+        PopulationStore codes = new PopulationStore(molPopulation);
 
         //double sdev_old = EAUtils.getPopulationSD(molPopulation);
         
@@ -438,7 +447,8 @@ public class ParallelEvolutionaryAlgorithm
                         int parents[] = EAUtils.selectParents(clone_popln);
                         if (parents[0] == -1 || parents[1] == -1)
                         {
-                            DENOPTIMLogger.appLogger.info("Failed to identify compatible parents for crossover/mutation.");
+                            DENOPTIMLogger.countRepeatedEvent(
+                                "no_compatible_parents");
                             numatt++;
                             continue;
                         }
@@ -446,7 +456,8 @@ public class ParallelEvolutionaryAlgorithm
                         // perform crossover
                         if (parents[0] == parents[1])
                         {
-                            DENOPTIMLogger.appLogger.info("Crossover has indentical partners.");
+                            DENOPTIMLogger.countRepeatedEvent(
+                                "identical_crossover_partners");
                             numatt++;
                             continue;
                         }
@@ -522,7 +533,8 @@ public class ParallelEvolutionaryAlgorithm
                         i3 = EAUtils.selectSingleParent(clone_popln);
                         if (i3 == -1)
                         {
-                            DENOPTIMLogger.appLogger.info("Invalid parent selection.");
+                            DENOPTIMLogger.countRepeatedEvent(
+                                "invalid_parent_selection");
                             numatt++;
                             continue;
                         }
@@ -984,7 +996,8 @@ public class ParallelEvolutionaryAlgorithm
         boolean updated = false;
         for (int i=0; i<molPopulation.size(); i++)
         {
-            if (!codes.contains(molPopulation.get(i).getMoleculeUID()))
+            if (!EAUtils.containsMolecule(codes,
+                                        molPopulation.get(i).getMoleculeUID()))
             {
                 updated = true;
                 break;
@@ -995,7 +1008,6 @@ public class ParallelEvolutionaryAlgorithm
         //if (Math.abs(sdev_new - sdev_old) < 0.01)
         //    updated = false;
         
-        codes.clear();
         return updated;
     }
 
@@ -19,11 +19,11 @@
 package denoptimga;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 
 import org.apache.commons.math3.random.MersenneTwister;
 
 import denoptim.molecule.DENOPTIMMolecule;
+import denoptim.utils.PopulationStore;
 
 
 /**
@@ -43,16 +43,15 @@ public class SelectionHelper
      * Note: this implementation is based on the WATCHMAKER framework
      * http://watchmaker.uncommons.org/
      * @param rng
-     * @param molPopulation 
+     * @param store the fitness of each member of the population
      * @param sz size of the mating pool
      * @return list of indices of individuals in the population
      */
 
     protected static int[] performTournamentSelection(MersenneTwister rng,
-                                    ArrayList<DENOPTIMMolecule> molPopulation,
-                                    int sz)
+                                    PopulationStore store, int sz)
     {
-        int k = molPopulation.size();
+        int k = store.size();
         
         int[] selection = new int[sz];
         
@@ -70,14 +69,14 @@ public class SelectionHelper
             if (selectFitter)
             {
                 // Select the fitter candidate.
-                selection[i] = molPopulation.get(p1).getMoleculeFitness() >
-                    molPopulation.get(p2).getMoleculeFitness() ? p1 : p2;
+                selection[i] = store.getFitness(p1) > store.getFitness(p2)
+                        ? p1 : p2;
             }
             else
             {
                 // Select the weaker candidate.
-                selection[i] = molPopulation.get(p2).getMoleculeFitness() >
-                    molPopulation.get(p1).getMoleculeFitness() ? p1 : p2;
+                selection[i] = store.getFitness(p2) > store.getFitness(p1)
+                        ? p1 : p2;
             }
         }
         
@@ -111,99 +110,41 @@ public class SelectionHelper
      * Stochastic Uniform Sampling
      * Note: this implementation is based on the WATCHMAKER framework
      * http://watchmaker.uncommons.org/
+     * The evenly spaced pointers are located on the cumulative fitness by
+     * binary search, so that selection takes O(sz log k) time.
      * @param rng
-     * @param molPopulation 
+     * @param store the fitness of each member of the population
      * @param sz size of the mating pool
      * @return list of indices of individuals in the population
      */
     protected static int[] performSUS(MersenneTwister rng,
-                                    ArrayList<DENOPTIMMolecule> molPopulation,
-                                    int sz)
+                                    PopulationStore store, int sz)
     {
-        int k = molPopulation.size();
-        int[] selection = new int[sz];
-        // Calculate the sum of all fitness values.
-        double aggregateFitness = 0;
-
-        for (int i=0; i<k; i++)
-        {
-            aggregateFitness += molPopulation.get(i).getMoleculeFitness();
-        }
-
-
-        // Pick a random offset between 0 and 1 as the starting point for selection.
-        double startOffset = rng.nextDouble();
-        double cumulativeExpectation = 0;
-        int index = 0;
-        int c = 0;
-        for (int i=0; i<k; i++)
-        {
-            // Calculate the number of times this candidate is expected to
-            // be selected on average and add it to the cumulative total
-            // of expected frequencies.
-            cumulativeExpectation += molPopulation.get(i).getMoleculeFitness()
-                                    / aggregateFitness * sz;
-
-            // If f is the expected frequency, the candidate will be selected at
-            // least as often as floor(f) and at most as often as ceil(f). The
-            // actual count depends on the random starting offset.
-            while (cumulativeExpectation > startOffset + index)
-            {
-                selection[c] = i;
-                c++;
-                index++;
-            }
-        }
-        
-        return selection;
+        return store.sampleUniversal(rng, sz);
     }
 
 //------------------------------------------------------------------------------
 
     /*
-     * Roulette wheel selection is implemented as follows:
-     * 1. Sum the fitness of all the population members. TF (total fitness).
-     * 2. Generate a random number r, between 0 and TF.
-     * 3. Return the first population member whose fitness added to the preceding
-     *    population members is greater than or equal to r.
-     * Note: this implementation is based on the WATCHMAKER framework
-     * http://watchmaker.uncommons.org/
+     * Roulette wheel selection: each member is selected with probability
+     * proportional to its fitness. Members are drawn from the alias table
+     * of the population store, so each selection takes constant time and
+     * consumes a single random number. Negative fitness values are taken
+     * as zero.
      * @param rng
-     * @param molPopulation 
+     * @param store the fitness of each member of the population
      * @param size of the mating pool
      * @return list of indices of individuals in the population
      */
 
     protected static int[] performRWS(MersenneTwister rng,
-                                    ArrayList<DENOPTIMMolecule> molPopulation,
-                                    int sz)
+                                    PopulationStore store, int sz)
     {
-        int k = molPopulation.size();
         int[] selection = new int[sz];
-
-        double[] cumulativeFitnesses = new double[k];
-        cumulativeFitnesses[0] = molPopulation.get(0).getMoleculeFitness();
-
-        for (int i=1; i<k; i++)
-        {
-            double fitness = molPopulation.get(i).getMoleculeFitness();
-
-            cumulativeFitnesses[i] = cumulativeFitnesses[i-1] + fitness;
-        }
-
         for (int i=0; i<sz; i++)
         {
-            double randomFitness = rng.nextDouble() *
-                        cumulativeFitnesses[cumulativeFitnesses.length-1];
-            int index = Arrays.binarySearch(cumulativeFitnesses, randomFitness);
-            if (index < 0)
-            {
-                // Convert negative insertion point to array index.
-                index = Math.abs(index + 1);
-            }
-            selection[i] = index;
+            selection[i] = store.sampleRoulette(rng);
         }
-        
         return selection;
     }
     
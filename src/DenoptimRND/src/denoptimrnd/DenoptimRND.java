@@ -18,18 +18,24 @@
 
 package denoptimrnd;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.logging.Level;
 
 import org.apache.commons.lang3.time.StopWatch;
 import org.apache.commons.math3.random.MersenneTwister;
+import org.openscience.cdk.interfaces.IAtomContainer;
 
 import denoptim.exception.DENOPTIMException;
 import denoptim.io.DenoptimIO;
+import denoptim.io.SDFOffsetIndex;
 import denoptim.logging.DENOPTIMLogger;
 import denoptim.molecule.DENOPTIMMolecule;
 import denoptim.utils.GenUtils;
+import denoptim.utils.IncrementalShuffle;
 import denoptim.utils.RandomUtils;
 
 /**
@@ -46,26 +52,20 @@ public class DenoptimRND
     private static final String fsep = System.getProperty("file.separator");
 
     /**
-     * Colection of DENOPTIM representations of
-     * graphs with fitness.
+     * Disk-backed index of the records in the collection of evaluated graphs.
+     * Records are parsed only when selected.
      */
-    private static ArrayList<DENOPTIMMolecule> allEvaluatedGraphs =
-                                              new ArrayList<DENOPTIMMolecule>();
+    private static SDFOffsetIndex allEvaluatedGraphs = null;
 
     /**
-     * Comment used to flag previously used graphs
+     * Sampler of the indexes of the records not selected yet
      */
-    private static String usedFlag = "ALREADY_USED";
+    private static IncrementalShuffle sampler = null;
 
     /**
-     * Number of used graphs
+     * UIDs of the graphs selected so far
      */
-    private static int numUsed = 0;
-
-    /**
-     * Number of available graphs
-     */
-    private static int numAvail = 0;
+    private static Set<String> usedUIDs = new HashSet<String>();
 
 //------------------------------------------------------------------------------
 
@@ -98,10 +98,10 @@ public class DenoptimRND
             RNDParameters.processParameters();
             RNDParameters.printParameters();
 	
-	    // Load Known graphs
-	    // WARNING! This burns-up the memory
-	    addEvaluatedGraphs(RNDEAUtils.readGraphsWithFitnessFromFile(
-					     RNDParameters.getAllGraphsFile()));
+	    // Index known graphs: these are read only when selected
+	    addEvaluatedGraphs(RNDEAUtils.indexGraphsWithFitnessFromFile(
+	                RNDParameters.getAllGraphsFile(),
+	                RNDParameters.getDataDirectory() + fsep + "allGraphs.idx"));
 
 	    // Run evolution
             run();
@@ -228,6 +228,14 @@ public class DenoptimRND
         RNDEAUtils.outputFinalResults(molPopulation, genDir);
         
         cleanup(molPopulation);
+        try
+        {
+            allEvaluatedGraphs.close();
+        }
+        catch (IOException ioe)
+        {
+            throw new DENOPTIMException(ioe);
+        }
 
         watch.stop();
 
@@ -400,52 +408,51 @@ public class DenoptimRND
 //------------------------------------------------------------------------------
 
     /**
-     * Append all entries to the collection
-     * @param dmols the entities to append
+     * Sets the collection of evaluated graphs to select from
+     * @param index the index of the records of the evaluated graphs
      */
 
-    private static void addEvaluatedGraphs(ArrayList<DENOPTIMMolecule> dmols)
+    private static void addEvaluatedGraphs(SDFOffsetIndex index)
     {
-	allEvaluatedGraphs.addAll(dmols);
-	numAvail = allEvaluatedGraphs.size();
+        allEvaluatedGraphs = index;
+        sampler = new IncrementalShuffle(index.size());
+        usedUIDs.clear();
     }
 
 //------------------------------------------------------------------------------
 
     /**
-     * Select an evaluated graph that was not selected before
+     * Select an evaluated graph that was not selected before. Each draw takes
+     * constant time irrespective of the number of graphs already selected,
+     * and only the selected record is read from disk.
      */
 
     private static DENOPTIMMolecule getRandomEntry() throws DENOPTIMException
     {
-        DENOPTIMMolecule newOne = null;
-
-        if (numUsed == numAvail)
-        {
-            throw new DENOPTIMException("ERROR! Not enough graphs in the "
-                                           + "collection of evaluated graphs.");
-        }
-
-	MersenneTwister rng = RandomUtils.getRNG();
-	
-        while (numUsed < numAvail)
+        MersenneTwister rng = RandomUtils.getRNG();
+        int numAvail = sampler.size();
+        while (sampler.hasNext())
         {
-            int rndNum = rng.nextInt(numAvail);
-            String str = allEvaluatedGraphs.get(rndNum).getComments();
-            if (str==null || (str!=null && !str.equals(usedFlag)))
+            int rndNum = sampler.next(rng);
+            IAtomContainer mol = DenoptimIO.readSDFString(
+                                        allEvaluatedGraphs.readRecord(rndNum));
+            DENOPTIMMolecule newOne = RNDEAUtils.getGraphWithFitness(mol,
+                                                                     usedUIDs);
+            if (newOne == null)
             {
-                newOne = allEvaluatedGraphs.get(rndNum);
-                allEvaluatedGraphs.get(rndNum).setComments(usedFlag);
-                numUsed+=1;
-                StringBuilder sb = new StringBuilder();
-                sb.append(String.format("Selecting graph %d ",rndNum));
-                sb.append(newOne.getMoleculeUID());
-                sb.append(String.format(" (Usage %d/%d)",numUsed,numAvail));
-                DENOPTIMLogger.appLogger.log(Level.INFO,sb.toString());
-                break;
+                // Duplicate of a graph that was already selected
+                continue;
             }
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("Selecting graph %d ",rndNum));
+            sb.append(newOne.getMoleculeUID());
+            sb.append(String.format(" (Usage %d/%d)",
+                                          sampler.getNumberOfDrawn(),numAvail));
+            DENOPTIMLogger.appLogger.log(Level.INFO,sb.toString());
+            return newOne;
         }
-        return newOne;
+        throw new DENOPTIMException("ERROR! Not enough graphs in the "
+                                           + "collection of evaluated graphs.");
     }
     
 //------------------------------------------------------------------------------
@@ -24,6 +24,7 @@ import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
@@ -32,9 +33,11 @@ import org.apache.commons.io.FileUtils;
 import org.openscience.cdk.CDKConstants;
 import org.openscience.cdk.interfaces.IAtomContainer;
 
+import denoptim.constants.DENOPTIMConstants;
 import denoptim.exception.DENOPTIMException;
 import denoptim.fragspace.FragmentSpace;
 import denoptim.io.DenoptimIO;
+import denoptim.io.SDFOffsetIndex;
 import denoptim.logging.DENOPTIMLogger;
 import denoptim.molecule.DENOPTIMGraph;
 import denoptim.molecule.DENOPTIMMolecule;
@@ -264,100 +267,172 @@ class RNDEAUtils
             mols = DenoptimIO.readLinksToMols(fileName);
         }
 
-        String fsep = System.getProperty("file.separator");
-
-        Set<String> lstUIDs = new HashSet();
+        Set<String> lstUIDs = new HashSet<String>();
         ArrayList<DENOPTIMMolecule> members = new ArrayList<DENOPTIMMolecule>();
         for (int i=0; i<mols.size(); i++)
         {
-            DENOPTIMGraph graph = null;
-            double fitness = 0, ad = 0;
-            String molsmiles = null, molinchi = null, molfile = null;
-
-            IAtomContainer mol = mols.get(i);
-            Object apProperty = mol.getProperty("GraphENC");
-            if (apProperty != null)
-            {
-                graph = GraphConversionTool.getGraphFromString(
-                                                  apProperty.toString().trim());
-            }
-            else
+            DENOPTIMMolecule pmol = getGraphWithFitness(mols.get(i), lstUIDs);
+            if (pmol != null)
             {
-                DENOPTIMLogger.appLogger.log(Level.SEVERE,
-                        "Molecule does not have the DENOPTIMGraph encoding.");
-                throw new DENOPTIMException(
-                        "Molecule does not have the DENOPTIMGraph encoding.");
+                members.add(pmol);
             }
+        }
 
-            apProperty = mol.getProperty("FITNESS");
-            if (apProperty != null)
-            {
-                fitness = Double.parseDouble(apProperty.toString());
-            }
-            else
-            {
-                DENOPTIMLogger.appLogger.log(Level.SEVERE,
-                            "Molecule does not have the associated fitness.");
-                throw new DENOPTIMException(
-                            "Molecule does not have the associated fitness.");
-            }
+        if (members.isEmpty())
+        {
+            DENOPTIMLogger.appLogger.log(Level.SEVERE,
+                                        "No data found in file {0}", fileName);
+            throw new DENOPTIMException("No data found in file " + fileName);
+        }
 
-            apProperty = mol.getProperty("SMILES");
-            if (apProperty != null)
-            {
-                molsmiles = apProperty.toString().trim();
-            }
-            else
-            {
-                molsmiles = DENOPTIMMoleculeUtils.getSMILESForMolecule(mol);
-            }
+        return members;
+    }
 
-            apProperty = mol.getProperty("InChi");
-            if (apProperty != null)
-            {
-                molinchi = apProperty.toString();
-            }
-            if (mol.getProperty("UID") != null)
-            {
-                molinchi = mol.getProperty("UID").toString();
-            }
-            else
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds the disk-backed index of the records of the collection of
+     * evaluated graphs. Records are parsed only when they are used.
+     * @param fileName the pathname to the SDF file or to the text file with
+     * links to SDF files
+     * @param indexFile the file where to write the offsets of the records
+     * @return the index
+     * @throws DENOPTIMException if the files cannot be indexed, or if any
+     * record lacks the graph encoding or the fitness
+     */
+
+    protected static SDFOffsetIndex indexGraphsWithFitnessFromFile(
+                     String fileName, String indexFile) throws DENOPTIMException
+    {
+        List<File> sdfFiles = new ArrayList<File>();
+        if (GenUtils.getFileExtension(fileName).compareToIgnoreCase(".sdf")==0)
+        {
+            sdfFiles.add(new File(fileName));
+        }
+        // everything else as a text file with links to individual molecules
+        else
+        {
+            for (String link : DenoptimIO.readList(fileName))
             {
-                ObjectPair pr = DENOPTIMMoleculeUtils.getInchiForMolecule(mol);
-                if (pr.getFirst() != null)
+                if (GenUtils.getFileExtension(link).compareToIgnoreCase(
+                                                                 ".smi") == 0)
                 {
-                    molinchi = pr.getFirst().toString();
+                    throw new DENOPTIMException("Fragment files in SMILES "
+                            + "format not supported.");
                 }
-            }
-
-            // Add molecule to population, unless it has previously known UID
-            if (lstUIDs.add(molinchi))
-            {
-                int ctr = GraphUtils.getUniqueMoleculeIndex();
-                String molName = "M" + GenUtils.getPaddedString(8, ctr);
-                int gctr = GraphUtils.getUniqueGraphIndex();
-                graph.setGraphId(gctr);
-                graph.setMsg("NEW");
-                mol.setProperty("GCODE", gctr);
-                mol.setProperty(CDKConstants.TITLE, molName);
-                mol.setProperty("GraphENC", graph.toString());
-                mol.setProperty("GraphMsg", "From Initial Population File");
-
-                DENOPTIMMolecule pmol =
-                    new DENOPTIMMolecule(graph, molinchi, molsmiles, fitness);
-                pmol.setImageFile(null);
-                members.add(pmol);
+                sdfFiles.add(new File(link));
             }
         }
 
-        if (members.isEmpty())
+        // Fail now rather than when a malformed record is drawn
+        SDFOffsetIndex index = SDFOffsetIndex.build(sdfFiles,
+                new File(indexFile), DENOPTIMConstants.GRAPHTAG,
+                DENOPTIMConstants.FITNESSTAG);
+        if (index.size() == 0)
         {
             DENOPTIMLogger.appLogger.log(Level.SEVERE,
                                         "No data found in file {0}", fileName);
             throw new DENOPTIMException("No data found in file " + fileName);
         }
+        return index;
+    }
 
-        return members;
+//------------------------------------------------------------------------------
+
+    /**
+     * Creates the population member corresponding to a molecule of the
+     * collection of evaluated graphs.
+     * @param mol the molecule with graph encoding and fitness
+     * @param lstUIDs the UIDs of the molecules already imported. The UID of
+     * the given molecule is added to this set.
+     * @return the population member, or <code>null</code> if the UID of the
+     * molecule is already in <code>lstUIDs</code>
+     * @throws DENOPTIMException if the graph encoding or the fitness are
+     * missing
+     */
+
+    protected static DENOPTIMMolecule getGraphWithFitness(IAtomContainer mol,
+                           Set<String> lstUIDs) throws DENOPTIMException
+    {
+        DENOPTIMGraph graph = null;
+        double fitness = 0;
+        String molsmiles = null, molinchi = null;
+
+        Object apProperty = mol.getProperty("GraphENC");
+        if (apProperty != null)
+        {
+            graph = GraphConversionTool.getGraphFromString(
+                                              apProperty.toString().trim());
+        }
+        else
+        {
+            DENOPTIMLogger.appLogger.log(Level.SEVERE,
+                    "Molecule does not have the DENOPTIMGraph encoding.");
+            throw new DENOPTIMException(
+                    "Molecule does not have the DENOPTIMGraph encoding.");
+        }
+
+        apProperty = mol.getProperty("FITNESS");
+        if (apProperty != null)
+        {
+            fitness = Double.parseDouble(apProperty.toString());
+        }
+        else
+        {
+            DENOPTIMLogger.appLogger.log(Level.SEVERE,
+                        "Molecule does not have the associated fitness.");
+            throw new DENOPTIMException(
+                        "Molecule does not have the associated fitness.");
+        }
+
+        apProperty = mol.getProperty("SMILES");
+        if (apProperty != null)
+        {
+            molsmiles = apProperty.toString().trim();
+        }
+        else
+        {
+            molsmiles = DENOPTIMMoleculeUtils.getSMILESForMolecule(mol);
+        }
+
+        apProperty = mol.getProperty("InChi");
+        if (apProperty != null)
+        {
+            molinchi = apProperty.toString();
+        }
+        if (mol.getProperty("UID") != null)
+        {
+            molinchi = mol.getProperty("UID").toString();
+        }
+        else
+        {
+            ObjectPair pr = DENOPTIMMoleculeUtils.getInchiForMolecule(mol);
+            if (pr.getFirst() != null)
+            {
+                molinchi = pr.getFirst().toString();
+            }
+        }
+
+        // Skip molecules with previously known UID
+        if (!lstUIDs.add(molinchi))
+        {
+            return null;
+        }
+
+        int ctr = GraphUtils.getUniqueMoleculeIndex();
+        String molName = "M" + GenUtils.getPaddedString(8, ctr);
+        int gctr = GraphUtils.getUniqueGraphIndex();
+        graph.setGraphId(gctr);
+        graph.setMsg("NEW");
+        mol.setProperty("GCODE", gctr);
+        mol.setProperty(CDKConstants.TITLE, molName);
+        mol.setProperty("GraphENC", graph.toString());
+        mol.setProperty("GraphMsg", "From Initial Population File");
+
+        DENOPTIMMolecule pmol =
+                    new DENOPTIMMolecule(graph, molinchi, molsmiles, fitness);
+        pmol.setImageFile(null);
+        return pmol;
     }
 
 //------------------------------------------------------------------------------
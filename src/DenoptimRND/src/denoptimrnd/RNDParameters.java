@@ -130,6 +130,11 @@ public class RNDParameters
      */
     protected static int print_level = 0; 
 
+    /**
+     * Minimum level of the records written to the log file
+     */
+    protected static Level logLevel = Level.INFO;
+
    
 //------------------------------------------------------------------------------
 
@@ -340,6 +345,16 @@ public class RNDParameters
                     continue;
                 }
 
+                if (line.toUpperCase().startsWith("RND-LOGLEVEL="))
+                {
+                    option = line.substring(line.indexOf("=") + 1).trim();
+                    if (option.length() > 0)
+                    {
+                        logLevel = DENOPTIMLogger.parseLevel(option);
+                    }
+                    continue;
+                }
+
                 if (line.toUpperCase().startsWith("RND-SORTORDER="))
                 {
                     option = line.substring(line.indexOf("=") + 1).trim();
@@ -480,7 +495,7 @@ public class RNDParameters
 
         try
         {
-            DENOPTIMLogger.getInstance().setupLogger(logFile);
+            DENOPTIMLogger.getInstance().setupLogger(logFile, logLevel);
             FileUtils.copyFileToDirectory(new File(paramFile), 
 							     new File(dataDir));
         }
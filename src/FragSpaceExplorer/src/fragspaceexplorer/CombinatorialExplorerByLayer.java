@@ -19,15 +19,33 @@
 package fragspaceexplorer;
 
 import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 
 import org.apache.commons.io.FileUtils;
@@ -41,6 +59,7 @@ import denoptim.fragspace.FragsCombination;
 import denoptim.fragspace.FragsCombinationIterator;
 import denoptim.io.DenoptimIO;
 import denoptim.logging.DENOPTIMLogger;
+import denoptim.logging.MetricsRegistry;
 import denoptim.molecule.DENOPTIMAttachmentPoint;
 import denoptim.molecule.DENOPTIMGraph;
 import denoptim.molecule.DENOPTIMVertex;
@@ -61,14 +80,9 @@ import denoptim.utils.TaskUtils;
 public class CombinatorialExplorerByLayer
 {
     /**
-     * Storage of references to the submitted subtasks as <code>Future</code>
+     * The graph building tasks of the current level that are in flight
      */
-    final List<Future<Object>> futures;
-
-    /**
-     * Storage of references to the submitted subtasks.
-     */
-    final ArrayList<GraphBuildingTask> submitted;
+    private TaskWindow window;
 
     /**
      * Asynchronous tasks manager 
@@ -86,20 +100,39 @@ public class CombinatorialExplorerByLayer
     private boolean restartFromChkPt =  FSEParameters.restartFromCheckPoint();
 
     /**
-     * Number of serialized graphs recovered from previous run database
-     * upon restart from checkpoint file
+     * Flag identifying the first iteration after restart from checkpoint
      */
-    private int serFromChkRestart = 0;
+    private boolean firstAfterRestart = false;
 
     /**
-     * If any, here we stores the exception returned by a subtask
+     * Journal of the completed tasks of this run
      */
-    private Throwable thrownByTask;
+    private FSEJournal journal;
 
     /**
-     * Flag identifying the first iteration after restart from checkpoint
+     * State of the exploration according to the journal of the run we are
+     * restarting from, or <code>null</code>. Used only for the first level
+     * after restart.
      */
-    private boolean firstAfterRestart = false;
+    private FSEJournal.State journalState = null;
+
+    /**
+     * Units of work of the parallel exploration of root graphs that have not
+     * been found safely completed yet.
+     */
+    private final LinkedList<WorkUnit> units = new LinkedList<WorkUnit>();
+
+    /**
+     * ID of the latest root graph for which all units of work have been 
+     * defined in the parallel exploration of root graphs
+     */
+    private int lastOpenedRootId = -1;
+
+    /**
+     * Number of tasks submitted by the units of work of the parallel 
+     * exploration of root graphs
+     */
+    private final AtomicInteger submittedByUnits = new AtomicInteger(0);
 
 
 //-----------------------------------------------------------------------------
@@ -110,9 +143,6 @@ public class CombinatorialExplorerByLayer
 
     public CombinatorialExplorerByLayer()
     {
-        futures = new ArrayList<>();
-        submitted = new ArrayList<>();
-
         tpe = new ThreadPoolExecutor(FSEParameters.getNumberOfCPU(),
                                        FSEParameters.getNumberOfCPU(), 
                                        Long.MAX_VALUE,
@@ -142,7 +172,7 @@ public class CombinatorialExplorerByLayer
                 }
                 catch (InterruptedException ie)
                 {
-                    cleanup(tpe, futures, submitted);
+                    cleanup(tpe);
                     // (Re-)Cancel if current thread also interrupted
                     tpe.shutdownNow();
                     // Preserve interrupt status
@@ -184,118 +214,85 @@ public class CombinatorialExplorerByLayer
 
     public void stopRun()
     {
-        cleanup(tpe, futures, submitted);
+        cleanup(tpe);
         tpe.shutdown();
     }
 
 //------------------------------------------------------------------------------
 
     /**
-     * Looks for exceptions in the subtasks and, if any, store its reference
-     * locally to allow reporting it back from the main thread.
-     * @return <code>true</code> if any of the subtasks has thrown an exception
+     * Uses the latest safely completed task, i.e., the last completed task
+     * preceding the earliest non-completed task, to create a checkpoint file
      */
 
-    private boolean subtaskHasException()
+    private void makeCheckPoint() throws DENOPTIMException
     {
-        boolean hasException = false;
-        for (GraphBuildingTask tsk : submitted)
+        window.collectCompleted();
+        GraphBuildingTask tsk = window.getLatestSafelyCompletedTask();
+        if (tsk == null)
         {
-            if (tsk.foundException())
-            {
-                hasException = true;
-                thrownByTask = tsk.getException();
-                break;
-            }
+            return;
         }
-
-        return hasException;
+        FSECheckPoint chk = FSEParameters.getCheckPoint();
+        chk.setSafelyCompletedGraphId(tsk.getGraphId());
+        chk.setRootId(tsk.getRootId());
+        chk.setNextIds(tsk.getNextIds());
+        chk.setLevel(tsk.getLevel());
+        chk.setUnqVrtId(GraphUtils.getUniqueVertexIndex());
+        chk.setUnqGraphId(GraphUtils.getUniqueGraphIndex());
+        chk.setUnqMolId(GraphUtils.getUniqueMoleculeIndex());
+        FSEUtils.serializeCheckPoint();
     }
 
 //------------------------------------------------------------------------------
 
     /**
-     * Check for completion of all subtasks
-     * @return <code>true</code> if all subtasks are completed
+     * Prepares the restart from the journal of a previous run: identifies
+     * the level to resume and the combinations of fragments that have been
+     * completed, and removes the graphs stored by the tasks that were not
+     * completed. Only the graphs recorded in the journal are considered, so
+     * the storage folders are not inspected.
+     * @param chk the checkpoint of the previous run, which is used only to
+     * make sure unique indexes are not reused.
+     * @return the level to resume
      */
 
-    private boolean allTasksCompleted()
+    private int resumeFromJournal(FSECheckPoint chk) throws DENOPTIMException
     {
-        boolean allDone = true;
-        for (GraphBuildingTask tsk : submitted)
+        String journalFile = FSEUtils.getNameOfJournalFile();
+        journalState = FSEJournal.read(journalFile);
+        int level = journalState.getLevelToResume();
+
+        int unqVrtId = Math.max(chk.getUnqVrtId(), journalState.getUnqVrtId());
+        if (unqVrtId > GraphUtils.peekUniqueVertexIndex())
         {
-            if (!tsk.isCompleted())
-            {
-                allDone = false;
-                break;
-            }
+            GraphUtils.resetUniqueVertexCounter(unqVrtId);
         }
-
-        return allDone;
-    }
-
-//------------------------------------------------------------------------------
-
-    /**
-     * Identify the task preceding the earliest non-completed task and use it to
-     * create a checkpoint file
-     */
-
-    private void makeCheckPoint() throws DENOPTIMException
-    {
-        for (int i=0; i<submitted.size(); i++)
+        int unqGraphId = Math.max(chk.getUnqGraphId(),
+                                  journalState.getUnqGraphId());
+        if (unqGraphId > GraphUtils.peekUniqueGraphIndex())
         {
-            GraphBuildingTask tsk = submitted.get(i);
-            int idToChkPt = -1;
-            boolean storeChkPt = false;
-            if (!tsk.isCompleted() && i>0)
-            {
-                if (submitted.get(i-1).isCompleted())
-                {
-                    // The last completed task preceeding the first uncompleted
-                    idToChkPt = i-1;
-                    storeChkPt = true;
-                }
-            }
-            else if (tsk.isCompleted() && (i==submitted.size()-1))
-            {
-                idToChkPt = i;
-                storeChkPt = true;
-            }
-            if (storeChkPt)
-            {
-                tsk = submitted.get(idToChkPt);
-                FSECheckPoint chk = FSEParameters.getCheckPoint();
-                chk.setSafelyCompletedGraphId(tsk.getGraphId());
-                chk.setRootId(tsk.getRootId());
-                chk.setNextIds(tsk.getNextIds());
-                chk.setLevel(tsk.getLevel());
-                chk.setUnqVrtId(GraphUtils.getUniqueVertexIndex());
-                chk.setUnqGraphId(GraphUtils.getUniqueGraphIndex());
-                chk.setUnqMolId(GraphUtils.getUniqueMoleculeIndex());
-                FSEUtils.serializeCheckPoint();
-                break;
-            }
+            GraphUtils.resetUniqueGraphCounter(unqGraphId);
         }
-    }
-
-//------------------------------------------------------------------------------
-
-    /**
-     * @return the number of subtasks submitted, which includes both the
-     * tasks submitted by the executor (i.e., child tasks) and any other tasks 
-     * possibly submitted by such child tasks.
-     */
-
-    private int countSubTasks()
-    {
-        int tot = 0;
-        for (GraphBuildingTask tsk : submitted)
+        int unqMolId = Math.max(chk.getUnqMolId(), journalState.getUnqMolId());
+        if (unqMolId > GraphUtils.peekUniqueMoleculeIndex())
         {
-            tot = tot + tsk.getNumberOfSubTasks();
+            GraphUtils.resetUniqueMoleculeCounter(unqMolId);
         }
 
-        return tot;
+        Set<Integer> unsafe = new HashSet<Integer>(
+                                   journalState.getUnfinishedGraphIds(level));
+        String msg = "Restarting FragSpaseExplorer from journal '"
+                     + journalFile + "'. Resuming level " + level
+                     + " from the combinations of fragments that were not "
+                     + "completed. Removing " + unsafe.size()
+                     + " graphs stored by tasks that were not completed.";
+        DENOPTIMLogger.appLogger.log(Level.WARNING,msg);
+        FSEUtils.removeStoredGraphs(level, unsafe);
+
+        journal = new FSEJournal(journalFile, true);
+        journal.recordRestart();
+        return level;
     }
 
 //------------------------------------------------------------------------------
@@ -309,11 +306,18 @@ public class CombinatorialExplorerByLayer
         String msg = "";
         StopWatch watch = new StopWatch();
         watch.start();
+        MetricsRegistry.reset();
 
         tpe.prestartAllCoreThreads();
   
         int level = -1;
-        if (restartFromChkPt)
+        if (restartFromChkPt
+                && DenoptimIO.checkExists(FSEUtils.getNameOfJournalFile()))
+        {
+            firstAfterRestart = true;
+            level = resumeFromJournal(FSEParameters.getCheckPoint());
+        }
+        else if (restartFromChkPt)
         {
             firstAfterRestart = true;
             FSECheckPoint chk = FSEParameters.getCheckPoint();
@@ -322,28 +326,47 @@ public class CombinatorialExplorerByLayer
             GraphUtils.resetUniqueGraphCounter(chk.getUnqGraphId());
             GraphUtils.resetUniqueMoleculeCounter(chk.getUnqMolId());
 
-            msg = "Restarting FragSpaseExplorer from checkpoint file. "
-                  + DENOPTIMConstants.EOL
-                  + "All graphs with ID higher than "
-                  + chk.getLatestSafelyCompletedGraphId()
-                  + " are now being re-generated. Be aware that this "
-                  + "incluses graphs managed either by "
-                  + "partially executed or completed tasks of the previous "
-                  + "run. "
-                  + DENOPTIMConstants.EOL
-                  + "To avoid duplicates, you should remove from the results "
-                  + "of the previos run all graphs with ID higher than "
-                  + chk.getLatestSafelyCompletedGraphId()
-                  + ". You can find them in the "
-                  + "index file ('" + DENOPTIMConstants.FSEIDXNAMEROOT + level
-                  + ".txt'). ";
+            if (chk.hasPendingRanges())
+            {
+                msg = "Restarting FragSpaseExplorer from checkpoint file. "
+                      + DENOPTIMConstants.EOL
+                      + "All graphs with ID equal or higher than "
+                      + chk.getUnqGraphId() + ", and those with ID in " 
+                      + chk.getUnsafeGraphIds()
+                      + " are now being re-generated. Be aware that this "
+                      + "incluses graphs managed either by "
+                      + "partially executed or completed tasks of the "
+                      + "previous run. "
+                      + DENOPTIMConstants.EOL
+                      + "To avoid duplicates, you should remove from the "
+                      + "results of the previos run all such graphs. You can "
+                      + "find them in the index file ('" 
+                      + DENOPTIMConstants.FSEIDXNAMEROOT + level + ".txt'). ";
+            }
+            else
+            {
+                msg = "Restarting FragSpaseExplorer from checkpoint file. "
+                      + DENOPTIMConstants.EOL
+                      + "All graphs with ID higher than "
+                      + chk.getLatestSafelyCompletedGraphId()
+                      + " are now being re-generated. Be aware that this "
+                      + "incluses graphs managed either by "
+                      + "partially executed or completed tasks of the "
+                      + "previous run. "
+                      + DENOPTIMConstants.EOL
+                      + "To avoid duplicates, you should remove from the "
+                      + "results of the previos run all graphs with ID higher "
+                      + "than " + chk.getLatestSafelyCompletedGraphId()
+                      + ". You can find them in the "
+                      + "index file ('" + DENOPTIMConstants.FSEIDXNAMEROOT 
+                      + level + ".txt'). ";
+            }
             DENOPTIMLogger.appLogger.log(Level.WARNING,msg);
 
             Collection<File> lst = FileUtils.listFiles(
             		new File(FSEUtils.getNameOfStorageDir(level)),
             		new String[] {DENOPTIMConstants.SERGFILENAMEEXT},false);
             // Keep only safely completed serialized graphs
-            serFromChkRestart = lst.size();
             for (File f : lst)
             {
                 String fName = f.getName();
@@ -351,16 +374,30 @@ public class CombinatorialExplorerByLayer
                 		DENOPTIMConstants.SERGFILENAMEROOT.length(),
                 		fName.length() 
                 		- DENOPTIMConstants.SERGFILENAMEEXT.length()-1));
-                if (serGrphID > chk.getLatestSafelyCompletedGraphId())
+                boolean unsafe;
+                if (chk.hasPendingRanges())
+                {
+                    unsafe = serGrphID >= chk.getUnqGraphId()
+                            || chk.getUnsafeGraphIds().contains(serGrphID);
+                }
+                else
+                {
+                    unsafe = serGrphID > chk.getLatestSafelyCompletedGraphId();
+                }
+                if (unsafe)
                 {
                     msg = "Removing non-safely completed graph '" + fName + "'";
                     DENOPTIMLogger.appLogger.log(Level.WARNING,msg);
-                    serFromChkRestart--;
                     DenoptimIO.deleteFile(FSEUtils.getNameOfStorageDir(level)
                     		+ File.separator + fName);
                 }
             }
         }
+        if (journal == null)
+        {
+            journal = new FSEJournal(FSEUtils.getNameOfJournalFile(), false);
+        }
+        FSEUtils.setJournal(journal);
 
         boolean interrupted = false;
         while (level <= FSEParameters.getMaxLevel())
@@ -368,6 +405,10 @@ public class CombinatorialExplorerByLayer
             msg = "Starting exploration of level " + level; 
             DENOPTIMLogger.appLogger.log(Level.INFO,msg);
 
+            // Tasks are tracked in the order of combinations, unless the
+            // root graphs are explored in parallel (see
+            // exploreRootsInParallel)
+            window = new TaskWindow(true);
             int numSubTasks = exploreCombinationsAtGivenLevel(level);
 
             if (numSubTasks > 0)
@@ -378,19 +419,31 @@ public class CombinatorialExplorerByLayer
                 {
                     long endTime = System.currentTimeMillis();
                     long millis = (endTime - startTime);
-                    if (allTasksCompleted())
+                    boolean allDone;
+                    try
+                    {
+                        allDone = window.awaitCompletion(
+                                                  FSEParameters.getWaitStep());
+                    }
+                    catch (InterruptedException ie)
                     {
-                        Collection<File> lst = FileUtils.listFiles(
-                        		new File(FSEUtils.getNameOfStorageDir(level)),
-                        		new String[]{DENOPTIMConstants.SERGFILENAMEEXT},
-                                                                         false);
-                        int outCount = lst.size() - serFromChkRestart;
-                        int totSubmSubTasks = countSubTasks();
+                        throw new DENOPTIMException(ie);
+                    }
+                    if (window.hasFailed())
+                    {
+                        stopRun();
+                        msg = "Exception in submitted task.";
+                        throw new DENOPTIMException(msg,window.getFailure());
+                    }
+                    if (allDone)
+                    {
+                        int outCount = FSEUtils.getNumberOfStoredGraphs(level);
+                        int totSubmSubTasks = window.getNumProducedGraphs();
                         if (outCount != totSubmSubTasks  &&  level > -1)
                         {
                             msg = "Mismatch between the number of submitted "
                                   + "tasks (" + totSubmSubTasks + ") and those "
-                                  + "listed in " 
+                                  + "stored in "
                                   + FSEUtils.getNameOfStorageDir(level)
                                   + "(" + outCount + ")";
                             DENOPTIMLogger.appLogger.log(Level.SEVERE,msg);
@@ -398,15 +451,6 @@ public class CombinatorialExplorerByLayer
                         }
                         break;
                     }
-                    else 
-                    {
-                        if (subtaskHasException())
-                        {
-                            stopRun();
-                            msg = "Exception in submitted task.";
-                            throw new DENOPTIMException(msg,thrownByTask);
-                        }
-                    }
 
                     if (verbosity > 0)
                     {
@@ -427,20 +471,11 @@ public class CombinatorialExplorerByLayer
                         interrupted = true;
                         break;
                     }
-
-                    try
-                    {
-                        Thread.sleep(FSEParameters.getWaitStep());
-                    }
-                    catch (Throwable t)
-                    {
-                        throw new DENOPTIMException(t);
-                    }
                 }
             }
 
             // Clean queue
-            cleanup(tpe, futures, submitted);
+            cleanup(tpe);
 
             // Level and all tasks completed
             if (interrupted)
@@ -455,6 +490,12 @@ public class CombinatorialExplorerByLayer
                     + "----------------------------------------" 
                     + DENOPTIMConstants.EOL;
                 DENOPTIMLogger.appLogger.log(Level.INFO,msg);
+                journal.recordCompletedLevel(level);
+
+                // Report performance metrics of this level
+                MetricsRegistry.writeReport("Level" + level,
+                        FSEParameters.getWorkDirectory()
+                        + DENOPTIMConstants.FSEP + "metrics");
             }
 
             // Increment level index
@@ -495,11 +536,14 @@ public class CombinatorialExplorerByLayer
             if (restartFromChkPt)
             {
                 restartFromChkPt = false;
+                journalState = null;
             }
         }
 
         // shutdown threadpool
         tpe.shutdown();
+        FSEUtils.setJournal(null);
+        journal.close();
 
         // closing messages
         watch.stop();
@@ -509,6 +553,26 @@ public class CombinatorialExplorerByLayer
         DENOPTIMLogger.appLogger.log(Level.INFO, msg);
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * @param level the current level
+     * @param rootGraph the root graph
+     * @return the indexes of the combinations of fragments on the given root
+     * graph that were completed by the run we are restarting from, or
+     * <code>null</code> if none.
+     */
+
+    private BitSet getCompletedCombinations(int level, DENOPTIMGraph rootGraph)
+    {
+        if (journalState == null)
+        {
+            return null;
+        }
+        return journalState.getCompletedCombinations(level,
+                                                     rootGraph.getGraphId());
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -585,10 +649,18 @@ public class CombinatorialExplorerByLayer
                        new String[] {DENOPTIMConstants.SERGFILENAMEEXT}, false);
         ArrayList<File> lstFiles = new ArrayList(files);
         Collections.sort(lstFiles);
+
+        if (FSEParameters.getNumberOfProducers() > 1 || (restartFromChkPt 
+                && journalState == null
+                && FSEParameters.getCheckPoint().hasPendingRanges()))
+        {
+            return exploreRootsInParallel(level, lstFiles);
+        }
+
         for (File file : lstFiles) 
         {
             cntRoot++;
-            if (restartFromChkPt && 
+            if (restartFromChkPt && journalState == null &&
                FSEParameters.getCheckPoint().serFileAlreadyUsed(file.getName()))
             {
                 continue;
@@ -600,13 +672,20 @@ public class CombinatorialExplorerByLayer
             FragsCombinationIterator fcf = new FragsCombinationIterator(
                                                                      rootGraph);
 
-            if (restartFromChkPt && firstAfterRestart)
+            if (restartFromChkPt && journalState == null && firstAfterRestart)
             {
                 firstAfterRestart = false;
                 fcf.setStartingPoint(FSEParameters.getCheckPoint()
                 		.getNextIds());
             }
 
+            // Combinations completed by the run we are restarting from
+            BitSet done = getCompletedCombinations(level, rootGraph);
+            if (done != null && done.cardinality() >= fcf.getTotNumbCombs())
+            {
+                continue;
+            }
+
             // Print summary
             if (verbosity > 0)
             {
@@ -628,14 +707,19 @@ public class CombinatorialExplorerByLayer
             {
                 while (fcf.hasNext())
                 {
-                    if (subtaskHasException())
+                    if (window.hasFailed())
                     {
                         stopRun();
                         msg = "Exception in submitted task.";
-                        throw new DENOPTIMException(msg,thrownByTask);
+                        throw new DENOPTIMException(msg,window.getFailure());
                     }
 
+                    int combIdx = fcf.getNextCombIndex();
                     FragsCombination fragsToAdd = fcf.next();
+                    if (done != null && done.get(combIdx))
+                    {
+                        continue;
+                    }
 
                     GraphBuildingTask task = new GraphBuildingTask(
                     		rootGraph, fragsToAdd, level,
@@ -644,9 +728,9 @@ public class CombinatorialExplorerByLayer
 
                     ArrayList<Integer> nextIds = fcf.getNextIds();
                     task.setNextIds(nextIds);
+                    task.setCombinationIndex(combIdx);
 
-                    submitted.add(task);
-                    futures.add(tpe.submit(task));
+                    window.submit(task);
                     numSubTasks++;
                     if (itersFromChkPt >= FSEParameters.getCheckPointStep())
                     {
@@ -734,13 +818,13 @@ public class CombinatorialExplorerByLayer
             }
             catch (DENOPTIMException dex)
             {
-                cleanup(tpe, futures, submitted);
+                cleanup(tpe);
                 tpe.shutdown();
                 throw dex;
             }
             catch (Exception ex)
             {
-                cleanup(tpe, futures, submitted);
+                cleanup(tpe);
                 tpe.shutdown();
                 throw new DENOPTIMException(ex);
             }
@@ -782,6 +866,473 @@ public class CombinatorialExplorerByLayer
         return numSubTasks;
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * A range of combinations of fragments on a given root graph. Each unit
+     * is consumed by a single producer thread, which submits the tasks for 
+     * the combinations in the range, in the order given by the 
+     * {@link FragsCombinationIterator}.
+     */
+
+    private class WorkUnit implements Callable<Integer>
+    {
+        /**
+         * The file with the serialized root graph
+         */
+        private final File rootFile;
+
+        /**
+         * The graph ID of the root graph
+         */
+        private final int rootId;
+
+        /**
+         * The current level
+         */
+        private final int level;
+
+        /**
+         * Index of the first combination in this unit
+         */
+        private final int first;
+
+        /**
+         * Index of the combination following the last one in this unit
+         */
+        private final int end;
+
+        /**
+         * The tasks submitted by this unit following the leading completed
+         * ones, in the order of combinations. Completed tasks are replaced
+         * by the IDs of their graphs, so the tasks referenced here are at
+         * most those in flight.
+         */
+        private final ArrayDeque<TaskRecord> frontier =
+                                                new ArrayDeque<TaskRecord>();
+
+        /**
+         * Index of the combination of the latest of the leading completed
+         * tasks, or -1 if no task is completed yet
+         */
+        private int lastDoneCombIdx = -1;
+
+        /**
+         * Combinations completed by the run we are restarting from, or
+         * <code>null</code>
+         */
+        private final BitSet done;
+
+        /**
+         * Flag signalling that all the tasks of this unit have been submitted
+         */
+        private volatile boolean allSubmitted = false;
+
+        private WorkUnit(File rootFile, int rootId, int level, int first, 
+                                                      int end, BitSet done)
+        {
+            this.rootFile = rootFile;
+            this.rootId = rootId;
+            this.level = level;
+            this.first = first;
+            this.end = end;
+            this.done = done;
+        }
+
+        @Override
+        public Integer call() throws Exception
+        {
+            // Each unit works on its own copy of the root graph
+            DENOPTIMGraph rootGraph = 
+                                DenoptimIO.deserializeDENOPTIMGraph(rootFile);
+            FragsCombinationIterator fcf = 
+                                       new FragsCombinationIterator(rootGraph);
+            fcf.setRange(first, end);
+            while (fcf.hasNext())
+            {
+                if (Thread.currentThread().isInterrupted())
+                {
+                    throw new InterruptedException("Producer of combinations "
+                                                   + "interrupted.");
+                }
+
+                int combIdx = fcf.getNextCombIndex();
+                FragsCombination fragsToAdd = fcf.next();
+                if (done != null && done.get(combIdx))
+                {
+                    continue;
+                }
+
+                // Creation and recording of the task must not overlap with 
+                // the definition of a checkpoint
+                GraphBuildingTask task;
+                TaskRecord rec;
+                GraphBuildingTask.GRAPHIDSLOCK.readLock().lock();
+                try
+                {
+                    task = new GraphBuildingTask(rootGraph, fragsToAdd, level,
+                            FSEParameters.getWorkDirectory(),
+                            FSEParameters.getVerbosity());
+                    task.setNextIds(fcf.getNextIds());
+                    task.setCombinationIndex(combIdx);
+                    rec = new TaskRecord(task);
+                    synchronized (frontier)
+                    {
+                        frontier.addLast(rec);
+                    }
+                }
+                finally
+                {
+                    GraphBuildingTask.GRAPHIDSLOCK.readLock().unlock();
+                }
+
+                window.submit(task, () -> taskEnded(rec));
+
+                int n = submittedByUnits.incrementAndGet();
+                if (n % FSEParameters.getCheckPointStep() == 0)
+                {
+                    makeCheckPointOfUnits(level);
+                }
+            }
+            allSubmitted = true;
+            return fcf.getNumGeneratedCombs();
+        }
+
+        /**
+         * Drops the reference to a task that has ended, and removes the
+         * leading completed tasks from the frontier.
+         */
+        private void taskEnded(TaskRecord rec)
+        {
+            synchronized (frontier)
+            {
+                rec.release();
+                while (!frontier.isEmpty() && frontier.peekFirst().completed)
+                {
+                    lastDoneCombIdx = frontier.pollFirst().combIdx;
+                }
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * What a checkpoint needs to know about a task of a {@link WorkUnit}.
+     * The reference to the task is kept only until the task ends.
+     */
+
+    private static class TaskRecord
+    {
+        private final int combIdx;
+        private GraphBuildingTask task;
+        private List<Integer> graphIds = null;
+        private boolean completed = false;
+
+        private TaskRecord(GraphBuildingTask task)
+        {
+            this.task = task;
+            this.combIdx = task.getCombinationIndex();
+        }
+
+        private void release()
+        {
+            graphIds = new ArrayList<Integer>(task.getGraphIds());
+            completed = task.isCompleted();
+            task = null;
+        }
+
+        private List<Integer> getGraphIds()
+        {
+            return task == null ? graphIds : task.getGraphIds();
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Generate graphs by exploring all combination of fragments on the given
+     * root graphs using multiple producers of combinations. The combinations
+     * of each root graph are split into units of work (i.e., ranges of 
+     * combinations) that are consumed by a work-stealing pool of 
+     * {@link FSEParameters#getNumberOfProducers()} threads, so that
+     * multiple roots are expanded concurrently.
+     * @param level the current relative level
+     * @param lstFiles the sorted list of files with the root graphs.
+     * @return the number of submitted tasks
+     * @throws DENOPTIMException
+     */
+
+    private int exploreRootsInParallel(int level, ArrayList<File> lstFiles)
+                                                        throws DENOPTIMException
+    {
+        String msg = "";
+        FSECheckPoint chk = FSEParameters.getCheckPoint();
+        boolean resume = restartFromChkPt && journalState == null
+                && chk.hasPendingRanges();
+        firstAfterRestart = false;
+        submittedByUnits.set(0);
+        window = new TaskWindow(false);
+
+        int numProducers = FSEParameters.getNumberOfProducers();
+        int unitSize = FSEParameters.getWorkUnitSize();
+        ExecutorService producers = Executors.newWorkStealingPool(numProducers);
+
+        // Bound the number of units waiting for a producer
+        Semaphore permits = new Semaphore(2 * numProducers);
+
+        List<Future<Integer>> unitFutures = new ArrayList<Future<Integer>>();
+        try
+        {
+            for (File file : lstFiles)
+            {
+                DENOPTIMGraph rootGraph = 
+                                    DenoptimIO.deserializeDENOPTIMGraph(file);
+                int rootId = rootGraph.getGraphId();
+
+                // Define the units of work for this root
+                ArrayList<int[]> ranges = new ArrayList<int[]>();
+                FragsCombinationIterator fcf = 
+                                       new FragsCombinationIterator(rootGraph);
+                if (resume && (chk.serFileAlreadyUsed(file.getName()) 
+                        || file.getName().equals(
+                              FSEUtils.getBaseNameOfStorageFile(chk.getRootId()))))
+                {
+                    // Root opened in the previous run: do only what was left
+                    for (int[] r : chk.getPendingRanges())
+                    {
+                        if (r[0] == rootId)
+                        {
+                            ranges.add(new int[] {r[1], r[2]});
+                        }
+                    }
+                }
+                else
+                {
+                    for (int i=0; i<fcf.getTotNumbCombs(); i=i+unitSize)
+                    {
+                        ranges.add(new int[] {i, 
+                               Math.min(i+unitSize, fcf.getTotNumbCombs())});
+                    }
+                }
+
+                if (verbosity > 0)
+                {
+                    StringBuilder sb = new StringBuilder(512);
+                    sb.append("Root: " + file.getName() 
+                                                     + DENOPTIMConstants.EOL);
+                    sb.append(" - #Usable APs on root = "); 
+                    sb.append(fcf.getNumRootAPs() + DENOPTIMConstants.EOL);
+                    sb.append(" - Size of candidates sets = "); 
+                    sb.append(fcf.getSizesOfCandidateSets()
+                                                     + DENOPTIMConstants.EOL);
+                    sb.append(" - Total #Combinations = ");
+                    sb.append(fcf.getTotNumbCombs() + DENOPTIMConstants.EOL);
+                    sb.append(" - #Units of work = ");
+                    sb.append(ranges.size() + DENOPTIMConstants.EOL);
+                    sb.append(" - Root graph: " + DENOPTIMConstants.EOL 
+                                                                 + rootGraph);
+                    msg = sb.toString() + DENOPTIMConstants.EOL;
+                    DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+                }
+
+                // All units of a root are registered at once, so that any
+                // checkpoint can account for the units not started yet.
+                // Units completed by the run we are restarting from are
+                // skipped.
+                BitSet done = getCompletedCombinations(level, rootGraph);
+                ArrayList<WorkUnit> unitsOfRoot = new ArrayList<WorkUnit>();
+                for (int[] r : ranges)
+                {
+                    if (done != null && done.get(r[0], r[1]).cardinality()
+                                                                == r[1] - r[0])
+                    {
+                        continue;
+                    }
+                    unitsOfRoot.add(new WorkUnit(file, rootId, level, r[0], 
+                                                                 r[1], done));
+                }
+                synchronized (units)
+                {
+                    units.addAll(unitsOfRoot);
+                    lastOpenedRootId = rootId;
+                }
+
+                for (WorkUnit unit : unitsOfRoot)
+                {
+                    while (!permits.tryAcquire(FSEParameters.getWaitStep(),
+                                                        TimeUnit.MILLISECONDS))
+                    {
+                        checkUnitsAndTasks(unitFutures);
+                    }
+                    unitFutures.add(producers.submit(new Callable<Integer>() {
+                        @Override
+                        public Integer call() throws Exception
+                        {
+                            try
+                            {
+                                return unit.call();
+                            }
+                            finally
+                            {
+                                permits.release();
+                            }
+                        }
+                    }));
+                }
+            }
+
+            // Wait for all units to have submitted their tasks
+            int total = 0;
+            for (Future<Integer> uf : unitFutures)
+            {
+                while (true)
+                {
+                    try
+                    {
+                        total = total + uf.get(FSEParameters.getWaitStep(),
+                                                        TimeUnit.MILLISECONDS);
+                        break;
+                    }
+                    catch (TimeoutException e)
+                    {
+                        checkUnitsAndTasks(unitFutures);
+                    }
+                }
+            }
+
+            msg = "Total number of combination of fragments generated "
+                  + "for level " + level + " = " + total;
+            DENOPTIMLogger.appLogger.log(Level.INFO, msg);
+
+            return submittedByUnits.get();
+        }
+        catch (DENOPTIMException dex)
+        {
+            producers.shutdownNow();
+            cleanup(tpe);
+            tpe.shutdown();
+            throw dex;
+        }
+        catch (ExecutionException ex)
+        {
+            producers.shutdownNow();
+            cleanup(tpe);
+            tpe.shutdown();
+            throw new DENOPTIMException("Exception in producer of "
+                                        + "combinations.", ex.getCause());
+        }
+        catch (Exception ex)
+        {
+            producers.shutdownNow();
+            cleanup(tpe);
+            tpe.shutdown();
+            throw new DENOPTIMException(ex);
+        }
+        finally
+        {
+            producers.shutdown();
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Looks for failures in the units of work and in the submitted tasks.
+     * @param unitFutures the units of work submitted so far.
+     * @throws DENOPTIMException if any task has thrown an exception.
+     * @throws ExecutionException if any unit of work has thrown an exception.
+     * @throws InterruptedException
+     */
+
+    private void checkUnitsAndTasks(List<Future<Integer>> unitFutures) 
+            throws DENOPTIMException, ExecutionException, InterruptedException
+    {
+        window.collectCompleted();
+        if (window.hasFailed())
+        {
+            throw new DENOPTIMException("Exception in submitted task.",
+                                        window.getFailure());
+        }
+        for (Future<Integer> uf : unitFutures)
+        {
+            if (uf.isDone())
+            {
+                // Throws ExecutionException if the unit failed
+                uf.get();
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Creates a checkpoint file for the parallel exploration of root graphs.
+     * For each unit of work that is not safely completed, the checkpoint
+     * records the range of combinations following the leading completed 
+     * tasks of the unit, and the IDs of the graphs generated by the other 
+     * tasks of the unit. Together with the values of the unique counters, 
+     * this defines a consistent frontier across all active root graphs.
+     * @param level the current level.
+     */
+
+    private synchronized void makeCheckPointOfUnits(int level) 
+                                                        throws DENOPTIMException
+    {
+        ArrayList<int[]> pendingRanges = new ArrayList<int[]>();
+        ArrayList<Integer> unsafeGraphIds = new ArrayList<Integer>();
+        FSECheckPoint chk = FSEParameters.getCheckPoint();
+
+        // No task can generate graph IDs while we define the frontier
+        GraphBuildingTask.GRAPHIDSLOCK.writeLock().lock();
+        try
+        {
+            chk.setUnqVrtId(GraphUtils.getUniqueVertexIndex());
+            chk.setUnqGraphId(GraphUtils.getUniqueGraphIndex());
+            chk.setUnqMolId(GraphUtils.getUniqueMoleculeIndex());
+            synchronized (units)
+            {
+                chk.setRootId(lastOpenedRootId);
+                Iterator<WorkUnit> it = units.iterator();
+                while (it.hasNext())
+                {
+                    WorkUnit unit = it.next();
+                    synchronized (unit.frontier)
+                    {
+                        if (unit.allSubmitted && unit.frontier.isEmpty())
+                        {
+                            it.remove();
+                            continue;
+                        }
+                        // Combinations may have been skipped upon restart
+                        int start = unit.first;
+                        if (unit.lastDoneCombIdx >= 0)
+                        {
+                            start = unit.lastDoneCombIdx + 1;
+                        }
+                        pendingRanges.add(new int[] {unit.rootId, start,
+                                                                   unit.end});
+                        for (TaskRecord rec : unit.frontier)
+                        {
+                            unsafeGraphIds.addAll(rec.getGraphIds());
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            GraphBuildingTask.GRAPHIDSLOCK.writeLock().unlock();
+        }
+
+        chk.setLevel(level);
+        chk.setNextIds(new ArrayList<Integer>());
+        chk.setSafelyCompletedGraphId(-1);
+        chk.setPendingRanges(pendingRanges);
+        chk.setUnsafeGraphIds(unsafeGraphIds);
+        FSEUtils.serializeCheckPoint();
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -823,24 +1374,282 @@ public class CombinatorialExplorerByLayer
      * clean all reference to submitted tasks
      */
 
-    private void cleanup(ThreadPoolExecutor tpe, List<Future<Object>> futures,
-                            ArrayList<GraphBuildingTask> submitted)
+    private void cleanup(ThreadPoolExecutor tpe)
     {
-        for (Future<Object> f : futures)
+        if (window != null)
         {
-            f.cancel(true);
+            window.stopAll();
         }
 
-        for (GraphBuildingTask tsk: submitted)
+        synchronized (units)
         {
-            tsk.stopTask();
+            units.clear();
         }
 
-        submitted.clear();
-
         tpe.getQueue().clear();
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * Bounded window of the graph building tasks submitted to the executor.
+     * Producers of combinations wait for a free slot before submitting a
+     * task, so that the number of tasks (each holding a copy of its root
+     * graph) kept in memory does not depend on the number of combinations.
+     * Completed tasks are collected from an {@link ExecutorCompletionService}
+     * and accounted for by counters, and the first exception thrown by any
+     * task is latched, so that checking the status of a level takes
+     * constant time.
+     * <p>
+     * When tasks are tracked in order of submission (i.e., with a single
+     * producer of combinations) a slot is freed only when its task becomes
+     * safely completed, that is, when all the tasks submitted before it are
+     * completed too. Otherwise, a slot is freed as soon as its task is
+     * completed.
+     * </p>
+     */
+
+    private class TaskWindow
+    {
+        private final ExecutorCompletionService<GraphBuildingTask> ecs =
+                      new ExecutorCompletionService<GraphBuildingTask>(tpe);
+
+        private final Semaphore slots = new Semaphore(
+                               Math.max(1,FSEParameters.getMaxTasksInFlight()));
+
+        /**
+         * Tasks submitted and not yet collected, with their future. The
+         * entry is toggled by both the submitter and the collector, so it
+         * disappears after both, whatever their order.
+         */
+        private final ConcurrentHashMap<Future<GraphBuildingTask>,
+                GraphBuildingTask> inFlight = new ConcurrentHashMap<
+                            Future<GraphBuildingTask>,GraphBuildingTask>();
+
+        /**
+         * Tasks in order of submission following the latest safely completed
+         * one, or <code>null</code> if the order is not tracked.
+         */
+        private final ArrayDeque<GraphBuildingTask> ordered;
+
+        /**
+         * The latest safely completed task, if the order is tracked
+         */
+        private GraphBuildingTask latestSafe = null;
+
+        private final AtomicInteger numSubmitted = new AtomicInteger(0);
+        private final AtomicInteger numCompleted = new AtomicInteger(0);
+
+        /**
+         * Number of graphs produced by the completed tasks
+         */
+        private final AtomicInteger numGraphs = new AtomicInteger(0);
+
+        /**
+         * The first exception thrown by any task
+         */
+        private final AtomicReference<Throwable> failure =
+                                              new AtomicReference<Throwable>();
+
+        private TaskWindow(boolean trackOrder)
+        {
+            ordered = trackOrder ? new ArrayDeque<GraphBuildingTask>() : null;
+        }
+
+        /**
+         * Submits a task as soon as a slot is free, and collects any
+         * completed task.
+         */
+        private void submit(GraphBuildingTask task)
+                             throws DENOPTIMException, InterruptedException
+        {
+            submit(task, null);
+        }
+
+        /**
+         * Submits a task as soon as a slot is free, and collects any
+         * completed task.
+         * @param task the task to submit.
+         * @param onEnd action run by the executing thread when the task ends,
+         * whether successfully or not, or <code>null</code>.
+         */
+        private void submit(GraphBuildingTask task, Runnable onEnd)
+                             throws DENOPTIMException, InterruptedException
+        {
+            while (!slots.tryAcquire())
+            {
+                Future<GraphBuildingTask> f = ecs.poll(
+                         FSEParameters.getWaitStep(), TimeUnit.MILLISECONDS);
+                if (f != null)
+                {
+                    collect(f);
+                }
+                if (hasFailed())
+                {
+                    throw new DENOPTIMException("Exception in submitted task.",
+                                                getFailure());
+                }
+            }
+            if (ordered != null)
+            {
+                synchronized (ordered)
+                {
+                    ordered.addLast(task);
+                }
+            }
+            numSubmitted.incrementAndGet();
+            Future<GraphBuildingTask> f = ecs.submit(
+                                        new Callable<GraphBuildingTask>() {
+                @Override
+                public GraphBuildingTask call()
+                {
+                    try
+                    {
+                        task.call();
+                    }
+                    catch (Throwable t)
+                    {
+                        // The task keeps track of its own exception
+                    }
+                    if (onEnd != null)
+                    {
+                        onEnd.run();
+                    }
+                    return task;
+                }
+            });
+            toggle(f, task);
+            collectCompleted();
+        }
+
+        private void toggle(Future<GraphBuildingTask> f,
+                                                        GraphBuildingTask task)
+        {
+            inFlight.merge(f, task, (a, b) -> null);
+        }
+
+        /**
+         * Collects all the tasks completed so far, without waiting.
+         */
+        private void collectCompleted()
+        {
+            Future<GraphBuildingTask> f;
+            while ((f = ecs.poll()) != null)
+            {
+                collect(f);
+            }
+        }
+
+        private void collect(Future<GraphBuildingTask> f)
+        {
+            GraphBuildingTask task;
+            try
+            {
+                task = f.get();
+            }
+            catch (CancellationException | ExecutionException
+                    | InterruptedException e)
+            {
+                // Only upon cleanup, which stops the whole level
+                return;
+            }
+            toggle(f, task);
+            if (task.foundException())
+            {
+                failure.compareAndSet(null, task.getException());
+            }
+            numGraphs.addAndGet(task.getNumberOfSubTasks());
+            numCompleted.incrementAndGet();
+            if (ordered == null)
+            {
+                slots.release();
+                return;
+            }
+            synchronized (ordered)
+            {
+                while (!ordered.isEmpty() && ordered.peekFirst().isCompleted())
+                {
+                    latestSafe = ordered.pollFirst();
+                    slots.release();
+                }
+            }
+        }
+
+        /**
+         * Waits for the completion of all the submitted tasks.
+         * @param maxWait the maximum time to wait (millisec).
+         * @return <code>true</code> if all submitted tasks are completed.
+         */
+        private boolean awaitCompletion(long maxWait)
+                                                    throws InterruptedException
+        {
+            long deadline = System.currentTimeMillis() + maxWait;
+            while (numCompleted.get() < numSubmitted.get() && !hasFailed())
+            {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0)
+                {
+                    return false;
+                }
+                Future<GraphBuildingTask> f = ecs.poll(left,
+                                                         TimeUnit.MILLISECONDS);
+                if (f != null)
+                {
+                    collect(f);
+                }
+            }
+            return !hasFailed();
+        }
+
+        private GraphBuildingTask getLatestSafelyCompletedTask()
+        {
+            if (ordered == null)
+            {
+                return null;
+            }
+            synchronized (ordered)
+            {
+                return latestSafe;
+            }
+        }
+
+        private boolean hasFailed()
+        {
+            return failure.get() != null;
+        }
+
+        private Throwable getFailure()
+        {
+            return failure.get();
+        }
+
+        private int getNumProducedGraphs()
+        {
+            return numGraphs.get();
+        }
+
+        /**
+         * Cancels the futures and stops the tasks in flight.
+         */
+        private void stopAll()
+        {
+            for (Map.Entry<Future<GraphBuildingTask>,GraphBuildingTask> e :
+                                                            inFlight.entrySet())
+            {
+                e.getKey().cancel(true);
+                e.getValue().stopTask();
+            }
+            inFlight.clear();
+            if (ordered != null)
+            {
+                synchronized (ordered)
+                {
+                    ordered.clear();
+                }
+            }
+        }
+    }
+
 //------------------------------------------------------------------------------   
     
 }
@@ -21,6 +21,7 @@ package fragspaceexplorer;
 import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 
 /**
@@ -39,6 +40,11 @@ import java.util.ArrayList;
 
 public class FSECheckPoint implements Serializable
 {
+    /**
+     * Version UID
+     */
+    private static final long serialVersionUID = 4943182723794815625L;
+
     /**
      * Level
      */
@@ -74,6 +80,23 @@ public class FSECheckPoint implements Serializable
      */
     private ArrayList<Integer> nextIds;
 
+    /**
+     * Ranges of combinations of fragments that were not safely completed
+     * when exploring multiple root graphs in parallel. Each range is given 
+     * as {rootId, first, end}, where first and end (exclusive) are indexes
+     * of combinations as defined by 
+     * {@link denoptim.fragspace.FragsCombinationIterator#setRange(int, int)}.
+     * It is <code>null</code> for checkpoints of sequential explorations.
+     */
+    private ArrayList<int[]> pendingRanges = null;
+
+    /**
+     * IDs of the graphs that have been, or may have been, stored by tasks 
+     * that were not safely completed. Used only together with 
+     * {@link #pendingRanges}.
+     */
+    private ArrayList<Integer> unsafeGraphIds = null;
+
 
 //-----------------------------------------------------------------------------
 
@@ -131,6 +154,43 @@ public class FSECheckPoint implements Serializable
 	return rootId;
     }
 
+//-----------------------------------------------------------------------------
+
+    /**
+     * @return <code>true</code> if this checkpoint was made while exploring
+     * multiple root graphs in parallel.
+     */
+
+    public boolean hasPendingRanges()
+    {
+        return pendingRanges != null;
+    }
+
+//-----------------------------------------------------------------------------
+
+    /**
+     * @return the ranges of combinations that were not safely completed, or
+     * <code>null</code> if this checkpoint does not come from a parallel
+     * exploration.
+     */
+
+    public ArrayList<int[]> getPendingRanges()
+    {
+        return pendingRanges;
+    }
+
+//-----------------------------------------------------------------------------
+
+    /**
+     * @return the IDs of the graphs that may have been stored by tasks that
+     * were not safely completed.
+     */
+
+    public ArrayList<Integer> getUnsafeGraphIds()
+    {
+        return unsafeGraphIds;
+    }
+
 //-----------------------------------------------------------------------------
 
     /**
@@ -230,6 +290,29 @@ public class FSECheckPoint implements Serializable
 	rootId = val;
     }
 
+//-----------------------------------------------------------------------------
+
+    /**
+     * Set the ranges of combinations that were not safely completed.
+     */
+
+    public void setPendingRanges(ArrayList<int[]> ranges)
+    {
+        pendingRanges = ranges;
+    }
+
+//-----------------------------------------------------------------------------
+
+    /**
+     * Set the IDs of the graphs that may have been stored by tasks that were
+     * not safely completed.
+     */
+
+    public void setUnsafeGraphIds(ArrayList<Integer> ids)
+    {
+        unsafeGraphIds = ids;
+    }
+
 //-----------------------------------------------------------------------------
    
     @Override
@@ -244,6 +327,20 @@ public class FSECheckPoint implements Serializable
 	sb.append(", graphId=").append(graphId);
 	sb.append(", rootId=").append(rootId);
 	sb.append(", nextIds=").append(nextIds);
+	if (pendingRanges != null)
+	{
+	    sb.append(", pendingRanges=[");
+	    for (int i=0; i<pendingRanges.size(); i++)
+	    {
+	        if (i > 0)
+	        {
+	            sb.append(", ");
+	        }
+	        sb.append(Arrays.toString(pendingRanges.get(i)));
+	    }
+	    sb.append("]");
+	    sb.append(", unsafeGraphIds=").append(unsafeGraphIds);
+	}
 	return sb.toString();
     }
 
@@ -0,0 +1,536 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fragspaceexplorer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import denoptim.constants.DENOPTIMConstants;
+import denoptim.exception.DENOPTIMException;
+import denoptim.utils.GraphUtils;
+
+/**
+ * Append-only journal of the work done by FragSpaceExplorer. Each record
+ * takes one line, which is terminated by {@value #EOR} and flushed as soon as
+ * it is written, so that, upon a crash, only the last line can be incomplete.
+ * Records are:
+ * <ul>
+ * <li><code>G level rootId combIdx graphId</code>: a graph is about to be
+ * stored by the task working on the combination of fragments with index
+ * <code>combIdx</code> (see
+ * {@link denoptim.fragspace.FragsCombinationIterator#getNextCombIndex()})
+ * on the root graph <code>rootId</code>. It is written before the
+ * serialized graph, so any stored graph is accounted for.</li>
+ * <li><code>T level rootId combIdx numGraphs unqVrtId unqGraphId
+ * unqMolId</code>: the task working on a combination is completed, and
+ * all its graphs are stored. The values of the unique counters are taken
+ * after completion of the task.</li>
+ * <li><code>L level</code>: all the tasks of a level are completed, and
+ * all the graphs stored for that level are safe.</li>
+ * <li><code>R</code>: restart. The graphs recorded by tasks that were not
+ * completed before this record have been removed.</li>
+ * </ul>
+ * A restart can thus resume from the set of combinations that were not
+ * completed, without looking at the content of the storage folders.
+ *
+ * @author Marco Foscato
+ */
+
+public class FSEJournal
+{
+    /**
+     * End of record
+     */
+    public static final String EOR = ";";
+
+    /**
+     * The name of the journal file
+     */
+    private final String fileName;
+
+    /**
+     * The writer of the records
+     */
+    private BufferedWriter writer;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Opens the journal for writing.
+     * @param fileName the pathname of the journal file
+     * @param append use <code>true</code> to continue an existing journal.
+     * Any incomplete record at the end of the file is removed. Otherwise,
+     * any existing journal is overwritten.
+     * @throws DENOPTIMException
+     */
+
+    public FSEJournal(String fileName, boolean append) throws DENOPTIMException
+    {
+        this.fileName = fileName;
+        try
+        {
+            File f = new File(fileName);
+            if (append && f.exists())
+            {
+                truncateIncompleteRecord(f);
+            }
+            writer = new BufferedWriter(new FileWriter(f, append));
+        }
+        catch (Throwable t)
+        {
+            throw new DENOPTIMException("Cannot open journal " + fileName, t);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Removes any text following the last end of line.
+     */
+
+    private static void truncateIncompleteRecord(File f) throws Throwable
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw"))
+        {
+            long pos = raf.length();
+            while (pos > 0)
+            {
+                raf.seek(pos - 1);
+                if (raf.read() == '\n')
+                {
+                    break;
+                }
+                pos--;
+            }
+            raf.setLength(pos);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the pathname of the journal file
+     */
+
+    public String getFileName()
+    {
+        return fileName;
+    }
+
+//------------------------------------------------------------------------------
+
+    private synchronized void write(String record) throws DENOPTIMException
+    {
+        try
+        {
+            writer.write(record + EOR + DENOPTIMConstants.EOL);
+            writer.flush();
+        }
+        catch (Throwable t)
+        {
+            throw new DENOPTIMException("Cannot write to journal " + fileName,
+                                        t);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Records that a graph is about to be stored. Must be called before
+     * storing the graph.
+     * @param level the level of the graph
+     * @param rootId the ID of the root graph
+     * @param combIdx the index of the combination of fragments
+     * @param graphId the ID of the graph to store
+     */
+
+    public void recordStoredGraph(int level, int rootId, int combIdx,
+                                         int graphId) throws DENOPTIMException
+    {
+        write("G " + level + " " + rootId + " " + combIdx + " " + graphId);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Records the completion of a task. Must be called after all the graphs
+     * of the task have been stored.
+     * @param level the level of the graphs made by the task
+     * @param rootId the ID of the root graph
+     * @param combIdx the index of the combination of fragments
+     * @param numGraphs the number of graphs stored by the task
+     */
+
+    public void recordCompletedTask(int level, int rootId, int combIdx,
+                                       int numGraphs) throws DENOPTIMException
+    {
+        write("T " + level + " " + rootId + " " + combIdx + " " + numGraphs
+              + " " + GraphUtils.peekUniqueVertexIndex()
+              + " " + GraphUtils.peekUniqueGraphIndex()
+              + " " + GraphUtils.peekUniqueMoleculeIndex());
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Records the completion of all the tasks of a level.
+     * @param level the completed level
+     */
+
+    public void recordCompletedLevel(int level) throws DENOPTIMException
+    {
+        write("L " + level);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Records a restart. Must be called after removing the graphs of the
+     * tasks that were not completed.
+     */
+
+    public void recordRestart() throws DENOPTIMException
+    {
+        write("R");
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Closes the journal.
+     */
+
+    public synchronized void close() throws DENOPTIMException
+    {
+        try
+        {
+            writer.close();
+        }
+        catch (Throwable t)
+        {
+            throw new DENOPTIMException("Cannot close journal " + fileName, t);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reads a journal.
+     * @param fileName the pathname of the journal file
+     * @return the state of the exploration according to the journal
+     * @throws DENOPTIMException if the journal cannot be read or contains
+     * malformed records other than an incomplete last one.
+     */
+
+    public static State read(String fileName) throws DENOPTIMException
+    {
+        State state = new State();
+        String line = null;
+        String malformed = null;
+        int lineNum = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(fileName)))
+        {
+            while ((line = br.readLine()) != null)
+            {
+                lineNum++;
+                if (malformed != null)
+                {
+                    throw new DENOPTIMException("Malformed record at line "
+                                 + (lineNum-1) + ": '" + malformed + "'.");
+                }
+                if (!state.parse(line))
+                {
+                    // Acceptable only as the last, incomplete record
+                    malformed = line;
+                }
+            }
+        }
+        catch (DENOPTIMException de)
+        {
+            throw de;
+        }
+        catch (Throwable t)
+        {
+            throw new DENOPTIMException("Cannot read journal " + fileName, t);
+        }
+        return state;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * The state of an exploration as reconstructed from a journal.
+     */
+
+    public static class State
+    {
+        /**
+         * Highest level with all tasks completed
+         */
+        private int lastCompletedLevel = -2;
+
+        /**
+         * Combinations completed in each level, for each root graph
+         */
+        private Map<Integer,Map<Integer,BitSet>> completedCombs =
+                                new TreeMap<Integer,Map<Integer,BitSet>>();
+
+        /**
+         * IDs of the graphs stored by tasks not yet completed, in each level,
+         * for each task.
+         */
+        private Map<Integer,Map<Long,List<Integer>>> pendingGraphs =
+                            new TreeMap<Integer,Map<Long,List<Integer>>>();
+
+        /**
+         * Number of graphs stored by completed tasks in each level
+         */
+        private Map<Integer,Integer> numGraphs =
+                                                new TreeMap<Integer,Integer>();
+
+        /**
+         * Highest values of the unique counters
+         */
+        private int unqVrtId = -1;
+        private int unqGraphId = -1;
+        private int unqMolId = -1;
+
+        /**
+         * Number of restarts
+         */
+        private int numRestarts = 0;
+
+    //--------------------------------------------------------------------------
+
+        private static long makeKey(int rootId, int combIdx)
+        {
+            return (((long) rootId) << 32) | (combIdx & 0xffffffffL);
+        }
+
+    //--------------------------------------------------------------------------
+
+        /**
+         * Parses a record.
+         * @return <code>false</code> if the record is malformed.
+         */
+
+        private boolean parse(String line)
+        {
+            if (!line.endsWith(EOR))
+            {
+                return false;
+            }
+            String[] p = line.substring(0, line.length() - EOR.length())
+                                                         .trim().split("\\s+");
+            try
+            {
+                switch (p[0])
+                {
+                    case "G":
+                    {
+                        if (p.length != 5)
+                        {
+                            return false;
+                        }
+                        int level = Integer.parseInt(p[1]);
+                        long key = makeKey(Integer.parseInt(p[2]),
+                                           Integer.parseInt(p[3]));
+                        pendingGraphs.computeIfAbsent(level,
+                                k -> new HashMap<Long,List<Integer>>())
+                                .computeIfAbsent(key,
+                                        k -> new ArrayList<Integer>())
+                                .add(Integer.parseInt(p[4]));
+                        break;
+                    }
+                    case "T":
+                    {
+                        if (p.length != 8)
+                        {
+                            return false;
+                        }
+                        int level = Integer.parseInt(p[1]);
+                        int rootId = Integer.parseInt(p[2]);
+                        int combIdx = Integer.parseInt(p[3]);
+                        Map<Long,List<Integer>> pending =
+                                                     pendingGraphs.get(level);
+                        if (pending != null)
+                        {
+                            pending.remove(makeKey(rootId, combIdx));
+                        }
+                        completedCombs.computeIfAbsent(level,
+                                k -> new HashMap<Integer,BitSet>())
+                                .computeIfAbsent(rootId, k -> new BitSet())
+                                .set(combIdx);
+                        numGraphs.merge(level, Integer.parseInt(p[4]),
+                                        Integer::sum);
+                        unqVrtId = Math.max(unqVrtId, Integer.parseInt(p[5]));
+                        unqGraphId = Math.max(unqGraphId,
+                                              Integer.parseInt(p[6]));
+                        unqMolId = Math.max(unqMolId, Integer.parseInt(p[7]));
+                        break;
+                    }
+                    case "L":
+                    {
+                        if (p.length != 2)
+                        {
+                            return false;
+                        }
+                        int level = Integer.parseInt(p[1]);
+                        lastCompletedLevel = Math.max(lastCompletedLevel,
+                                                      level);
+                        // Graphs of a completed level are all safe
+                        pendingGraphs.remove(level);
+                        break;
+                    }
+                    case "R":
+                    {
+                        if (p.length != 1)
+                        {
+                            return false;
+                        }
+                        pendingGraphs.clear();
+                        numRestarts++;
+                        break;
+                    }
+                    default:
+                        return false;
+                }
+            }
+            catch (NumberFormatException e)
+            {
+                return false;
+            }
+            return true;
+        }
+
+    //--------------------------------------------------------------------------
+
+        /**
+         * @return the level from which the exploration should resume: the
+         * one following the last completed level.
+         */
+
+        public int getLevelToResume()
+        {
+            return lastCompletedLevel + 1;
+        }
+
+    //--------------------------------------------------------------------------
+
+        /**
+         * @param level the level
+         * @param rootId the ID of the root graph
+         * @return the indexes of the completed combinations of fragments on
+         * the given root graph, or <code>null</code> if none is completed.
+         */
+
+        public BitSet getCompletedCombinations(int level, int rootId)
+        {
+            Map<Integer,BitSet> m = completedCombs.get(level);
+            if (m == null)
+            {
+                return null;
+            }
+            return m.get(rootId);
+        }
+
+    //--------------------------------------------------------------------------
+
+        /**
+         * @param level the level
+         * @return the IDs of the graphs that may have been stored by tasks
+         * that were not completed.
+         */
+
+        public List<Integer> getUnfinishedGraphIds(int level)
+        {
+            List<Integer> ids = new ArrayList<Integer>();
+            Map<Long,List<Integer>> pending = pendingGraphs.get(level);
+            if (pending != null)
+            {
+                for (List<Integer> l : pending.values())
+                {
+                    ids.addAll(l);
+                }
+            }
+            return ids;
+        }
+
+    //--------------------------------------------------------------------------
+
+        public int getUnqVrtId()
+        {
+            return unqVrtId;
+        }
+
+    //--------------------------------------------------------------------------
+
+        public int getUnqGraphId()
+        {
+            return unqGraphId;
+        }
+
+    //--------------------------------------------------------------------------
+
+        public int getUnqMolId()
+        {
+            return unqMolId;
+        }
+
+    //--------------------------------------------------------------------------
+
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder();
+            sb.append("FSEJournal [lastCompletedLevel=" + lastCompletedLevel
+                      + ", unqVrtId=" + unqVrtId + ", unqGraphId=" + unqGraphId
+                      + ", unqMolId=" + unqMolId
+                      + ", numRestarts=" + numRestarts + "]");
+            for (Integer level : completedCombs.keySet())
+            {
+                int nTasks = 0;
+                for (BitSet bs : completedCombs.get(level).values())
+                {
+                    nTasks = nTasks + bs.cardinality();
+                }
+                sb.append(DENOPTIMConstants.EOL + " Level " + level
+                          + ": completedTasks=" + nTasks
+                          + ", roots=" + completedCombs.get(level).size()
+                          + ", storedGraphs=" + numGraphs.get(level)
+                          + ", unfinishedGraphs="
+                          + getUnfinishedGraphIds(level).size());
+            }
+            return sb.toString();
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -98,6 +98,25 @@ public class FSEParameters
      */
     private static int numCPU = 1;
 
+    /**
+     * Number of threads producing combinations of fragments. With more than
+     * one producer, the root graphs of a level are explored in parallel.
+     */
+    private static int numProducers = 1;
+
+    /**
+     * Number of combinations of fragments in each unit of work given to the
+     * producers of combinations.
+     */
+    private static int workUnitSize = 100;
+
+    /**
+     * Maximum number of graph building tasks submitted and not yet safely
+     * completed. Values lower than one are replaced by ten times the number
+     * of processors.
+     */
+    private static int maxTasksInFlight = 0;
+
     /**
      * Maximum wait for completion of a level (millisec)
      */
@@ -147,6 +166,11 @@ public class FSEParameters
      * Verbosity level
      */
     private static int verbosity = 0;
+
+    /**
+     * Minimum level of the records written to the log file
+     */
+    private static Level logLevel = Level.INFO;
     
     
 //-----------------------------------------------------------------------------
@@ -167,6 +191,9 @@ public class FSEParameters
         runFitnessTask = false;
         dbRootDir = ".";
         numCPU = 1;
+        numProducers = 1;
+        workUnitSize = 100;
+        maxTasksInFlight = 0;
         maxWait = 600000L;
         waitStep = 5000L;
         maxLevel = 2;
@@ -176,6 +203,7 @@ public class FSEParameters
         chkptRestart = false;
         prepareChkAndSerForTests = false;
         verbosity = 0;
+        logLevel = Level.INFO;
         
         FragmentSpaceParameters.resetParameters();
         RingClosureParameters.resetParameters();
@@ -238,6 +266,27 @@ public class FSEParameters
         return numCPU;
     }
 
+//-----------------------------------------------------------------------------
+
+    public static int getNumberOfProducers()
+    {
+        return numProducers;
+    }
+
+//-----------------------------------------------------------------------------
+
+    public static int getWorkUnitSize()
+    {
+        return workUnitSize;
+    }
+
+//-----------------------------------------------------------------------------
+
+    public static int getMaxTasksInFlight()
+    {
+        return maxTasksInFlight;
+    }
+
 //-----------------------------------------------------------------------------
 
     public static long getMaxWait()
@@ -472,6 +521,39 @@ public class FSEParameters
                 throw new DENOPTIMException(msg);
             }
             break;
+        case "FSE-NUMOFPRODUCERS=":
+            try
+            {
+                numProducers = Integer.parseInt(value);
+            }
+            catch (Throwable t)
+            {
+                msg = "Unable to understand value " + key + "'" + value + "'";
+                throw new DENOPTIMException(msg);
+            }
+            break;
+        case "FSE-MAXTASKSINFLIGHT=":
+            try
+            {
+                maxTasksInFlight = Integer.parseInt(value);
+            }
+            catch (Throwable t)
+            {
+                msg = "Unable to understand value " + key + "'" + value + "'";
+                throw new DENOPTIMException(msg);
+            }
+            break;
+        case "FSE-WORKUNITSIZE=":
+            try
+            {
+                workUnitSize = Integer.parseInt(value);
+            }
+            catch (Throwable t)
+            {
+                msg = "Unable to understand value " + key + "'" + value + "'";
+                throw new DENOPTIMException(msg);
+            }
+            break;
         case "FSE-MAXWAIT=":
             try
             {
@@ -516,6 +598,9 @@ public class FSEParameters
                 throw new DENOPTIMException(msg);
             }
             break;
+        case "FSE-LOGLEVEL=":
+            logLevel = DENOPTIMLogger.parseLevel(value);
+            break;
         default:
              msg = "Keyword " + key + " is not a known FragmentSpaceExplorer-" 
             		 + "related keyword. Check input files.";
@@ -595,6 +680,26 @@ public class FSEParameters
 	    DENOPTIMLogger.appLogger.info(msg);
 	}
 
+	if (numProducers <= 0 )
+	{
+	    msg = "Number of producers (" + numProducers + ") is not valid. "
+		  + "Setting its value to 1.";
+	    numProducers = 1;
+	    DENOPTIMLogger.appLogger.info(msg);
+	}
+
+	if (maxTasksInFlight < 1)
+	{
+	    maxTasksInFlight = 10 * numCPU;
+	}
+
+	if (workUnitSize < 1)
+	{
+            msg = "The size of work units must be larger than zero. Change "
+		  + "your input";
+            throw new DENOPTIMException(msg);
+	}
+
         if (maxLevel < 0)
         {
             msg = "The maximum level must be larger than zero.";
@@ -653,7 +758,7 @@ public class FSEParameters
 
         try
         {
-            DENOPTIMLogger.getInstance().setupLogger(logFile);
+            DENOPTIMLogger.getInstance().setupLogger(logFile, logLevel);
         }
         catch (IOException ioe)
         {
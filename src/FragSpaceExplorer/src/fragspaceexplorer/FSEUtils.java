@@ -18,12 +18,21 @@
 
 package fragspaceexplorer;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import org.apache.commons.io.FileUtils;
@@ -32,6 +41,7 @@ import denoptim.constants.DENOPTIMConstants;
 import denoptim.exception.DENOPTIMException;
 import denoptim.io.DenoptimIO;
 import denoptim.io.SingletonFileAccess;
+import denoptim.logging.MetricsRegistry;
 import denoptim.molecule.DENOPTIMGraph;
 
 
@@ -43,6 +53,62 @@ import denoptim.molecule.DENOPTIMGraph;
 
 public class FSEUtils
 {
+    /**
+     * Number of graphs stored by this run for each level
+     */
+    private static final ConcurrentHashMap<Integer,AtomicInteger> storedGraphs =
+                                new ConcurrentHashMap<Integer,AtomicInteger>();
+
+    /**
+     * The journal where stored graphs are recorded, if any
+     */
+    private static FSEJournal journal = null;
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Sets the journal where to record the graphs before storing them.
+     * @param j the journal, or <code>null</code> to stop recording.
+     */
+    protected static void setJournal(FSEJournal j)
+    {
+        journal = j;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the journal where graphs are recorded, or <code>null</code>.
+     */
+    protected static FSEJournal getJournal()
+    {
+        return journal;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the pathname of the journal of the exploration
+     */
+
+    public static String getNameOfJournalFile()
+    {
+        return FSEParameters.getDBRoot() + DENOPTIMConstants.FSEP
+                + DENOPTIMConstants.FSEJOURNALNAME;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param level the level of modification.
+     * @return the number of graphs of the given level stored by this run,
+     * which excludes any graph stored by a previous run.
+     */
+    public static int getNumberOfStoredGraphs(int level)
+    {
+        AtomicInteger cnt = storedGraphs.get(level);
+        return cnt == null ? 0 : cnt.get();
+    }
 
 //------------------------------------------------------------------------------
 
@@ -154,15 +220,17 @@ public class FSEUtils
                                   ArrayList<DENOPTIMGraph> lstGraphs, int level)
                                                         throws DENOPTIMException
     {
-        for (DENOPTIMGraph g : lstGraphs)
+        for (int i=0; i<lstGraphs.size(); i++)
         {
+            DENOPTIMGraph g = lstGraphs.get(i);
             //NOTE: the arraylist is supposed to hold the indeces used to 
             //      create the next combination of fragments, but this method
             //      is used only for graphs built with the base scaffolds or 
             //      the naked root graphs. Therefore there is no set of indeces
             //      to store and we fed the method with an empty array.
-            // NOTE2: the root Id is set to zero for the same reason.
-            storeGraphOfLevel(g,level,0,new ArrayList());
+            // NOTE2: the root Id is set to zero for the same reason, and
+            //        the position in the list is used as combination index.
+            storeGraphOfLevel(g,level,0,i,new ArrayList());
         }
     }
 
@@ -175,14 +243,23 @@ public class FSEUtils
      * @param graph the graph to store
      * @param level the level of modification from which the graph is generated
      * @param rootId the ID of the root graph used to build the graph
+     * @param combIdx the index of the combination of fragments used to build
+     * the graph. Used only to record the graph in the journal.
      * @param nextIds the set of indeces used to generate the next combination
      * of fragment. 
      */
 
     protected static void storeGraphOfLevel(DENOPTIMGraph graph, int level, 
-                            int rootId, ArrayList<Integer> nextIds) 
+                            int rootId, int combIdx, ArrayList<Integer> nextIds)
                                                         throws DENOPTIMException
     {
+        long t0 = MetricsRegistry.start();
+        // The record must precede the file, so no file is left unaccounted
+        if (journal != null)
+        {
+            journal.recordStoredGraph(level, rootId, combIdx,
+                                      graph.getGraphId());
+        }
         String outDir = getNameOfStorageDir(level);
         if (!DenoptimIO.checkExists(outDir))
         {
@@ -203,6 +280,86 @@ public class FSEUtils
                            + rootId + " " + nextIds;
         SingletonFileAccess.getInstance().serializeToFile(fileSer,graph,true);
         SingletonFileAccess.getInstance().writeData(indexFile,indexLine,true);
+        storedGraphs.computeIfAbsent(level, k -> new AtomicInteger())
+                                                             .incrementAndGet();
+        MetricsRegistry.record(MetricsRegistry.Stage.IO, t0);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Removes stored graphs of a level, together with their lines in the
+     * index file of that level. Only the given graphs are considered: the
+     * storage folder is not inspected.
+     * @param level the level of the graphs
+     * @param graphIds the IDs of the graphs to remove
+     */
+
+    protected static void removeStoredGraphs(int level, Set<Integer> graphIds)
+                                                        throws DENOPTIMException
+    {
+        if (graphIds.isEmpty())
+        {
+            return;
+        }
+        for (Integer graphId : graphIds)
+        {
+            String fileSer = getNameOfStorageFile(level,graphId);
+            if (DenoptimIO.checkExists(fileSer))
+            {
+                DenoptimIO.deleteFile(fileSer);
+            }
+        }
+
+        String indexFile = getNameOfStorageIndexFile(level);
+        if (!DenoptimIO.checkExists(indexFile))
+        {
+            return;
+        }
+        File tmpFile = new File(indexFile + ".tmp");
+        try (BufferedReader br = new BufferedReader(new FileReader(indexFile));
+             BufferedWriter bw = new BufferedWriter(new FileWriter(tmpFile)))
+        {
+            String line;
+            while ((line = br.readLine()) != null)
+            {
+                // Lines are formatted as in storeGraphOfLevel
+                int i = line.lastIndexOf(" => ");
+                if (i > -1)
+                {
+                    String[] p = line.substring(i+4).trim().split("\\s+");
+                    try
+                    {
+                        if (graphIds.contains(Integer.parseInt(p[0])))
+                        {
+                            continue;
+                        }
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        // Not a graph ID: keep the line
+                    }
+                }
+                bw.write(line);
+                bw.newLine();
+            }
+        }
+        catch (Throwable t)
+        {
+            throw new DENOPTIMException("Cannot clean index file " + indexFile,
+                                        t);
+        }
+        try
+        {
+            Files.move(tmpFile.toPath(), new File(indexFile).toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (Throwable t)
+        {
+            throw new DENOPTIMException("Cannot replace index file "
+                                        + indexFile, t);
+        }
     }
 
 //------------------------------------------------------------------------------
@@ -19,8 +19,11 @@
 package fragspaceexplorer;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 
 import org.openscience.cdk.CDKConstants;
@@ -34,6 +37,7 @@ import denoptim.fragspace.FragsCombination;
 import denoptim.fragspace.IdFragmentAndAP;
 import denoptim.io.DenoptimIO;
 import denoptim.logging.DENOPTIMLogger;
+import denoptim.logging.MetricsRegistry;
 import denoptim.molecule.DENOPTIMAttachmentPoint;
 import denoptim.molecule.DENOPTIMEdge;
 import denoptim.molecule.DENOPTIMGraph;
@@ -89,12 +93,34 @@ public class GraphBuildingTask extends FitnessTask
      * This is used only to store info needed to make checkpoint files.
      */
     private ArrayList<Integer> nextIds;
+
+    /**
+     * Index of the combination of fragments (see
+     * {@link denoptim.fragspace.FragsCombinationIterator#getNextCombIndex()})
+     * used to record this task in the journal.
+     */
+    private int combIdx = -1;
     
     /**
      * Tool for generating 3D models assembling 3D building blocks.
      */
     private TreeBuilder3D tb3d;
 
+    /**
+     * IDs of all graphs that this task has generated and may store.
+     */
+    private final List<Integer> graphIds = 
+                        Collections.synchronizedList(new ArrayList<Integer>());
+
+    /**
+     * Lock on the generation of graph IDs by tasks. Graph IDs are generated
+     * and recorded (see {@link #getGraphIds()}) while holding the read lock, 
+     * so that whoever holds the write lock can read the unique graph counter
+     * and be sure that any lower ID has already been recorded by its task.
+     */
+    static final ReentrantReadWriteLock GRAPHIDSLOCK = 
+                                                new ReentrantReadWriteLock();
+
 //------------------------------------------------------------------------------
    
     /**
@@ -112,12 +138,28 @@ public class GraphBuildingTask extends FitnessTask
         dGraph.setGraphId(GraphUtils.getUniqueGraphIndex());
         rootId = m_molGraph.getGraphId();
         graphId = dGraph.getGraphId();
+        graphIds.add(graphId);
         this.workDir = workDir;
         this.fragsToAdd = fragsToAdd;
         this.level = level;  
         this.verbosity = verbosity;
     }
     
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the IDs of all graphs generated by this task: the initial graph
+     * and any of its cyclic alternatives.
+     */
+
+    public List<Integer> getGraphIds()
+    {
+        synchronized (graphIds)
+        {
+            return new ArrayList<Integer>(graphIds);
+        }
+    }
+
 //------------------------------------------------------------------------------
 
     /**
@@ -194,6 +236,28 @@ public class GraphBuildingTask extends FitnessTask
         }
     }
 
+//------------------------------------------------------------------------------
+
+    /**
+     * @return the index of the combination of fragments of this task.
+     */
+
+    public int getCombinationIndex()
+    {
+        return combIdx;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Set the index of the combination of fragments of this task.
+     */
+
+    public void setCombinationIndex(int combIdx)
+    {
+        this.combIdx = combIdx;
+    }
+
 //------------------------------------------------------------------------------
    
     /**
@@ -203,6 +267,7 @@ public class GraphBuildingTask extends FitnessTask
     @Override
     public Object call() throws Exception
     {
+        long t0 = MetricsRegistry.start();
         try
         {
             String msg = "Call GraphBuildingTask " + id 
@@ -305,6 +370,7 @@ public class GraphBuildingTask extends FitnessTask
 
             // Evaluate graph
             Object[] res = GraphUtils.evaluateGraph(dGraph);
+            MetricsRegistry.record(MetricsRegistry.Stage.GRAPH_BUILDING, t0);
             if (res == null) // null is used to indicate unacceptable graph
             {
                 if (verbosity > 1)
@@ -316,7 +382,8 @@ public class GraphBuildingTask extends FitnessTask
                 nSubTasks = 1;
 
                 // Store graph
-                FSEUtils.storeGraphOfLevel(dGraph,level,rootId,nextIds);
+                FSEUtils.storeGraphOfLevel(dGraph,level,rootId,combIdx,
+                                           nextIds);
             }
             else
             {
@@ -332,118 +399,49 @@ public class GraphBuildingTask extends FitnessTask
                     needsCaps = GraphUtils.graphNeedsCappingGroups(dGraph);
                 }
 
-                ArrayList<DENOPTIMGraph> altCyclicGraphs =
-                                                new ArrayList<DENOPTIMGraph>();
+                // WARNING! If cyclic versions of molGraph are available,
+                // we IGNORE the acyclic original. This is because,
+                // if at all possible, the acyclic graph is built anyway
+                // using capping groups instead of ring closing attractors.
+                // Each cyclic alternative is processed as soon as it is
+                // found, so the alternatives are never all kept in memory.
+                nSubTasks = 0;
                 if (!needsCaps)
                 {
-                    altCyclicGraphs = 
-                        GraphUtils.makeAllGraphsWithDifferentRingSets(dGraph);
-                }
-                int sz = altCyclicGraphs.size();
-                if (sz>0 && !needsCaps)
-                {
-                    nSubTasks = sz;
-
-                    if (verbosity > 0)
-                    {
-                        msg = "Graph " + dGraph.getGraphId() 
-                              + " is replaced by " + sz
-                              + " cyclic alternatives.";
-                        DENOPTIMLogger.appLogger.info(msg); 
-                    }
-
-                    // WARNING! If cyclic versions of molGraph are available,
-                    // we IGNORE the acyclic original. This is because,
-                    // if at all possible, the acyclic graph is built anyway
-                    // using capping groups instead of ring closing attractors.
-    
-                    // prepare log message
-                    String lst = "[";
-                    for (int ig = 0; ig<sz-1; ig++)
-                    {
-                        lst = lst + altCyclicGraphs.get(ig).getGraphId()+", ";
-                    }
-                    lst = lst + altCyclicGraphs.get(sz-1).getGraphId() + "]";
-    
-                    // process all alternative graphs
-                    for (int ig = 0; ig<altCyclicGraphs.size(); ig++)
-                    {
-                        DENOPTIMGraph g = altCyclicGraphs.get(ig);
-                        
-                        if (verbosity > 0)
+                    GraphUtils.forEachRingSetOfGraph(dGraph, ringSet -> {
+                        DENOPTIMGraph g;
+                        GRAPHIDSLOCK.readLock().lock();
+                        try
                         {
-                            msg = "Graph " + g.getGraphId()
-                                  + " is cyclic alternative "
-                                  + (ig+1) + "/" + altCyclicGraphs.size()
-                                  + " " + lst;
-                            DENOPTIMLogger.appLogger.info(msg);
+                            g = GraphUtils.makeGraphWithRingSet(dGraph,
+                                                                ringSet);
+                            graphIds.add(g.getGraphId());
                         }
-
-                        // Prepare vector of results
-                        // NB: in FSE we add also the ID of the root graph in 
-                        // this array
-                        Object[] altRes = new Object[5];
-
-                        try 
+                        finally
                         {
-                            // Prepare molecular representation
-                        	IAtomContainer mol;
-                        	if (FitnessParameters.make3dTree())
-                        	{
-	                        	try {
-	                                mol = tb3d.convertGraphTo3DAtomContainer(g,true);
-	                        	} catch (Throwable t) {
-	                        		mol = GraphConversionTool
-	                        				.convertGraphToMolecule(g, true);
-	                        		DENOPTIMMoleculeUtils.removeRCA(mol,g);
-	                        	}
-                        	} else {
-                        		mol = GraphConversionTool
-                        				.convertGraphToMolecule(g, true);
-                        		DENOPTIMMoleculeUtils.removeRCA(mol,g);
-                        	}
-                            
-                            // Level that generated this graph
-                            altRes[4] = level;
-                            
-                            // Parent graph
-                            altRes[3] = rootId;
-
-                            altRes[2] = mol;
-        
-                            // Prepare SMILES
-                            String smiles = 
-                                DENOPTIMMoleculeUtils.getSMILESForMolecule(mol);
-                            if (smiles == null)
-                            {
-                                smiles = "FAIL: NO SMILES GENERATED";
-                            }
-                            altRes[1] = smiles;
-        
-                            // Prepare INCHI                    
-                            ObjectPair pr = 
-                                 DENOPTIMMoleculeUtils.getInchiForMolecule(mol);
-                            if (pr.getFirst() == null)
-                            {
-                                pr.setFirst("UNDEFINED_INCHI");
-                            }
-                            altRes[0] = pr.getFirst(); 
-                      
-                            // Store graph
-                            FSEUtils.storeGraphOfLevel(g,level,rootId,nextIds);
-                            graphId = g.getGraphId();
-    
-                            // Optionally perform external task
-                            if (FSEParameters.submitFitnessTask())
-                            {
-                                sendToFitnessProvider(altRes);
-                            }
+                            GRAPHIDSLOCK.readLock().unlock();
+                        }
+                        nSubTasks++;
+                        try
+                        {
+                            processCyclicAlternative(g, nSubTasks);
                         }
                         catch (Throwable t)
                         {
-                            msg = "Exception while working on cyclic graph "+g;
-                            throw new Throwable(msg,t);
+                            throw new DENOPTIMException("Exception while "
+                                    + "working on cyclic graph " + g, t);
                         }
+                        return true;
+                    });
+                }
+                if (nSubTasks > 0)
+                {
+                    if (verbosity > 0)
+                    {
+                        msg = "Graph " + dGraph.getGraphId()
+                              + " is replaced by " + nSubTasks
+                              + " cyclic alternatives.";
+                        DENOPTIMLogger.appLogger.info(msg);
                     }
                 }
                 else
@@ -451,7 +449,8 @@ public class GraphBuildingTask extends FitnessTask
                     nSubTasks = 1;
 
                     // Store graph
-                    FSEUtils.storeGraphOfLevel(dGraph,level,rootId,nextIds);
+                    FSEUtils.storeGraphOfLevel(dGraph,level,rootId,combIdx,
+                                               nextIds);
                     
                     // Optionally improve the molecular representation, which
                     // is otherwise only given by the collection of building
@@ -482,6 +481,13 @@ public class GraphBuildingTask extends FitnessTask
                     }
                 }
             }
+
+            // Only now the work on this combination can be considered done
+            FSEJournal journal = FSEUtils.getJournal();
+            if (journal != null)
+            {
+                journal.recordCompletedTask(level, rootId, combIdx, nSubTasks);
+            }
         }
         catch (Throwable t)
         {
@@ -496,6 +502,80 @@ public class GraphBuildingTask extends FitnessTask
         return "PASS";
     }
     
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds the molecular representation of a cyclic alternative of the
+     * graph built by this task, stores the graph, and optionally submits the
+     * external fitness task.
+     * @param g the cyclic alternative
+     * @param ig the 1-based index of the alternative
+     */
+
+    private void processCyclicAlternative(DENOPTIMGraph g, int ig)
+                                                               throws Throwable
+    {
+        if (verbosity > 0)
+        {
+            String msg = "Graph " + g.getGraphId() + " is cyclic alternative "
+                         + ig + " of graph " + dGraph.getGraphId();
+            DENOPTIMLogger.appLogger.info(msg);
+        }
+
+        // Prepare vector of results
+        // NB: in FSE we add also the ID of the root graph in this array
+        Object[] altRes = new Object[5];
+
+        // Prepare molecular representation
+        IAtomContainer mol;
+        if (FitnessParameters.make3dTree())
+        {
+            try {
+                mol = tb3d.convertGraphTo3DAtomContainer(g,true);
+            } catch (Throwable t) {
+                mol = GraphConversionTool.convertGraphToMolecule(g, true);
+                DENOPTIMMoleculeUtils.removeRCA(mol,g);
+            }
+        } else {
+            mol = GraphConversionTool.convertGraphToMolecule(g, true);
+            DENOPTIMMoleculeUtils.removeRCA(mol,g);
+        }
+
+        // Level that generated this graph
+        altRes[4] = level;
+
+        // Parent graph
+        altRes[3] = rootId;
+
+        altRes[2] = mol;
+
+        // Prepare SMILES
+        String smiles = DENOPTIMMoleculeUtils.getSMILESForMolecule(mol);
+        if (smiles == null)
+        {
+            smiles = "FAIL: NO SMILES GENERATED";
+        }
+        altRes[1] = smiles;
+
+        // Prepare INCHI
+        ObjectPair pr = DENOPTIMMoleculeUtils.getInchiForMolecule(mol);
+        if (pr.getFirst() == null)
+        {
+            pr.setFirst("UNDEFINED_INCHI");
+        }
+        altRes[0] = pr.getFirst();
+
+        // Store graph
+        FSEUtils.storeGraphOfLevel(g,level,rootId,combIdx,nextIds);
+        graphId = g.getGraphId();
+
+        // Optionally perform external task
+        if (FSEParameters.submitFitnessTask())
+        {
+            sendToFitnessProvider(altRes);
+        }
+    }
+
 //------------------------------------------------------------------------------
     
     /**
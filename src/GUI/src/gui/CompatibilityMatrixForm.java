@@ -21,11 +21,12 @@ package gui;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Component;
-import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.beans.PropertyChangeEvent;
@@ -37,12 +38,14 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
 import javax.swing.BorderFactory;
+import javax.swing.BoundedRangeModel;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.DefaultListModel;
@@ -138,6 +141,17 @@ public class CompatibilityMatrixForm extends JPanel {
      */
     private Set<String> forbiddenEndList = new HashSet<String>();
     
+    /**
+     * Source APClasses for which the line of compatibility rules has not been
+     * created yet. Lines are created only when scrolled into view.
+     */
+    private LinkedList<String> pendingRuleLines = new LinkedList<String>();
+    
+    /**
+     * Number of lines of compatibility rules created in one go
+     */
+    private static final int RULELINESPAGE = 40;
+    
     /**
      * Maximum bond order accepted in APClass-to-BO map
      */
@@ -569,6 +583,19 @@ public class CompatibilityMatrixForm extends JPanel {
 				new Dimension(15,0));
         panelCPRules.setLayout(new BoxLayout(panelCPRules, 
         		SwingConstants.VERTICAL));
+        scrollPanelCPMap.getVerticalScrollBar().addAdjustmentListener(
+        		new AdjustmentListener() {
+			public void adjustmentValueChanged(AdjustmentEvent e) {
+				BoundedRangeModel m = 
+						scrollPanelCPMap.getVerticalScrollBar().getModel();
+				// Create more lines when approaching the end of the list
+				if (!pendingRuleLines.isEmpty() && !e.getValueIsAdjusting()
+						&& m.getValue() + 2 * m.getExtent() >= m.getMaximum())
+				{
+					materializeRuleLines(RULELINESPAGE);
+				}
+			}
+		});
         panelCPMap.add(scrollPanelCPMap, BorderLayout.CENTER);
 		
 		//
@@ -1267,6 +1294,9 @@ public class CompatibilityMatrixForm extends JPanel {
 			return;
 		}
 		
+		// Searching requires all lines to exist
+		materializeRuleLines(pendingRuleLines.size());
+		
 		for (Component lineComponent : panelCPRules.getComponents())
     	{
     		if (lineComponent instanceof CompatibilityRuleLine)
@@ -1505,14 +1535,34 @@ public class CompatibilityMatrixForm extends JPanel {
 		CompatRulesHeader h = new CompatRulesHeader();
 		h.setAlignmentX(LEFT_ALIGNMENT);
 		panelCPRules.add(h);
-		for (String srcAPClass : allAPClsInCPMap)
+		pendingRuleLines = new LinkedList<String>(allAPClsInCPMap);
+		materializeRuleLines(RULELINESPAGE);
+		panelCPRules.repaint();
+		panelCPRules.revalidate();	
+	}
+	
+//-----------------------------------------------------------------------------
+	
+	/**
+	 * Creates the lines of compatibility rules for some of the source 
+	 * APClasses that do not have a line yet.
+	 * @param n the maximum number of lines to create.
+	 */
+	private void materializeRuleLines(int n)
+	{
+		int i = 0;
+		while (i<n && !pendingRuleLines.isEmpty())
 		{
+			String srcAPClass = pendingRuleLines.removeFirst();
 			CompatibilityRuleLine r = new CompatibilityRuleLine(srcAPClass);
 			r.setAlignmentX(LEFT_ALIGNMENT);
 			panelCPRules.add(r);
+			i++;
+		}
+		if (i>0)
+		{
+			panelCPRules.revalidate();
 		}
-		panelCPRules.repaint();
-		panelCPRules.revalidate();	
 	}
 	
 //-----------------------------------------------------------------------------
@@ -1522,12 +1572,7 @@ public class CompatibilityMatrixForm extends JPanel {
 		activateTabEditsListener(false); 
 		
 		// Remove all lines
-		int szTab = tabModAPClsBO.getRowCount();
-        for (int i=0; i<szTab; i++) 
-        {
-        	//Always remove the first to avoid dealing with changing row ids
-        	tabModAPClsBO.removeRow(0);
-        }
+		tabModAPClsBO.setRowCount(0);
         
         // Get sorted list of table rows
 		ArrayList<String> sortedAPClsToBO = new ArrayList<String>();
@@ -1548,12 +1593,7 @@ public class CompatibilityMatrixForm extends JPanel {
 	private void updateCappingRulesTable()
 	{
 		// Remove all lines
-		int szTab = tabModCapping.getRowCount();
-        for (int i=0; i<szTab; i++) 
-        {
-        	//Always remove the first to avoid dealing with changing row ids
-        	tabModCapping.removeRow(0);
-        }
+		tabModCapping.setRowCount(0);
         
         // Get sorted list of table rows
 		ArrayList<String> sortedCappings = new ArrayList<String>();
@@ -1572,12 +1612,7 @@ public class CompatibilityMatrixForm extends JPanel {
 	private void updateForbiddenEndsTable()
 	{
 		// Remove all lines
-		int szTab = tabModFrbEnd.getRowCount();
-        for (int i=0; i<szTab; i++) 
-        {
-        	//Always remove the first to avoid dealing with changing row ids
-        	tabModFrbEnd.removeRow(0);
-        }
+		tabModFrbEnd.setRowCount(0);
 		
         // Get sorted list of table rows
         ArrayList<String> sortedFrbEnds = new ArrayList<String>();
@@ -1656,25 +1691,28 @@ public class CompatibilityMatrixForm extends JPanel {
 	public void importAllAPClassesFromCappingGroupLibs(Set<File> fragLibs,
 			boolean cleanup)
 	{
-		this.setCursor(Cursor.getPredefinedCursor(
-				Cursor.WAIT_CURSOR));
-		if (cleanup)
-		{
-			allCapAPClasses = new TreeSet<String>();
-		}
-		
-		for (File fragLib : fragLibs)
-		{
-			allCapAPClasses.addAll(DenoptimIO.readAllAPClasses(fragLib));
-		}
-		
-		for (String apc : allCapAPClasses)
-		{
-		    allAPRules.add(DENOPTIMAttachmentPoint.getOnlyRule(apc));
-		}
-		
-		this.setCursor(Cursor.getPredefinedCursor(
-				Cursor.DEFAULT_CURSOR));
+		new GUIBackgroundLoader<Set<String>>(this, "APClasses") {
+			
+			@Override
+			protected Set<String> load() throws Exception
+			{
+				return readAllAPClasses(this, fragLibs);
+			}
+			
+			@Override
+			protected void loaded(Set<String> apClasses)
+			{
+				if (cleanup)
+				{
+					allCapAPClasses = new TreeSet<String>();
+				}
+				allCapAPClasses.addAll(apClasses);
+				for (String apc : allCapAPClasses)
+				{
+				    allAPRules.add(DENOPTIMAttachmentPoint.getOnlyRule(apc));
+				}
+			}
+		}.start();
 	}
 	
 //-----------------------------------------------------------------------------
@@ -1689,28 +1727,57 @@ public class CompatibilityMatrixForm extends JPanel {
 	public void importAllAPClassesFromFragmentLibs(Set<File> fragLibs,
 			boolean cleanup)
 	{
-		this.setCursor(Cursor.getPredefinedCursor(
-				Cursor.WAIT_CURSOR));
-		if (cleanup)
-		{
-			allAPClasses = new TreeSet<String>();
-			allAPRules = new TreeSet<String>();
-		}
-		
+		new GUIBackgroundLoader<Set<String>>(this, "APClasses") {
+			
+			@Override
+			protected Set<String> load() throws Exception
+			{
+				return readAllAPClasses(this, fragLibs);
+			}
+			
+			@Override
+			protected void loaded(Set<String> apClasses)
+			{
+				if (cleanup)
+				{
+					allAPClasses = new TreeSet<String>();
+					allAPRules = new TreeSet<String>();
+				}
+				allAPClasses.addAll(apClasses);
+				for (String apc : allAPClasses)
+				{
+				    allAPRules.add(DENOPTIMAttachmentPoint.getOnlyRule(apc));
+				}
+			}
+		}.start();
+	}
+
+//-----------------------------------------------------------------------------
+	
+	/**
+	 * Reads the APClasses in a list of files. Meant to run in the background.
+	 * @param loader the loader running this method.
+	 * @param fragLibs the list of file to inspect.
+	 * @return the APClasses found in the files.
+	 */
+	
+	private static Set<String> readAllAPClasses(
+			GUIBackgroundLoader<Set<String>> loader, Set<File> fragLibs)
+	{
+		Set<String> apClasses = new HashSet<String>();
+		loader.addItemsToDo(fragLibs.size());
 		for (File fragLib : fragLibs)
 		{
-			allAPClasses.addAll(DenoptimIO.readAllAPClasses(fragLib));
-		}
-		
-		for (String apc : allAPClasses)
-		{
-		    allAPRules.add(DENOPTIMAttachmentPoint.getOnlyRule(apc));
+			if (loader.isCancelled())
+			{
+				break;
+			}
+			apClasses.addAll(DenoptimIO.readAllAPClasses(fragLib));
+			loader.itemDone();
 		}
-		
-		this.setCursor(Cursor.getPredefinedCursor(
-				Cursor.DEFAULT_CURSOR));
+		return apClasses;
 	}
-
+	
 //-----------------------------------------------------------------------------
 	
 	/**
@@ -0,0 +1,252 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package gui;
+
+import java.awt.Component;
+import java.awt.Cursor;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+import javax.swing.UIManager;
+
+import denoptim.task.StaticTaskManager;
+
+/**
+ * Worker that reads data outside the event-dispatch thread and hands the
+ * result back to the GUI once it is ready. The loading is accounted for in
+ * the queue status bar of the GUI (see
+ * {@link StaticTaskManager#queueStatusBar}): the loader counts as one task,
+ * and any item that the loader declares with {@link #addItemsToDo(int)}
+ * counts as an additional task until it is declared done with
+ * {@link #itemDone()}.
+ * <p>Loading can be interrupted with {@link #cancel(boolean)}, in which case
+ * neither {@link #loaded(Object)} nor {@link #failed(Throwable)} are called.
+ * Implementations of {@link #load()} should check {@link #isCancelled()}
+ * regularly.</p>
+ *
+ * @author Marco Foscato
+ */
+
+public abstract class GUIBackgroundLoader<T> extends SwingWorker<T,Integer>
+{
+	/**
+	 * Component displaying the wait cursor while loading
+	 */
+	private final Component owner;
+
+	/**
+	 * Short description of what is being loaded. Used in error messages.
+	 */
+	private final String what;
+
+	/**
+	 * Number of items declared by the loading thread
+	 */
+	private final AtomicInteger itemsToDo = new AtomicInteger(0);
+
+	/**
+	 * Number of items completed by the loading thread
+	 */
+	private final AtomicInteger itemsDone = new AtomicInteger(0);
+
+	/**
+	 * Number of items registered in the status bar. Used only on the EDT.
+	 */
+	private int regToDo = 0;
+
+	/**
+	 * Number of items unregistered from the status bar. Used only on the EDT.
+	 */
+	private int regDone = 0;
+
+//-----------------------------------------------------------------------------
+
+	/**
+	 * Constructor
+	 * @param owner the component that should show the wait cursor, or
+	 * <code>null</code>.
+	 * @param what short description of the data being loaded.
+	 */
+	public GUIBackgroundLoader(Component owner, String what)
+	{
+		this.owner = owner;
+		this.what = what;
+	}
+
+//-----------------------------------------------------------------------------
+
+	/**
+	 * Starts the loading. Must be called from the event-dispatch thread.
+	 */
+	public void start()
+	{
+		StaticTaskManager.addTodoTask();
+		if (owner != null)
+		{
+			owner.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+		}
+		execute();
+	}
+
+//-----------------------------------------------------------------------------
+
+	/**
+	 * Reads the data. Runs outside the event-dispatch thread, so it must not
+	 * touch any Swing component.
+	 * @return the loaded data.
+	 * @throws Exception if the data could not be loaded.
+	 */
+	protected abstract T load() throws Exception;
+
+//-----------------------------------------------------------------------------
+
+	/**
+	 * Takes the loaded data into the GUI. Runs on the event-dispatch thread.
+	 * @param result the loaded data.
+	 */
+	protected abstract void loaded(T result);
+
+//-----------------------------------------------------------------------------
+
+	/**
+	 * Reports a failure to load the data. Runs on the event-dispatch thread.
+	 * @param cause the reason of the failure.
+	 */
+	protected void failed(Throwable cause)
+	{
+		cause.printStackTrace();
+		JOptionPane.showMessageDialog(null,
+                "<html>Could not load " + what + ".<br>Hint on cause: "
+                + cause.getMessage() + "</html>",
+                "Error",
+                JOptionPane.PLAIN_MESSAGE,
+                UIManager.getIcon("OptionPane.errorIcon"));
+	}
+
+//-----------------------------------------------------------------------------
+
+	/**
+	 * Declares more items to process. Can be called from the loading thread.
+	 * @param n the number of additional items.
+	 */
+	protected void addItemsToDo(int n)
+	{
+		itemsToDo.addAndGet(n);
+		publish(n);
+	}
+
+//-----------------------------------------------------------------------------
+
+	/**
+	 * Declares that one item has been processed. Can be called from the
+	 * loading thread.
+	 */
+	protected void itemDone()
+	{
+		int done = itemsDone.incrementAndGet();
+		int todo = itemsToDo.get();
+		if (todo > 0)
+		{
+			setProgress(Math.min(100, (100 * done) / todo));
+		}
+		// Don't flood the EDT: one update every few items is enough
+		if (done % 50 == 0 || done == todo)
+		{
+			publish(0);
+		}
+	}
+
+//-----------------------------------------------------------------------------
+
+	@Override
+	protected T doInBackground() throws Exception
+	{
+		return load();
+	}
+
+//-----------------------------------------------------------------------------
+
+	@Override
+	protected void process(List<Integer> chunks)
+	{
+		syncStatusBar(itemsDone.get());
+	}
+
+//-----------------------------------------------------------------------------
+
+	/**
+	 * Projects the counts of items into the queue status bar.
+	 * @param done the number of items to consider as done.
+	 */
+	private void syncStatusBar(int done)
+	{
+		int todo = itemsToDo.get();
+		if (todo > regToDo)
+		{
+			StaticTaskManager.addTodoTasks(todo - regToDo);
+			regToDo = todo;
+		}
+		if (done > regDone)
+		{
+			StaticTaskManager.subtractDoneTasks(done - regDone);
+			regDone = done;
+		}
+	}
+
+//-----------------------------------------------------------------------------
+
+	@Override
+	protected void done()
+	{
+		// Whatever happened, nothing is left to do for this loader
+		syncStatusBar(itemsToDo.get());
+		StaticTaskManager.subtractDoneTask();
+		if (owner != null)
+		{
+			owner.setCursor(Cursor.getPredefinedCursor(
+					Cursor.DEFAULT_CURSOR));
+		}
+
+		if (isCancelled())
+		{
+			return;
+		}
+
+		T result;
+		try {
+			result = get();
+		} catch (CancellationException e) {
+			return;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		} catch (ExecutionException e) {
+			failed(e.getCause() != null ? e.getCause() : e);
+			return;
+		}
+		loaded(result);
+	}
+
+//-----------------------------------------------------------------------------
+
+}
@@ -20,6 +20,8 @@ package gui;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
@@ -41,6 +43,12 @@ public class GUICardPanel extends JPanel
 	 * The main panel (cards deck)
 	 */
 	protected GUIMainPanel mainPanel;
+	
+	/**
+	 * Workers loading data for this card in the background
+	 */
+	private List<GUIBackgroundLoader<?>> loaders = 
+			new ArrayList<GUIBackgroundLoader<?>>();
 
 	/**
 	 * Constructor for JPanel meant to be a  single "card" in the deck of cards. 
@@ -73,6 +81,35 @@ public class GUICardPanel extends JPanel
 		return res;
 	}
 	
+//-----------------------------------------------------------------------------
+	
+	/**
+	 * Starts a worker that loads data for this card in the background. The 
+	 * worker is cancelled if the card is removed before the loading is 
+	 * completed.
+	 * @param loader the worker to start.
+	 */
+	protected void startLoader(GUIBackgroundLoader<?> loader)
+	{
+		loaders.removeIf(l -> l.isDone());
+		loaders.add(loader);
+		loader.start();
+	}
+	
+//-----------------------------------------------------------------------------
+	
+	/**
+	 * Cancels any background loading started by this card.
+	 */
+	protected void cancelLoaders()
+	{
+		for (GUIBackgroundLoader<?> l : loaders)
+		{
+			l.cancel(true);
+		}
+		loaders.clear();
+	}
+	
 //-----------------------------------------------------------------------------
 	
 	/**
@@ -120,11 +157,13 @@ public class GUICardPanel extends JPanel
 	                options[1]);
 				if (res == 0)
 				{
+					parentPanel.cancelLoaders();
 					mainPanel.removeCard(parentPanel);
 				}
 			}
 			else
 			{
+				parentPanel.cancelLoaders();
 				mainPanel.removeCard(parentPanel);
 			}
 		}
@@ -205,113 +205,37 @@ public class GUIFragmentInspector extends GUICardPanel
 					return;
 				}
 				
-				ArrayList<IAtomContainer> fragLib;
-				try {
-					fragLib = DenoptimIO.readMoleculeData(
-							inFile.getAbsolutePath());
-				} catch (Exception e1) {
-					e1.printStackTrace();
-					JOptionPane.showMessageDialog(btnAddFrag,
-			                "<html>Could not read fragments from file"
-			                + "<br>'" + inFile + "'"
-			                + "<br>Hint on cause: " + e1.getMessage() 
-			                +"</html>",
-			                "Error",
-			                JOptionPane.ERROR_MESSAGE,
-			                UIManager.getIcon("OptionPane.errorIcon"));
-					return;
-				}
-
-				if (fragLib.size() == 0)
-				{
-					JOptionPane.showMessageDialog(btnAddFrag,
-			                "<html>No fragments in file"
-			                + "<br>'" + inFile + "'</html>",
-			                "Error",
-			                JOptionPane.ERROR_MESSAGE,
-			                UIManager.getIcon("OptionPane.errorIcon"));
-					return;
-				}
-				
-				if (fragLib.size() == 1)
-				{
-					importFragmentsFromFile(inFile);
-					return;
-				}
-				
-				String[] options = new String[]{"All", 
-						"Selected",
-						"Cancel"};
-				String txt = "<html><body width='%1s'>Do you want to "
-						+ "append all fragments of only selected ones?"
-						+ "</html>";
-				int res = JOptionPane.showOptionDialog(btnAddFrag,
-		                String.format(txt,200),
-		                "Append Fragments",
-		                JOptionPane.DEFAULT_OPTION,
-		                JOptionPane.QUESTION_MESSAGE,
-		                UIManager.getIcon("OptionPane.warningIcon"),
-		                options,
-		                options[0]);
-				
-				if (res == 2)
-				{
-					return;
-				}
-				
-				switch (res)
-				{
-					case 0:
-						importFragmentsFromFile(inFile);
-						break;
-						
-					case 1:						
-						ArrayList<IAtomContainer> selectedFrags = 
-								new ArrayList<IAtomContainer>();
-						int iFrg = -1;
-						while (true)
-						{
-							if (iFrg+1>=fragLib.size())
-							{
-								break;
-							}
-							GUIFragmentSelector fragSelector = 
-									new GUIFragmentSelector(fragLib,iFrg+1);
-							fragSelector.setRequireApSelection(false);
-							Object selected = fragSelector.showDialog();
-
-							if (selected != null)
-							{
-								iFrg = ((Integer[]) selected)[0];
-								selectedFrags.add(fragLib.get(iFrg));
-							}
-							else
-							{
-								break;
-							}
-						}
-						String tmpSDFFile = Utils.getTempFile(
-								"Denoptim_FragViewer_loadedMol.sdf");
-						try {
-							DenoptimIO.writeMoleculeSet(tmpSDFFile, selectedFrags);
-							importFragmentsFromFile(new File(tmpSDFFile));
-						} catch (DENOPTIMException e1) {
-							JOptionPane.showMessageDialog(btnAddFrag,
-					                "<html>Could not read import fragments.<br>"
-					                + "Error reading tmp file"
-					                + "<br>'" + inFile + "'"
-					                + "<br>Hint on cause: " + e1.getMessage() 
-					                +"</html>",
-					                "Error",
-					                JOptionPane.ERROR_MESSAGE,
-					                UIManager.getIcon("OptionPane.errorIcon"));
-							return;
-						}
-						break;
+				startLoader(new GUIBackgroundLoader<ArrayList<IAtomContainer>>(
+						GUIFragmentInspector.this, 
+						"fragments from '" + inFile + "'") {
 					
-					default:
-						return;
-				}
+					@Override
+					protected ArrayList<IAtomContainer> load() throws Exception
+					{
+						return DenoptimIO.readMoleculeData(
+								inFile.getAbsolutePath());
+					}
+					
+					@Override
+					protected void loaded(ArrayList<IAtomContainer> fragLib)
+					{
+						appendFragmentsFromLibrary(inFile, fragLib);
+					}
+					
+					@Override
+					protected void failed(Throwable e1)
+					{
+						e1.printStackTrace();
+						JOptionPane.showMessageDialog(btnAddFrag,
+				                "<html>Could not read fragments from file"
+				                + "<br>'" + inFile + "'"
+				                + "<br>Hint on cause: " + e1.getMessage() 
+				                +"</html>",
+				                "Error",
+				                JOptionPane.ERROR_MESSAGE,
+				                UIManager.getIcon("OptionPane.errorIcon"));
+					}
+				});
 			}
 		});
 		btnDelFrag = new JButton("Remove");
@@ -730,8 +654,164 @@ public class GUIFragmentInspector extends GUICardPanel
 	 */
 	public void importFragmentsFromFile(File file, String format)
 	{	
-		this.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+		startLoader(new GUIBackgroundLoader<ArrayList<DENOPTIMFragment>>(
+				this, "fragments from '" + file + "'") {
+			
+			@Override
+			protected ArrayList<DENOPTIMFragment> load() throws Exception 
+			{
+				ArrayList<IAtomContainer> mols = DenoptimIO.readMoleculeData(
+						file.getAbsolutePath(),format);
+				addItemsToDo(mols.size());
+				ArrayList<DENOPTIMFragment> frags = 
+						new ArrayList<DENOPTIMFragment>(mols.size());
+				for (int i=0; i<mols.size(); i++)
+				{
+					if (isCancelled())
+					{
+						return frags;
+					}
+					frags.add(new DENOPTIMFragment(mols.get(i)));
+					// Let the molecule be collected as soon as possible
+					mols.set(i, null);
+					itemDone();
+				}
+				return frags;
+			}
+			
+			@Override
+			protected void loaded(ArrayList<DENOPTIMFragment> frags)
+			{
+				appendFragments(frags);
+			}
+			
+			@Override
+			protected void failed(Throwable cause)
+			{
+				cause.printStackTrace();
+				JOptionPane.showMessageDialog(null,
+		                "<html>Could not read file '" + file.getAbsolutePath() 
+		                + "'!<br>Hint of cause: " + cause.getCause() 
+		                + "</html>",
+		                "Error",
+		                JOptionPane.PLAIN_MESSAGE,
+		                UIManager.getIcon("OptionPane.errorIcon"));
+			}
+		});
+	}
+	
+//-----------------------------------------------------------------------------
+	
+	/**
+	 * Asks the user which of the fragments found in a file should be 
+	 * appended to the current library, and appends them.
+	 * @param inFile the file from which the fragments have been read.
+	 * @param fragLib the fragments read from the file.
+	 */
+	private void appendFragmentsFromLibrary(File inFile, 
+			ArrayList<IAtomContainer> fragLib)
+	{
+		if (fragLib.size() == 0)
+		{
+			JOptionPane.showMessageDialog(btnAddFrag,
+	                "<html>No fragments in file"
+	                + "<br>'" + inFile + "'</html>",
+	                "Error",
+	                JOptionPane.ERROR_MESSAGE,
+	                UIManager.getIcon("OptionPane.errorIcon"));
+			return;
+		}
+		
+		if (fragLib.size() == 1)
+		{
+			importFragmentsFromFile(inFile);
+			return;
+		}
+		
+		String[] options = new String[]{"All", 
+				"Selected",
+				"Cancel"};
+		String txt = "<html><body width='%1s'>Do you want to "
+				+ "append all fragments of only selected ones?"
+				+ "</html>";
+		int res = JOptionPane.showOptionDialog(btnAddFrag,
+                String.format(txt,200),
+                "Append Fragments",
+                JOptionPane.DEFAULT_OPTION,
+                JOptionPane.QUESTION_MESSAGE,
+                UIManager.getIcon("OptionPane.warningIcon"),
+                options,
+                options[0]);
 		
+		if (res == 2)
+		{
+			return;
+		}
+		
+		switch (res)
+		{
+			case 0:
+				importFragmentsFromFile(inFile);
+				break;
+				
+			case 1:						
+				ArrayList<IAtomContainer> selectedFrags = 
+						new ArrayList<IAtomContainer>();
+				int iFrg = -1;
+				while (true)
+				{
+					if (iFrg+1>=fragLib.size())
+					{
+						break;
+					}
+					GUIFragmentSelector fragSelector = 
+							new GUIFragmentSelector(fragLib,iFrg+1);
+					fragSelector.setRequireApSelection(false);
+					Object selected = fragSelector.showDialog();
+
+					if (selected != null)
+					{
+						iFrg = ((Integer[]) selected)[0];
+						selectedFrags.add(fragLib.get(iFrg));
+					}
+					else
+					{
+						break;
+					}
+				}
+				String tmpSDFFile = Utils.getTempFile(
+						"Denoptim_FragViewer_loadedMol.sdf");
+				try {
+					DenoptimIO.writeMoleculeSet(tmpSDFFile, selectedFrags);
+					importFragmentsFromFile(new File(tmpSDFFile));
+				} catch (DENOPTIMException e1) {
+					JOptionPane.showMessageDialog(btnAddFrag,
+			                "<html>Could not read import fragments.<br>"
+			                + "Error reading tmp file"
+			                + "<br>'" + inFile + "'"
+			                + "<br>Hint on cause: " + e1.getMessage() 
+			                +"</html>",
+			                "Error",
+			                JOptionPane.ERROR_MESSAGE,
+			                UIManager.getIcon("OptionPane.errorIcon"));
+					return;
+				}
+				break;
+			
+			default:
+				return;
+		}
+	}
+	
+//-----------------------------------------------------------------------------
+	
+	/**
+	 * Appends fragments to the current library and displays the first of 
+	 * the appended ones.
+	 * @param frags the fragments to append.
+	 */
+	private void appendFragments(ArrayList<DENOPTIMFragment> frags)
+	{
 		int firstOfNew = 0;
 		boolean libFromScrtch = false;
 		if (fragmentLibrary == null)
@@ -743,43 +823,21 @@ public class GUIFragmentInspector extends GUICardPanel
 		{
 			firstOfNew = fragmentLibrary.size();
 		}
+		fragmentLibrary.addAll(frags);
 		
-		try 
+		// Display the first
+		if (libFromScrtch)
 		{
-			// Import library of fragments
-			boolean addedOne = false;
-			for (IAtomContainer iac : DenoptimIO.readMoleculeData(
-												file.getAbsolutePath(),format))
-			{
-			    fragmentLibrary.add(new DENOPTIMFragment(iac));
-			    addedOne = true;
-			}
-			
-			// Display the first
-			if (libFromScrtch)
-			{
-				currFrgIdx = 0;
-			}
-			else if (addedOne)
-			{
-				currFrgIdx = firstOfNew;
-			}
-			loadCurrentFragIdxToViewer();
-			
-	        // Update the fragment spinner
-			updateFragListSpinner();
-			
-		} catch (Exception e) {
-			e.printStackTrace();
-			this.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
-			JOptionPane.showMessageDialog(null,
-	                "<html>Could not read file '" + file.getAbsolutePath() 
-	                + "'!<br>Hint of cause: " + e.getCause() + "</html>",
-	                "Error",
-	                JOptionPane.PLAIN_MESSAGE,
-	                UIManager.getIcon("OptionPane.errorIcon"));
+			currFrgIdx = 0;
 		}
-		this.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
+		else if (frags.size() > 0)
+		{
+			currFrgIdx = firstOfNew;
+		}
+		loadCurrentFragIdxToViewer();
+		
+        // Update the fragment spinner
+		updateFragListSpinner();
 	}
 	
 //-----------------------------------------------------------------------------
@@ -20,7 +20,6 @@ package gui;
 
 import java.awt.BorderLayout;
 import java.awt.Color;
-import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -73,10 +72,10 @@ public class GUIFragmentSelector extends GUIModalDialog
 	private static final long serialVersionUID = 912850110991449553L;
 	
 	/**
-	 * The currently loaded list of fragments
+	 * The list of molecular representations of the fragments among which we 
+	 * are selecting. Fragments are created only when displayed.
 	 */
-	private ArrayList<DENOPTIMFragment> fragmentLibrary =
-			new ArrayList<DENOPTIMFragment>();
+	private ArrayList<IAtomContainer> fragmentLibrary;
 	
 	/**
 	 * The currently loaded fragment
@@ -141,30 +140,10 @@ public class GUIFragmentSelector extends GUIModalDialog
 		this.setBounds(150, 150, 400, 550);
 		this.setTitle("Select fragment and AP");
 		
-		this.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-		// Define the list of frags among which we are selecting
-		for (IAtomContainer mol : fragLib)
-		{				
-			try {
-				DENOPTIMFragment frg = new DENOPTIMFragment(mol);
-				if (mol.getProperty(PRESELECTEDAPSFIELD) != null)
-				{
-				    frg.setProperty(PRESELECTEDAPSFIELD,
-				    		mol.getProperty(PRESELECTEDAPSFIELD));
-				}
-				fragmentLibrary.add(frg);
-			} catch (DENOPTIMException e1) {
-				e1.printStackTrace();
-				JOptionPane.showMessageDialog(null,"<html>Error importing "
-						+ "a fragment.<br>The list of fragment is incomplete."
-						+ "<br>Please report this to the DENOPTIM "
-						+ "team.</html>",
-		                "Error",
-		                JOptionPane.PLAIN_MESSAGE,
-		                UIManager.getIcon("OptionPane.errorIcon"));
-			}
-		}
-		this.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
+		// Define the list of frags among which we are selecting. 
+		// NB: converting the whole library into fragments is expensive and 
+		// pointless, as only one fragment is displayed at any time.
+		fragmentLibrary = fragLib;
 			
 		// The viewer with Jmol and APtable (not editable)
 		fragmentViewer = new FragmentViewPanel(false);
@@ -203,6 +182,10 @@ public class GUIFragmentSelector extends GUIModalDialog
 			
 			@Override
 			public void actionPerformed(ActionEvent e) {
+				if (fragment == null)
+				{
+					return;
+				}
 				ArrayList<Integer> ids = fragmentViewer.getSelectedAPIDs();
 				if (ids.size() > 0)
 				{
@@ -276,7 +259,24 @@ public class GUIFragmentSelector extends GUIModalDialog
 		
 		clearCurrentSystem();
 
-		fragment = fragmentLibrary.get(currFrgIdx);
+		IAtomContainer mol = fragmentLibrary.get(currFrgIdx);
+		try {
+			fragment = new DENOPTIMFragment(mol);
+			if (mol.getProperty(PRESELECTEDAPSFIELD) != null)
+			{
+			    fragment.setProperty(PRESELECTEDAPSFIELD,
+			    		mol.getProperty(PRESELECTEDAPSFIELD));
+			}
+		} catch (DENOPTIMException e1) {
+			e1.printStackTrace();
+			JOptionPane.showMessageDialog(null,"<html>Error importing "
+					+ "fragment " + (currFrgIdx+1) + ".<br>Please report "
+					+ "this to the DENOPTIM team.</html>",
+	                "Error",
+	                JOptionPane.PLAIN_MESSAGE,
+	                UIManager.getIcon("OptionPane.errorIcon"));
+			return;
+		}
 		fragmentViewer.loadFragImentToViewer(fragment);
 	}
 	
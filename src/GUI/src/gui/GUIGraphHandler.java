@@ -1253,58 +1253,133 @@ public class GUIGraphHandler extends GUICardPanel
 
 	public void importGraphsFromFile(File file)
 	{	
-		dnGraphLibrary = readGraphsFromFile(file);
-		
-		try {
-			molLibrary = DenoptimIO.readMoleculeData(
-					file.getAbsolutePath());
-		} catch (DENOPTIMException e) {
-			System.out.println("Could not read molecules from " + file);
-			for (int i=0; i<dnGraphLibrary.size(); i++)
-			{
-				molLibrary.add(new AtomContainer());
-			}
-		}
-			
-		// Display the first
-		currGrphIdx = 0;
-		
-		loadCurrentGraphIdxToViewer(false);
-		updateGraphListSpinner();
+		loadGraphsFromFile(file, false);
 	}
 
 //-----------------------------------------------------------------------------
 
 	private void appendGraphsFromFile(File file)
 	{
-		ArrayList<DENOPTIMGraph> graphs = readGraphsFromFile(file);
-		int oldSize = dnGraphLibrary.size();
-		if (graphs.size() > 0)
+		loadGraphsFromFile(file, true);
+	}
+	
+//-----------------------------------------------------------------------------
+
+	/**
+	 * Reads graphs, and their molecular representation if any, in the 
+	 * background, and then loads them into this handler.
+	 * @param file the file to read.
+	 * @param append use <code>true</code> to append the graphs to the ones 
+	 * already loaded, or <code>false</code> to replace them.
+	 */
+	private void loadGraphsFromFile(File file, boolean append)
+	{
+		String format = getGraphsFileFormat(file);
+		if (format == null)
 		{
-			dnGraphLibrary.addAll(graphs);
+			return;
+		}
+		
+		startLoader(new GUIBackgroundLoader<ArrayList<DENOPTIMGraph>>(this,
+				"graphs from '" + file + "'") {
 			
-			try {
-				molLibrary.addAll(DenoptimIO.readMoleculeData(
-						file.getAbsolutePath()));
-			} catch (DENOPTIMException e) {
-				System.out.println("WARNING: Could not read molecular representation from " + file);
-				for (int i=0; i<graphs.size(); i++)
+			private ArrayList<IAtomContainer> mols;
+			
+			@Override
+			protected ArrayList<DENOPTIMGraph> load() throws Exception
+			{
+				ArrayList<DENOPTIMGraph> graphs = 
+						DenoptimIO.readDENOPTIMGraphsFromFile(
+								file.getAbsolutePath(), format, hasFragSpace);
+				if (isCancelled())
 				{
-					molLibrary.add(new AtomContainer());
+					return graphs;
+				}
+				try {
+					mols = DenoptimIO.readMoleculeData(
+							file.getAbsolutePath());
+				} catch (DENOPTIMException e) {
+					System.out.println("WARNING: Could not read molecular "
+							+ "representation from " + file);
+					mols = new ArrayList<IAtomContainer>();
 				}
+				// Keep the two lists aligned
+				while (mols.size() < graphs.size())
+				{
+					mols.add(new AtomContainer());
+				}
+				return graphs;
 			}
 			
-			// Display the first of the imported ones
-			currGrphIdx = oldSize;
+			@Override
+			protected void loaded(ArrayList<DENOPTIMGraph> graphs)
+			{
+				if (append)
+				{
+					if (graphs.size() == 0)
+					{
+						return;
+					}
+					int oldSize = dnGraphLibrary.size();
+					dnGraphLibrary.addAll(graphs);
+					molLibrary.addAll(mols);
+					
+					// Display the first of the imported ones
+					currGrphIdx = oldSize;
+				} else {
+					dnGraphLibrary = graphs;
+					molLibrary = mols;
+					
+					// Display the first
+					currGrphIdx = 0;
+				}
+				loadCurrentGraphIdxToViewer(false);
+				updateGraphListSpinner();
+			}
 			
-			loadCurrentGraphIdxToViewer(false);
-			updateGraphListSpinner();
-		}
+			@Override
+			protected void failed(Throwable cause)
+			{
+				cause.printStackTrace();
+				String msg = "<html>Could not read graph from file <br> "
+						+ "'" + file.getAbsolutePath() 
+		                + "'<br>Hint on cause: ";
+				msg = msg + cause.getClass().getName()+ " (";
+				if (cause.getCause() != null)
+				{
+					msg = msg + cause.getCause();
+				}
+				if (cause.getMessage() != null)
+				{
+					msg = msg + " " + cause.getMessage();
+				}
+				msg = msg + ")";
+				if (hasFragSpace)
+				{
+					msg = msg + "<br>This could be due to a mistmatch between "
+							+ "the fragment IDs in the<br>"
+							+ "graph you are trying to load, "
+							+ "and the currently loaded fragment space.<br>"
+							+ "Aborting import of graphs.";
+				}
+				msg = msg + "</html>";
+				JOptionPane.showMessageDialog(null,msg,
+		                "Error",
+		                JOptionPane.PLAIN_MESSAGE,
+		                UIManager.getIcon("OptionPane.errorIcon"));
+			}
+		});
 	}
 	
 //-----------------------------------------------------------------------------
 
-	private ArrayList<DENOPTIMGraph> readGraphsFromFile(File file)
+	/**
+	 * Identifies the format of a file with graphs, possibly by asking the 
+	 * user.
+	 * @param file the file to read.
+	 * @return the format or <code>null</code> if the user decided to abandon.
+	 */
+	private String getGraphsFileFormat(File file)
 	{
 		//TODO change: this should be done elsewhere, maybe in DenoptimIO
 		
@@ -1341,7 +1416,7 @@ public class GUIGraphHandler extends GUICardPanel
 				switch (res)
 				{
 					case 0:
-						return new ArrayList<DENOPTIMGraph>();
+						return null;
 						
 					case 1:
 						format = "TXT";
@@ -1358,43 +1433,7 @@ public class GUIGraphHandler extends GUICardPanel
 				break;
 		}
 		
-		ArrayList<DENOPTIMGraph> graphs = new ArrayList<DENOPTIMGraph>();
-		try 
-		{
-			graphs = DenoptimIO.readDENOPTIMGraphsFromFile(
-					file.getAbsolutePath(), format, hasFragSpace);	
-		} 
-		catch (Exception e) 
-		{
-			e.printStackTrace();
-			String msg = "<html>Could not read graph from file <br> "
-					+ "'" + file.getAbsolutePath() 
-	                + "'<br>Hint on cause: ";
-			msg = msg + e.getClass().getName()+ " (";
-			if (e.getCause() != null)
-			{
-				msg = msg + e.getCause();
-			}
-			if (e.getMessage() != null)
-			{
-				msg = msg + " " + e.getMessage();
-			}
-			msg = msg + ")";
-			if (hasFragSpace)
-			{
-				msg = msg + "<br>This could be due to a mistmatch between "
-						+ "the fragment IDs in the<br>"
-						+ "graph you are trying to load, "
-						+ "and the currently loaded fragment space.<br>"
-						+ "Aborting import of graphs.";
-			}
-			msg = msg + "</html>";
-			JOptionPane.showMessageDialog(null,msg,
-	                "Error",
-	                JOptionPane.PLAIN_MESSAGE,
-	                UIManager.getIcon("OptionPane.errorIcon"));
-		}
-		return graphs;
+		return format;
 	}
 	
 //-----------------------------------------------------------------------------
@@ -22,10 +22,8 @@ package gui;
 import java.awt.BorderLayout;
 import java.awt.CardLayout;
 import java.awt.Color;
-import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
-import java.awt.GridLayout;
 import java.awt.Shape;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -42,7 +40,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.GroupLayout;
 import javax.swing.JButton;
-import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
@@ -311,73 +308,100 @@ public class GUIInspectFSERun extends GUICardPanel
 	                UIManager.getIcon("OptionPane.errorIcon"));
 			return;
 		}
-		mainPanel.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-		
 		System.out.println("Importing data from '" + folder + "'... ");
 		
-		allItems = new ArrayList<DENOPTIMMolecule>();
-		boolean skippFurtherErrors = false;
-		for (File molFile : folder.listFiles(new FileFilter() {
+		startLoader(new GUIBackgroundLoader<ArrayList<DENOPTIMMolecule>>(
+				mainPanel, "data from folder '" + folder + "'") {
+			
+			private ArrayList<File> unreadable = new ArrayList<File>();
+			
+			private String firstError = "";
 			
 			@Override
-			public boolean accept(File pathname) {
-				if (pathname.getName().startsWith(
-						DENOPTIMConstants.FITFILENAMEPREFIX)
-					&& pathname.getName().endsWith(
-						DENOPTIMConstants.FITFILENAMEEXTOUT)
-					&& !pathname.isDirectory())
+			protected ArrayList<DENOPTIMMolecule> load() throws Exception
+			{
+				File[] molFiles = folder.listFiles(new FileFilter() {
+					
+					@Override
+					public boolean accept(File pathname) {
+						if (pathname.getName().startsWith(
+								DENOPTIMConstants.FITFILENAMEPREFIX)
+							&& pathname.getName().endsWith(
+								DENOPTIMConstants.FITFILENAMEEXTOUT)
+							&& !pathname.isDirectory())
+						{
+							return true;
+						}
+						return false;
+					}
+				});
+				addItemsToDo(molFiles.length);
+				
+				ArrayList<DENOPTIMMolecule> items = 
+						new ArrayList<DENOPTIMMolecule>();
+				for (File molFile : molFiles)
 				{
-					return true;
+					if (isCancelled())
+					{
+						break;
+					}
+					DENOPTIMMolecule mol = new DENOPTIMMolecule();
+					try {
+						mol = DenoptimIO.readDENOPTIMMolecules(
+								molFile,false).get(0);
+					} catch (DENOPTIMException e1) {
+						if (unreadable.isEmpty())
+						{
+							e1.printStackTrace();
+							firstError = e1.getMessage();
+						}
+						unreadable.add(molFile);
+					}
+					items.add(mol);
+					itemDone();
 				}
-				return false;
+				return items;
 			}
-		}))
-		{			
-			DENOPTIMMolecule mol = new DENOPTIMMolecule();
-			try {
-				mol = DenoptimIO.readDENOPTIMMolecules(
-						molFile,false).get(0);
-			} catch (DENOPTIMException e1) {
-				if (!skippFurtherErrors)
+			
+			@Override
+			protected void loaded(ArrayList<DENOPTIMMolecule> items)
+			{
+				if (!unreadable.isEmpty())
 				{
-					e1.printStackTrace();
-					mainPanel.setCursor(Cursor.getPredefinedCursor(
-							Cursor.DEFAULT_CURSOR));
-	
-					JPanel msgPanel = new JPanel(new GridLayout(2, 1));
 					String msg = "<html><body width='%1s'>Could not read data "
-							+ "from '" + molFile + "'. Hint on cause: "
-							+ e1.getMessage() + " Should we try to "
+							+ "from " + unreadable.size() + " files (e.g., '" 
+							+ unreadable.get(0) + "'). Hint on cause: "
+							+ firstError + " Should we try to "
 							+ "visualize the results anyway?</html>";
-					JLabel text = new JLabel(String.format(msg, 450));
-					JCheckBox cb = new JCheckBox("Remember decision");
-					cb.setSelected(false);
-					msgPanel.add(text);
-					msgPanel.add(cb);
 					String[] options = new String[]{"Yes", "Abandon"};
 					int res = JOptionPane.showOptionDialog(null,
-							msgPanel,
+							String.format(msg, 450),
 							"ERROR",
 							JOptionPane.DEFAULT_OPTION,
 			                JOptionPane.QUESTION_MESSAGE,
 			                UIManager.getIcon("OptionPane.errorIcon"),
 			                options,
 			                options[1]);
-					if (cb.isSelected())
-					{
-						skippFurtherErrors = true;
-					}
-					switch (res)
+					if (res != 0)
 					{
-						case 0:
-							break;
-							
-						case 1:
-							return;
+						return;
 					}
 				}
+				allItems = items;
+				makeCharts();
 			}
-			
+		});
+	}
+	
+//-----------------------------------------------------------------------------
+
+	/**
+	 * Processes the currently loaded candidates and displays them.
+	 */
+	private void makeCharts()
+	{
+		for (DENOPTIMMolecule mol : allItems)
+		{
 			if (mol.hasFitness())
 			{
 				molsWithFitness++;
@@ -391,8 +415,6 @@ public class GUIInspectFSERun extends GUICardPanel
 			{
 				minLevel = lev;
 			}
-			
-			allItems.add(mol);
 		}
 		
 		System.out.println("Imported "+allItems.size()+" individuals.");
@@ -647,8 +669,7 @@ public class GUIInspectFSERun extends GUICardPanel
 		((CardLayout) chartHolderPanel.getLayout()).show(chartHolderPanel,
 				"sorted");
 		rightPanel.add(chartHolderPanel,BorderLayout.CENTER);
-		
-		mainPanel.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
+		rightPanel.revalidate();
 	}
 	
 //-----------------------------------------------------------------------------
@@ -22,7 +22,6 @@ package gui;
 import java.awt.BasicStroke;
 import java.awt.BorderLayout;
 import java.awt.Color;
-import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.List;
@@ -73,9 +72,10 @@ import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
 import org.jfree.data.xy.DefaultXYDataset;
 import org.jfree.data.xy.XYDataset;
 
+import denoptim.constants.DENOPTIMConstants;
 import denoptim.exception.DENOPTIMException;
+import denoptim.io.CandidatesIndex;
 import denoptim.io.DenoptimIO;
-import denoptim.molecule.DENOPTIMMolecule;
 import denoptim.utils.GenUtils;
 
 
@@ -107,16 +107,19 @@ public class GUIInspectGARun extends GUICardPanel
 	
 	private File srcFolder;
 	
-	private ArrayList<DENOPTIMMolecule> allIndividuals;
-	private int molsWithFitness = 0;
+	/**
+	 * Compact index of all the candidates. No chemical representation is 
+	 * kept in memory.
+	 */
+	private CandidatesIndex index;
 	private JLabel lblTotItems;
-	private Map<Integer,DENOPTIMMolecule> candsWithFitnessMap;
 	
-	// WARNING: itemId in the map is "j" and is just a 
+	// WARNING: itemId in the chart is "j" and is just a 
 	// locally generated unique 
 	// identifier that has NO RELATION to generation/molId/fitness
-	// The Map 'candsWithFitnessMap' serve specifically to convert
-	// the itemId 'j' into a DENOPTIMMolecule
+	// The array 'itemToEntry' serve specifically to convert
+	// the itemId 'j' into the position of the candidate in the index
+	private int[] itemToEntry;
 	
 	private DefaultXYDataset datasetAllFit = new DefaultXYDataset();;
 	private DefaultXYDataset datasetSelected = new DefaultXYDataset();
@@ -310,6 +313,14 @@ public class GUIInspectGARun extends GUICardPanel
 	
 //-----------------------------------------------------------------------------
 
+	/**
+	 * Imports the results of a GA run. The data is loaded in the background
+	 * from the index of the candidates, which is either found in the run
+	 * folder or created by scanning the generation folders (for runs 
+	 * produced by older versions). Molecular representations are loaded only
+	 * upon selection of a specific candidate.
+	 * @param file the folder with the results of the GA run.
+	 */
 	public void importGARunData(File file) 
 	{
 		if (!file.isDirectory() || !file.exists())
@@ -322,14 +333,105 @@ public class GUIInspectGARun extends GUICardPanel
 			return;
 		}
 
-		mainPanel.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
 		srcFolder = file;
+		lblTotItems.setText("Loading data...");
 		
 		System.out.println("Importing data from '" + srcFolder + "'...");
 		
-		Map<Integer,double[]> popProperties = new HashMap<Integer,double[]>();
-		allIndividuals = new ArrayList<DENOPTIMMolecule>();
-		for (File genFolder : file.listFiles(new FileFilter() {
+		startLoader(new GUIBackgroundLoader<CandidatesIndex>(mainPanel,
+				"data from '" + file + "'") {
+			
+			private Map<Integer,double[]> popProperties = 
+					new HashMap<Integer,double[]>();
+			
+			private ArrayList<File> missingSummaries = new ArrayList<File>();
+			
+			@Override
+			protected CandidatesIndex load() throws Exception 
+			{
+				readPopulationProperties(file, popProperties, 
+						missingSummaries);
+				return loadIndex(file);
+			}
+			
+			@Override
+			protected void loaded(CandidatesIndex result)
+			{
+				reportMissingSummaries(missingSummaries);
+				index = result;
+				makeChart(popProperties);
+			}
+			
+			@Override
+			protected void failed(Throwable cause)
+			{
+				reportMissingSummaries(missingSummaries);
+				cause.printStackTrace();
+				lblTotItems.setText("No item loaded");
+				JOptionPane.showMessageDialog(null,
+		                "Could not read data from '" + file + "'!.",
+		                "Error",
+		                JOptionPane.PLAIN_MESSAGE,
+		                UIManager.getIcon("OptionPane.errorIcon"));
+			}
+		});
+	}
+	
+//-----------------------------------------------------------------------------
+
+	private void reportMissingSummaries(ArrayList<File> missingSummaries)
+	{
+		if (!missingSummaries.isEmpty())
+		{
+			JOptionPane.showMessageDialog(null,
+	                "<html>Could not read " + missingSummaries.size()
+	                + " generation summaries (e.g., '" 
+	                + missingSummaries.get(0) + "')!<br>"
+	                + "There will be holes in the min/max/mean profile."
+	                + "</html>",
+	                "Error",
+	                JOptionPane.PLAIN_MESSAGE,
+	                UIManager.getIcon("OptionPane.errorIcon"));
+		}
+	}
+	
+//-----------------------------------------------------------------------------
+
+	/**
+	 * Reads the index of the candidates of a run, or creates it if not found.
+	 */
+	private static CandidatesIndex loadIndex(File runFolder) 
+			throws DENOPTIMException
+	{
+		File indexFile = new File(runFolder + System.getProperty(
+				"file.separator") + DENOPTIMConstants.GAINDEXFILENAME);
+		if (indexFile.exists())
+		{
+			return CandidatesIndex.read(indexFile);
+		}
+		System.out.println("Index of candidates not found. Scanning "
+				+ "generation folders.");
+		CandidatesIndex idx = CandidatesIndex.indexRunFolder(runFolder);
+		if (DenoptimIO.canWriteAndReadTo(indexFile.getAbsolutePath()))
+		{
+			try {
+				idx.write(indexFile);
+			} catch (DENOPTIMException e) {
+				// Not a problem: we'll scan the folders again next time
+			}
+		}
+		return idx;
+	}
+	
+//-----------------------------------------------------------------------------
+
+	/**
+	 * Reads the summaries of the population of each generation. 
+	 */
+	private static void readPopulationProperties(File runFolder,
+			Map<Integer,double[]> popProperties, ArrayList<File> missing)
+	{
+		for (File genFolder : runFolder.listFiles(new FileFilter() {
 			
 			@Override
 			public boolean accept(File pathname) {
@@ -353,95 +455,51 @@ public class GUIInspectGARun extends GUICardPanel
 					+ System.getProperty("file.separator") 
 					+ "Gen" + zeroedGenId + ".txt");
 			
-			System.out.println("Reading "+genSummary);
-			
-			if (!DenoptimIO.checkExists(genSummary.getAbsolutePath()))
-			{
-				JOptionPane.showMessageDialog(null,
-		                "<html>File '" + genSummary + "' not found!<br>"
-		                + "There will be holes in the min/max/mean profile."
-		                + "</html>",
-		                "Error",
-		                JOptionPane.PLAIN_MESSAGE,
-		                UIManager.getIcon("OptionPane.errorIcon"));
-			}
 			try {
 				popProperties.put(genId, DenoptimIO.readPopulationProps(
 						genSummary));
 			} catch (DENOPTIMException e2) {
-				JOptionPane.showMessageDialog(null,
-		                "<html>File '" + genSummary + "' not found!<br>"
-		                + "There will be holes in the min/max/mean profile."
-		                + "</html>",
-		                "Error",
-		                JOptionPane.PLAIN_MESSAGE,
-		                UIManager.getIcon("OptionPane.errorIcon"));
+				missing.add(genSummary);
 				popProperties.put(genId, new double[] {
 						Double.NaN, Double.NaN, Double.NaN, Double.NaN});
 			}
-			
-			
-			// Read DENOPTIMMolecules
-			for (File fitFile : genFolder.listFiles(new FileFilter() {
-				
-				@Override
-				public boolean accept(File pathname) {
-					if (pathname.getName().endsWith("FIT.sdf"))
-					{
-						return true;
-					}
-					return false;
-				}
-			}))
-			{
-				DENOPTIMMolecule one;
-				try {
-					one = DenoptimIO.readDENOPTIMMolecules(
-							fitFile,false).get(0);
-				} catch (DENOPTIMException e1) {
-					e1.printStackTrace();
-					JOptionPane.showMessageDialog(null,
-			                "Could not read data from to '" + fitFile + "'!.",
-			                "Error",
-			                JOptionPane.PLAIN_MESSAGE,
-			                UIManager.getIcon("OptionPane.errorIcon"));
-					return;
-				}
-				if (one.hasFitness())
-				{
-					molsWithFitness++;
-				}
-				one.setGeneration(genId);
-				allIndividuals.add(one);
-			}
 		}
+	}
+	
+//-----------------------------------------------------------------------------
+
+	/**
+	 * Creates the chart from the data that has been imported.
+	 */
+	private void makeChart(Map<Integer,double[]> popProperties)
+	{
+		int molsWithFitness = index.countWithFitness();
 		
-		System.out.println("Imported "+allIndividuals.size()+" individuals.");
+		System.out.println("Imported "+index.size()+" individuals.");
 		
-		lblTotItems.setText("Found "+allIndividuals.size()+" candidates ("
+		lblTotItems.setText("Found "+index.size()+" candidates ("
 				+molsWithFitness+" with fitness)");
 		
 		// Process data and organize then into series for the plot 
         double[][] candsWithFitnessData = new double[2][molsWithFitness];
-        candsWithFitnessMap = new HashMap<Integer,DENOPTIMMolecule>();
+        itemToEntry = new int[molsWithFitness];
         int j = -1;
-        for (int i=0; i<allIndividuals.size(); i++)
+        for (int i=0; i<index.size(); i++)
         {
-        	DENOPTIMMolecule mol = allIndividuals.get(i);
-        	if (!mol.hasFitness())
+        	if (!index.hasFitness(i))
         	{
         		continue;
         	}
         	
         	// WARNING: itemId in the data is "j" and is just a unique 
         	// identifier that has NO RELATION to generation/molId/fitness
-        	// The Map 'candsWithFitnessMap' serve specifically to convert
-        	// the itemId 'j' into a DENOPTIMMolecule
+        	// The array 'itemToEntry' serve specifically to convert
+        	// the itemId 'j' into the position of the candidate in the index
         	
         	j++;
-        	candsWithFitnessMap.put(j, mol);
-        	candsWithFitnessData[0][j] = mol.getGeneration();
-        	candsWithFitnessData[1][j] = mol.getMoleculeFitness();
+        	itemToEntry[j] = i;
+        	candsWithFitnessData[0][j] = index.getGeneration(i);
+        	candsWithFitnessData[1][j] = index.getFitness(i);
         }
 		datasetAllFit.addSeries("Candidates_with_fitness", candsWithFitnessData);
 		
@@ -592,7 +650,7 @@ public class GUIInspectGARun extends GUICardPanel
 			@Override
 			public String generateToolTip(XYDataset data, int sId, int itemId)
 			{
-				return candsWithFitnessMap.get(itemId).getName();
+				return index.getName(itemToEntry[itemId]);
 			}
 		};
 		chart.getXYPlot().getRenderer().setSeriesToolTipGenerator(0, ttg);
@@ -620,8 +678,7 @@ public class GUIInspectGARun extends GUICardPanel
 					if (serId == 0)
 					{
 						int itemId = ((XYItemEntity) e.getEntity()).getItem();
-						DENOPTIMMolecule mol = candsWithFitnessMap.get(itemId);
-						renderViewWithSelectedItem(mol);
+						renderViewWithSelectedItem(itemToEntry[itemId]);
 					}
 					//do we do anything if we select other series? not now...
 				}
@@ -633,30 +690,44 @@ public class GUIInspectGARun extends GUICardPanel
 		});
 		
 		rightPanel.add(chartPanel,BorderLayout.CENTER);
-		
-		mainPanel.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
+		rightPanel.revalidate();
 	}
 	
 //-----------------------------------------------------------------------------
 	
-	private void renderViewWithSelectedItem(DENOPTIMMolecule mol)
+	/**
+	 * Highlights the selected candidate and loads its molecular 
+	 * representation.
+	 * @param entry the position of the candidate in the index.
+	 */
+	private void renderViewWithSelectedItem(int entry)
 	{
 		// Update series of selected (chart is updated automatically)
         double[][] selectedCandsData = new double[2][1]; //NB: for now allow only one
-        int j = -1;
-        for (int i=0; i<1; i++) //NB: for now allow only one
-        {	
-        	j++;
-        	candsWithFitnessMap.put(j, mol);
-        	selectedCandsData[0][j] = mol.getGeneration();
-        	selectedCandsData[1][j] = mol.getMoleculeFitness();
-        }
+        selectedCandsData[0][0] = index.getGeneration(entry);
+        selectedCandsData[1][0] = index.getFitness(entry);
         datasetSelected.removeSeries("Selected_candidates");
         datasetSelected.addSeries("Selected_candidates", selectedCandsData);
 		chart.getXYPlot().setDataset(1, datasetSelected);
 		
-		// Update the molecular viewer
-		molViewer.loadChemicalStructureFromFile(mol.getMoleculeFile());
+		// Update the molecular viewer: the structure is fetched only now
+		if (index.getOffset(entry) == 0)
+		{
+			molViewer.loadChemicalStructureFromFile(
+					index.getMoleculeFile(entry));
+		} else {
+			try {
+				molViewer.loadChemicalStructure(DenoptimIO.readSDFString(
+						index.readRecord(entry)));
+			} catch (DENOPTIMException e) {
+				JOptionPane.showMessageDialog(null,
+		                "Could not read data for candidate '" 
+		                + index.getName(entry) + "'!.",
+		                "Error",
+		                JOptionPane.PLAIN_MESSAGE,
+		                UIManager.getIcon("OptionPane.errorIcon"));
+			}
+		}
 	}
 	
 //-----------------------------------------------------------------------------
@@ -0,0 +1,93 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmarks;
+
+import java.io.File;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of DENOPTIM and writes the results in JSON format.
+ *
+ * @author Marco Foscato
+ */
+
+public class DenoptimBenchmarks
+{
+
+//------------------------------------------------------------------------------
+
+    public static void printUsage()
+    {
+        System.err.println("Usage: java -jar DenoptimBenchmarks.jar "
+                + "[resultsFile.json [regexOfBenchmarks [pathToPtCOLX2]]]");
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * @param args the command line arguments: the pathname of the JSON file
+     * collecting the results (default: <code>denoptim_benchmarks.json</code>),
+     * a regular expression selecting the benchmarks to run (default: all),
+     * and the pathname to the <code>test/PtCOLX2</code> example (default:
+     * {@value PtCOLX2Fixture#DEFAULTDATADIR}).
+     * @throws Exception if the benchmarks could not be run.
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length > 3)
+        {
+            printUsage();
+            System.exit(-1);
+        }
+        String resultsFile = "denoptim_benchmarks.json";
+        String include = ".*";
+        String dataDir = PtCOLX2Fixture.DEFAULTDATADIR;
+        if (args.length > 0)
+        {
+            resultsFile = args[0];
+        }
+        if (args.length > 1)
+        {
+            include = args[1];
+        }
+        if (args.length > 2)
+        {
+            dataDir = args[2];
+        }
+
+        // Forked JVMs do not see our working directory as we do
+        dataDir = new File(dataDir).getAbsolutePath();
+
+        Options opt = new OptionsBuilder()
+                .include(include)
+                .jvmArgsAppend("-D" + PtCOLX2Fixture.DATADIRPROPERTY + "="
+                        + dataDir)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultsFile)
+                .build();
+        new Runner(opt).run();
+    }
+
+//------------------------------------------------------------------------------
+
+}
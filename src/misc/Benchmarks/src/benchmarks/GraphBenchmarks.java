@@ -0,0 +1,118 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import denoptim.io.DenoptimIO;
+import denoptim.molecule.DENOPTIMGraph;
+import denoptim.utils.GraphConversionTool;
+import denoptim.utils.GraphUtils;
+
+/**
+ * Benchmarks of the handling of graphs: conversion into molecules, deep
+ * copy, and comparison. Each invocation processes the whole initial
+ * population of the <code>test/PtCOLX2</code> example.
+ *
+ * @author Marco Foscato
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBenchmarks
+{
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Pairs of equivalent graphs, i.e., the graphs of the population and
+     * their deep copies.
+     */
+    @State(Scope.Thread)
+    public static class EquivalentPairs
+    {
+        public ArrayList<DENOPTIMGraph> copies;
+
+        @Setup(Level.Trial)
+        public void setup(PtCOLX2Fixture fx) throws Exception
+        {
+            copies = new ArrayList<DENOPTIMGraph>();
+            for (DENOPTIMGraph g : fx.graphs)
+            {
+                copies.add((DENOPTIMGraph) DenoptimIO.deepCopy(g));
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Benchmark
+    public void convertGraphToMolecule(PtCOLX2Fixture fx, Blackhole bh)
+            throws Exception
+    {
+        for (DENOPTIMGraph g : fx.graphs)
+        {
+            bh.consume(GraphConversionTool.convertGraphToMolecule(g, true));
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Benchmark
+    public void deepCopy(PtCOLX2Fixture fx, Blackhole bh) throws Exception
+    {
+        for (DENOPTIMGraph g : fx.graphs)
+        {
+            bh.consume(DenoptimIO.deepCopy(g));
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Benchmark
+    public void equivalentGraphs(PtCOLX2Fixture fx, EquivalentPairs pairs,
+            Blackhole bh) throws Exception
+    {
+        for (int i=0; i<fx.graphs.size(); i++)
+        {
+            bh.consume(GraphUtils.equivalentGraphs(fx.graphs.get(i),
+                    pairs.copies.get(i)));
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,248 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.vecmath.Point3d;
+
+import org.openscience.cdk.Atom;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.qsar.DescriptorEngine;
+import org.openscience.cdk.qsar.IDescriptor;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import denoptim.fitness.DescriptorForFitness;
+import denoptim.fitness.FitnessParameters;
+import denoptim.fitness.FitnessProvider;
+import denoptim.fragspace.FragmentSpaceParameters;
+import denoptim.io.DenoptimIO;
+import denoptim.molecule.DENOPTIMGraph;
+import denoptim.rings.RingClosureParameters;
+import denoptim.utils.GraphConversionTool;
+
+/**
+ * Shared data for the benchmarks: the fragment space, the initial population,
+ * and the other settings of the <code>test/PtCOLX2</code> example.
+ * The location of that example is taken from the system property
+ * {@value #DATADIRPROPERTY}, and defaults to <code>../test/PtCOLX2</code>,
+ * i.e., the example as seen from the <code>build</code> folder.
+ *
+ * @author Marco Foscato
+ */
+
+@State(Scope.Benchmark)
+public class PtCOLX2Fixture
+{
+    /**
+     * Name of the system property defining the location of the example
+     */
+    public static final String DATADIRPROPERTY = "denoptim.benchmark.data";
+
+    /**
+     * Default location of the example
+     */
+    public static final String DEFAULTDATADIR = ".." + File.separator + "test"
+            + File.separator + "PtCOLX2";
+
+    /**
+     * The graphs of the initial population
+     */
+    public ArrayList<DENOPTIMGraph> graphs;
+
+    /**
+     * The molecular representation of the graphs in {@link #graphs}
+     */
+    public ArrayList<IAtomContainer> mols;
+
+    /**
+     * Internal fitness provider using a couple of cheap CDK descriptors
+     */
+    public FitnessProvider fitnessProvider;
+
+    /**
+     * Chain of atoms to be evaluated for ring closability
+     */
+    public List<IAtom> closablePath;
+
+    /**
+     * Rotatability of the bonds in {@link #closablePath}
+     */
+    public ArrayList<Boolean> closablePathRotatability;
+
+    /**
+     * Reference points for the dihedral angles along {@link #closablePath}
+     */
+    public ArrayList<ArrayList<Point3d>> closablePathDihRefs;
+
+    /**
+     * Flag recording that the static parameters have been set in this JVM
+     */
+    private static boolean configured = false;
+
+//------------------------------------------------------------------------------
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        String dataDir = System.getProperty(DATADIRPROPERTY, DEFAULTDATADIR);
+        configure(dataDir);
+
+        graphs = DenoptimIO.readDENOPTIMGraphsFromSDFile(dataDir
+                + File.separator + "data" + File.separator
+                + "initPopulation.sdf", true);
+        mols = new ArrayList<IAtomContainer>();
+        for (DENOPTIMGraph g : graphs)
+        {
+            mols.add(GraphConversionTool.convertGraphToMolecule(g, true));
+        }
+
+        List<String> classNames = new ArrayList<String>();
+        classNames.add("org.openscience.cdk.qsar.descriptors.molecular."
+                + "ZagrebIndexDescriptor");
+        classNames.add("org.openscience.cdk.qsar.descriptors.molecular."
+                + "AtomCountDescriptor");
+        DescriptorEngine engine = new DescriptorEngine(classNames);
+        List<IDescriptor> iDescs = engine.instantiateDescriptors(classNames);
+        List<DescriptorForFitness> descriptors =
+                new ArrayList<DescriptorForFitness>();
+        for (int i=0; i<iDescs.size(); i++)
+        {
+            IDescriptor iDesc = iDescs.get(i);
+            descriptors.add(new DescriptorForFitness(
+                    iDesc.getDescriptorNames()[0], classNames.get(i), iDesc,
+                    0));
+        }
+        fitnessProvider = new FitnessProvider(descriptors, "${"
+                + descriptors.get(0).getShortName() + " + "
+                + descriptors.get(1).getShortName() + "}");
+
+        makeClosablePath(6);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reads the parameters of the example and creates the fragment space.
+     * Pathnames relative to the folder of the example are made absolute.
+     * @param dataDir the folder of the example.
+     * @throws Exception if the example cannot be read.
+     */
+
+    private static synchronized void configure(String dataDir)
+            throws Exception
+    {
+        if (configured)
+        {
+            return;
+        }
+        FragmentSpaceParameters.resetParameters();
+        RingClosureParameters.resetParameters();
+        FitnessParameters.resetParameters();
+
+        BufferedReader br = new BufferedReader(new FileReader(dataDir
+                + File.separator + "input_parameters"));
+        try
+        {
+            String line;
+            while ((line = br.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#")
+                        || !line.contains("="))
+                {
+                    continue;
+                }
+                String key = line.substring(0, line.indexOf("=") + 1);
+                String value = line.substring(line.indexOf("=") + 1).trim();
+                File f = new File(dataDir, value);
+                if (value.length() > 0 && f.exists())
+                {
+                    value = f.getAbsolutePath();
+                }
+                if (key.toUpperCase().startsWith("FS-"))
+                {
+                    FragmentSpaceParameters.interpretKeyword(key, value);
+                }
+                else if (key.toUpperCase().startsWith("RC-"))
+                {
+                    RingClosureParameters.interpretKeyword(key, value);
+                }
+            }
+        }
+        finally
+        {
+            br.close();
+        }
+        FragmentSpaceParameters.checkParameters();
+        FragmentSpaceParameters.processParameters();
+        if (RingClosureParameters.rcParamsInUse())
+        {
+            RingClosureParameters.checkParameters();
+            RingClosureParameters.processParameters();
+        }
+        configured = true;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Builds a zig-zag chain of sp3 carbon atoms with all bonds rotatable.
+     * @param size the number of atoms in the chain.
+     */
+
+    private void makeClosablePath(int size)
+    {
+        closablePath = new ArrayList<IAtom>();
+        double bond = 1.54;
+        double halfAngle = Math.toRadians(109.5 / 2.0);
+        for (int i=0; i<size; i++)
+        {
+            double x = i * bond * Math.sin(halfAngle);
+            double y = (i % 2) * bond * Math.cos(halfAngle);
+            closablePath.add(new Atom("C", new Point3d(x, y, 0.0)));
+        }
+        closablePathRotatability = new ArrayList<Boolean>();
+        for (int i=0; i<size-1; i++)
+        {
+            closablePathRotatability.add(true);
+        }
+        closablePathDihRefs = new ArrayList<ArrayList<Point3d>>();
+        for (int i=3; i<size; i++)
+        {
+            ArrayList<Point3d> refs = new ArrayList<Point3d>();
+            for (int j=i-3; j<=i; j++)
+            {
+                refs.add(closablePath.get(j).getPoint3d());
+            }
+            closablePathDihRefs.add(refs);
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+}
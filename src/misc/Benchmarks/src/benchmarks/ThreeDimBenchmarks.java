@@ -0,0 +1,216 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.vecmath.AxisAngle4d;
+import javax.vecmath.Matrix3d;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openscience.cdk.interfaces.IAtom;
+
+import denoptim.molecule.DENOPTIMGraph;
+import denoptim.rings.RingClosureFinder;
+import denoptim.threedim.TreeBuilder3D;
+import denoptim.utils.DENOPTIMMathUtils;
+import denoptim.utils.GeometryKernel;
+
+/**
+ * Benchmarks of the tools working on three-dimensional models: the
+ * construction of 3D trees of building blocks, and the search for
+ * conformations allowing to close a ring. The torsional scan of the chain
+ * of the ring closure is run both on <code>javax.vecmath</code> objects and
+ * on the {@link GeometryKernel} to compare the two implementations.
+ *
+ * @author Marco Foscato
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ThreeDimBenchmarks
+{
+
+//------------------------------------------------------------------------------
+
+    @Benchmark
+    public void convertGraphTo3DAtomContainer(PtCOLX2Fixture fx,
+            Blackhole bh) throws Exception
+    {
+        TreeBuilder3D tb3d = new TreeBuilder3D();
+        for (DENOPTIMGraph g : fx.graphs)
+        {
+            bh.consume(tb3d.convertGraphTo3DAtomContainer(g, true));
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Benchmark
+    public boolean evaluateClosability(PtCOLX2Fixture fx)
+    {
+        // The list of rotatable bonds is modified by the method
+        return RingClosureFinder.evaluateClosability(fx.closablePath,
+                new ArrayList<Boolean>(fx.closablePathRotatability),
+                fx.closablePathDihRefs,
+                new ArrayList<ArrayList<Double>>());
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * The chain of points from {@link PtCOLX2Fixture#closablePath} in the
+     * two representations being compared. The scans make full turns around
+     * each bond, so the chain returns to its initial conformation and can
+     * be reused by all invocations.
+     */
+
+    @State(Scope.Thread)
+    public static class ChainState
+    {
+        /**
+         * Angle step (degrees) of the torsional scan
+         */
+        public double step = 10.0;
+
+        public List<Point3d> points;
+        public GeometryKernel.Buffer buffer;
+
+        @Setup(Level.Trial)
+        public void setup(PtCOLX2Fixture fx)
+        {
+            points = new ArrayList<Point3d>();
+            buffer = new GeometryKernel.Buffer();
+            for (IAtom atm : fx.closablePath)
+            {
+                Point3d p = atm.getPoint3d();
+                points.add(new Point3d(p));
+                buffer.add(p.x, p.y, p.z);
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Full turn around each bond of the chain, and evaluation of the
+     * dihedral at the tail, using the vecmath objects as done by
+     * {@link RingClosureFinder} before the introduction of the
+     * {@link GeometryKernel}.
+     */
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double torsionalScanVecmath(ChainState cs)
+    {
+        List<Point3d> chain = cs.points;
+        int n = chain.size();
+        double sum = 0.0;
+        int totStp = (int) (360.0 / cs.step);
+        for (int rot=0; rot<n-2; rot++)
+        {
+            for (int i=0; i<totStp; i++)
+            {
+                Point3d src = chain.get(rot);
+                Point3d end = chain.get(rot+1);
+                Vector3d rotAxis = new Vector3d(end.x - src.x,
+                                                end.y - src.y,
+                                                end.z - src.z);
+                rotAxis.normalize();
+                Matrix3d rotMat = new Matrix3d();
+                rotMat.set(new AxisAngle4d(rotAxis,
+                                           Math.toRadians(cs.step)));
+                for (int ip=rot+2; ip<n; ip++)
+                {
+                    Point3d pt = chain.get(ip);
+                    Vector3d newVec = new Vector3d(pt.x - src.x,
+                                                   pt.y - src.y,
+                                                   pt.z - src.z);
+                    rotMat.transform(newVec);
+                    pt.x = newVec.x + src.x;
+                    pt.y = newVec.y + src.y;
+                    pt.z = newVec.z + src.z;
+                }
+                sum += DENOPTIMMathUtils.computeDihedralAngle(
+                        new double[] {chain.get(n-4).x, chain.get(n-4).y,
+                                chain.get(n-4).z},
+                        new double[] {chain.get(n-3).x, chain.get(n-3).y,
+                                chain.get(n-3).z},
+                        new double[] {chain.get(n-2).x, chain.get(n-2).y,
+                                chain.get(n-2).z},
+                        new double[] {chain.get(n-1).x, chain.get(n-1).y,
+                                chain.get(n-1).z});
+            }
+        }
+        return sum;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Same as {@link #torsionalScanVecmath(ChainState)} but working in
+     * place on the {@link GeometryKernel.Buffer}.
+     */
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double torsionalScanKernel(ChainState cs)
+    {
+        GeometryKernel.Buffer chain = cs.buffer;
+        int n = chain.size();
+        double sum = 0.0;
+        int totStp = (int) (360.0 / cs.step);
+        for (int rot=0; rot<n-2; rot++)
+        {
+            for (int i=0; i<totStp; i++)
+            {
+                int end = rot+1;
+                GeometryKernel.rotate(chain, rot+2, n,
+                        chain.x[rot], chain.y[rot], chain.z[rot],
+                        chain.x[end] - chain.x[rot],
+                        chain.y[end] - chain.y[rot],
+                        chain.z[end] - chain.z[rot],
+                        Math.toRadians(cs.step));
+                sum += GeometryKernel.dihedral(chain, n-4, n-3, n-2, n-1);
+            }
+        }
+        return sum;
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,119 @@
+/*
+ *   DENOPTIM
+ *   Copyright (C) 2020 Marco Foscato <marco.foscato@uib.no>
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU Affero General Public License as published
+ *   by the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU Affero General Public License for more details.
+ *
+ *   You should have received a copy of the GNU Affero General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package denoptimga;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import benchmarks.PtCOLX2Fixture;
+import denoptim.io.DenoptimIO;
+import denoptim.molecule.DENOPTIMGraph;
+
+/**
+ * Benchmarks of the genetic operators and of the evaluation of graphs as done
+ * by the evolutionary algorithm. These live in the <code>denoptimga</code>
+ * package because the benchmarked methods of {@link EAUtils} are not public.
+ * Genetic operators modify the graphs, so each invocation works on fresh
+ * copies of the graphs of the population.
+ *
+ * @author Marco Foscato
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EABenchmarks
+{
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Copies of the graphs of the population to be modified by the genetic
+     * operators.
+     */
+    @State(Scope.Thread)
+    public static class Offspring
+    {
+        public ArrayList<DENOPTIMGraph> graphs;
+
+        @Setup(Level.Invocation)
+        public void setup(PtCOLX2Fixture fx) throws Exception
+        {
+            graphs = new ArrayList<DENOPTIMGraph>();
+            for (DENOPTIMGraph g : fx.graphs)
+            {
+                graphs.add((DENOPTIMGraph) DenoptimIO.deepCopy(g));
+            }
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Benchmark
+    public void evaluateGraph(PtCOLX2Fixture fx, Blackhole bh)
+            throws Exception
+    {
+        for (DENOPTIMGraph g : fx.graphs)
+        {
+            bh.consume(EAUtils.evaluateGraph(g));
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Benchmark
+    public void performMutation(Offspring off, Blackhole bh) throws Exception
+    {
+        for (DENOPTIMGraph g : off.graphs)
+        {
+            bh.consume(EAUtils.performMutation(g));
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    @Benchmark
+    public void performCrossover(Offspring off, Blackhole bh)
+            throws Exception
+    {
+        for (int i=1; i<off.graphs.size(); i=i+2)
+        {
+            bh.consume(DENOPTIMGraphOperations.performCrossover(
+                    off.graphs.get(i-1), off.graphs.get(i)));
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+}
@@ -22,11 +22,13 @@ import denoptim.io.DenoptimIO;
 import denoptim.exception.DENOPTIMException;
 
 import fragspaceexplorer.FSECheckPoint;
+import fragspaceexplorer.FSEJournal;
 import fragspaceexplorer.FSEUtils;
 
 
 /**
- * Conversion tool for serialized <code>FSECheckPoint</code>.
+ * Conversion tool for serialized <code>FSECheckPoint</code> and for the
+ * journal of FragSpaceExplorer (see <code>FSEJournal</code>).
  * @author Marco Foscato
  */
 
@@ -36,13 +38,14 @@ public class CheckpointReader
 //------------------------------------------------------------------------------    
     /**
      * @param args the command line arguments. For now only the name of the 
-     * checkpoint file to read.
+     * checkpoint file (<code>*.chk</code>) or of the journal to read.
      */
     public static void main(String[] args)
     {
         if (args.length < 1)
         {
-            System.err.println("Usage: java -jar ChechpointReader.jar <filename>.chk");
+            System.err.println("Usage: java -jar ChechpointReader.jar "
+                               + "<filename>.chk|<journal>");
             System.exit(-1);
 	}
 
@@ -51,14 +54,22 @@ public class CheckpointReader
 	{
 	    try	
 	    {
-	        FSECheckPoint chk = FSEUtils.deserializeCheckpoint(fileName);
 	        System.out.println(" ");
-	        System.out.println(chk);
+	        if (fileName.endsWith(".chk"))
+	        {
+	            FSECheckPoint chk = FSEUtils.deserializeCheckpoint(fileName);
+	            System.out.println(chk);
+	        }
+	        else
+	        {
+	            FSEJournal.State state = FSEJournal.read(fileName);
+	            System.out.println(state);
+	        }
 	        System.out.println(" ");
 	    }
 	    catch (Throwable t)
 	    {
-		System.err.println("ERROR! Unable to deserialize checkpoint.");
+		System.err.println("ERROR! Unable to read checkpoint.");
 		t.printStackTrace();
 	    }
 	}
@@ -112,6 +112,11 @@ public class GraphEdParameters
      */
     private static int verbosity = 0;
 
+    /**
+     * Minimum level of the records written to the log file
+     */
+    private static Level logLevel = Level.INFO;
+
 
 //-----------------------------------------------------------------------------
 
@@ -342,6 +347,9 @@ public class GraphEdParameters
                 throw new DENOPTIMException(msg);
             }
             break;
+        case "GRAPHEDIT-LOGLEVEL=":
+            logLevel = DENOPTIMLogger.parseLevel(value);
+            break;
         default:
              msg = "Keyword " + key + " is not a known GraphEditor-"
                                        + "related keyword. Check input files.";
@@ -558,7 +566,7 @@ public class GraphEdParameters
 
         try
         {
-            DENOPTIMLogger.getInstance().setupLogger(logFile);
+            DENOPTIMLogger.getInstance().setupLogger(logFile, logLevel);
         }
         catch (IOException ioe)
         {
@@ -1,7 +1,7 @@
 /*
  *   DENOPTIM
  *   Copyright (C) 2019 Vishwesh Venkatraman <vishwesh.venkatraman@ntnu.no>
- * 
+ *
  *   This program is free software: you can redistribute it and/or modify
  *   it under the terms of the GNU Affero General Public License as published
  *   by the Free Software Foundation, either version 3 of the License, or
@@ -24,16 +24,10 @@ import org.openscience.cdk.tools.manipulator.ChemFileManipulator;
 import org.openscience.cdk.ChemFile;
 import org.openscience.cdk.ChemObject;
 import org.openscience.cdk.io.MDLV2000Reader;
-import org.openscience.cdk.AtomContainerSet;
-import org.openscience.cdk.interfaces.IAtomContainerSet;
 import org.openscience.cdk.interfaces.IAtom;
-import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
 import org.openscience.cdk.io.Mol2Reader;
 import org.openscience.cdk.io.SDFWriter;
-import org.openscience.cdk.io.MDLV2000Writer;
-import org.openscience.cdk.AtomContainerSet;
-import org.openscience.cdk.interfaces.IPseudoAtom;
+import org.openscience.cdk.smiles.SmilesGenerator;
 
 
 
@@ -42,20 +36,36 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.vecmath.Point3d;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Collections;
 import java.util.List;
-import java.util.Iterator;
 
 import denoptim.constants.DENOPTIMConstants;
+import denoptim.fragspace.FragmentLibraryIndex;
 
 
+/**
+ * Prepares a library of fragments from the output of the BRICS fragmenter.
+ * Molecules are streamed from the input file and tagged in parallel, while
+ * a single writer writes the fragments in the order of the input, skipping
+ * duplicates, i.e., fragments with the same canonical SMILES (including the
+ * attachment points) and the same AP classes. The library is written together
+ * with its index (see {@link FragmentLibraryIndex}).
+ */
+
 public class SetupBRICS
 {
 
@@ -63,6 +73,32 @@ public class SetupBRICS
 
     private static final Logger LOGGER = Logger.getLogger(SetupBRICS.class.getName());
 
+    /**
+     * Number of molecules that can be queued for processing per thread
+     */
+    private static final int QUEUEPERTHREAD = 8;
+
+    /**
+     * SMILES generators are not thread safe: one per thread
+     */
+    private static final ThreadLocal<SmilesGenerator> SMGEN =
+            new ThreadLocal<SmilesGenerator>() {
+                @Override
+                protected SmilesGenerator initialValue()
+                {
+                    return new SmilesGenerator(true);
+                }
+            };
+
+    /**
+     * Keys of the fragments written so far
+     */
+    private Set<String> writtenKeys = new HashSet<>();
+
+    private int numRead = 0;
+    private int numWritten = 0;
+    private int numDuplicates = 0;
+
 //------------------------------------------------------------------------------
 
     public static void main(String[] args)
@@ -70,63 +106,294 @@ public class SetupBRICS
 
         if (args.length < 2)
         {
-            System.err.println("Usage: java -cp cdk.jar SetupBRICS infile(sdf/mol2) outsdffile");
+            System.err.println("Usage: java -cp cdk.jar SetupBRICS "
+                    + "infile(sdf/mol2) outsdffile [numThreads]");
             System.exit(-1);
         }
-        
+
         SetupBRICS sbrics = new SetupBRICS();
-        
+
         try
         {
-            String infile = args[0];
-            if (infile.endsWith(".sdf"))
+            int nThreads = Runtime.getRuntime().availableProcessors();
+            if (args.length > 2)
             {
-                ArrayList<IAtomContainer> mols = sbrics.readSDFFile(infile);
-                ArrayList<ArrayList<Integer>> rdata = sbrics.readRData(infile);
-                //System.err.println(rdata.size());
-                boolean append = false;
-                for (int i=0; i<mols.size(); i++)
+                nThreads = Integer.parseInt(args[2]);
+            }
+            sbrics.run(args[0], args[1], nThreads);
+        }
+        catch (Exception ex)
+        {
+            LOGGER.log(Level.SEVERE, null, ex);
+            System.exit(-1);
+        }
+        System.exit(0);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Prepares the library of fragments and its index.
+     * @param infile the SDF or MOL2 file with the fragments
+     * @param outfile the SDF file of the library. The index is written to
+     * {@link FragmentLibraryIndex#getIndexFileName(String)}.
+     * @param nThreads the number of threads tagging the fragments
+     * @throws Exception
+     */
+
+    private void run(String infile, String outfile, int nThreads)
+                                                               throws Exception
+    {
+        boolean isSDF = infile.endsWith(".sdf");
+        if (!isSDF && !infile.endsWith(".mol2"))
+        {
+            throw new Exception("Unknown format of file " + infile);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+        ArrayDeque<Future<TaggedFragment>> queue = new ArrayDeque<>();
+        int maxQueued = nThreads * QUEUEPERTHREAD;
+
+        BufferedReader br = null;
+        SDFWriter sdfWriter = null;
+        BufferedWriter idxWriter = null;
+        try
+        {
+            br = new BufferedReader(new FileReader(infile));
+            sdfWriter = new SDFWriter(new FileWriter(new File(outfile)));
+            idxWriter = new BufferedWriter(new FileWriter(
+                    FragmentLibraryIndex.getIndexFileName(outfile)));
+            idxWriter.write(FragmentLibraryIndex.HEADER);
+            idxWriter.newLine();
+
+            String record = null;
+            while ((record = readRecord(br, isSDF)) != null)
+            {
+                if (queue.size() >= maxQueued)
                 {
-                    System.err.println("#" + (i+1));
-                    IAtomContainer mol = mols.get(i);
-					if (rdata.get(i).size() > 0)
-					{
-						sbrics.setupTags(mol, rdata.get(i));
-						sbrics.writeMolecule(args[1], mol, append);
-						append = true;
-					}
+                    write(queue.poll(), sdfWriter, idxWriter);
                 }
+                numRead++;
+                queue.add(pool.submit(new TaggingTask(record, isSDF)));
+            }
+            while (!queue.isEmpty())
+            {
+                write(queue.poll(), sdfWriter, idxWriter);
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+            if (br != null)
+            {
+                br.close();
+            }
+            // The index must not be older than the library
+            if (sdfWriter != null)
+            {
+                sdfWriter.close();
             }
-            if (infile.endsWith(".mol2"))
+            if (idxWriter != null)
             {
-                ArrayList<IAtomContainer> mols = sbrics.readMOL2File(args[0]);
-                boolean append = false;
-                for (int i=0; i<mols.size(); i++)
+                idxWriter.close();
+            }
+        }
+
+        if (numRead == 0)
+        {
+            throw new Exception("No data found in " + infile);
+        }
+        System.err.println("Read " + numRead + " molecules. Written "
+                + numWritten + " fragments. Duplicates: " + numDuplicates);
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Waits for the tagging of a molecule and writes the resulting fragment,
+     * unless it is a duplicate.
+     */
+
+    private void write(Future<TaggedFragment> future, SDFWriter sdfWriter,
+                       BufferedWriter idxWriter) throws Exception
+    {
+        TaggedFragment frag = null;
+        try
+        {
+            frag = future.get();
+        }
+        catch (ExecutionException ee)
+        {
+            throw new Exception(ee.getCause());
+        }
+        if (frag == null)
+        {
+            return;
+        }
+        System.err.println("#" + frag.num);
+        if (frag.key != null && !writtenKeys.add(frag.key))
+        {
+            numDuplicates++;
+            return;
+        }
+        sdfWriter.write(frag.mol);
+        idxWriter.write(frag.indexEntry);
+        idxWriter.newLine();
+        numWritten++;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Reads the text of the next molecule from the input.
+     * @param br the reader of the input
+     * @param isSDF <code>true</code> for SDF input, otherwise MOL2
+     * @return the text of the molecule or <code>null</code> if there is no
+     * more molecule
+     */
+
+    private String readRecord(BufferedReader br, boolean isSDF)
+                                                            throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        String line = null;
+        if (isSDF)
+        {
+            while ((line = br.readLine()) != null)
+            {
+                sb.append(line).append("\n");
+                if (line.startsWith("$$$$"))
                 {
-                    System.err.println("#" + (i+1));
-                    IAtomContainer mol = mols.get(i);
-                    sbrics.setupTags(mol);                
-                    sbrics.writeMolecule(args[1], mol, append);
-                    append = true;
-                }                    
+                    return sb.toString();
+                }
             }
         }
-        catch (Exception ex)
+        else
         {
-            LOGGER.log(Level.SEVERE, null, ex);
-            System.exit(-1);
+            br.mark(1024*1024);
+            boolean inMolecule = false;
+            while ((line = br.readLine()) != null)
+            {
+                if (line.startsWith("@<TRIPOS>MOLECULE"))
+                {
+                    if (inMolecule)
+                    {
+                        br.reset();
+                        return sb.toString();
+                    }
+                    inMolecule = true;
+                }
+                sb.append(line).append("\n");
+                br.mark(1024*1024);
+            }
+            if (!inMolecule)
+            {
+                return null;
+            }
         }
-        System.exit(0);
-    }    
-    
+        return sb.toString().trim().length() == 0 ? null : sb.toString();
+    }
+
 //------------------------------------------------------------------------------
-    
-    private void setupTags(IAtomContainer mol)    
+
+    /**
+     * A fragment ready to be written
+     */
+
+    private static class TaggedFragment
+    {
+        /**
+         * 1-based position of the molecule in the input
+         */
+        int num;
+        IAtomContainer mol;
+        String key;
+        String indexEntry;
+    }
+
+//------------------------------------------------------------------------------
+
+    /**
+     * Parses and tags one molecule.
+     */
+
+    private class TaggingTask implements Callable<TaggedFragment>
+    {
+        private final String record;
+        private final boolean isSDF;
+        private final int num;
+
+        TaggingTask(String record, boolean isSDF)
+        {
+            this.record = record;
+            this.isSDF = isSDF;
+            this.num = numRead;
+        }
+
+        @Override
+        public TaggedFragment call() throws Exception
+        {
+            IAtomContainer mol = null;
+            ArrayList<Integer> rtypes = null;
+            if (isSDF)
+            {
+                rtypes = readRData(record);
+                if (rtypes.isEmpty())
+                {
+                    return null;
+                }
+                mol = readSDFRecord(record);
+            }
+            else
+            {
+                mol = readMOL2Record(record);
+            }
+
+            // The R atoms are still there, so the SMILES accounts for the
+            // position of the attachment points
+            String smiles = null;
+            try
+            {
+                smiles = SMGEN.get().createSMILES(mol);
+            }
+            catch (Throwable t)
+            {
+                LOGGER.log(Level.WARNING, "Cannot make SMILES for molecule #"
+                           + num + ". It will not be checked for duplicates.");
+            }
+
+            if (isSDF)
+            {
+                setupTags(mol, rtypes);
+            }
+            else
+            {
+                setupTags(mol);
+            }
+
+            TaggedFragment frag = new TaggedFragment();
+            frag.num = num;
+            frag.mol = mol;
+            frag.indexEntry = FragmentLibraryIndex.makeEntry(mol);
+            if (smiles != null)
+            {
+                String[] words = frag.indexEntry.split(" ");
+                String[] classes = Arrays.copyOfRange(words, 2, words.length);
+                Arrays.sort(classes);
+                frag.key = smiles + " " + String.join(" ", classes);
+            }
+            return frag;
+        }
+    }
+
+//------------------------------------------------------------------------------
+
+    private void setupTags(IAtomContainer mol)
     {
         ArrayList<IAtom> atomsToRem = new ArrayList<>();
         ArrayList<IAtom> classAtoms = new ArrayList<>();
         ArrayList<String> atomIds = new ArrayList<>();
-        
+
         for (int i = 0; i < mol.getAtomCount(); i++)
         {
             IAtom atm = mol.getAtom(i);
@@ -140,10 +407,10 @@ public class SetupBRICS
                 classAtoms.add(lst.get(0));
             }
         }
-        
+
         for (int i=0; i<atomsToRem.size(); i++)
         {
-            mol.removeAtomAndConnectedElectronContainers(atomsToRem.get(i));        
+            mol.removeAtomAndConnectedElectronContainers(atomsToRem.get(i));
         }
 
         StringBuilder sb1 = new StringBuilder(512);
@@ -157,19 +424,19 @@ public class SetupBRICS
             else
                 sb2.append("" + (pos+1) + ":" + "1" + " ");
         }
-        
-        
+
+
         mol.setProperty(DENOPTIMConstants.APCVTAG, sb1.toString().trim());
         mol.setProperty(DENOPTIMConstants.APTAG, sb2.toString().trim());
-    }    
-    
+    }
+
 //------------------------------------------------------------------------------
 
-    private void setupTags(IAtomContainer mol, ArrayList<Integer> rtypes)    
+    private void setupTags(IAtomContainer mol, ArrayList<Integer> rtypes)
     {
         ArrayList<IAtom> atomsToRem = new ArrayList<>();
         ArrayList<IAtom> classAtoms = new ArrayList<>();
-        
+
         for (int i = 0; i < mol.getAtomCount(); i++)
         {
             IAtom atm = mol.getAtom(i);
@@ -182,12 +449,12 @@ public class SetupBRICS
                 classAtoms.add(lst.get(0));
             }
         }
-        
+
         for (int i=0; i<atomsToRem.size(); i++)
         {
-            mol.removeAtomAndConnectedElectronContainers(atomsToRem.get(i));        
+            mol.removeAtomAndConnectedElectronContainers(atomsToRem.get(i));
         }
-        
+
         StringBuilder sb1 = new StringBuilder(512);
         StringBuilder sb2 = new StringBuilder(512);
         for (int i=0; i<classAtoms.size(); i++)
@@ -199,24 +466,30 @@ public class SetupBRICS
             else
                 sb2.append("" + (pos+1) + ":" + "1" + " ");
         }
-        
-        
+
+
         mol.setProperty(DENOPTIMConstants.APCVTAG, sb1.toString().trim());
         mol.setProperty(DENOPTIMConstants.APTAG, sb2.toString().trim());
     }
-    
+
 //------------------------------------------------------------------------------
 
-    private ArrayList<IAtomContainer> readMOL2File(String filename) throws Exception
+    /**
+     * Reads one molecule from the text of a MOL2 file.
+     * @param record the text of one molecule
+     * @return the molecule
+     * @throws Exception
+     */
+    private IAtomContainer readMOL2Record(String record) throws Exception
     {
         Mol2Reader reader = null;
-        ArrayList<IAtomContainer> lstContainers = new ArrayList<>();
-        
+        List<IAtomContainer> lstContainers = null;
+
         try
         {
-            reader = new Mol2Reader(new FileReader(new File(filename)));
+            reader = new Mol2Reader(new StringReader(record));
             ChemFile chemFile = (ChemFile)reader.read((ChemObject)new ChemFile());
-            lstContainers.addAll(ChemFileManipulator.getAllAtomContainers(chemFile));
+            lstContainers = ChemFileManipulator.getAllAtomContainers(chemFile);
         }
         catch (CDKException | IOException cdke)
         {
@@ -224,93 +497,38 @@ public class SetupBRICS
         }
         finally
         {
-            try
-            {
-                if (reader != null)
-                {
-                    reader.close();
-                }
-            }
-            catch (IOException ioe)
+            if (reader != null)
             {
-                throw new Exception(ioe);
+                reader.close();
             }
         }
-        
+
         if (lstContainers.isEmpty())
         {
-            throw new Exception("No data found in " + filename);
+            throw new Exception("No data found in " + record);
         }
-        
-        System.err.println(lstContainers.size());
-
-        return lstContainers;
 
-    }  
-
-//------------------------------------------------------------------------------
-
-    private void writeMolecule(String filename, IAtomContainer mol, 
-                                    boolean append) throws Exception
-    {
-        SDFWriter sdfWriter = null;
-        try
-        {
-            sdfWriter = new SDFWriter(new FileWriter(new File(filename), append));
-            sdfWriter.write(mol);
-	    }
-	    catch (CDKException cdke)
-        {
-            String error = "Error: " + cdke.getMessage();
-			System.err.println(error);
-			System.exit(-1);            
-        }
-        catch (IOException ioe)
-		{
-			String error = "Error: " + ioe.getMessage();
-			System.err.println(error);
-			System.exit(-1);
-		}
-        catch (Exception e)
-		{
-            String error = "Error: " + e.getMessage();
-			System.err.println(error);
-			System.exit(-1);
-		}		
-		finally
-		{
-		   try 
-			{
-				if(sdfWriter != null)
-					sdfWriter.close();		
-			} 
-			catch (IOException ioe) 
-			{
-				throw ioe;				
-			}
-		}
+        return lstContainers.get(0);
     }
 
 //------------------------------------------------------------------------------
 
     /**
-     * Reads a file containing multiple molecules (multiple SD format))
-     *
-     * @param filename the file containing the molecules
-     * @return IAtomContainer[] an array of molecules
+     * Reads one molecule from the text of an SD file.
+     * @param record the text of one molecule
+     * @return the molecule
      * @throws Exception
      */
-    private ArrayList<IAtomContainer> readSDFFile(String filename) throws Exception
+    private IAtomContainer readSDFRecord(String record) throws Exception
     {
         MDLV2000Reader mdlreader = null;
-        ArrayList<IAtomContainer> lstContainers = new ArrayList<>();
+        List<IAtomContainer> lstContainers = null;
 
         try
         {
-            mdlreader = new MDLV2000Reader(new FileReader(new File(filename)));
+            mdlreader = new MDLV2000Reader(new StringReader(record));
             ChemFile chemFile = (ChemFile) mdlreader.read((ChemObject) new ChemFile());
-            lstContainers.addAll(
-                    ChemFileManipulator.getAllAtomContainers(chemFile));
+            lstContainers = ChemFileManipulator.getAllAtomContainers(chemFile);
         }
         catch (CDKException | IOException cdke)
         {
@@ -318,142 +536,103 @@ public class SetupBRICS
         }
         finally
         {
-            try
-            {
-                if (mdlreader != null)
-                {
-                    mdlreader.close();
-                }
-            }
-            catch (IOException ioe)
+            if (mdlreader != null)
             {
-                throw new Exception(ioe);
+                mdlreader.close();
             }
         }
 
         if (lstContainers.isEmpty())
         {
-            throw new Exception("No data found in " + filename);
+            throw new Exception("No data found in " + record);
         }
 
-        return lstContainers;
+        return lstContainers.get(0);
     }
-    
+
 //------------------------------------------------------------------------------
 
-    private ArrayList<ArrayList<Integer>> readRData(String filename) throws Exception
+    /**
+     * Reads the types of the R atoms of one molecule from the text of an SD
+     * file.
+     * @param record the text of one molecule
+     * @return the R types in the order of the R atoms
+     * @throws Exception
+     */
+    private ArrayList<Integer> readRData(String record) throws Exception
     {
-        BufferedReader br = null;
+        BufferedReader br = new BufferedReader(new StringReader(record));
         String line = null;
         int nc = 0;
         int natom = 0;
 
-        String[] vals = null;
-        
-        ArrayList<ArrayList<Integer>> data = new ArrayList<>();
         ArrayList<Integer> rtypes = new ArrayList<>();
         boolean lookForISO = false;
 
-        try
+        while ((line = br.readLine()) != null)
         {
-            br = new BufferedReader(new FileReader(filename));
-            while ((line = br.readLine()) != null)
+            if (line.startsWith("$$$$"))
             {
-                if (line.startsWith("$$$$")) 
-                {
-                    //System.err.println("HERE");
-                    nc = 0;
-                    natom = 0;
-                    data.add(rtypes);
-                    //System.err.println("Added: " + data.size() + " " + rtypes.size());
-                    rtypes = new ArrayList<>();
-                    continue;
-                }
-                nc++;
-                //System.err.println(line + " " + nc);
-                if ((line.trim()).length() == 0)
-                    continue;
-                if (nc < 4)    
-                    continue;
-                if (nc == 4)    
-                {
-                    natom = Integer.parseInt(line.substring(0, 3).trim());
-                    continue;
-                }
-                
-                if (line.contains("M  RAD"))
-                    continue;
-                
-                
-                if (line.contains("R"))
-                {
-                    String element = line.substring(31, Math.min(line.length(), 34)).trim();
+                break;
+            }
+            nc++;
+            if ((line.trim()).length() == 0)
+                continue;
+            if (nc < 4)
+                continue;
+            if (nc == 4)
+            {
+                natom = Integer.parseInt(line.substring(0, 3).trim());
+                continue;
+            }
+
+            if (line.contains("M  RAD"))
+                continue;
 
-                    if (element.equals("R") || 
-                               (element.length() > 0 && element.charAt(0) == 'R'))
+
+            if (line.contains("R"))
+            {
+                String element = line.substring(31,
+                        Math.min(line.length(), 34)).trim();
+
+                if (element.equals("R") ||
+                           (element.length() > 0 && element.charAt(0) == 'R'))
+                {
+                    String massDiffString = line.substring(34,36).trim();
+                    if (!lookForISO)
                     {
-                        String massDiffString = line.substring(34,36).trim();
-                        //System.err.println("HERE " + element +  " " + massDiffString);
-                        if (!lookForISO)
-                        {
-						    if (Integer.parseInt(massDiffString) > 0)
-							    rtypes.add(Integer.parseInt(massDiffString));
-                            else
-                                lookForISO = true;
-                        }
+                        if (Integer.parseInt(massDiffString) > 0)
+                            rtypes.add(Integer.parseInt(massDiffString));
+                        else
+                            lookForISO = true;
                     }
                 }
-                
-                if (lookForISO)
+            }
+
+            if (lookForISO)
+            {
+                if (line.startsWith("M  ISO"))
                 {
-                    if (line.startsWith("M  ISO"))
+                    String countString = line.substring(6,10).trim();
+                    int infoCount = Integer.parseInt(countString);
+                    StringTokenizer st = new StringTokenizer(
+                            line.substring(10));
+                    for (int i=1; i <= infoCount; i++)
                     {
-                        String countString = line.substring(6,10).trim();
-                        int infoCount = Integer.parseInt(countString);
-                        StringTokenizer st = new StringTokenizer(line.substring(10));
-                        for (int i=1; i <= infoCount; i++) 
-                        {
-                            int atomNumber = Integer.parseInt(st.nextToken().trim());
-                            int absMass = Integer.parseInt(st.nextToken().trim());
-                            rtypes.add(absMass);
-                        }
+                        int atomNumber = Integer.parseInt(
+                                st.nextToken().trim());
+                        int absMass = Integer.parseInt(st.nextToken().trim());
+                        rtypes.add(absMass);
                     }
                 }
             }
-        }            
-        catch (NumberFormatException nfe)
-        {
-            throw nfe;
-        }
-        catch (IOException ioe)
-        {
-            throw ioe;
-        }
-        finally
-        {
-            try
-            {
-                if(br != null)
-                    br.close();
-            }
-            catch (IOException ioe)
-            {
-                throw ioe;
-            }
-        }
-        
-        if (data.isEmpty())
-        {
-            throw new Exception("No R data in file.");
         }
-        
-        //System.err.println(data.toString());
-        
-        return data;
+
+        return rtypes;
     }
 
-//------------------------------------------------------------------------------    
-    
+//------------------------------------------------------------------------------
+
     public void pause()
     {
         System.err.println("Press a key to continue");
@@ -465,9 +644,9 @@ public class SetupBRICS
         {
             System.err.println("Error reading from user");
         }
-    }    
-    
-//------------------------------------------------------------------------------        
+    }
+
+//------------------------------------------------------------------------------
 
 
 }